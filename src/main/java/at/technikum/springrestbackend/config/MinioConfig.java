@@ -1,10 +1,20 @@
 package at.technikum.springrestbackend.config;
 
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class MinioConfig {
 
@@ -12,11 +22,58 @@ public class MinioConfig {
     public MinioClient minioClient(
             @Value("${minio.url}") String url,
             @Value("${minio.access-key}") String accessKey,
-            @Value("${minio.secret-key}") String secretKey
+            @Value("${minio.secret-key}") String secretKey,
+            @Value("${minio.connect-timeout-ms:3000}") long connectTimeoutMillis,
+            @Value("${minio.write-timeout-ms:60000}") long writeTimeoutMillis,
+            @Value("${minio.read-timeout-ms:30000}") long readTimeoutMillis
     ) {
-        return MinioClient.builder()
+        MinioClient client = MinioClient.builder()
                 .endpoint(url)
                 .credentials(accessKey, secretKey)
                 .build();
+        client.setTimeout(connectTimeoutMillis, writeTimeoutMillis, readTimeoutMillis);
+        return client;
+    }
+
+    @Bean
+    public MinioAsyncClient minioAsyncClient(
+            @Value("${minio.url}") String url,
+            @Value("${minio.access-key}") String accessKey,
+            @Value("${minio.secret-key}") String secretKey,
+            @Value("${files.async.max-requests:256}") int maxRequests,
+            @Value("${minio.connect-timeout-ms:3000}") long connectTimeoutMillis,
+            @Value("${minio.write-timeout-ms:60000}") long writeTimeoutMillis,
+            @Value("${minio.read-timeout-ms:30000}") long readTimeoutMillis
+    ) {
+        return MinioAsyncClient.builder()
+                .endpoint(url)
+                .credentials(accessKey, secretKey)
+                .httpClient(asyncHttpClient(maxRequests,
+                        Duration.ofMillis(connectTimeoutMillis),
+                        Duration.ofMillis(writeTimeoutMillis),
+                        Duration.ofMillis(readTimeoutMillis)))
+                .build();
+    }
+
+    /**
+     * HTTP client for {@link MinioAsyncClient}. OkHttp runs at most five
+     * asynchronous calls per host by default, which would queue every file
+     * request behind five slow ones; its calls run on virtual threads here,
+     * so a call waiting on MinIO costs no platform thread.
+     */
+    public static OkHttpClient asyncHttpClient(int maxRequests, Duration connectTimeout,
+                                               Duration writeTimeout, Duration readTimeout) {
+        Dispatcher dispatcher = new Dispatcher(Executors.newVirtualThreadPerTaskExecutor());
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequests);
+        // same protocol as the MinIO client's default HTTP client
+        return new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(maxRequests, 5, TimeUnit.MINUTES))
+                .connectTimeout(connectTimeout)
+                .writeTimeout(writeTimeout)
+                .readTimeout(readTimeout)
+                .protocols(List.of(Protocol.HTTP_1_1))
+                .build();
     }
 }
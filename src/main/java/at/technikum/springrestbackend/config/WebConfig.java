@@ -0,0 +1,37 @@
+package at.technikum.springrestbackend.config;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer, DisposableBean {
+
+    private final ThreadPoolTaskExecutor fileStreamExecutor;
+
+    public WebConfig(
+            @Value("${files.stream.pool-size:64}") int poolSize,
+            @Value("${files.stream.queue-capacity:256}") int queueCapacity) {
+        this.fileStreamExecutor = new ThreadPoolTaskExecutor();
+        this.fileStreamExecutor.setCorePoolSize(poolSize);
+        this.fileStreamExecutor.setMaxPoolSize(poolSize);
+        this.fileStreamExecutor.setQueueCapacity(queueCapacity);
+        this.fileStreamExecutor.setThreadNamePrefix("file-stream-");
+        this.fileStreamExecutor.initialize();
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        // StreamingResponseBody downloads are written from this pool instead
+        // of the small default application task executor
+        configurer.setTaskExecutor(fileStreamExecutor);
+    }
+
+    @Override
+    public void destroy() {
+        fileStreamExecutor.shutdown();
+    }
+}
@@ -14,6 +14,7 @@ public final class AppConstants {
     public static final String AVATARS_PATH = "avatars/";
     public static final String POST_IMAGES_PATH =
             "post-images/";
+    public static final String UPLOAD_STAGING_PATH = "uploads/";
     public static final String FILE_API_PREFIX = "/api/files/";
 
     public static final String DEFAULT_AVATAR_URL =
@@ -43,4 +44,13 @@ public final class AppConstants {
 
     public static final String DEFAULT_SORT_FIELD =
             "createdAt";
+
+    // largest page the cursor feed serves
+    public static final int MAX_PAGE_SIZE = 100;
+
+    // characters of content shown per post in lists
+    public static final int POST_EXCERPT_LENGTH = 200;
+
+    // search results only, ranked by the post search index
+    public static final String RELEVANCE_SORT = "relevance";
 }
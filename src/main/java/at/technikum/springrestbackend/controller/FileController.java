@@ -1,32 +1,292 @@
 package at.technikum.springrestbackend.controller;
 
+import at.technikum.springrestbackend.service.FilePrefetchService;
+import at.technikum.springrestbackend.service.ImageRenditionService;
 import at.technikum.springrestbackend.service.MinioService;
+import at.technikum.springrestbackend.service.PresignedUrlService;
+import at.technikum.springrestbackend.util.StreamUtil;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.net.URI;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/files")
 public class FileController {
 
+    private record ByteRange(long start, long end) {
+
+        long length() {
+            return end - start + 1;
+        }
+
+        String contentRange(long size) {
+            return "bytes " + start + "-" + end + "/" + size;
+        }
+    }
+
+    // object keys contain a random UUID, so their content never changes
+    private static final CacheControl IMMUTABLE =
+            CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+
+    // browsers may reuse a redirect only while the signed URL is still valid
+    private static final long REDIRECT_MARGIN_SECONDS = 30;
+
     private final MinioService minioService;
+    private final PresignedUrlService presignedUrlService;
+    private final ImageRenditionService imageRenditionService;
+    private final FilePrefetchService filePrefetchService;
 
-    public FileController(MinioService minioService) {
+    public FileController(MinioService minioService,
+                          PresignedUrlService presignedUrlService,
+                          ImageRenditionService imageRenditionService,
+                          FilePrefetchService filePrefetchService) {
         this.minioService = minioService;
+        this.presignedUrlService = presignedUrlService;
+        this.imageRenditionService = imageRenditionService;
+        this.filePrefetchService = filePrefetchService;
     }
 
+    /**
+     * Returns a future so that no request thread waits while the object or
+     * its metadata is fetched from storage; cache hits complete immediately.
+     * The body is then copied on the {@code files.stream} pool.
+     */
     @GetMapping("/**")
-    public ResponseEntity<byte[]> getFile(HttpServletRequest request) {
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> getFile(
+            HttpServletRequest request) {
+        String objectKey = resolveObjectKey(request);
+        if (objectKey == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        CompletableFuture<String> servedKey;
+        try {
+            servedKey = servedKey(objectKey, request.getParameter("w"));
+        } catch (NumberFormatException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        return servedKey.thenCompose(key -> serve(request, key));
+    }
+
+    /**
+     * ?w= selects a downscaled rendition; the original until it exists.
+     */
+    private CompletableFuture<String> servedKey(String objectKey, String width) {
+        return width == null
+                ? CompletableFuture.completedFuture(objectKey)
+                : imageRenditionService.resolveAsync(objectKey, Integer.parseInt(width));
+    }
+
+    private CompletableFuture<ResponseEntity<StreamingResponseBody>> serve(
+            HttpServletRequest request, String objectKey) {
+        // the filesystem backend has no URLs to redirect to
+        PresignedUrlService.PresignedUrl presigned = minioService.supportsPresignedUrls()
+                ? presignedUrlService.urlFor(objectKey)
+                : null;
+        if (presigned != null) {
+            return CompletableFuture.completedFuture(redirectResponse(presigned));
+        }
+        filePrefetchService.recordRequest(objectKey);
+
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range == null && !isConditional(request)) {
+            return minioService.openStreamAsync(objectKey)
+                    .thenApply(file -> fullResponse(file));
+        }
+        return conditionalResponse(request, objectKey, range);
+    }
+
+    /**
+     * Answers revalidation and ranges from metadata only, without fetching
+     * the body.
+     */
+    private CompletableFuture<ResponseEntity<StreamingResponseBody>> conditionalResponse(
+            HttpServletRequest request, String objectKey, String range) {
+        return minioService.statAsync(objectKey).thenCompose(metadata -> {
+            if (isNotModified(request, metadata)) {
+                return CompletableFuture.completedFuture(
+                        ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                                .headers(cacheHeaders(metadata))
+                                .<StreamingResponseBody>build());
+            }
+            if (range == null || !ifRangeMatches(request, metadata)) {
+                return minioService.openStreamAsync(objectKey)
+                        .thenApply(file -> fullResponse(file));
+            }
+            return rangeResponse(objectKey, metadata, range);
+        });
+    }
+
+    private ResponseEntity<StreamingResponseBody> fullResponse(MinioService.StreamedFile file) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .headers(cacheHeaders(file.metadata()))
+                .header(HttpHeaders.CONTENT_TYPE, file.contentType())
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .contentLength(file.size());
+        return body(response, file);
+    }
+
+    /**
+     * Sends the client to MinIO; ranges and revalidation are then answered
+     * by MinIO for the signed URL.
+     */
+    private ResponseEntity<StreamingResponseBody> redirectResponse(
+            PresignedUrlService.PresignedUrl presigned) {
+        long maxAge = Duration.between(Instant.now(), presigned.expiresAt()).toSeconds()
+                - REDIRECT_MARGIN_SECONDS;
+        return ResponseEntity.status(HttpStatus.FOUND)
+                .location(URI.create(presigned.url()))
+                .cacheControl(maxAge > 0
+                        ? CacheControl.maxAge(Duration.ofSeconds(maxAge)).cachePrivate()
+                        : CacheControl.noStore())
+                .build();
+    }
+
+    /**
+     * Streams the file; local files keep their channel open until the copy
+     * ends, so a cache eviction or overwrite meanwhile cannot cut the body
+     * short. {@link StreamUtil#copy} uses {@code transferTo} for them.
+     */
+    private ResponseEntity<StreamingResponseBody> body(
+            ResponseEntity.BodyBuilder response, MinioService.StreamedFile file) {
+        return response.body(out -> {
+            try (file) {
+                StreamUtil.copy(file.stream(), out);
+            }
+        });
+    }
+
+    private CompletableFuture<ResponseEntity<StreamingResponseBody>> rangeResponse(
+            String objectKey, MinioService.ObjectMetadata metadata, String rangeHeader) {
+        List<ByteRange> ranges = resolveRanges(rangeHeader, metadata.size());
+        if (ranges.isEmpty()) {
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                            .header(HttpHeaders.CONTENT_RANGE, "bytes */" + metadata.size())
+                            .build());
+        }
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            return minioService.openStreamAsync(objectKey, range.start(), range.length())
+                    .thenApply(part -> singleRangeResponse(part, metadata, range));
+        }
+        return CompletableFuture.completedFuture(
+                multiRangeResponse(objectKey, metadata, ranges));
+    }
+
+    private ResponseEntity<StreamingResponseBody> singleRangeResponse(
+            MinioService.StreamedFile part, MinioService.ObjectMetadata metadata,
+            ByteRange range) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .headers(cacheHeaders(metadata))
+                .header(HttpHeaders.CONTENT_TYPE, metadata.contentType())
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CONTENT_RANGE, range.contentRange(metadata.size()))
+                .contentLength(range.length());
+        return body(response, part);
+    }
+
+    private ResponseEntity<StreamingResponseBody> multiRangeResponse(
+            String objectKey, MinioService.ObjectMetadata metadata, List<ByteRange> ranges) {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        List<byte[]> partHeaders = new ArrayList<>();
+        long contentLength = 0;
+        for (ByteRange range : ranges) {
+            byte[] header = partHeader(boundary, metadata, range);
+            partHeaders.add(header);
+            contentLength += header.length + range.length();
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .headers(cacheHeaders(metadata))
+                .header(HttpHeaders.CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .contentLength(contentLength + closing.length)
+                .body(out -> {
+                    for (int i = 0; i < ranges.size(); i++) {
+                        ByteRange range = ranges.get(i);
+                        out.write(partHeaders.get(i));
+                        // each part is a ranged GET, so only the requested bytes are
+                        // read; this runs on the files.stream pool, not a request thread
+                        try (MinioService.StreamedFile part = minioService.openStream(
+                                objectKey, range.start(), range.length())) {
+                            StreamUtil.copy(part.stream(), out);
+                        }
+                    }
+                    out.write(closing);
+                });
+    }
+
+    private byte[] partHeader(String boundary, MinioService.ObjectMetadata metadata,
+                              ByteRange range) {
+        return ("\r\n--" + boundary + "\r\n"
+                + HttpHeaders.CONTENT_TYPE + ": " + metadata.contentType() + "\r\n"
+                + HttpHeaders.CONTENT_RANGE + ": " + range.contentRange(metadata.size())
+                + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns the satisfiable ranges, or an empty list if the header is invalid
+     * or asks for more bytes than the object has (see RFC 9110, 14.2).
+     */
+    private List<ByteRange> resolveRanges(String rangeHeader, long size) {
+        try {
+            List<ByteRange> ranges = new ArrayList<>();
+            long requested = 0;
+            for (HttpRange range : HttpRange.parseRanges(rangeHeader)) {
+                long start = range.getRangeStart(size);
+                long end = range.getRangeEnd(size);
+                if (start >= size || end < start) {
+                    return List.of();
+                }
+                ranges.add(new ByteRange(start, end));
+                requested += end - start + 1;
+            }
+            return requested <= size ? ranges : List.of();
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+    }
+
+    private boolean ifRangeMatches(HttpServletRequest request,
+                                   MinioService.ObjectMetadata metadata) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // If-Range requires a strong comparison
+            return metadata.etag() != null && ifRange.equals("\"" + metadata.etag() + "\"");
+        }
+        long date = parseDateHeader(request, HttpHeaders.IF_RANGE);
+        return date >= 0
+                && metadata.lastModified() != null
+                && date == metadata.lastModified().truncatedTo(ChronoUnit.SECONDS).toEpochMilli();
+    }
+
+    private String resolveObjectKey(HttpServletRequest request) {
         String uri = request.getRequestURI(); // /api/files/<objectKey>
         String prefix = "/api/files/";
         if (!uri.startsWith(prefix) || uri.length() <= prefix.length()) {
-            return ResponseEntity.badRequest().build();
+            return null;
         }
 
         String rawKey = uri.substring(prefix.length());
@@ -36,13 +296,63 @@ public class FileController {
 
         // basic sanitization: forbid path traversal and empty keys
         if (objectKey.isEmpty() || objectKey.contains("..") || objectKey.startsWith("/")) {
-            return ResponseEntity.badRequest().build();
+            return null;
         }
+        return objectKey;
+    }
 
-        MinioService.DownloadedFile file = minioService.download(objectKey);
+    private boolean isConditional(HttpServletRequest request) {
+        return request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null;
+    }
 
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_TYPE, file.contentType())
-                .body(file.bytes());
+    private boolean isNotModified(HttpServletRequest request,
+                                  MinioService.ObjectMetadata metadata) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            // If-None-Match takes precedence over If-Modified-Since (RFC 9110)
+            return metadata.etag() != null && etagMatches(ifNoneMatch, metadata.etag());
+        }
+        long ifModifiedSince = parseDateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0
+                && metadata.lastModified() != null
+                && ifModifiedSince >= metadata.lastModified()
+                        .truncatedTo(ChronoUnit.SECONDS).toEpochMilli();
+    }
+
+    private boolean etagMatches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.replace("\"", "").equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long parseDateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private HttpHeaders cacheHeaders(MinioService.ObjectMetadata metadata) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl(IMMUTABLE);
+        if (metadata.etag() != null) {
+            headers.setETag("\"" + metadata.etag() + "\"");
+        }
+        if (metadata.lastModified() != null) {
+            headers.setLastModified(metadata.lastModified());
+        }
+        return headers;
     }
-}
\ No newline at end of file
+}
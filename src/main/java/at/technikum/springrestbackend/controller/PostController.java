@@ -1,15 +1,23 @@
 package at.technikum.springrestbackend.controller;
 
 import at.technikum.springrestbackend.constant.AppConstants;
+import at.technikum.springrestbackend.dto.CursorPageDTO;
 import at.technikum.springrestbackend.dto.PostCreateDTO;
 import at.technikum.springrestbackend.dto.PostDTO;
+import at.technikum.springrestbackend.dto.PostSummaryDTO;
 import at.technikum.springrestbackend.dto.PostUpdateDTO;
+import at.technikum.springrestbackend.dto.SliceDTO;
+import at.technikum.springrestbackend.dto.UploadCompleteDTO;
+import at.technikum.springrestbackend.dto.UploadRequestDTO;
+import at.technikum.springrestbackend.dto.UploadTicketDTO;
 import at.technikum.springrestbackend.service.PostService;
+import at.technikum.springrestbackend.util.StringUtil;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -18,6 +26,8 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.InputStream;
+
 @RestController
 @RequestMapping(
         value = "/api/posts",
@@ -31,16 +41,56 @@ public class PostController {
     }
 
     @GetMapping
-    public ResponseEntity<Page<PostDTO>> getAll(
+    public ResponseEntity<Page<PostSummaryDTO>> getAll(
             @RequestParam(required = false) String q,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            @RequestParam(defaultValue = "createdAt,desc") String sort
+            @RequestParam(required = false) String sort
     ) {
-        Pageable pageable = PageRequest.of(page, size, parseSort(sort));
+        Pageable pageable = PageRequest.of(page, size, parseSort(q, sort));
         return ResponseEntity.ok(postService.getAll(q, pageable));
     }
 
+    /**
+     * Same as {@link #getAll} with {@code hasNext} instead of totals, which
+     * saves counting the matches.
+     */
+    @GetMapping(params = {"slice=true", "!cursor"})
+    public ResponseEntity<SliceDTO<PostSummaryDTO>> getSlice(
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String sort
+    ) {
+        Pageable pageable = PageRequest.of(page, size, parseSort(q, sort));
+        return ResponseEntity.ok(postService.getSlice(q, pageable));
+    }
+
+    /**
+     * Cursor paging, started with an empty {@code cursor} and continued
+     * with the {@code nextCursor} of each page. Searches are paged by
+     * number only.
+     */
+    @GetMapping(params = {"cursor", "!slice"})
+    public ResponseEntity<CursorPageDTO<PostSummaryDTO>> getFeed(
+            @RequestParam String cursor,
+            @RequestParam(required = false) String q,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String sort
+    ) {
+        if (!StringUtil.isBlank(q)) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    "Cursor paging is not available for searches");
+        }
+        if (size < 1 || size > AppConstants.MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    "Page size must be between 1 and " + AppConstants.MAX_PAGE_SIZE);
+        }
+        return ResponseEntity.ok(postService.getFeed(cursor, size, parseSort(null, sort)));
+    }
+
     @GetMapping("/{id:\\d+}")
     public ResponseEntity<PostDTO> getById(@PathVariable Long id) {
         return ResponseEntity.ok(postService.getById(id));
@@ -84,24 +134,53 @@ public class PostController {
         return ResponseEntity.ok(postService.uploadImage(id, file));
     }
 
-    private Sort parseSort(String sort) {
-        try {
-            String[] parts = sort.split(",");
-            String field = parts[0].trim();
-            String direction = (parts.length > 1)
-                    ? parts[1].trim().toLowerCase()
-                    : "desc";
-
-            if (!AppConstants.ALLOWED_POST_SORT_FIELDS.contains(field)) {
-                throw new ResponseStatusException(
-                        HttpStatus.BAD_REQUEST,
-                        "Invalid sort field");
-            }
-
-            return "asc".equals(direction)
-                    ? Sort.by(field).ascending()
-                    : Sort.by(field).descending();
+    @PostMapping(
+            value = "/{id:\\d+}/image/stream",
+            consumes = MediaType.MULTIPART_FORM_DATA_VALUE
+    )
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<PostDTO> uploadImageStream(
+            @PathVariable Long id,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body
+    ) {
+        return ResponseEntity.ok(postService.uploadImageStream(id, contentType, body));
+    }
 
+    @PostMapping(
+            value = "/{id:\\d+}/image/upload-url",
+            consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<UploadTicketDTO> requestImageUpload(
+            @PathVariable Long id,
+            @Valid @RequestBody UploadRequestDTO dto
+    ) {
+        return ResponseEntity.ok(postService.requestImageUpload(id, dto));
+    }
+
+    @PostMapping(
+            value = "/{id:\\d+}/image/complete",
+            consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<PostDTO> completeImageUpload(
+            @PathVariable Long id,
+            @Valid @RequestBody UploadCompleteDTO dto
+    ) {
+        return ResponseEntity.ok(postService.completeImageUpload(id, dto.getObjectKey()));
+    }
+
+    /**
+     * Searches are ordered by relevance unless a field is asked for; plain
+     * listings default to newest first.
+     */
+    private Sort parseSort(String q, String sort) {
+        if (sort == null || AppConstants.RELEVANCE_SORT.equals(sort.trim())) {
+            return StringUtil.isBlank(q)
+                    ? Sort.by(AppConstants.DEFAULT_SORT_FIELD).descending()
+                    : Sort.unsorted();
+        }
+        try {
+            return fieldSort(sort.split(","));
         } catch (ResponseStatusException e) {
             // keep correct error codes for frontend
             throw e;
@@ -110,4 +189,21 @@ public class PostController {
             return Sort.by(AppConstants.DEFAULT_SORT_FIELD).descending();
         }
     }
+
+    private static Sort fieldSort(String[] parts) {
+        String field = parts[0].trim();
+        String direction = (parts.length > 1)
+                ? parts[1].trim().toLowerCase()
+                : "desc";
+
+        if (!AppConstants.ALLOWED_POST_SORT_FIELDS.contains(field)) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    "Invalid sort field");
+        }
+
+        return "asc".equals(direction)
+                ? Sort.by(field).ascending()
+                : Sort.by(field).descending();
+    }
 }
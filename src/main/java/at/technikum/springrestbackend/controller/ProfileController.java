@@ -3,13 +3,18 @@ package at.technikum.springrestbackend.controller;
 import at.technikum.springrestbackend.dto.ProfileDTO;
 import at.technikum.springrestbackend.dto.ProfileUpdateDTO;
 import at.technikum.springrestbackend.dto.PublicProfileDTO;
+import at.technikum.springrestbackend.dto.UploadCompleteDTO;
+import at.technikum.springrestbackend.dto.UploadRequestDTO;
+import at.technikum.springrestbackend.dto.UploadTicketDTO;
 import at.technikum.springrestbackend.service.ProfileService;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -47,6 +52,24 @@ public class ProfileController {
         return ResponseEntity.ok(profileService.uploadAvatar(file));
     }
 
+    @PostMapping(value = "/me/avatar/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ProfileDTO> uploadAvatarStream(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType, InputStream body) {
+        return ResponseEntity.ok(profileService.uploadAvatarStream(contentType, body));
+    }
+
+    @PostMapping(value = "/me/avatar/upload-url", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<UploadTicketDTO> requestAvatarUpload(
+            @Valid @RequestBody UploadRequestDTO dto) {
+        return ResponseEntity.ok(profileService.requestAvatarUpload(dto));
+    }
+
+    @PostMapping(value = "/me/avatar/complete", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ProfileDTO> completeAvatarUpload(
+            @Valid @RequestBody UploadCompleteDTO dto) {
+        return ResponseEntity.ok(profileService.completeAvatarUpload(dto.getObjectKey()));
+    }
+
     @DeleteMapping("/me")
     public ResponseEntity<Void> deleteMyProfile() {
         profileService.deleteMyProfile();
@@ -1,6 +1,7 @@
 package at.technikum.springrestbackend.dto;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 public class PostDTO {
     private Long id;
@@ -9,11 +10,17 @@ public class PostDTO {
     private String title;
     private String content;
     private String imageUrl; // public URL
+    private Map<Integer, String> imageRenditionUrls; // width -> URL
+    private Integer imageWidth;
+    private Integer imageHeight;
+    private String imagePlaceholder; // BlurHash
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
     public PostDTO(Long id, Long authorId, String authorUsername,
                    String title, String content, String imageUrl,
+                   Map<Integer, String> imageRenditionUrls,
+                   Integer imageWidth, Integer imageHeight, String imagePlaceholder,
                    LocalDateTime createdAt, LocalDateTime updatedAt) {
         this.id = id;
         this.authorId = authorId;
@@ -21,6 +28,10 @@ public class PostDTO {
         this.title = title;
         this.content = content;
         this.imageUrl = imageUrl;
+        this.imageRenditionUrls = imageRenditionUrls;
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        this.imagePlaceholder = imagePlaceholder;
         this.createdAt = createdAt;
         this.updatedAt = updatedAt;
     }
@@ -49,6 +60,22 @@ public class PostDTO {
         return imageUrl;
     }
 
+    public Map<Integer, String> getImageRenditionUrls() {
+        return imageRenditionUrls;
+    }
+
+    public Integer getImageWidth() {
+        return imageWidth;
+    }
+
+    public Integer getImageHeight() {
+        return imageHeight;
+    }
+
+    public String getImagePlaceholder() {
+        return imagePlaceholder;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,86 @@
+package at.technikum.springrestbackend.dto;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+public class PostSummaryDTO {
+    private Long id;
+    private Long authorId;
+    private String authorUsername;
+    private String title;
+    private String excerpt; // start of the content, see AppConstants.POST_EXCERPT_LENGTH
+    private String imageUrl; // public URL
+    private Map<Integer, String> imageRenditionUrls; // width -> URL
+    private Integer imageWidth;
+    private Integer imageHeight;
+    private String imagePlaceholder; // BlurHash
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    public PostSummaryDTO(Long id, Long authorId, String authorUsername,
+                          String title, String excerpt, String imageUrl,
+                          Map<Integer, String> imageRenditionUrls,
+                          Integer imageWidth, Integer imageHeight, String imagePlaceholder,
+                          LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this.id = id;
+        this.authorId = authorId;
+        this.authorUsername = authorUsername;
+        this.title = title;
+        this.excerpt = excerpt;
+        this.imageUrl = imageUrl;
+        this.imageRenditionUrls = imageRenditionUrls;
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        this.imagePlaceholder = imagePlaceholder;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getAuthorId() {
+        return authorId;
+    }
+
+    public String getAuthorUsername() {
+        return authorUsername;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getExcerpt() {
+        return excerpt;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public Map<Integer, String> getImageRenditionUrls() {
+        return imageRenditionUrls;
+    }
+
+    public Integer getImageWidth() {
+        return imageWidth;
+    }
+
+    public Integer getImageHeight() {
+        return imageHeight;
+    }
+
+    public String getImagePlaceholder() {
+        return imagePlaceholder;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
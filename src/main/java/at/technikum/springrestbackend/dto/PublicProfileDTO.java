@@ -1,6 +1,7 @@
 package at.technikum.springrestbackend.dto;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 public class PublicProfileDTO {
 
@@ -12,11 +13,17 @@ public class PublicProfileDTO {
     private String country;
     private String gender;
     private String avatarUrl;
+    private Map<Integer, String> avatarRenditionUrls; // width -> URL
+    private Integer avatarWidth;
+    private Integer avatarHeight;
+    private String avatarPlaceholder; // BlurHash
     private LocalDateTime createdAt;
 
     public PublicProfileDTO(Long id, String username, String bio, Integer age,
                             String city, String country, String gender,
-                            String avatarUrl, LocalDateTime createdAt) {
+                            String avatarUrl, Map<Integer, String> avatarRenditionUrls,
+                            Integer avatarWidth, Integer avatarHeight,
+                            String avatarPlaceholder, LocalDateTime createdAt) {
         this.id = id;
         this.username = username;
         this.bio = bio;
@@ -25,6 +32,10 @@ public class PublicProfileDTO {
         this.country = country;
         this.gender = gender;
         this.avatarUrl = avatarUrl;
+        this.avatarRenditionUrls = avatarRenditionUrls;
+        this.avatarWidth = avatarWidth;
+        this.avatarHeight = avatarHeight;
+        this.avatarPlaceholder = avatarPlaceholder;
         this.createdAt = createdAt;
     }
 
@@ -61,6 +72,22 @@ public class PublicProfileDTO {
         return avatarUrl;
     }
 
+    public Map<Integer, String> getAvatarRenditionUrls() {
+        return avatarRenditionUrls;
+    }
+
+    public Integer getAvatarWidth() {
+        return avatarWidth;
+    }
+
+    public Integer getAvatarHeight() {
+        return avatarHeight;
+    }
+
+    public String getAvatarPlaceholder() {
+        return avatarPlaceholder;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
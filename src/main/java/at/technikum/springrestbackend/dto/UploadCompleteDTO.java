@@ -0,0 +1,24 @@
+package at.technikum.springrestbackend.dto;
+
+import jakarta.validation.constraints.NotBlank;
+
+public class UploadCompleteDTO {
+
+    @NotBlank(message = "Object key is required")
+    private String objectKey;
+
+    public UploadCompleteDTO() {
+    }
+
+    public UploadCompleteDTO(String objectKey) {
+        this.objectKey = objectKey;
+    }
+
+    public String getObjectKey() {
+        return objectKey;
+    }
+
+    public void setObjectKey(String objectKey) {
+        this.objectKey = objectKey;
+    }
+}
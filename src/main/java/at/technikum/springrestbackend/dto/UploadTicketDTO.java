@@ -0,0 +1,40 @@
+package at.technikum.springrestbackend.dto;
+
+import java.time.Instant;
+
+public class UploadTicketDTO {
+    private String objectKey;
+    private String uploadUrl; // presigned PUT, send the file with this Content-Type
+    private String contentType;
+    private long maxBytes;
+    private Instant expiresAt;
+
+    public UploadTicketDTO(String objectKey, String uploadUrl, String contentType,
+                           long maxBytes, Instant expiresAt) {
+        this.objectKey = objectKey;
+        this.uploadUrl = uploadUrl;
+        this.contentType = contentType;
+        this.maxBytes = maxBytes;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getObjectKey() {
+        return objectKey;
+    }
+
+    public String getUploadUrl() {
+        return uploadUrl;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+}
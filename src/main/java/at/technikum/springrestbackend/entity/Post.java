@@ -7,7 +7,15 @@ import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "posts")
+@Table(
+        name = "posts",
+        // cursor paging seeks on (sort field, id)
+        indexes = {
+            @Index(name = "idx_posts_created_at_id", columnList = "createdAt, id"),
+            @Index(name = "idx_posts_updated_at_id", columnList = "updatedAt, id"),
+            @Index(name = "idx_posts_title_id", columnList = "title, id")
+        }
+)
 public class Post {
 
     @Id
@@ -27,6 +35,14 @@ public class Post {
     @Column(length = 300)
     private String imageObjectKey;
 
+    // measured once at upload, null for images stored before that
+    private Integer imageWidth;
+
+    private Integer imageHeight;
+
+    @Column(length = 40)
+    private String imagePlaceholder;
+
     @CreationTimestamp
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -78,6 +94,30 @@ public class Post {
         this.imageObjectKey = imageObjectKey;
     }
 
+    public Integer getImageWidth() {
+        return imageWidth;
+    }
+
+    public void setImageWidth(Integer imageWidth) {
+        this.imageWidth = imageWidth;
+    }
+
+    public Integer getImageHeight() {
+        return imageHeight;
+    }
+
+    public void setImageHeight(Integer imageHeight) {
+        this.imageHeight = imageHeight;
+    }
+
+    public String getImagePlaceholder() {
+        return imagePlaceholder;
+    }
+
+    public void setImagePlaceholder(String imagePlaceholder) {
+        this.imagePlaceholder = imagePlaceholder;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
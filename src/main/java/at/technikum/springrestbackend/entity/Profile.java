@@ -65,6 +65,14 @@ public class Profile implements UserDetails {
     @Column(length = 300)
     private String avatarObjectKey;
 
+    // measured once at upload, null for avatars stored before that
+    private Integer avatarWidth;
+
+    private Integer avatarHeight;
+
+    @Column(length = 40)
+    private String avatarPlaceholder;
+
     @Column(nullable = false)
     private boolean enabled = true;
 
@@ -171,6 +179,30 @@ public class Profile implements UserDetails {
         this.avatarObjectKey = avatarObjectKey;
     }
 
+    public Integer getAvatarWidth() {
+        return avatarWidth;
+    }
+
+    public void setAvatarWidth(Integer avatarWidth) {
+        this.avatarWidth = avatarWidth;
+    }
+
+    public Integer getAvatarHeight() {
+        return avatarHeight;
+    }
+
+    public void setAvatarHeight(Integer avatarHeight) {
+        this.avatarHeight = avatarHeight;
+    }
+
+    public String getAvatarPlaceholder() {
+        return avatarPlaceholder;
+    }
+
+    public void setAvatarPlaceholder(String avatarPlaceholder) {
+        this.avatarPlaceholder = avatarPlaceholder;
+    }
+
     public boolean getEnabled() {
         return enabled;
     }
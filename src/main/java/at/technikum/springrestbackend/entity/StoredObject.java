@@ -0,0 +1,54 @@
+package at.technikum.springrestbackend.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Reference count of a content-addressed object. A row with zero references
+ * stays until the deletion outbox has removed the object, so a re-upload of
+ * the same content never races the delete.
+ */
+@Entity
+@Table(name = "stored_objects")
+public class StoredObject {
+
+    @Id
+    @Column(length = 300)
+    private String objectKey;
+
+    @Column(nullable = false)
+    private int refCount;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    public StoredObject() {
+    }
+
+    public StoredObject(String objectKey, int refCount) {
+        this.objectKey = objectKey;
+        this.refCount = refCount;
+    }
+
+    public String getObjectKey() {
+        return objectKey;
+    }
+
+    public int getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(int refCount) {
+        this.refCount = refCount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
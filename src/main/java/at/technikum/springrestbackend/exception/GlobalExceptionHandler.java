@@ -125,7 +125,9 @@ public class GlobalExceptionHandler {
                 ? status.getReasonPhrase()
                 : reason;
 
+        // e.g. Retry-After of StorageUnavailableException
         return ResponseEntity.status(status)
+                .headers(ex.getHeaders())
                 .body(apiError(status, msg, req));
     }
 
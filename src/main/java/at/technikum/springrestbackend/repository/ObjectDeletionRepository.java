@@ -0,0 +1,14 @@
+package at.technikum.springrestbackend.repository;
+
+import at.technikum.springrestbackend.entity.ObjectDeletion;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ObjectDeletionRepository extends JpaRepository<ObjectDeletion, Long> {
+
+    List<ObjectDeletion> findByNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(
+            LocalDateTime now, Pageable pageable);
+}
@@ -3,29 +3,52 @@ package at.technikum.springrestbackend.repository;
 import at.technikum.springrestbackend.entity.Post;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface PostRepository extends JpaRepository<Post, Long> {
+public interface PostRepository extends JpaRepository<Post, Long>, PostSummaryRepository {
 
 
     @EntityGraph(attributePaths = {"author"})
     Optional<Post> findWithAuthorById(Long id);
 
+    // slices skip the COUNT query, totals come from CountService
     @EntityGraph(attributePaths = {"author"})
-    Page<Post> findByTitleContainingIgnoreCaseOrContentContainingIgnoreCase(
-            String title, String content, Pageable pageable);
+    Slice<Post> findSliceBy(Pageable pageable);
+
+    // lists read summaries, only getById loads the full content
+    @Query(PostSummary.SELECT)
+    Slice<PostSummary> findSummaries(Pageable pageable);
+
+    @Query(PostSummary.SELECT + " WHERE LOWER(p.title) LIKE %?#{escape([0].toLowerCase())}%"
+            + " ESCAPE ?#{escapeCharacter()}"
+            + " OR LOWER(p.content) LIKE %?#{escape([0].toLowerCase())}%"
+            + " ESCAPE ?#{escapeCharacter()}")
+    Slice<PostSummary> findSummariesMatching(String query, Pageable pageable);
+
+    @Query(PostSummary.SELECT + " WHERE p.id IN :ids")
+    List<PostSummary> findSummariesByIdIn(Collection<Long> ids);
+
+    @Query(PostSummary.SELECT + " WHERE p.id IN :ids")
+    Slice<PostSummary> findSummariesByIdIn(Collection<Long> ids, Pageable pageable);
+
+    long countByTitleContainingIgnoreCaseOrContentContainingIgnoreCase(
+            String title, String content);
 
     @Override
     @EntityGraph(attributePaths = {"author"})
     Page<Post> findAll(Pageable pageable);
 
+    List<Post> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
     List<Post> findByAuthorId(Long authorId);
 
     @Modifying
@@ -34,4 +57,7 @@ public interface PostRepository extends JpaRepository<Post, Long> {
     void deleteByAuthorId(Long authorId);
 
     long countByAuthorId(Long authorId);
+
+    @Query("SELECT p.imageObjectKey FROM Post p WHERE p.imageObjectKey IN :keys")
+    List<String> findImageObjectKeysIn(Collection<String> keys);
 }
\ No newline at end of file
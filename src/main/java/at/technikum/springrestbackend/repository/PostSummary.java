@@ -0,0 +1,26 @@
+package at.technikum.springrestbackend.repository;
+
+import at.technikum.springrestbackend.constant.AppConstants;
+
+import java.time.LocalDateTime;
+
+/**
+ * A post as lists show it, selected without the full content: only its
+ * first {@link #CONTENT_PREFIX_LENGTH} characters are read, enough to cut
+ * an excerpt and tell whether there is more.
+ */
+public record PostSummary(Long id, Long authorId, String authorUsername,
+                          String authorAvatarObjectKey, String title, String contentPrefix,
+                          String imageObjectKey, Integer imageWidth, Integer imageHeight,
+                          String imagePlaceholder, LocalDateTime createdAt,
+                          LocalDateTime updatedAt) {
+
+    public static final int CONTENT_PREFIX_LENGTH = AppConstants.POST_EXCERPT_LENGTH + 1;
+
+    // JPQL constructor expression over "Post p JOIN p.author a"
+    static final String SELECT = "SELECT new at.technikum.springrestbackend.repository.PostSummary("
+            + "p.id, a.id, a.username, a.avatarObjectKey, p.title, "
+            + "SUBSTRING(p.content, 1, " + CONTENT_PREFIX_LENGTH + "), "
+            + "p.imageObjectKey, p.imageWidth, p.imageHeight, p.imagePlaceholder, "
+            + "p.createdAt, p.updatedAt) FROM Post p JOIN p.author a";
+}
@@ -0,0 +1,19 @@
+package at.technikum.springrestbackend.repository;
+
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+/**
+ * Keyset queries for {@link PostSummary}s; Spring Data only scrolls
+ * entities, which would read the whole content.
+ */
+public interface PostSummaryRepository {
+
+    /**
+     * Up to {@code limit} summaries ordered by {@code order} and then id,
+     * starting after the post with sort value {@code value} and id
+     * {@code id}, or from the start if {@code id} is null.
+     */
+    List<PostSummary> findSummariesAfter(Sort.Order order, Object value, Long id, int limit);
+}
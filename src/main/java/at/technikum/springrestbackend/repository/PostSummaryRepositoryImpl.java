@@ -0,0 +1,70 @@
+package at.technikum.springrestbackend.repository;
+
+import at.technikum.springrestbackend.entity.Post;
+import at.technikum.springrestbackend.entity.Profile;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+public class PostSummaryRepositoryImpl implements PostSummaryRepository {
+
+    private final EntityManager entityManager;
+
+    public PostSummaryRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<PostSummary> findSummariesAfter(Sort.Order order, Object value, Long id,
+                                                int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<PostSummary> query = cb.createQuery(PostSummary.class);
+        Root<Post> post = query.from(Post.class);
+        Join<Post, Profile> author = post.join("author");
+        query.select(cb.construct(PostSummary.class,
+                post.get("id"), author.get("id"), author.get("username"),
+                author.get("avatarObjectKey"), post.get("title"),
+                cb.substring(post.get("content"), 1, PostSummary.CONTENT_PREFIX_LENGTH),
+                post.get("imageObjectKey"), post.get("imageWidth"), post.get("imageHeight"),
+                post.get("imagePlaceholder"), post.get("createdAt"), post.get("updatedAt")));
+
+        Path<Comparable<Object>> field = post.get(order.getProperty());
+        Path<Long> postId = post.get("id");
+        if (id != null) {
+            query.where(after(cb, field, comparable(value), postId, id, order.isAscending()));
+        }
+        query.orderBy(order.isAscending()
+                ? List.of(cb.asc(field), cb.asc(postId))
+                : List.of(cb.desc(field), cb.desc(postId)));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * (field, id) past (value, id) in sort order; the indexes on
+     * (field, id) let the database seek there.
+     */
+    private static Predicate after(CriteriaBuilder cb, Path<Comparable<Object>> field,
+                                   Comparable<Object> value, Path<Long> postId, Long id,
+                                   boolean ascending) {
+        return ascending
+                ? cb.or(cb.greaterThan(field, value),
+                        cb.and(cb.equal(field, value), cb.greaterThan(postId, id)))
+                : cb.or(cb.lessThan(field, value),
+                        cb.and(cb.equal(field, value), cb.lessThan(postId, id)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparable<Object> comparable(Object value) {
+        return (Comparable<Object>) value;
+    }
+}
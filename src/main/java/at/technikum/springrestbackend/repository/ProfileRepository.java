@@ -1,9 +1,14 @@
 package at.technikum.springrestbackend.repository;
 
 import at.technikum.springrestbackend.entity.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,6 +16,9 @@ public interface ProfileRepository extends JpaRepository<Profile, Long> {
 
     Optional<Profile> findByEmail(String email);
 
+    // no COUNT query, the total comes from CountService
+    Slice<Profile> findSliceBy(Pageable pageable);
+
     Optional<Profile> findByEmailIgnoreCase(String email);
 
     Optional<Profile> findByUsername(String username);
@@ -18,4 +26,7 @@ public interface ProfileRepository extends JpaRepository<Profile, Long> {
     boolean existsByEmail(String email);
 
     boolean existsByUsername(String username);
+
+    @Query("SELECT p.avatarObjectKey FROM Profile p WHERE p.avatarObjectKey IN :keys")
+    List<String> findAvatarObjectKeysIn(Collection<String> keys);
 }
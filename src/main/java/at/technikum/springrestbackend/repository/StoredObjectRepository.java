@@ -0,0 +1,25 @@
+package at.technikum.springrestbackend.repository;
+
+import at.technikum.springrestbackend.entity.StoredObject;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface StoredObjectRepository extends JpaRepository<StoredObject, String> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM StoredObject s WHERE s.objectKey = :objectKey")
+    Optional<StoredObject> findForUpdate(String objectKey);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM StoredObject s WHERE s.objectKey IN :objectKeys")
+    List<StoredObject> findAllForUpdate(Collection<String> objectKeys);
+
+    @Query("SELECT s.objectKey FROM StoredObject s WHERE s.objectKey IN :objectKeys")
+    List<String> findObjectKeysIn(Collection<String> objectKeys);
+}
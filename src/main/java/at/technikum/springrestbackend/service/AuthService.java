@@ -31,13 +31,16 @@ public class AuthService {
     private final ProfileRepository profileRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtService jwtService;
+    private final CountService countService;
 
     public AuthService(ProfileRepository profileRepository,
                        PasswordEncoder passwordEncoder,
-                       JwtService jwtService) {
+                       JwtService jwtService,
+                       CountService countService) {
         this.profileRepository = profileRepository;
         this.passwordEncoder = passwordEncoder;
         this.jwtService = jwtService;
+        this.countService = countService;
     }
 
     public LoginResponseDTO register(RegisterRequestDTO dto) {
@@ -55,6 +58,7 @@ public class AuthService {
 
         Profile profile = createProfile(email, username, country, dto.getPassword());
         profileRepository.save(profile);
+        countService.profilesChanged(1);
 
         return createLoginResponse(profile);
     }
@@ -0,0 +1,152 @@
+package at.technikum.springrestbackend.service;
+
+import at.technikum.springrestbackend.repository.PostRepository;
+import at.technikum.springrestbackend.repository.ProfileRepository;
+import at.technikum.springrestbackend.util.TransactionUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Totals for paged responses without a COUNT query per request. Post and
+ * profile totals are counted once, then moved by every create and delete
+ * after its transaction commits, and counted again every
+ * {@code counts.reconcile-interval-ms} to correct any drift. Search totals
+ * are cached per query for {@code counts.search-ttl-seconds}, so paging
+ * through results counts them once.
+ */
+@Service
+public class CountService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CountService.class);
+
+    private final PostRepository postRepository;
+    private final ProfileRepository profileRepository;
+    private final Cache<String, Long> searchCounts;
+
+    private final Object lock = new Object();
+    private final Object firstCount = new Object();
+    private long posts;
+    private long profiles;
+    // sums of every delta applied, to add the ones a recount missed
+    private long postDeltas;
+    private long profileDeltas;
+    private volatile boolean counted;
+
+    public CountService(
+            PostRepository postRepository,
+            ProfileRepository profileRepository,
+            @Value("${counts.search-ttl-seconds:30}") long searchTtlSeconds) {
+        this.postRepository = postRepository;
+        this.profileRepository = profileRepository;
+        this.searchCounts = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(searchTtlSeconds))
+                .maximumSize(10_000)
+                .build();
+    }
+
+    public long posts() {
+        ensureCounted();
+        synchronized (lock) {
+            return posts;
+        }
+    }
+
+    public long profiles() {
+        ensureCounted();
+        synchronized (lock) {
+            return profiles;
+        }
+    }
+
+    private void ensureCounted() {
+        if (!counted) {
+            // counted outside lock, committing writers do not wait on it
+            synchronized (firstCount) {
+                if (!counted) {
+                    reconcile();
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the post total by {@code delta} once the current transaction
+     * commits.
+     */
+    public void postsChanged(long delta) {
+        TransactionUtil.afterCommit(() -> {
+            synchronized (lock) {
+                posts += delta;
+                postDeltas += delta;
+            }
+        });
+    }
+
+    /**
+     * Moves the profile total by {@code delta} once the current transaction
+     * commits.
+     */
+    public void profilesChanged(long delta) {
+        TransactionUtil.afterCommit(() -> {
+            synchronized (lock) {
+                profiles += delta;
+                profileDeltas += delta;
+            }
+        });
+    }
+
+    /**
+     * Total of a search, counted by {@code counter} at most once per TTL.
+     */
+    public long searchCount(String query, Function<String, Long> counter) {
+        String key = query.trim().toLowerCase(Locale.ROOT);
+        return searchCounts.get(key, k -> counter.apply(query));
+    }
+
+    /**
+     * Counts posts and profiles again, plus the changes that were applied
+     * after each count returned. A change committing while a count runs may
+     * be off by its delta until the next run.
+     */
+    @Scheduled(
+            initialDelayString = "${counts.reconcile-interval-ms:300000}",
+            fixedDelayString = "${counts.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        long postCount = postRepository.count();
+        long postDeltasAtCount = postDeltas();
+        long profileCount = profileRepository.count();
+        long profileDeltasAtCount = profileDeltas();
+        synchronized (lock) {
+            long postTotal = postCount + postDeltas - postDeltasAtCount;
+            long profileTotal = profileCount + profileDeltas - profileDeltasAtCount;
+            if (counted && (posts != postTotal || profiles != profileTotal)) {
+                LOG.info("Corrected totals: posts {} -> {}, profiles {} -> {}",
+                        posts, postTotal, profiles, profileTotal);
+            }
+            posts = postTotal;
+            profiles = profileTotal;
+            counted = true;
+        }
+    }
+
+    private long postDeltas() {
+        synchronized (lock) {
+            return postDeltas;
+        }
+    }
+
+    private long profileDeltas() {
+        synchronized (lock) {
+            return profileDeltas;
+        }
+    }
+}
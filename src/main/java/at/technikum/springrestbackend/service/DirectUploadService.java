@@ -0,0 +1,114 @@
+package at.technikum.springrestbackend.service;
+
+import at.technikum.springrestbackend.dto.UploadRequestDTO;
+import at.technikum.springrestbackend.dto.UploadTicketDTO;
+import at.technikum.springrestbackend.util.ImageUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Two-step image uploads that bypass the app tier: {@link #issue} hands out
+ * a presigned PUT URL for a server-chosen key, {@link #verify} checks the
+ * stored object before a post or profile may point at it. A presigned PUT
+ * cannot enforce the size, so oversized or mistyped objects are deleted on
+ * completion instead. Only available with the MinIO storage backend.
+ */
+@Service
+public class DirectUploadService {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(DirectUploadService.class);
+
+    private final PresignedUrlService presignedUrlService;
+    private final MinioService minioService;
+    private final long maxBytes;
+
+    public DirectUploadService(PresignedUrlService presignedUrlService,
+                               MinioService minioService,
+                               @Value("${files.upload.max-bytes:10485760}") long maxBytes) {
+        this.presignedUrlService = presignedUrlService;
+        this.minioService = minioService;
+        this.maxBytes = maxBytes;
+    }
+
+    public UploadTicketDTO issue(String keyPrefix, UploadRequestDTO request) {
+        String contentType = request.getContentType() == null
+                ? null
+                : request.getContentType().trim().toLowerCase(Locale.ROOT);
+        if (!ImageUtil.isAllowedImageType(contentType)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Only PNG, JPEG, WEBP images are allowed");
+        }
+        if (request.getSize() == null || request.getSize() <= 0 || request.getSize() > maxBytes) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "File must be between 1 and " + maxBytes + " bytes");
+        }
+        if (!minioService.supportsPresignedUrls()) {
+            throw new ResponseStatusException(HttpStatus.NOT_IMPLEMENTED,
+                    "Direct uploads need the MinIO storage backend");
+        }
+
+        String objectKey = keyPrefix
+                + UUID.randomUUID()
+                + ImageUtil.getExtension(contentType);
+        PresignedUrlService.PresignedUrl url = presignedUrlService.uploadUrlFor(objectKey);
+        return new UploadTicketDTO(objectKey, url.url(), contentType, maxBytes, url.expiresAt());
+    }
+
+    /**
+     * Checks that {@code objectKey} was issued under {@code keyPrefix} and that
+     * the uploaded object is an allowed image within the size limit whose
+     * magic bytes match its type. Rejected objects are removed from the bucket.
+     */
+    public String verify(String keyPrefix, String objectKey) {
+        if (objectKey == null
+                || !objectKey.startsWith(keyPrefix)
+                || objectKey.length() == keyPrefix.length()
+                || objectKey.contains("..")
+                || objectKey.indexOf('/', keyPrefix.length()) >= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid object key");
+        }
+
+        MinioService.ObjectMetadata metadata = statUploaded(objectKey);
+        String contentType = metadata.contentType().toLowerCase(Locale.ROOT);
+        if (!ImageUtil.isAllowedImageType(contentType)
+                || !objectKey.endsWith(ImageUtil.getExtension(contentType))) {
+            reject(objectKey, "Only PNG, JPEG, WEBP images are allowed");
+        }
+        if (metadata.size() <= 0 || metadata.size() > maxBytes) {
+            reject(objectKey, "File must be between 1 and " + maxBytes + " bytes");
+        }
+        // the Content-Type was sent by the client, the signature is in the bytes
+        byte[] signature = minioService.readPrefix(objectKey,
+                Math.min(metadata.size(), ImageUtil.SIGNATURE_LENGTH));
+        if (!contentType.equals(ImageUtil.detectImageType(signature).orElse(null))) {
+            reject(objectKey, "File content does not match its image type");
+        }
+        return objectKey;
+    }
+
+    private MinioService.ObjectMetadata statUploaded(String objectKey) {
+        try {
+            return minioService.stat(objectKey);
+        } catch (ResponseStatusException e) {
+            if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Upload not found");
+            }
+            throw e;
+        }
+    }
+
+    private void reject(String objectKey, String reason) {
+        LOG.info("Rejected direct upload {}: {}", objectKey, reason);
+        minioService.delete(objectKey);
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, reason);
+    }
+}
@@ -0,0 +1,338 @@
+package at.technikum.springrestbackend.service;
+
+import at.technikum.springrestbackend.util.FileRegionInputStream;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Second cache tier below {@link HotObjectCache}: recently served objects are
+ * kept in a local directory with a byte budget and least-recently-used
+ * eviction. Each object is stored as {@code <sha256(key)>.bin} plus a
+ * {@code .meta} properties file, so the index can be rebuilt from the
+ * directory after a restart.
+ */
+@Component
+public class DiskObjectCache {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(DiskObjectCache.class);
+
+    private static final String DATA_SUFFIX = ".bin";
+    private static final String META_SUFFIX = ".meta";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private record Entry(String objectKey, Path data, Path meta,
+                         MinioService.ObjectMetadata metadata) {
+    }
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxBytes;
+    private final long maxObjectBytes;
+
+    // access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public DiskObjectCache(
+            @Value("${files.cache.disk.enabled:false}") boolean enabled,
+            @Value("${files.cache.disk.directory:${java.io.tmpdir}/object-cache}") Path directory,
+            @Value("${files.cache.disk.max-bytes:1073741824}") long maxBytes,
+            @Value("${files.cache.disk.max-object-bytes:16777216}") long maxObjectBytes,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.maxObjectBytes = maxObjectBytes;
+        this.hits = counter(meterRegistry, "files.cache.requests", "result", "hit");
+        this.misses = counter(meterRegistry, "files.cache.requests", "result", "miss");
+        this.evictions = counter(meterRegistry, "files.cache.evictions", "cause", "size");
+        Gauge.builder("files.cache.bytes", this, DiskObjectCache::totalBytes)
+                .tag("tier", "disk")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("files.cache.hit.ratio", this, DiskObjectCache::hitRatio)
+                .tag("tier", "disk")
+                .register(meterRegistry);
+        if (enabled) {
+            rebuildIndex();
+        }
+    }
+
+    public boolean accepts(long size) {
+        return enabled && size >= 0 && size <= maxObjectBytes && size <= maxBytes;
+    }
+
+    /**
+     * Checks for the object without counting a cache request.
+     */
+    public synchronized boolean contains(String objectKey) {
+        return enabled && index.containsKey(objectKey);
+    }
+
+    public MinioService.ObjectMetadata metadata(String objectKey) {
+        Entry entry = lookup(objectKey);
+        return entry != null ? entry.metadata() : null;
+    }
+
+    public MinioService.StreamedFile open(String objectKey) {
+        Entry entry = lookup(objectKey);
+        return entry != null ? open(entry, 0, entry.metadata().size()) : null;
+    }
+
+    public MinioService.StreamedFile open(String objectKey, long offset, long length) {
+        Entry entry = lookup(objectKey);
+        return entry != null ? open(entry, offset, length) : null;
+    }
+
+    /**
+     * Copies {@code source} into the cache and returns a stream over the
+     * cached file, or {@code null} if it could not be stored. The source is
+     * consumed and closed either way.
+     */
+    public MinioService.StreamedFile put(String objectKey, MinioService.StreamedFile source) {
+        try (source) {
+            Entry entry = write(objectKey, source);
+            register(entry);
+            return open(entry, 0, entry.metadata().size());
+        } catch (IOException | UncheckedIOException e) {
+            LOG.warn("Failed to cache {} on disk: {}", objectKey, e.getMessage());
+            return null;
+        }
+    }
+
+    public void invalidate(String objectKey) {
+        if (!enabled) {
+            return;
+        }
+        Entry entry;
+        synchronized (this) {
+            entry = index.remove(objectKey);
+            if (entry != null) {
+                totalBytes -= entry.metadata().size();
+            }
+        }
+        if (entry != null) {
+            deleteFiles(entry);
+        }
+    }
+
+    synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    private double hitRatio() {
+        double requests = hits.count() + misses.count();
+        return requests == 0 ? 0 : hits.count() / requests;
+    }
+
+    private Entry lookup(String objectKey) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry;
+        synchronized (this) {
+            entry = index.get(objectKey);
+        }
+        (entry != null ? hits : misses).increment();
+        return entry;
+    }
+
+    private MinioService.StreamedFile open(Entry entry, long offset, long length) {
+        try {
+            // the mtime records recency, so the LRU order survives a restart
+            Files.setLastModifiedTime(entry.data(), FileTime.from(Instant.now()));
+            MinioService.ObjectMetadata metadata = new MinioService.ObjectMetadata(
+                    entry.metadata().contentType(), length,
+                    entry.metadata().etag(), entry.metadata().lastModified());
+            return new MinioService.StreamedFile(
+                    FileRegionInputStream.open(entry.data(), offset, length), metadata);
+        } catch (IOException e) {
+            LOG.warn("Cached file for {} is unreadable: {}", entry.objectKey(), e.getMessage());
+            invalidate(entry.objectKey());
+            return null;
+        }
+    }
+
+    private Entry write(String objectKey, MinioService.StreamedFile source) throws IOException {
+        Files.createDirectories(directory);
+        String name = fileName(objectKey);
+        String temp = "." + UUID.randomUUID() + TEMP_SUFFIX;
+        Path dataTemp = directory.resolve(name + DATA_SUFFIX + temp);
+        Path metaTemp = directory.resolve(name + META_SUFFIX + temp);
+        try {
+            long size = Files.copy(source.stream(), dataTemp);
+            MinioService.ObjectMetadata metadata = new MinioService.ObjectMetadata(
+                    source.contentType(), size,
+                    source.metadata().etag(), source.metadata().lastModified());
+            writeMeta(metaTemp, objectKey, metadata);
+            Path data = move(dataTemp, name + DATA_SUFFIX);
+            Path meta = move(metaTemp, name + META_SUFFIX);
+            return new Entry(objectKey, data, meta, metadata);
+        } finally {
+            Files.deleteIfExists(dataTemp);
+            Files.deleteIfExists(metaTemp);
+        }
+    }
+
+    private Path move(Path source, String targetName) throws IOException {
+        return Files.move(source, directory.resolve(targetName),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void register(Entry entry) {
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = index.put(entry.objectKey(), entry);
+            if (previous != null) {
+                totalBytes -= previous.metadata().size();
+            }
+            totalBytes += entry.metadata().size();
+            Iterator<Entry> eldest = index.values().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                Entry victim = eldest.next();
+                if (victim == entry) {
+                    continue;
+                }
+                eldest.remove();
+                totalBytes -= victim.metadata().size();
+                evicted.add(victim);
+            }
+        }
+        evicted.forEach(this::deleteFiles);
+        evictions.increment(evicted.size());
+    }
+
+    private void rebuildIndex() {
+        List<Entry> entries = new ArrayList<>();
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(TEMP_SUFFIX)) {
+                        Files.deleteIfExists(file);
+                    } else if (name.endsWith(META_SUFFIX)) {
+                        Entry entry = readEntry(file);
+                        if (entry != null) {
+                            entries.add(entry);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to scan disk cache {}: {}", directory, e.getMessage());
+        }
+        entries.sort(Comparator.comparing(DiskObjectCache::lastAccess));
+        entries.forEach(this::register);
+        LOG.info("Disk object cache: {} entries, {} bytes in {}",
+                index.size(), totalBytes, directory);
+    }
+
+    private Entry readEntry(Path meta) {
+        String name = meta.getFileName().toString();
+        Path data = directory.resolve(
+                name.substring(0, name.length() - META_SUFFIX.length()) + DATA_SUFFIX);
+        try (InputStream in = Files.newInputStream(meta)) {
+            Properties properties = new Properties();
+            properties.load(in);
+            String lastModified = properties.getProperty("lastModified");
+            MinioService.ObjectMetadata metadata = new MinioService.ObjectMetadata(
+                    properties.getProperty("contentType"),
+                    Long.parseLong(properties.getProperty("size")),
+                    properties.getProperty("etag"),
+                    lastModified != null ? Instant.parse(lastModified) : null);
+            if (!Files.isRegularFile(data) || Files.size(data) != metadata.size()) {
+                throw new IOException("data file missing or truncated");
+            }
+            return new Entry(properties.getProperty("key"), data, meta, metadata);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Dropping unreadable disk cache entry {}: {}", name, e.getMessage());
+            deleteFiles(new Entry(null, data, meta, null));
+            return null;
+        }
+    }
+
+    private void writeMeta(Path target, String objectKey,
+                           MinioService.ObjectMetadata metadata) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("key", objectKey);
+        properties.setProperty("contentType", metadata.contentType());
+        properties.setProperty("size", String.valueOf(metadata.size()));
+        if (metadata.etag() != null) {
+            properties.setProperty("etag", metadata.etag());
+        }
+        if (metadata.lastModified() != null) {
+            properties.setProperty("lastModified", metadata.lastModified().toString());
+        }
+        try (OutputStream out = Files.newOutputStream(target)) {
+            properties.store(out, null);
+        }
+    }
+
+    private void deleteFiles(Entry entry) {
+        try {
+            Files.deleteIfExists(entry.data());
+            Files.deleteIfExists(entry.meta());
+        } catch (IOException e) {
+            LOG.warn("Failed to delete cached file {}: {}", entry.data(), e.getMessage());
+        }
+    }
+
+    private static FileTime lastAccess(Entry entry) {
+        try {
+            return Files.getLastModifiedTime(entry.data());
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static String fileName(String objectKey) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(
+                    digest.digest(objectKey.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Counter counter(MeterRegistry registry, String name,
+                                   String tagKey, String tagValue) {
+        return Counter.builder(name)
+                .tag("tier", "disk")
+                .tag(tagKey, tagValue)
+                .register(registry);
+    }
+}
@@ -0,0 +1,562 @@
+package at.technikum.springrestbackend.service;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Immutable segment file of the post search index, memory-mapped so the
+ * heap holds none of it. Layout, big-endian:
+ * <pre>
+ * header     magic, version, doc count, term count, total length, offsets
+ * doc table  per document: post id, length, created at (24 bytes), sorted
+ *            by post id
+ * postings   per term: per document the ordinal delta, title and content
+ *            frequency, all as varints
+ * term bytes UTF-8 of all terms, in order
+ * term table per term: term bytes start and length, postings start, doc count
+ * </pre>
+ * Deletions go to a separate bitset file next to it, mapped writable. A
+ * mapping is limited to 2 GB, which bounds the size of a merged segment.
+ */
+final class DiskSearchSegment implements SearchSegment {
+
+    private static final int MAGIC = 0x50534547; // "PSEG"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int DOC_BYTES = 24;
+    private static final int TERM_BYTES = 20;
+
+    private final long generation;
+    private final Path file;
+    private final Path deletesFile;
+    private final MappedByteBuffer data;
+    private final MappedByteBuffer deletes;
+    private final int docCount;
+    private final int termCount;
+    private final double totalLength;
+    private final int postingsOffset;
+    private final int termBytesOffset;
+    private final int termTableOffset;
+    private int liveDocCount;
+
+    private DiskSearchSegment(long generation, Path file, Path deletesFile,
+                              MappedByteBuffer data, MappedByteBuffer deletes) throws IOException {
+        this.generation = generation;
+        this.file = file;
+        this.deletesFile = deletesFile;
+        this.data = data;
+        this.deletes = deletes;
+        if (data.capacity() < HEADER_BYTES || data.getInt(0) != MAGIC
+                || data.getInt(4) != VERSION) {
+            throw new IOException("Not a search segment: " + file);
+        }
+        this.docCount = data.getInt(8);
+        this.termCount = data.getInt(12);
+        this.totalLength = data.getDouble(16);
+        this.postingsOffset = Math.toIntExact(data.getLong(24));
+        this.termBytesOffset = Math.toIntExact(data.getLong(32));
+        this.termTableOffset = Math.toIntExact(data.getLong(40));
+        if (deletes.capacity() < deleteBytes(docCount)) {
+            throw new IOException("Deletions file too short: " + deletesFile);
+        }
+        int deleted = 0;
+        for (int i = 0; i < deleteBytes(docCount); i++) {
+            deleted += Integer.bitCount(deletes.get(i) & 0xFF);
+        }
+        this.liveDocCount = docCount - deleted;
+    }
+
+    static Path segmentFile(Path directory, long generation) {
+        return directory.resolve("segment-" + generation + ".seg");
+    }
+
+    static Path deletesFile(Path directory, long generation) {
+        return directory.resolve("segment-" + generation + ".del");
+    }
+
+    static DiskSearchSegment open(Path directory, long generation) throws IOException {
+        Path file = segmentFile(directory, generation);
+        Path deletesFile = deletesFile(directory, generation);
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        MappedByteBuffer deletes;
+        try (FileChannel channel = FileChannel.open(deletesFile,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            deletes = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        return new DiskSearchSegment(generation, file, deletesFile, data, deletes);
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    List<Path> files() {
+        return List.of(file, deletesFile);
+    }
+
+    /**
+     * Writes pending deletions to disk.
+     */
+    void force() {
+        deletes.force();
+    }
+
+    @Override
+    public int docCount() {
+        return docCount;
+    }
+
+    @Override
+    public int liveDocCount() {
+        return liveDocCount;
+    }
+
+    @Override
+    public double totalLength() {
+        return totalLength;
+    }
+
+    @Override
+    public int docFreq(String term) {
+        int index = findTerm(term);
+        return index >= 0 ? data.getInt(termTableOffset + index * TERM_BYTES + 16) : 0;
+    }
+
+    @Override
+    public Postings postings(String term) {
+        int index = findTerm(term);
+        return index >= 0 ? postings(index) : null;
+    }
+
+    @Override
+    public List<String> termsStartingWith(String prefix, int limit) {
+        List<String> terms = new ArrayList<>();
+        int index = findTerm(prefix);
+        for (int i = index >= 0 ? index : -index - 1; i < termCount && terms.size() < limit; i++) {
+            String term = term(i);
+            if (!term.startsWith(prefix)) {
+                break;
+            }
+            terms.add(term);
+        }
+        return terms;
+    }
+
+    @Override
+    public boolean isLive(int doc) {
+        return (deletes.get(doc >>> 3) & (1 << (doc & 7))) == 0;
+    }
+
+    @Override
+    public long postId(int doc) {
+        return data.getLong(HEADER_BYTES + doc * DOC_BYTES);
+    }
+
+    @Override
+    public double length(int doc) {
+        return data.getDouble(HEADER_BYTES + doc * DOC_BYTES + 8);
+    }
+
+    @Override
+    public long createdAt(int doc) {
+        return data.getLong(HEADER_BYTES + doc * DOC_BYTES + 16);
+    }
+
+    @Override
+    public int findLive(long postId) {
+        int doc = findDoc(postId);
+        return doc >= 0 && isLive(doc) ? doc : -1;
+    }
+
+    @Override
+    public int delete(long postId) {
+        int doc = findLive(postId);
+        if (doc < 0) {
+            return -1;
+        }
+        deletes.put(doc >>> 3, (byte) (deletes.get(doc >>> 3) | (1 << (doc & 7))));
+        liveDocCount--;
+        return doc;
+    }
+
+    /**
+     * Copy of the deletion bits, to tell later which documents were
+     * deleted since.
+     */
+    byte[] deletions() {
+        byte[] copy = new byte[deleteBytes(docCount)];
+        deletes.get(0, copy);
+        return copy;
+    }
+
+    static boolean isDeleted(byte[] deletions, int doc) {
+        return (deletions[doc >>> 3] & (1 << (doc & 7))) != 0;
+    }
+
+    private int findDoc(long postId) {
+        int low = 0;
+        int high = docCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long id = postId(mid);
+            if (id < postId) {
+                low = mid + 1;
+            } else if (id > postId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Index of the term in the term table, or {@code -(insertion point) - 1}.
+     */
+    private int findTerm(String term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int compared = term(mid).compareTo(term);
+            if (compared < 0) {
+                low = mid + 1;
+            } else if (compared > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -low - 1;
+    }
+
+    private String term(int index) {
+        int entry = termTableOffset + index * TERM_BYTES;
+        byte[] bytes = new byte[data.getInt(entry + 4)];
+        data.get(termBytesOffset + data.getInt(entry), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Postings postings(int index) {
+        int entry = termTableOffset + index * TERM_BYTES;
+        int size = data.getInt(entry + 16);
+        ByteBuffer in = data.duplicate()
+                .position(postingsOffset + Math.toIntExact(data.getLong(entry + 8)));
+        int[] docs = new int[size];
+        int[] titleFrequencies = new int[size];
+        int[] contentFrequencies = new int[size];
+        int doc = 0;
+        for (int i = 0; i < size; i++) {
+            doc += readVarint(in);
+            docs[i] = doc;
+            titleFrequencies[i] = readVarint(in);
+            contentFrequencies[i] = readVarint(in);
+        }
+        return new Postings(docs, titleFrequencies, contentFrequencies, size);
+    }
+
+    /**
+     * Writes the live documents of the buffer as a new segment.
+     */
+    static DiskSearchSegment write(Path directory, long generation,
+                                   List<Document> documents) throws IOException {
+        try (Writer writer = new Writer(directory, generation)) {
+            NavigableMap<String, List<int[]>> terms = new TreeMap<>();
+            for (int doc = 0; doc < documents.size(); doc++) {
+                Document document = documents.get(doc);
+                writer.addDocument(document.postId(), document.length(),
+                        document.createdAt());
+                int ordinal = doc;
+                document.frequencies().forEach((term, counts) -> terms
+                        .computeIfAbsent(term, t -> new ArrayList<>())
+                        .add(new int[] {ordinal, counts[0], counts[1]}));
+            }
+            for (var entry : terms.entrySet()) {
+                writer.addTerm(entry.getKey(), entry.getValue());
+            }
+            return writer.finish();
+        }
+    }
+
+    /**
+     * Writes the live documents of the segments as one new segment. Reads
+     * the sources while they stay in use; deletions made meanwhile have to
+     * be carried over by the caller.
+     */
+    static DiskSearchSegment merge(Path directory, long generation,
+                                   List<DiskSearchSegment> sources) throws IOException {
+        try (Writer writer = new Writer(directory, generation)) {
+            int[][] ordinals = mergeDocuments(writer, sources);
+            mergeTerms(writer, sources, ordinals);
+            return writer.finish();
+        }
+    }
+
+    /**
+     * Writes the live documents ordered by post id across the sources and
+     * returns their new ordinals per source; -1 drops a document.
+     */
+    private static int[][] mergeDocuments(Writer writer, List<DiskSearchSegment> sources)
+            throws IOException {
+        int[][] ordinals = new int[sources.size()][];
+        PriorityQueue<int[]> docCursors = new PriorityQueue<>(Comparator.comparingLong(
+                (int[] cursor) -> sources.get(cursor[0]).postId(cursor[1])));
+        for (int s = 0; s < sources.size(); s++) {
+            ordinals[s] = new int[sources.get(s).docCount()];
+            Arrays.fill(ordinals[s], -1);
+            if (sources.get(s).docCount() > 0) {
+                docCursors.add(new int[] {s, 0});
+            }
+        }
+        int next = 0;
+        long lastPostId = Long.MIN_VALUE;
+        while (!docCursors.isEmpty()) {
+            int[] cursor = docCursors.poll();
+            DiskSearchSegment source = sources.get(cursor[0]);
+            int doc = cursor[1];
+            long postId = source.postId(doc);
+            if (source.isLive(doc) && (next == 0 || postId != lastPostId)) {
+                writer.addDocument(postId, source.length(doc), source.createdAt(doc));
+                ordinals[cursor[0]][doc] = next++;
+                lastPostId = postId;
+            }
+            if (doc + 1 < source.docCount()) {
+                docCursors.add(new int[] {cursor[0], doc + 1});
+            }
+        }
+        return ordinals;
+    }
+
+    /**
+     * Writes every term of the sources once, with the postings of all
+     * sources mapped to the new ordinals.
+     */
+    private static void mergeTerms(Writer writer, List<DiskSearchSegment> sources,
+                                   int[][] ordinals) throws IOException {
+        PriorityQueue<int[]> termCursors = new PriorityQueue<>(Comparator
+                .comparing((int[] cursor) -> sources.get(cursor[0]).term(cursor[1]))
+                .thenComparingInt(cursor -> cursor[0]));
+        for (int s = 0; s < sources.size(); s++) {
+            if (sources.get(s).termCount > 0) {
+                termCursors.add(new int[] {s, 0});
+            }
+        }
+        while (!termCursors.isEmpty()) {
+            String term = sources.get(termCursors.peek()[0]).term(termCursors.peek()[1]);
+            List<int[]> postings = new ArrayList<>();
+            while (!termCursors.isEmpty()
+                    && sources.get(termCursors.peek()[0])
+                    .term(termCursors.peek()[1]).equals(term)) {
+                int[] cursor = termCursors.poll();
+                DiskSearchSegment source = sources.get(cursor[0]);
+                addLivePostings(source.postings(cursor[1]), ordinals[cursor[0]], postings);
+                if (cursor[1] + 1 < source.termCount) {
+                    termCursors.add(new int[] {cursor[0], cursor[1] + 1});
+                }
+            }
+            if (!postings.isEmpty()) {
+                postings.sort(Comparator.comparingInt(posting -> posting[0]));
+                writer.addTerm(term, postings);
+            }
+        }
+    }
+
+    private static void addLivePostings(Postings list, int[] ordinals, List<int[]> postings) {
+        for (int i = 0; i < list.size(); i++) {
+            int ordinal = ordinals[list.docs()[i]];
+            if (ordinal >= 0) {
+                postings.add(new int[] {ordinal,
+                        list.titleFrequencies()[i], list.contentFrequencies()[i]});
+            }
+        }
+    }
+
+    private static int deleteBytes(int docCount) {
+        return Math.max(1, (docCount + 7) / 8);
+    }
+
+    static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Streams documents, then terms in ascending order, into a temporary
+     * file that is renamed into place by {@link #finish}. Only the term
+     * dictionary is buffered in memory.
+     */
+    private static final class Writer implements Closeable {
+
+        private final Path directory;
+        private final long generation;
+        private final Path tmp;
+        private final FileChannel channel;
+        private final CountingOutputStream counter;
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream termBytes = new ByteArrayOutputStream();
+        private final DataOutputStream termTable;
+        private final ByteArrayOutputStream termTableBytes = new ByteArrayOutputStream();
+        private int docCount;
+        private int termCount;
+        private double totalLength;
+        private long postingsOffset = -1;
+        private boolean finished;
+
+        Writer(Path directory, long generation) throws IOException {
+            this.directory = directory;
+            this.generation = generation;
+            this.tmp = directory.resolve("segment-" + generation + ".tmp");
+            this.channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            this.counter = new CountingOutputStream(new BufferedOutputStream(
+                    Channels.newOutputStream(channel), 64 * 1024));
+            this.out = new DataOutputStream(counter);
+            this.termTable = new DataOutputStream(termTableBytes);
+            out.write(new byte[HEADER_BYTES]);
+        }
+
+        void addDocument(long postId, double length, long createdAt) throws IOException {
+            out.writeLong(postId);
+            out.writeDouble(length);
+            out.writeLong(createdAt);
+            docCount++;
+            totalLength += length;
+        }
+
+        /**
+         * Adds the postings of a term, each {ordinal, title frequency,
+         * content frequency}, sorted by ordinal.
+         */
+        void addTerm(String term, List<int[]> postings) throws IOException {
+            if (postingsOffset < 0) {
+                postingsOffset = counter.count;
+            }
+            byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+            termTable.writeInt(termBytes.size());
+            termTable.writeInt(bytes.length);
+            termTable.writeLong(counter.count - postingsOffset);
+            termTable.writeInt(postings.size());
+            termBytes.write(bytes);
+            int previous = 0;
+            for (int[] posting : postings) {
+                writeVarint(out, posting[0] - previous);
+                writeVarint(out, posting[1]);
+                writeVarint(out, posting[2]);
+                previous = posting[0];
+            }
+            termCount++;
+        }
+
+        DiskSearchSegment finish() throws IOException {
+            if (postingsOffset < 0) {
+                postingsOffset = counter.count;
+            }
+            long termBytesOffset = counter.count;
+            termBytes.writeTo(out);
+            long termTableOffset = counter.count;
+            termTableBytes.writeTo(out);
+            out.flush();
+            if (counter.count > Integer.MAX_VALUE) {
+                throw new IOException("Search segment exceeds 2 GB: " + counter.count);
+            }
+            writeHeader(termBytesOffset, termTableOffset);
+
+            try (RandomAccessFile deletes = new RandomAccessFile(
+                    deletesFile(directory, generation).toFile(), "rw")) {
+                deletes.setLength(0);
+                deletes.setLength(deleteBytes(docCount));
+                deletes.getFD().sync();
+            }
+            Files.move(tmp, segmentFile(directory, generation),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            finished = true;
+            return open(directory, generation);
+        }
+
+        private void writeHeader(long termBytesOffset, long termTableOffset)
+                throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(docCount)
+                    .putInt(termCount)
+                    .putDouble(totalLength)
+                    .putLong(postingsOffset)
+                    .putLong(termBytesOffset)
+                    .putLong(termTableOffset)
+                    .flip();
+            channel.write(header, 0);
+            channel.force(true);
+            channel.close();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+            if (!finished) {
+                Files.deleteIfExists(tmp);
+                Files.deleteIfExists(deletesFile(directory, generation));
+            }
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
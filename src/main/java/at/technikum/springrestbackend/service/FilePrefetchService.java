@@ -0,0 +1,173 @@
+package at.technikum.springrestbackend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Warms the object caches for the images of a page that was just returned,
+ * since the client asks for all of them right after. Fetches run on virtual
+ * threads, at most {@code files.prefetch.max-concurrent} at a time; keys
+ * beyond that are dropped rather than queued, a late prefetch is worthless.
+ * Images are warmed at {@code files.prefetch.width}, in the rendition a
+ * {@code ?w=} request for that width resolves to.
+ * <p>
+ * {@code files.prefetch.hits} counts file requests for a key prefetched
+ * within the window; divided by the {@code warmed} and {@code cached}
+ * prefetches it is the hit rate. Objects too large for the caches are
+ * counted as {@code skipped} and not tracked for hits.
+ */
+@Service
+public class FilePrefetchService implements DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FilePrefetchService.class);
+
+    private final MinioService minioService;
+    private final PresignedUrlService presignedUrlService;
+    private final ImageRenditionService imageRenditionService;
+    private final boolean enabled;
+    private final int width;
+    private final Semaphore slots;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // keys prefetched recently, also keeps a page listed twice from fetching twice
+    private final Cache<String, Boolean> prefetched;
+
+    private final Counter warmed;
+    private final Counter cached;
+    private final Counter skipped;
+    private final Counter dropped;
+    private final Counter failed;
+    private final Counter hits;
+
+    public FilePrefetchService(
+            MinioService minioService,
+            PresignedUrlService presignedUrlService,
+            ImageRenditionService imageRenditionService,
+            @Value("${files.prefetch.enabled:false}") boolean enabled,
+            @Value("${files.prefetch.width:256}") int width,
+            @Value("${files.prefetch.max-concurrent:16}") int maxConcurrent,
+            @Value("${files.prefetch.window-seconds:60}") long windowSeconds,
+            MeterRegistry meterRegistry) {
+        this.minioService = minioService;
+        this.presignedUrlService = presignedUrlService;
+        this.imageRenditionService = imageRenditionService;
+        this.enabled = enabled;
+        this.width = width;
+        this.slots = new Semaphore(maxConcurrent);
+        this.prefetched = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(windowSeconds))
+                .maximumSize(10_000)
+                .build();
+        this.warmed = counter(meterRegistry, "warmed");
+        this.cached = counter(meterRegistry, "cached");
+        this.skipped = counter(meterRegistry, "skipped");
+        this.dropped = counter(meterRegistry, "dropped");
+        this.failed = counter(meterRegistry, "failed");
+        this.hits = Counter.builder("files.prefetch.hits")
+                .description("File requests for an object prefetched shortly before")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts fetching the objects into the cache and returns immediately.
+     * Null keys and keys delivered by presigned redirect are skipped.
+     */
+    public void prefetch(Collection<String> objectKeys) {
+        if (!enabled) {
+            return;
+        }
+        objectKeys.stream()
+                .filter(Objects::nonNull)
+                .filter(key -> !redirected(key))
+                .distinct()
+                .forEach(this::submit);
+    }
+
+    private boolean redirected(String objectKey) {
+        // same condition as the file controller's redirect
+        return minioService.supportsPresignedUrls() && presignedUrlService.isEnabledFor(objectKey);
+    }
+
+    private void submit(String objectKey) {
+        if (prefetched.asMap().putIfAbsent(objectKey, Boolean.TRUE) != null) {
+            return;
+        }
+        if (!slots.tryAcquire()) {
+            prefetched.invalidate(objectKey);
+            dropped.increment();
+            return;
+        }
+        try {
+            executor.execute(() -> warm(objectKey));
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            slots.release();
+            prefetched.invalidate(objectKey);
+        }
+    }
+
+    private void warm(String objectKey) {
+        String servedKey = objectKey;
+        try {
+            // the key the client's ?w= request is served from, counted for hits
+            servedKey = imageRenditionService.resolve(objectKey, width);
+            if (!servedKey.equals(objectKey)) {
+                // a plain request for the original was not warmed
+                prefetched.invalidate(objectKey);
+                prefetched.put(servedKey, Boolean.TRUE);
+            }
+            switch (minioService.warm(servedKey)) {
+                case WARMED -> warmed.increment();
+                case CACHED -> cached.increment();
+                case SKIPPED -> {
+                    prefetched.invalidate(servedKey);
+                    skipped.increment();
+                }
+            }
+        } catch (RuntimeException e) {
+            prefetched.invalidateAll(List.of(objectKey, servedKey));
+            failed.increment();
+            LOG.debug("Prefetch of {} failed: {}", objectKey, e.getMessage());
+        } finally {
+            slots.release();
+        }
+    }
+
+    /**
+     * Called for every served file with the key it was served from, counts
+     * a hit if it was prefetched.
+     */
+    public void recordRequest(String objectKey) {
+        if (enabled && prefetched.asMap().remove(objectKey) != null) {
+            hits.increment();
+        }
+    }
+
+    private static Counter counter(MeterRegistry registry, String result) {
+        return Counter.builder("files.prefetch.requests")
+                .description("Objects the feed asked to prefetch, by outcome")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
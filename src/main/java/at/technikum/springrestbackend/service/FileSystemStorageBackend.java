@@ -0,0 +1,343 @@
+package at.technikum.springrestbackend.service;
+
+import at.technikum.springrestbackend.util.FileRegionInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Stores objects as plain files for single-node deployments and benchmarks
+ * that should not need a MinIO. The bytes of {@code avatars/1/a.png} live in
+ * {@code <directory>/data/avatars/1/a.png}, its content type and ETag in the
+ * same path under {@code meta/}. Writes go to a temporary file first and
+ * are moved into place atomically, data before metadata: an object exists
+ * once its metadata does. Reads are {@link FileRegionInputStream}s, so the
+ * file controller can copy them with {@link FileChannel#transferTo}.
+ */
+@Component
+@ConditionalOnProperty(name = "files.storage.backend", havingValue = "filesystem")
+public class FileSystemStorageBackend implements StorageBackend {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(FileSystemStorageBackend.class);
+
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+    private static final long TRANSFER_CHUNK = 1024 * 1024;
+
+    private final Path dataRoot;
+    private final Path metaRoot;
+    private final Path tempRoot;
+
+    public FileSystemStorageBackend(
+            @Value("${files.storage.filesystem.directory:data/objects}") Path directory) {
+        Path root = directory.toAbsolutePath().normalize();
+        this.dataRoot = root.resolve("data");
+        this.metaRoot = root.resolve("meta");
+        this.tempRoot = root.resolve("tmp");
+        try {
+            Files.createDirectories(dataRoot);
+            Files.createDirectories(metaRoot);
+            Files.createDirectories(tempRoot);
+            // leftovers of writes interrupted by a crash
+            try (DirectoryStream<Path> stale = Files.newDirectoryStream(tempRoot)) {
+                for (Path file : stale) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot initialize object store in " + root, e);
+        }
+        LOG.info("Storing objects in {}", root);
+    }
+
+    @Override
+    public void put(String objectKey, InputStream stream, long size, String contentType) {
+        Path dataTemp = tempFile();
+        Path metaTemp = tempFile();
+        try {
+            MessageDigest md5 = md5();
+            long written = write(new DigestInputStream(stream, md5), dataTemp);
+            if (size >= 0 && written != size) {
+                throw new IOException("expected " + size + " bytes, got " + written);
+            }
+            // S3 reports the MD5 of single-part uploads as ETag, so does this
+            writeMeta(metaTemp, contentType, HexFormat.of().formatHex(md5.digest()));
+            commit(objectKey, dataTemp, metaTemp);
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Failed to upload file {}: {}",
+                    objectKey, e.getMessage(), e);
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "File upload failed");
+        } finally {
+            deleteQuietly(dataTemp);
+            deleteQuietly(metaTemp);
+        }
+    }
+
+    @Override
+    public void copy(String sourceKey, String targetKey) {
+        Path dataTemp = tempFile();
+        Path metaTemp = tempFile();
+        try {
+            Files.copy(metaPath(sourceKey), metaTemp, StandardCopyOption.REPLACE_EXISTING);
+            Files.copy(dataPath(sourceKey), dataTemp, StandardCopyOption.REPLACE_EXISTING);
+            commit(targetKey, dataTemp, metaTemp);
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Failed to copy file {} to {}: {}",
+                    sourceKey, targetKey, e.getMessage(), e);
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "File upload failed");
+        } finally {
+            deleteQuietly(dataTemp);
+            deleteQuietly(metaTemp);
+        }
+    }
+
+    @Override
+    public MinioService.StreamedFile get(String objectKey, Long offset, Long length) {
+        try {
+            Path data = dataPath(objectKey);
+            Properties meta = readMeta(objectKey);
+            BasicFileAttributes attributes =
+                    Files.readAttributes(data, BasicFileAttributes.class);
+            long start = offset != null ? offset : 0;
+            long count = length != null
+                    ? Math.min(length, attributes.size() - start)
+                    : attributes.size() - start;
+            return new MinioService.StreamedFile(
+                    FileRegionInputStream.open(data, start, count),
+                    metadataOf(meta, count, attributes));
+        } catch (NoSuchFileException e) {
+            throw notFound(objectKey);
+        } catch (IOException | RuntimeException e) {
+            throw failed(objectKey, e, "Failed to download file");
+        }
+    }
+
+    @Override
+    public MinioService.ObjectMetadata stat(String objectKey) {
+        try {
+            Properties meta = readMeta(objectKey);
+            BasicFileAttributes attributes =
+                    Files.readAttributes(dataPath(objectKey), BasicFileAttributes.class);
+            return metadataOf(meta, attributes.size(), attributes);
+        } catch (NoSuchFileException e) {
+            throw notFound(objectKey);
+        } catch (IOException | RuntimeException e) {
+            throw failed(objectKey, e, "Failed to read file metadata");
+        }
+    }
+
+    @Override
+    public void delete(String objectKey) {
+        try {
+            remove(objectKey);
+            LOG.info("Deleted file: {}", objectKey);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to delete file {}: {}",
+                    objectKey, e.getMessage());
+        }
+    }
+
+    @Override
+    public Set<String> deleteAll(Collection<String> objectKeys) {
+        Set<String> failed = new HashSet<>();
+        for (String objectKey : objectKeys) {
+            try {
+                remove(objectKey);
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Failed to delete file {}: {}",
+                        objectKey, e.getMessage());
+                failed.add(objectKey);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Walks only the directory the prefix points into; the walk is lazy and
+     * holds directory handles until the stream is closed.
+     */
+    @Override
+    public Stream<MinioService.ObjectSummary> list(String prefix) {
+        int slash = prefix.lastIndexOf('/');
+        Path start = slash < 0 ? dataRoot : dataPath(prefix.substring(0, slash));
+        if (!Files.isDirectory(start)) {
+            return Stream.empty();
+        }
+        try {
+            return Files.walk(start)
+                    .filter(Files::isRegularFile)
+                    .map(this::summaryOf)
+                    .filter(summary -> summary != null
+                            && summary.objectKey().startsWith(prefix));
+        } catch (IOException e) {
+            LOG.error("Failed to list files: {}", e.getMessage(), e);
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to list files");
+        }
+    }
+
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
+
+    private MinioService.ObjectSummary summaryOf(Path data) {
+        String objectKey = dataRoot.relativize(data).toString().replace('\\', '/');
+        try {
+            BasicFileAttributes attributes =
+                    Files.readAttributes(data, BasicFileAttributes.class);
+            return new MinioService.ObjectSummary(objectKey, attributes.size(),
+                    attributes.lastModifiedTime().toInstant());
+        } catch (IOException e) {
+            // deleted while listing
+            return null;
+        }
+    }
+
+    private long write(InputStream in, Path target) throws IOException {
+        try (FileChannel channel = FileChannel.open(target,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ReadableByteChannel source = Channels.newChannel(in);
+            long written = 0;
+            long transferred;
+            while ((transferred = channel.transferFrom(source, written, TRANSFER_CHUNK)) > 0) {
+                written += transferred;
+            }
+            channel.force(false);
+            return written;
+        }
+    }
+
+    private void commit(String objectKey, Path dataTemp, Path metaTemp) throws IOException {
+        Path data = dataPath(objectKey);
+        Path meta = metaPath(objectKey);
+        Files.createDirectories(data.getParent());
+        Files.createDirectories(meta.getParent());
+        Files.move(dataTemp, data,
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(metaTemp, meta,
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void remove(String objectKey) throws IOException {
+        // metadata first: the object is gone as soon as it is
+        Files.deleteIfExists(metaPath(objectKey));
+        Files.deleteIfExists(dataPath(objectKey));
+    }
+
+    private Properties readMeta(String objectKey) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(metaPath(objectKey))) {
+            properties.load(in);
+        }
+        return properties;
+    }
+
+    private void writeMeta(Path target, String contentType, String etag) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("contentType",
+                contentType != null ? contentType : DEFAULT_CONTENT_TYPE);
+        properties.setProperty("etag", etag);
+        try (OutputStream out = Files.newOutputStream(target)) {
+            properties.store(out, null);
+        }
+    }
+
+    private static MinioService.ObjectMetadata metadataOf(
+            Properties meta, long size, BasicFileAttributes attributes) {
+        return new MinioService.ObjectMetadata(
+                meta.getProperty("contentType", DEFAULT_CONTENT_TYPE),
+                size,
+                meta.getProperty("etag"),
+                attributes.lastModifiedTime().toInstant());
+    }
+
+    private Path dataPath(String objectKey) {
+        return resolve(dataRoot, objectKey);
+    }
+
+    private Path metaPath(String objectKey) {
+        return resolve(metaRoot, objectKey);
+    }
+
+    private static Path resolve(Path root, String objectKey) {
+        if (objectKey == null || objectKey.isBlank() || objectKey.startsWith("/")
+                || objectKey.contains("..") || objectKey.contains("\\")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid object key");
+        }
+        Path path = root.resolve(objectKey).normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid object key");
+        }
+        return path;
+    }
+
+    private Path tempFile() {
+        return tempRoot.resolve(UUID.randomUUID() + ".tmp");
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOG.warn("Failed to delete temporary file {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ResponseStatusException notFound(String objectKey) {
+        LOG.warn("File not found: {}", objectKey);
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found");
+    }
+
+    private static ResponseStatusException failed(String objectKey, Exception e,
+                                                  String message) {
+        if (e instanceof ResponseStatusException status) {
+            return status;
+        }
+        LOG.error("Unexpected error while reading {}: {}",
+                objectKey, e.getMessage(), e);
+        return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, message);
+    }
+}
@@ -0,0 +1,95 @@
+package at.technikum.springrestbackend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * Byte-bounded in-memory cache for small, frequently requested objects
+ * (mostly avatars). Caffeine's W-TinyLFU admission keeps one-off requests
+ * from evicting the hot set; objects above the size cap are never cached.
+ */
+@Component
+public class HotObjectCache {
+
+    public record CachedObject(byte[] bytes, MinioService.ObjectMetadata metadata) {
+
+        public MinioService.StreamedFile open() {
+            return new MinioService.StreamedFile(new ByteArrayInputStream(bytes), metadata);
+        }
+
+        public MinioService.StreamedFile open(long offset, long length) {
+            MinioService.ObjectMetadata range = new MinioService.ObjectMetadata(
+                    metadata.contentType(), length, metadata.etag(), metadata.lastModified());
+            return new MinioService.StreamedFile(
+                    new ByteArrayInputStream(bytes, (int) offset, (int) length), range);
+        }
+    }
+
+    private final Cache<String, CachedObject> cache;
+    private final long maxObjectBytes;
+
+    public HotObjectCache(
+            @Value("${files.cache.memory.max-bytes:67108864}") long maxBytes,
+            @Value("${files.cache.memory.max-object-bytes:262144}") long maxObjectBytes,
+            MeterRegistry meterRegistry) {
+        this.maxObjectBytes = maxObjectBytes;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, CachedObject value) -> value.bytes().length)
+                .recordStats()
+                .build();
+        registerMetrics(meterRegistry);
+    }
+
+    public CachedObject get(String objectKey) {
+        return cache.getIfPresent(objectKey);
+    }
+
+    /**
+     * Checks for the object without counting a cache request.
+     */
+    public boolean contains(String objectKey) {
+        return cache.asMap().containsKey(objectKey);
+    }
+
+    public boolean accepts(long size) {
+        return size >= 0 && size <= maxObjectBytes;
+    }
+
+    public void put(String objectKey, CachedObject object) {
+        if (accepts(object.bytes().length)) {
+            cache.put(objectKey, object);
+        }
+    }
+
+    public void invalidate(String objectKey) {
+        cache.invalidate(objectKey);
+    }
+
+    long weightedSize() {
+        // puts reach the eviction policy asynchronously
+        cache.cleanUp();
+        return cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0))
+                .orElse(0L);
+    }
+
+    private void registerMetrics(MeterRegistry meterRegistry) {
+        // cache.gets{result=hit|miss}, cache.evictions, cache.size, ...
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "files.memory");
+        Gauge.builder("files.cache.bytes", this, HotObjectCache::weightedSize)
+                .tag("tier", "memory")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("files.cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .tag("tier", "memory")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,199 @@
+package at.technikum.springrestbackend.service;
+
+import at.technikum.springrestbackend.util.BlurHash;
+import at.technikum.springrestbackend.util.ImageUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Optional;
+
+/**
+ * Extracts the dimensions and a BlurHash placeholder of a stored image once,
+ * at upload time, so that clients can reserve space and show a preview
+ * without the read path ever decoding an image. The placeholder is computed
+ * from a subsampled read of only a few dozen pixels per side. ImageIO cannot
+ * decode WEBP; for it only the dimensions are read from the RIFF header.
+ * Uploads that are still in memory are described from their bytes, stored
+ * objects from a bounded ranged read.
+ */
+@Service
+public class ImageMetadataService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ImageMetadataService.class);
+
+    // same decode limit as the renditions, ~160 MB of pixels
+    private static final long MAX_PIXELS = 40_000_000L;
+
+    // subsampled source for the placeholder is 32-64 px on its longest side
+    private static final int PLACEHOLDER_SOURCE_SIZE = 32;
+    private static final int COMPONENTS_X = 4;
+    private static final int COMPONENTS_Y = 3;
+
+    public record ImageMetadata(Integer width, Integer height, String placeholder) {
+        public static final ImageMetadata NONE = new ImageMetadata(null, null, null);
+    }
+
+    private final MinioService minioService;
+    private final int maxReadBytes;
+
+    public ImageMetadataService(
+            MinioService minioService,
+            @Value("${files.metadata.max-read-bytes:262144}") int maxReadBytes) {
+        this.minioService = minioService;
+        this.maxReadBytes = maxReadBytes;
+    }
+
+    /**
+     * Describes a stored object from a ranged read of at most
+     * {@code files.metadata.max-read-bytes}, past the caches. A larger
+     * object gets its dimensions from the headers but no placeholder.
+     * {@link ImageMetadata#NONE} if it cannot be read or decoded, the upload
+     * itself is not affected.
+     */
+    public ImageMetadata describe(String objectKey) {
+        if (objectKey == null) {
+            return ImageMetadata.NONE;
+        }
+        try {
+            // one byte more tells whether the object ends within the limit
+            byte[] prefix = minioService.readPrefix(objectKey, maxReadBytes + 1L);
+            boolean complete = prefix.length <= maxReadBytes;
+            return describe(complete ? prefix : Arrays.copyOf(prefix, maxReadBytes), complete);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Could not read image metadata of {}: {}", objectKey, e.getMessage());
+            return ImageMetadata.NONE;
+        }
+    }
+
+    /**
+     * Describes an upload that is still in memory.
+     */
+    public ImageMetadata describe(MultipartFile file) {
+        try {
+            return describe(file.getBytes());
+        } catch (IOException e) {
+            LOG.warn("Could not read image metadata of upload: {}", e.getMessage());
+            return ImageMetadata.NONE;
+        }
+    }
+
+    /**
+     * Describes a complete image; {@link ImageMetadata#NONE} if it cannot be
+     * decoded.
+     */
+    public ImageMetadata describe(byte[] bytes) {
+        try {
+            return describe(bytes, true);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Could not read image metadata: {}", e.getMessage());
+            return ImageMetadata.NONE;
+        }
+    }
+
+    private ImageMetadata describe(byte[] bytes, boolean complete) throws IOException {
+        Optional<String> type = ImageUtil.detectImageType(bytes);
+        if (type.isEmpty()) {
+            return ImageMetadata.NONE;
+        }
+        if ("image/webp".equals(type.get())) {
+            return webpDimensions(bytes);
+        }
+
+        try (ImageInputStream in =
+                     ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return ImageMetadata.NONE;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int orientation = "image/jpeg".equals(type.get())
+                        ? ImageOptimizationService.exifOrientation(bytes)
+                        : 1;
+                return describe(reader, orientation, complete);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static ImageMetadata describe(ImageReader reader, int orientation, boolean complete)
+            throws IOException {
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        boolean swap = orientation >= 5 && orientation <= 8;
+        int shownWidth = swap ? height : width;
+        int shownHeight = swap ? width : height;
+        // a cut off image would decode with a grey lower part
+        if (!complete || (long) width * height > MAX_PIXELS) {
+            return new ImageMetadata(shownWidth, shownHeight, null);
+        }
+
+        // every step-th pixel and line only: the reader skips the rest
+        int step = Math.max(1, Math.max(width, height) / PLACEHOLDER_SOURCE_SIZE);
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(step, step, 0, 0);
+        BufferedImage sample = ImageOptimizationService.orient(
+                reader.read(0, param), orientation, BufferedImage.TYPE_INT_RGB);
+        return new ImageMetadata(shownWidth, shownHeight,
+                BlurHash.encode(sample, COMPONENTS_X, COMPONENTS_Y));
+    }
+
+    /**
+     * Reads the canvas size from the first chunk of a WEBP file: extended
+     * (VP8X), lossy (VP8) or lossless (VP8L).
+     */
+    static ImageMetadata webpDimensions(byte[] bytes) {
+        if (bytes.length < 30) {
+            return ImageMetadata.NONE;
+        }
+        String chunk = new String(bytes, 12, 4, StandardCharsets.US_ASCII);
+        return switch (chunk) {
+            case "VP8X" -> new ImageMetadata(uint24(bytes, 24) + 1, uint24(bytes, 27) + 1, null);
+            case "VP8 " -> lossyDimensions(bytes);
+            case "VP8L" -> losslessDimensions(bytes);
+            default -> ImageMetadata.NONE;
+        };
+    }
+
+    private static ImageMetadata lossyDimensions(byte[] bytes) {
+        // 3 byte frame tag, then the start code 9d 01 2a
+        if ((bytes[23] & 0xFF) != 0x9D || bytes[24] != 0x01 || bytes[25] != 0x2A) {
+            return ImageMetadata.NONE;
+        }
+        return new ImageMetadata(uint16(bytes, 26) & 0x3FFF, uint16(bytes, 28) & 0x3FFF, null);
+    }
+
+    private static ImageMetadata losslessDimensions(byte[] bytes) {
+        if (bytes[20] != 0x2F) {
+            return ImageMetadata.NONE;
+        }
+        // 14 bits width - 1, then 14 bits height - 1
+        long bits = (bytes[21] & 0xFFL) | (bytes[22] & 0xFFL) << 8
+                | (bytes[23] & 0xFFL) << 16 | (bytes[24] & 0xFFL) << 24;
+        return new ImageMetadata((int) (bits & 0x3FFF) + 1,
+                (int) ((bits >> 14) & 0x3FFF) + 1, null);
+    }
+
+    private static int uint16(byte[] bytes, int pos) {
+        return (bytes[pos] & 0xFF) | (bytes[pos + 1] & 0xFF) << 8;
+    }
+
+    private static int uint24(byte[] bytes, int pos) {
+        return uint16(bytes, pos) | (bytes[pos + 2] & 0xFF) << 16;
+    }
+}
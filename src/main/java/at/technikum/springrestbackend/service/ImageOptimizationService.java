@@ -0,0 +1,282 @@
+package at.technikum.springrestbackend.service;
+
+import at.technikum.springrestbackend.util.ImageUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Optional pre-storage stage for uploaded JPEG and PNG images: applies the
+ * EXIF orientation, caps the longest side, and re-encodes without any
+ * metadata. Work runs on a small bounded pool; when it is busy, slow or the
+ * result is not smaller, the upload is stored as it came.
+ */
+@Service
+public class ImageOptimizationService implements DisposableBean {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(ImageOptimizationService.class);
+
+    // same decode limit as the renditions, ~160 MB of pixels
+    private static final long MAX_PIXELS = 40_000_000L;
+
+    private static final int EXIF_ORIENTATION_TAG = 0x0112;
+
+    public record OptimizedImage(byte[] bytes, String contentType) {
+    }
+
+    private final boolean enabled;
+    private final float jpegQuality;
+    private final int maxDimension;
+    private final long timeoutMillis;
+    private final ThreadPoolTaskExecutor executor;
+
+    private final DistributionSummary savedBytes;
+    private final Counter skipped;
+
+    public ImageOptimizationService(
+            @Value("${files.optimize.enabled:false}") boolean enabled,
+            @Value("${files.optimize.jpeg-quality:0.82}") float jpegQuality,
+            @Value("${files.optimize.max-dimension:2048}") int maxDimension,
+            @Value("${files.optimize.pool-size:2}") int poolSize,
+            @Value("${files.optimize.queue-capacity:16}") int queueCapacity,
+            @Value("${files.optimize.timeout-ms:10000}") long timeoutMillis,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.jpegQuality = jpegQuality;
+        this.maxDimension = maxDimension;
+        this.timeoutMillis = timeoutMillis;
+        this.executor = new ThreadPoolTaskExecutor();
+        this.executor.setCorePoolSize(poolSize);
+        this.executor.setMaxPoolSize(poolSize);
+        this.executor.setQueueCapacity(queueCapacity);
+        this.executor.setThreadNamePrefix("image-optimize-");
+        this.executor.initialize();
+        this.savedBytes = DistributionSummary.builder("files.optimize.saved")
+                .description("Bytes saved per optimized upload")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.skipped = Counter.builder("files.optimize.skipped")
+                .description("Uploads stored unoptimized because the pool was busy or slow")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the optimized upload, or empty if the original should be
+     * stored unchanged. The whole upload is read into memory, and the
+     * calling thread blocks until the pool is done or the timeout passes.
+     */
+    public Optional<OptimizedImage> optimize(MultipartFile file) {
+        String format = formatOf(file.getContentType());
+        if (!enabled || format == null) {
+            return Optional.empty();
+        }
+        return submit(file, format)
+                .flatMap(this::await)
+                .map(processed -> {
+                    savedBytes.record(Math.max(0, file.getSize() - processed.length));
+                    return new OptimizedImage(processed, file.getContentType());
+                });
+    }
+
+    private Optional<Future<byte[]>> submit(MultipartFile file, String format) {
+        try {
+            byte[] original = file.getBytes();
+            return Optional.of(executor.submit(() -> process(original, format)));
+        } catch (TaskRejectedException e) {
+            skipped.increment();
+            LOG.warn("Image optimization queue full, storing upload as is");
+        } catch (IOException e) {
+            LOG.warn("Could not read upload for optimization: {}", e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+    private Optional<byte[]> await(Future<byte[]> result) {
+        try {
+            return Optional.ofNullable(result.get(timeoutMillis, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            skipped.increment();
+            LOG.warn("Image optimization took longer than {} ms, storing upload as is",
+                    timeoutMillis);
+        } catch (ExecutionException e) {
+            LOG.info("Not optimizing upload: {}", e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the re-encoded image, or {@code null} if it cannot be decoded
+     * or re-encoding gains nothing.
+     */
+    byte[] process(byte[] original, String format) throws IOException {
+        BufferedImage image = ImageUtil.decode(original, MAX_PIXELS);
+        if (image == null) {
+            return null;
+        }
+        boolean png = "png".equals(format);
+        int type = png ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        int orientation = png ? 1 : exifOrientation(original);
+        image = orient(image, orientation, type);
+        int longest = Math.max(image.getWidth(), image.getHeight());
+        boolean resize = longest > maxDimension;
+        if (resize) {
+            int width = Math.max(1, (int) ((long) image.getWidth() * maxDimension / longest));
+            image = ImageUtil.scaleToWidth(image, width, type);
+        }
+
+        byte[] encoded = encode(image, format);
+        // metadata alone is not worth a larger file, a turned or resized image is
+        if (encoded.length >= original.length && orientation == 1 && !resize) {
+            return null;
+        }
+        return encoded;
+    }
+
+    private byte[] encode(BufferedImage image, String format) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        // JPEG: visual quality; PNG is lossless, 0 selects the strongest deflate level
+        param.setCompressionQuality("png".equals(format) ? 0f : jpegQuality);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            // no metadata is passed on: EXIF, thumbnails and text chunks are dropped
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Turns the image upright according to an EXIF orientation (1-8).
+     */
+    static BufferedImage orient(BufferedImage source, int orientation, int imageType) {
+        int w = source.getWidth();
+        int h = source.getHeight();
+        // maps source to target pixels: (m00, m10, m01, m11, m02, m12)
+        AffineTransform transform = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, w);
+            default -> null;
+        };
+        boolean swap = orientation >= 5 && orientation <= 8;
+        BufferedImage target = new BufferedImage(swap ? h : w, swap ? w : h, imageType);
+        Graphics2D g = target.createGraphics();
+        try {
+            // drawn even when upright, so the output has the type the encoder expects
+            g.drawImage(source, transform != null ? transform : new AffineTransform(), null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * Reads the orientation tag from the EXIF block of a JPEG, 1 if absent.
+     */
+    static int exifOrientation(byte[] jpeg) {
+        int pos = 2;
+        while (pos + 4 <= jpeg.length && (jpeg[pos] & 0xFF) == 0xFF) {
+            int marker = jpeg[pos + 1] & 0xFF;
+            int length = uint16(jpeg, pos + 2, false);
+            if (marker == 0xDA || length < 2) {
+                // start of scan: no metadata after this point
+                break;
+            }
+            int segment = pos + 4;
+            int end = Math.min(jpeg.length, pos + 2 + length);
+            if (marker == 0xE1 && segment + 14 <= end
+                    && jpeg[segment] == 'E' && jpeg[segment + 1] == 'x'
+                    && jpeg[segment + 2] == 'i' && jpeg[segment + 3] == 'f') {
+                return tiffOrientation(jpeg, segment + 6, end);
+            }
+            pos += 2 + length;
+        }
+        return 1;
+    }
+
+    private static int tiffOrientation(byte[] bytes, int tiff, int end) {
+        boolean little = bytes[tiff] == 'I' && bytes[tiff + 1] == 'I';
+        long ifd = tiff + uint32(bytes, tiff + 4, little);
+        if (ifd + 2 > end) {
+            return 1;
+        }
+        int entries = uint16(bytes, (int) ifd, little);
+        for (int i = 0; i < entries; i++) {
+            int entry = (int) ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                break;
+            }
+            if (uint16(bytes, entry, little) == EXIF_ORIENTATION_TAG) {
+                int value = uint16(bytes, entry + 8, little);
+                return value >= 1 && value <= 8 ? value : 1;
+            }
+        }
+        return 1;
+    }
+
+    private static int uint16(byte[] bytes, int pos, boolean little) {
+        int a = bytes[pos] & 0xFF;
+        int b = bytes[pos + 1] & 0xFF;
+        return little ? (b << 8) | a : (a << 8) | b;
+    }
+
+    private static long uint32(byte[] bytes, int pos, boolean little) {
+        long high = uint16(bytes, little ? pos + 2 : pos, little);
+        long low = uint16(bytes, little ? pos : pos + 2, little);
+        return (high << 16) | low;
+    }
+
+    private static String formatOf(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        return switch (contentType.toLowerCase(Locale.ROOT)) {
+            case "image/jpeg" -> "jpeg";
+            case "image/png" -> "png";
+            default -> null;
+        };
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
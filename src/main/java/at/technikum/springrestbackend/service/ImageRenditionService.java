@@ -0,0 +1,234 @@
+package at.technikum.springrestbackend.service;
+
+import at.technikum.springrestbackend.constant.AppConstants;
+import at.technikum.springrestbackend.util.ImageUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generates downscaled copies of uploaded images on a small bounded pool.
+ * A rendition of {@code post-images/1/abc.png} at 256 px is stored as
+ * {@code post-images/1/abc.w256.png}; widths the original does not exceed
+ * get a plain copy, so every configured width exists once generation is
+ * done. WEBP cannot be decoded by ImageIO and is always served as uploaded.
+ */
+@Service
+public class ImageRenditionService implements DisposableBean {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(ImageRenditionService.class);
+
+    // refuse to decode images that would need more than ~160 MB of pixels
+    private static final long MAX_PIXELS = 40_000_000L;
+
+    // <name>.w<width>[.<ext>], see renditionKey
+    private static final Pattern RENDITION_KEY =
+            Pattern.compile("(.*/[^/]*?)\\.w\\d+((?:\\.[^./]*)?)");
+
+    private final MinioService minioService;
+    private final List<Integer> widths;
+    private final ThreadPoolTaskExecutor executor;
+
+    // renditions found missing recently; re-checked after a short while
+    private final Cache<String, Boolean> missing = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofSeconds(30))
+            .maximumSize(10_000)
+            .build();
+
+    public ImageRenditionService(
+            MinioService minioService,
+            @Value("${files.renditions.widths:64,256,1024}") List<Integer> widths,
+            @Value("${files.renditions.pool-size:2}") int poolSize,
+            @Value("${files.renditions.queue-capacity:100}") int queueCapacity) {
+        this.minioService = minioService;
+        this.widths = widths.stream().sorted().distinct().toList();
+        this.executor = new ThreadPoolTaskExecutor();
+        this.executor.setCorePoolSize(poolSize);
+        this.executor.setMaxPoolSize(poolSize);
+        this.executor.setQueueCapacity(queueCapacity);
+        this.executor.setThreadNamePrefix("image-rendition-");
+        this.executor.initialize();
+    }
+
+    public List<Integer> widths() {
+        return widths;
+    }
+
+    public boolean supports(String objectKey) {
+        String lower = objectKey.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".png") || lower.endsWith(".jpg");
+    }
+
+    public String renditionKey(String objectKey, int width) {
+        int dot = objectKey.lastIndexOf('.');
+        if (dot <= objectKey.lastIndexOf('/')) {
+            return objectKey + ".w" + width;
+        }
+        return objectKey.substring(0, dot) + ".w" + width + objectKey.substring(dot);
+    }
+
+    /**
+     * Returns the key of the original a rendition key was derived from, or
+     * the key itself if it is not a rendition key.
+     */
+    public String originalKey(String objectKey) {
+        Matcher matcher = RENDITION_KEY.matcher(objectKey);
+        return matcher.matches() ? matcher.group(1) + matcher.group(2) : objectKey;
+    }
+
+    /**
+     * Returns the keys of all renditions the object may have, for deleting
+     * them together with the original.
+     */
+    public List<String> renditionKeys(String objectKey) {
+        if (objectKey == null || !supports(objectKey)) {
+            return List.of();
+        }
+        return widths.stream().map(width -> renditionKey(objectKey, width)).toList();
+    }
+
+    /**
+     * Returns {@code ?w=} URLs for each configured width, or an empty map if
+     * the object has no renditions.
+     */
+    public Map<Integer, String> urlsFor(String objectKey) {
+        Map<Integer, String> urls = new LinkedHashMap<>();
+        if (objectKey == null || !supports(objectKey)) {
+            return urls;
+        }
+        for (int width : widths) {
+            urls.put(width, AppConstants.FILE_API_PREFIX + objectKey + "?w=" + width);
+        }
+        return urls;
+    }
+
+    /**
+     * Picks the smallest rendition at least {@code width} pixels wide, or the
+     * original if none is wide enough or it has not been generated yet.
+     */
+    public String resolve(String objectKey, int width) {
+        String key = candidateKey(objectKey, width);
+        return key != null && exists(key) ? key : objectKey;
+    }
+
+    /**
+     * Same as {@link #resolve}, but checks the rendition with
+     * {@link MinioService#statAsync}, so no request thread waits for storage.
+     */
+    public CompletableFuture<String> resolveAsync(String objectKey, int width) {
+        String key = candidateKey(objectKey, width);
+        if (key == null || missing.getIfPresent(key) != null) {
+            return CompletableFuture.completedFuture(objectKey);
+        }
+        return minioService.statAsync(key).handle((metadata, error) -> {
+            if (error == null) {
+                return key;
+            }
+            rememberIfMissing(key, error instanceof CompletionException ? error.getCause() : error);
+            return objectKey;
+        });
+    }
+
+    private String candidateKey(String objectKey, int width) {
+        if (width <= 0 || !supports(objectKey)) {
+            return null;
+        }
+        for (int candidate : widths) {
+            if (candidate >= width) {
+                return renditionKey(objectKey, candidate);
+            }
+        }
+        return null;
+    }
+
+    private boolean exists(String key) {
+        if (missing.getIfPresent(key) != null) {
+            return false;
+        }
+        try {
+            minioService.stat(key);
+            return true;
+        } catch (ResponseStatusException e) {
+            rememberIfMissing(key, e);
+            return false;
+        }
+    }
+
+    private void rememberIfMissing(String key, Throwable error) {
+        if (error instanceof ResponseStatusException e
+                && e.getStatusCode() == HttpStatus.NOT_FOUND) {
+            missing.put(key, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Queues rendition generation for a freshly uploaded object. When the
+     * queue is full the object is served at its original size only.
+     */
+    public void scheduleFor(String objectKey) {
+        if (objectKey == null || !supports(objectKey)) {
+            return;
+        }
+        try {
+            executor.execute(() -> generate(objectKey));
+        } catch (TaskRejectedException e) {
+            LOG.warn("Rendition queue full, skipping {}", objectKey);
+        }
+    }
+
+    void generate(String objectKey) {
+        try {
+            byte[] original;
+            String contentType;
+            try (MinioService.StreamedFile file = minioService.openStream(objectKey)) {
+                original = file.stream().readAllBytes();
+                contentType = file.contentType();
+            }
+            BufferedImage image = ImageUtil.decode(original, MAX_PIXELS);
+            if (image == null) {
+                LOG.info("Not generating renditions for {}: unreadable image", objectKey);
+                return;
+            }
+            String format = objectKey.toLowerCase(Locale.ROOT).endsWith(".png") ? "png" : "jpeg";
+            int type = "png".equals(format)
+                    ? BufferedImage.TYPE_INT_ARGB
+                    : BufferedImage.TYPE_INT_RGB;
+            for (int width : widths) {
+                byte[] bytes = image.getWidth() <= width
+                        ? original
+                        : ImageUtil.encode(ImageUtil.scaleToWidth(image, width, type), format);
+                String key = renditionKey(objectKey, width);
+                minioService.upload(key, bytes, contentType);
+                missing.invalidate(key);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to generate renditions for {}: {}", objectKey, e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
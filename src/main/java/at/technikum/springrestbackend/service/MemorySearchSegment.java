@@ -0,0 +1,147 @@
+package at.technikum.springrestbackend.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Buffer for posts indexed since the last flush. Ordinals are handed out in
+ * insertion order, so every postings list stays sorted by appending.
+ * Not thread-safe, {@link PostSearchIndex} locks around it.
+ */
+final class MemorySearchSegment implements SearchSegment {
+
+    private static final class PostingsBuilder {
+
+        private int[] docs = new int[4];
+        private int[] titleFrequencies = new int[4];
+        private int[] contentFrequencies = new int[4];
+        private int size;
+
+        void add(int doc, int titleFrequency, int contentFrequency) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                titleFrequencies = Arrays.copyOf(titleFrequencies, size * 2);
+                contentFrequencies = Arrays.copyOf(contentFrequencies, size * 2);
+            }
+            docs[size] = doc;
+            titleFrequencies[size] = titleFrequency;
+            contentFrequencies[size] = contentFrequency;
+            size++;
+        }
+
+        Postings build() {
+            return new Postings(docs, titleFrequencies, contentFrequencies, size);
+        }
+    }
+
+    private final List<Document> documents = new ArrayList<>();
+    private final BitSet deleted = new BitSet();
+    private final Map<Long, Integer> liveDocs = new HashMap<>();
+    private final NavigableMap<String, PostingsBuilder> postings = new TreeMap<>();
+    private double totalLength;
+
+    /**
+     * Adds the post; an older version of it in this buffer is deleted.
+     */
+    void add(Document document) {
+        delete(document.postId());
+        int doc = documents.size();
+        documents.add(document);
+        liveDocs.put(document.postId(), doc);
+        totalLength += document.length();
+        document.frequencies().forEach((term, counts) -> postings
+                .computeIfAbsent(term, t -> new PostingsBuilder())
+                .add(doc, counts[0], counts[1]));
+    }
+
+    /**
+     * The live documents, ordered by post id as a segment file stores them.
+     */
+    List<Document> liveDocuments() {
+        return liveDocs.values().stream()
+                .map(documents::get)
+                .sorted((a, b) -> Long.compare(a.postId(), b.postId()))
+                .toList();
+    }
+
+    boolean isEmpty() {
+        return documents.isEmpty();
+    }
+
+    @Override
+    public int docCount() {
+        return documents.size();
+    }
+
+    @Override
+    public int liveDocCount() {
+        return liveDocs.size();
+    }
+
+    @Override
+    public double totalLength() {
+        return totalLength;
+    }
+
+    @Override
+    public int docFreq(String term) {
+        PostingsBuilder builder = postings.get(term);
+        return builder != null ? builder.size : 0;
+    }
+
+    @Override
+    public Postings postings(String term) {
+        PostingsBuilder builder = postings.get(term);
+        return builder != null ? builder.build() : null;
+    }
+
+    @Override
+    public List<String> termsStartingWith(String prefix, int limit) {
+        return postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false)
+                .keySet().stream()
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public boolean isLive(int doc) {
+        return !deleted.get(doc);
+    }
+
+    @Override
+    public long postId(int doc) {
+        return documents.get(doc).postId();
+    }
+
+    @Override
+    public double length(int doc) {
+        return documents.get(doc).length();
+    }
+
+    @Override
+    public long createdAt(int doc) {
+        return documents.get(doc).createdAt();
+    }
+
+    @Override
+    public int findLive(long postId) {
+        Integer doc = liveDocs.get(postId);
+        return doc != null ? doc : -1;
+    }
+
+    @Override
+    public int delete(long postId) {
+        Integer doc = liveDocs.remove(postId);
+        if (doc == null) {
+            return -1;
+        }
+        deleted.set(doc);
+        return doc;
+    }
+}
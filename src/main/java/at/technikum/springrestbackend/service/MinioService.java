@@ -1,19 +1,37 @@
 package at.technikum.springrestbackend.service;
 
-import io.minio.*;
-import io.minio.errors.ErrorResponseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
 
+/**
+ * Object access for the rest of the application. Bytes are stored by the
+ * configured {@link StorageBackend}; this class adds the memory and disk
+ * cache tiers, coalesces concurrent misses and hashes uploads. Every call
+ * that reaches the storage passes through the {@link StorageGuard}.
+ */
 @Service
 public class MinioService {
 
@@ -23,29 +41,61 @@ public class MinioService {
     public record DownloadedFile(byte[] bytes, String contentType) {
     }
 
-    private final MinioClient minioClient;
-    private final String bucket;
+    public record ObjectMetadata(String contentType, long size,
+                                 String etag, Instant lastModified) {
+    }
+
+    public record ObjectSummary(String objectKey, long size, Instant lastModified) {
+    }
+
+    /**
+     * Outcome of {@link #warm}: fetched into a cache tier, cached already,
+     * or too large for either tier.
+     */
+    public enum WarmResult {
+        WARMED, CACHED, SKIPPED
+    }
+
+    public record StreamedFile(InputStream stream, ObjectMetadata metadata)
+            implements Closeable {
+
+        public String contentType() {
+            return metadata.contentType();
+        }
 
-    public MinioService(MinioClient minioClient,
-                        @Value("${minio.bucket}") String bucket) {
-        this.minioClient = minioClient;
-        this.bucket = bucket;
-        ensureBucketExists();
+        public long size() {
+            return metadata.size();
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream.close();
+        }
+    }
+
+    private final StorageBackend storage;
+    private final HotObjectCache hotObjectCache;
+    private final DiskObjectCache diskObjectCache;
+    private final StorageGuard guard;
+
+    // one storage fetch per object key at a time; concurrent misses wait for it
+    private final ConcurrentMap<String, CompletableFuture<Void>> fetches =
+            new ConcurrentHashMap<>();
+
+    public MinioService(StorageBackend storage,
+                        HotObjectCache hotObjectCache,
+                        DiskObjectCache diskObjectCache,
+                        StorageGuard guard) {
+        this.storage = storage;
+        this.hotObjectCache = hotObjectCache;
+        this.diskObjectCache = diskObjectCache;
+        this.guard = guard;
     }
 
     public String upload(String objectKey, MultipartFile file) {
         try {
-            minioClient.putObject(
-                    PutObjectArgs.builder()
-                            .bucket(bucket)
-                            .object(objectKey)
-                            .contentType(file.getContentType())
-                            .stream(file.getInputStream(),
-                                    file.getSize(), -1)
-                            .build());
-            LOG.info("Uploaded file: {}", objectKey);
-            return objectKey;
-        } catch (Exception e) {
+            return upload(objectKey, file.getInputStream(), file.getSize(), file.getContentType());
+        } catch (IOException e) {
             LOG.error("Failed to upload file {}: {}",
                     objectKey, e.getMessage(), e);
             throw new ResponseStatusException(
@@ -54,36 +104,312 @@ public class MinioService {
         }
     }
 
+    public String upload(String objectKey, byte[] bytes, String contentType) {
+        return upload(objectKey, new ByteArrayInputStream(bytes), bytes.length, contentType);
+    }
+
+    /**
+     * Uploads the file and returns the hex SHA-256 of its content, computed
+     * while the bytes stream to storage.
+     */
+    public String uploadHashed(String objectKey, MultipartFile file) {
+        try (InputStream in = file.getInputStream()) {
+            // a known size makes the client read the stream exactly once, to the end
+            return uploadHashed(objectKey, in, file.getSize(), file.getContentType());
+        } catch (IOException e) {
+            LOG.error("Failed to upload file {}: {}",
+                    objectKey, e.getMessage(), e);
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "File upload failed");
+        }
+    }
+
+    public String uploadHashed(String objectKey, byte[] bytes, String contentType) {
+        return uploadHashed(objectKey, new ByteArrayInputStream(bytes), bytes.length, contentType);
+    }
+
+    /**
+     * Same as {@link #uploadHashed(String, MultipartFile)} for a stream of
+     * unknown length, which is sent in multipart chunks as it is read.
+     */
+    public String uploadHashed(String objectKey, InputStream stream, String contentType) {
+        return uploadHashed(objectKey, stream, -1, contentType);
+    }
+
+    private String uploadHashed(String objectKey, InputStream stream, long size,
+                                String contentType) {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        upload(objectKey, new DigestInputStream(stream, sha256), size, contentType);
+        return HexFormat.of().formatHex(sha256.digest());
+    }
+
+    /**
+     * Copies an object inside the storage; the bytes never pass through here.
+     */
+    public void copy(String sourceKey, String targetKey) {
+        guard.run(() -> storage.copy(sourceKey, targetKey));
+        invalidateCaches(targetKey);
+    }
+
+    private String upload(String objectKey, InputStream stream, long size, String contentType) {
+        // a request body that breaks off is not the storage's fault
+        ReadTrackingInputStream body = new ReadTrackingInputStream(stream);
+        guard.call(() -> {
+            storage.put(objectKey, body, size, contentType);
+            return null;
+        }, body::failed);
+        invalidateCaches(objectKey);
+        LOG.info("Uploaded file: {}", objectKey);
+        return objectKey;
+    }
+
     public DownloadedFile download(String objectKey) {
-        try (InputStream in = getObjectInputStream(objectKey)) {
-            byte[] fileBytes = readInputStreamToBytes(in);
-            String contentType = getContentType(objectKey);
-            return new DownloadedFile(fileBytes, contentType);
-        } catch (ErrorResponseException e) {
-            handleErrorResponseException(e, objectKey);
+        HotObjectCache.CachedObject cached = hotObjectCache.get(objectKey);
+        if (cached != null) {
+            return new DownloadedFile(cached.bytes(), cached.metadata().contentType());
+        }
+        try (StreamedFile file = fetch(objectKey, null, null)) {
+            return new DownloadedFile(readInputStreamToBytes(file.stream()), file.contentType());
         } catch (IOException e) {
             LOG.error("I/O error while downloading {}: {}",
                     objectKey, e.getMessage(), e);
             throw new ResponseStatusException(
                     HttpStatus.INTERNAL_SERVER_ERROR,
                     "Failed to read file");
-        } catch (Exception e) {
-            LOG.error("Unexpected error while downloading {}: {}",
+        }
+    }
+
+    /**
+     * Opens the whole object, looking at the memory cache, then the disk
+     * cache and only then at the storage. Fetched objects are put into
+     * the first tier that accepts their size. Concurrent misses for the same
+     * key share a single fetch.
+     */
+    public StreamedFile openStream(String objectKey) {
+        StreamedFile cached = openCached(objectKey);
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<Void> fetch = new CompletableFuture<>();
+        CompletableFuture<Void> inFlight = fetches.putIfAbsent(objectKey, fetch);
+        if (inFlight != null) {
+            return openAfter(inFlight, objectKey);
+        }
+        try {
+            StreamedFile file = fetchIntoCache(objectKey);
+            fetch.complete(null);
+            return file;
+        } catch (RuntimeException e) {
+            fetch.completeExceptionally(e);
+            throw e;
+        } finally {
+            fetches.remove(objectKey, fetch);
+        }
+    }
+
+    /**
+     * {@link #openStream(String)} for request handlers that must not wait on
+     * the storage: hits complete right away, misses complete on the storage
+     * client's threads, which also fill the cache tiers.
+     */
+    public CompletableFuture<StreamedFile> openStreamAsync(String objectKey) {
+        StreamedFile cached = openCached(objectKey);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<Void> fetch = new CompletableFuture<>();
+        CompletableFuture<Void> inFlight = fetches.putIfAbsent(objectKey, fetch);
+        if (inFlight != null) {
+            return inFlight.thenCompose(done -> {
+                StreamedFile stored = openCached(objectKey);
+                return stored != null
+                        ? CompletableFuture.completedFuture(stored)
+                        : getAsync(objectKey, null, null);
+            });
+        }
+        return getAsync(objectKey, null, null)
+                .thenApply(file -> storeInCache(objectKey, file))
+                .whenComplete((file, error) -> {
+                    if (error != null) {
+                        fetch.completeExceptionally(error);
+                    } else {
+                        fetch.complete(null);
+                    }
+                    fetches.remove(objectKey, fetch);
+                });
+    }
+
+    /**
+     * Fetches the object into the cache tiers ahead of a request for it.
+     * Objects too large for either tier are not read.
+     */
+    public WarmResult warm(String objectKey) {
+        if (hotObjectCache.contains(objectKey) || diskObjectCache.contains(objectKey)) {
+            return WarmResult.CACHED;
+        }
+        if (!cacheable(guard.call(() -> storage.stat(objectKey)).size())) {
+            return WarmResult.SKIPPED;
+        }
+        StreamedFile file = openStream(objectKey);
+        try {
+            file.close();
+        } catch (IOException e) {
+            LOG.debug("Failed to close prefetched {}: {}", objectKey, e.getMessage());
+        }
+        return WarmResult.WARMED;
+    }
+
+    private boolean cacheable(long size) {
+        // same tiers as storeInCache
+        return hotObjectCache.accepts(size)
+                || (!storage.isLocal() && diskObjectCache.accepts(size));
+    }
+
+    /**
+     * Opens {@code length} bytes starting at {@code offset}; only that range
+     * is read from storage. The metadata size is the size of the range.
+     */
+    public StreamedFile openStream(String objectKey, long offset, long length) {
+        HotObjectCache.CachedObject cached = hotObjectCache.get(objectKey);
+        if (cached != null) {
+            return cached.open(offset, length);
+        }
+        StreamedFile file = diskObjectCache.open(objectKey, offset, length);
+        return file != null ? file : fetch(objectKey, offset, length);
+    }
+
+    /**
+     * {@link #openStream(String, long, long)} without waiting on the storage.
+     */
+    public CompletableFuture<StreamedFile> openStreamAsync(String objectKey, long offset,
+                                                           long length) {
+        HotObjectCache.CachedObject cached = hotObjectCache.get(objectKey);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.open(offset, length));
+        }
+        StreamedFile file = diskObjectCache.open(objectKey, offset, length);
+        return file != null
+                ? CompletableFuture.completedFuture(file)
+                : getAsync(objectKey, offset, length);
+    }
+
+    /**
+     * Reads the first {@code length} bytes straight from storage, without
+     * looking at or filling the cache tiers. For checks of objects that are
+     * not served yet, like freshly uploaded ones.
+     */
+    public byte[] readPrefix(String objectKey, long length) {
+        try (StreamedFile file = fetch(objectKey, 0L, length)) {
+            return file.stream().readNBytes((int) length);
+        } catch (IOException e) {
+            LOG.error("I/O error while reading {}: {}", objectKey, e.getMessage(), e);
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to read file");
+        }
+    }
+
+    private StreamedFile openCached(String objectKey) {
+        HotObjectCache.CachedObject cached = hotObjectCache.get(objectKey);
+        return cached != null ? cached.open() : diskObjectCache.open(objectKey);
+    }
+
+    /**
+     * Waits for the fetch another request started and serves the object from
+     * the cache tier it was stored in. Objects too large for either tier are
+     * fetched again.
+     */
+    private StreamedFile openAfter(CompletableFuture<Void> inFlight, String objectKey) {
+        try {
+            inFlight.join();
+        } catch (CompletionException e) {
+            // the leader's 404/500 applies to every waiter
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        StreamedFile cached = openCached(objectKey);
+        return cached != null ? cached : fetch(objectKey, null, null);
+    }
+
+    private StreamedFile fetchIntoCache(String objectKey) {
+        return storeInCache(objectKey, fetch(objectKey, null, null));
+    }
+
+    private StreamedFile storeInCache(String objectKey, StreamedFile fetched) {
+        StreamedFile file = storeOnDisk(objectKey, fetched);
+        return hotObjectCache.accepts(file.size())
+                ? loadIntoMemory(objectKey, file)
+                : file;
+    }
+
+    private StreamedFile storeOnDisk(String objectKey, StreamedFile file) {
+        // local files are served directly, a disk copy would not be faster
+        if (storage.isLocal() || !diskObjectCache.accepts(file.size())) {
+            return file;
+        }
+        StreamedFile stored = diskObjectCache.put(objectKey, file);
+        // the fetched stream is consumed even if the disk write failed
+        return stored != null ? stored : fetch(objectKey, null, null);
+    }
+
+    private StreamedFile loadIntoMemory(String objectKey, StreamedFile file) {
+        // small object: read it once and keep it in memory for the next requests
+        try (file) {
+            HotObjectCache.CachedObject loaded = new HotObjectCache.CachedObject(
+                    readInputStreamToBytes(file.stream()), file.metadata());
+            hotObjectCache.put(objectKey, loaded);
+            return loaded.open();
+        } catch (IOException e) {
+            LOG.error("I/O error while downloading {}: {}",
                     objectKey, e.getMessage(), e);
             throw new ResponseStatusException(
                     HttpStatus.INTERNAL_SERVER_ERROR,
-                    "Failed to download file");
+                    "Failed to read file");
+        }
+    }
+
+    private void invalidateCaches(String objectKey) {
+        hotObjectCache.invalidate(objectKey);
+        diskObjectCache.invalidate(objectKey);
+    }
+
+    private StreamedFile fetch(String objectKey, Long offset, Long length) {
+        return guard.call(() -> storage.get(objectKey, offset, length));
+    }
+
+    private CompletableFuture<StreamedFile> getAsync(String objectKey, Long offset, Long length) {
+        return guard.callAsync(() -> storage.getAsync(objectKey, offset, length));
+    }
+
+    public ObjectMetadata stat(String objectKey) {
+        HotObjectCache.CachedObject cached = hotObjectCache.get(objectKey);
+        if (cached != null) {
+            return cached.metadata();
         }
-        return null;
+        ObjectMetadata onDisk = diskObjectCache.metadata(objectKey);
+        return onDisk != null ? onDisk : guard.call(() -> storage.stat(objectKey));
     }
 
-    private InputStream getObjectInputStream(String objectKey)
-            throws Exception {
-        return minioClient.getObject(
-                GetObjectArgs.builder()
-                        .bucket(bucket)
-                        .object(objectKey)
-                        .build());
+    /**
+     * {@link #stat} without waiting on the storage.
+     */
+    public CompletableFuture<ObjectMetadata> statAsync(String objectKey) {
+        HotObjectCache.CachedObject cached = hotObjectCache.get(objectKey);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.metadata());
+        }
+        ObjectMetadata onDisk = diskObjectCache.metadata(objectKey);
+        return onDisk != null
+                ? CompletableFuture.completedFuture(onDisk)
+                : guard.callAsync(() -> storage.statAsync(objectKey));
     }
 
     private byte[] readInputStreamToBytes(InputStream in)
@@ -93,74 +419,78 @@ public class MinioService {
         return bos.toByteArray();
     }
 
-    private String getContentType(String objectKey)
-            throws Exception {
-        var stat = minioClient.statObject(
-                StatObjectArgs.builder()
-                        .bucket(bucket)
-                        .object(objectKey)
-                        .build());
-        return stat.contentType() != null
-                ? stat.contentType()
-                : "application/octet-stream";
-    }
-
-    private void handleErrorResponseException(
-            ErrorResponseException e,
-            String objectKey) {
-        int code = e.response() != null
-                ? e.response().code()
-                : -1;
-        LOG.warn("MinIO error (objectKey={}): {} (http={})",
-                objectKey, e.getMessage(), code);
-        if (code == 404) {
-            throw new ResponseStatusException(
-                    HttpStatus.NOT_FOUND,
-                    "File not found");
-        } else {
-            throw new ResponseStatusException(
-                    HttpStatus.INTERNAL_SERVER_ERROR,
-                    "MinIO error");
-        }
-    }
-
     public void delete(String objectKey) {
         if (objectKey == null) {
             return;
         }
 
-        try {
-            minioClient.removeObject(
-                    RemoveObjectArgs.builder()
-                            .bucket(bucket)
-                            .object(objectKey)
-                            .build());
-            LOG.info("Deleted file: {}", objectKey);
-        } catch (Exception e) {
-            LOG.warn("Failed to delete file {}: {}",
-                    objectKey, e.getMessage());
+        invalidateCaches(objectKey);
+        guard.run(() -> storage.delete(objectKey));
+    }
+
+    /**
+     * Removes the objects and returns the keys that could not be removed.
+     * Keys that do not exist count as removed.
+     */
+    public Set<String> deleteAll(Collection<String> objectKeys) {
+        if (objectKeys.isEmpty()) {
+            return Set.of();
         }
+
+        objectKeys.forEach(this::invalidateCaches);
+        Set<String> failed = guard.call(() -> storage.deleteAll(objectKeys));
+        LOG.info("Deleted {} files", objectKeys.size() - failed.size());
+        return failed;
     }
 
-    private void ensureBucketExists() {
-        try {
-            boolean exists = minioClient.bucketExists(
-                    io.minio.BucketExistsArgs.builder()
-                            .bucket(bucket)
-                            .build());
-            if (!exists) {
-                minioClient.makeBucket(
-                        io.minio.MakeBucketArgs.builder()
-                                .bucket(bucket)
-                                .build());
-                LOG.info("Created bucket: {}", bucket);
+    /**
+     * Lists the objects under {@code prefix}. The stream is lazy and must be
+     * closed; the guard covers starting the listing.
+     */
+    public Stream<ObjectSummary> list(String prefix) {
+        return guard.call(() -> storage.list(prefix));
+    }
+
+    /**
+     * Whether clients can be sent presigned URLs; only MinIO can serve them.
+     */
+    public boolean supportsPresignedUrls() {
+        return storage.supportsPresignedUrls();
+    }
+
+    /**
+     * Remembers whether reading the wrapped stream failed.
+     */
+    private static final class ReadTrackingInputStream extends FilterInputStream {
+
+        private volatile boolean failed;
+
+        ReadTrackingInputStream(InputStream in) {
+            super(in);
+        }
+
+        boolean failed() {
+            return failed;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                return super.read(b, off, len);
+            } catch (IOException e) {
+                failed = true;
+                throw e;
             }
-        } catch (Exception e) {
-            LOG.error("MinIO initialization failed: {}",
-                    e.getMessage(), e);
-            throw new ResponseStatusException(
-                    HttpStatus.INTERNAL_SERVER_ERROR,
-                    "MinIO connection failed");
         }
     }
 }
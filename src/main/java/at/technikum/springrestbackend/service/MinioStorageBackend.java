@@ -0,0 +1,355 @@
+package at.technikum.springrestbackend.service;
+
+import io.minio.*;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
+import okhttp3.Headers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Stores objects in a MinIO (or any S3-compatible) bucket. The asynchronous
+ * reads go through {@link MinioAsyncClient}, whose calls complete on the
+ * HTTP client's dispatcher instead of the calling thread.
+ */
+@Component
+@ConditionalOnProperty(name = "files.storage.backend", havingValue = "minio",
+        matchIfMissing = true)
+public class MinioStorageBackend implements StorageBackend {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(MinioStorageBackend.class);
+
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private final MinioClient minioClient;
+    private final MinioAsyncClient minioAsyncClient;
+    private final String bucket;
+
+    public MinioStorageBackend(MinioClient minioClient,
+                               MinioAsyncClient minioAsyncClient,
+                               @Value("${minio.bucket}") String bucket) {
+        this.minioClient = minioClient;
+        this.minioAsyncClient = minioAsyncClient;
+        this.bucket = bucket;
+        ensureBucketExists();
+    }
+
+    @Override
+    public void put(String objectKey, InputStream stream, long size, String contentType) {
+        try {
+            minioClient.putObject(
+                    PutObjectArgs.builder()
+                            .bucket(bucket)
+                            .object(objectKey)
+                            .contentType(contentType)
+                            .stream(stream, size,
+                                    size >= 0 ? -1 : ObjectWriteArgs.MIN_MULTIPART_SIZE)
+                            .build());
+        } catch (Exception e) {
+            LOG.error("Failed to upload file {}: {}",
+                    objectKey, e.getMessage(), e);
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "File upload failed");
+        }
+    }
+
+    /**
+     * Copies an object inside the bucket; the bytes never leave MinIO.
+     */
+    @Override
+    public void copy(String sourceKey, String targetKey) {
+        try {
+            minioClient.copyObject(
+                    CopyObjectArgs.builder()
+                            .bucket(bucket)
+                            .object(targetKey)
+                            .source(CopySource.builder()
+                                    .bucket(bucket)
+                                    .object(sourceKey)
+                                    .build())
+                            .build());
+        } catch (Exception e) {
+            LOG.error("Failed to copy file {} to {}: {}",
+                    sourceKey, targetKey, e.getMessage(), e);
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "File upload failed");
+        }
+    }
+
+    @Override
+    public MinioService.StreamedFile get(String objectKey, Long offset, Long length) {
+        try {
+            // one round trip: metadata comes from the GET response headers
+            GetObjectResponse in = minioClient.getObject(
+                    GetObjectArgs.builder()
+                            .bucket(bucket)
+                            .object(objectKey)
+                            .offset(offset)
+                            .length(length)
+                            .build());
+            return new MinioService.StreamedFile(in, metadataOf(in));
+        } catch (Exception e) {
+            throw failure(e, objectKey, "Failed to download file");
+        }
+    }
+
+    @Override
+    public CompletableFuture<MinioService.StreamedFile> getAsync(
+            String objectKey, Long offset, Long length) {
+        try {
+            return minioAsyncClient.getObject(
+                            GetObjectArgs.builder()
+                                    .bucket(bucket)
+                                    .object(objectKey)
+                                    .offset(offset)
+                                    .length(length)
+                                    .build())
+                    .handle((in, error) -> {
+                        if (error != null) {
+                            throw failure(error, objectKey, "Failed to download file");
+                        }
+                        return new MinioService.StreamedFile(in, metadataOf(in));
+                    });
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(
+                    failure(e, objectKey, "Failed to download file"));
+        }
+    }
+
+    @Override
+    public MinioService.ObjectMetadata stat(String objectKey) {
+        try {
+            return metadataOf(minioClient.statObject(
+                    StatObjectArgs.builder()
+                            .bucket(bucket)
+                            .object(objectKey)
+                            .build()));
+        } catch (Exception e) {
+            throw failure(e, objectKey, "Failed to read file metadata");
+        }
+    }
+
+    @Override
+    public CompletableFuture<MinioService.ObjectMetadata> statAsync(String objectKey) {
+        try {
+            return minioAsyncClient.statObject(
+                            StatObjectArgs.builder()
+                                    .bucket(bucket)
+                                    .object(objectKey)
+                                    .build())
+                    .handle((stat, error) -> {
+                        if (error != null) {
+                            throw failure(error, objectKey, "Failed to read file metadata");
+                        }
+                        return metadataOf(stat);
+                    });
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(
+                    failure(e, objectKey, "Failed to read file metadata"));
+        }
+    }
+
+    @Override
+    public void delete(String objectKey) {
+        try {
+            minioClient.removeObject(
+                    RemoveObjectArgs.builder()
+                            .bucket(bucket)
+                            .object(objectKey)
+                            .build());
+            LOG.info("Deleted file: {}", objectKey);
+        } catch (Exception e) {
+            LOG.warn("Failed to delete file {}: {}",
+                    objectKey, e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the objects through MinIO's multi-object delete.
+     */
+    @Override
+    public Set<String> deleteAll(Collection<String> objectKeys) {
+        List<DeleteObject> objects = objectKeys.stream()
+                .map(DeleteObject::new)
+                .toList();
+        Set<String> failed = new HashSet<>();
+        try {
+            // the results are lazy: iterating them sends the delete requests
+            Iterable<Result<DeleteError>> results = minioClient.removeObjects(
+                    RemoveObjectsArgs.builder()
+                            .bucket(bucket)
+                            .objects(objects)
+                            .build());
+            for (Result<DeleteError> result : results) {
+                DeleteError error = result.get();
+                LOG.warn("Failed to delete file {}: {}",
+                        error.objectName(), error.message());
+                failed.add(error.objectName());
+            }
+        } catch (Exception e) {
+            LOG.warn("Failed to delete {} files: {}",
+                    objectKeys.size(), e.getMessage());
+            return new HashSet<>(objectKeys);
+        }
+        return failed;
+    }
+
+    /**
+     * The stream is lazy: MinIO is asked for the next page of keys only when
+     * the previous one is consumed.
+     */
+    @Override
+    public Stream<MinioService.ObjectSummary> list(String prefix) {
+        Iterable<Result<Item>> results = minioClient.listObjects(
+                ListObjectsArgs.builder()
+                        .bucket(bucket)
+                        .prefix(prefix)
+                        .recursive(true)
+                        .build());
+        return StreamSupport.stream(results.spliterator(), false)
+                .map(this::summaryOf)
+                .filter(summary -> summary != null);
+    }
+
+    @Override
+    public boolean supportsPresignedUrls() {
+        return true;
+    }
+
+    private MinioService.ObjectSummary summaryOf(Result<Item> result) {
+        try {
+            Item item = result.get();
+            if (item.isDir()) {
+                return null;
+            }
+            return new MinioService.ObjectSummary(
+                    item.objectName(),
+                    item.size(),
+                    item.lastModified() != null ? item.lastModified().toInstant() : null);
+        } catch (Exception e) {
+            LOG.error("Failed to list files: {}", e.getMessage(), e);
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to list files");
+        }
+    }
+
+    private MinioService.ObjectMetadata metadataOf(StatObjectResponse stat) {
+        return new MinioService.ObjectMetadata(
+                stat.contentType() != null ? stat.contentType() : DEFAULT_CONTENT_TYPE,
+                stat.size(),
+                stat.etag(),
+                stat.lastModified() != null ? stat.lastModified().toInstant() : null);
+    }
+
+    private MinioService.ObjectMetadata metadataOf(GetObjectResponse response) {
+        Headers headers = response.headers();
+        if (headers == null) {
+            return new MinioService.ObjectMetadata(DEFAULT_CONTENT_TYPE, -1, null, null);
+        }
+        String contentType = headers.get(HttpHeaders.CONTENT_TYPE);
+        String length = headers.get(HttpHeaders.CONTENT_LENGTH);
+        String etag = headers.get(HttpHeaders.ETAG);
+        String lastModified = headers.get(HttpHeaders.LAST_MODIFIED);
+        return new MinioService.ObjectMetadata(
+                contentType != null ? contentType : DEFAULT_CONTENT_TYPE,
+                length != null ? Long.parseLong(length) : -1,
+                etag != null ? etag.replace("\"", "") : null,
+                lastModified != null ? parseHttpDate(lastModified) : null);
+    }
+
+    private Instant parseHttpDate(String value) {
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME)
+                    .toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Maps a failed call to the status the client gets; asynchronous calls
+     * report their failure wrapped in a {@link CompletionException}.
+     */
+    private ResponseStatusException failure(Throwable error, String objectKey,
+                                            String message) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause()
+                : error;
+        if (cause instanceof ResponseStatusException status) {
+            return status;
+        }
+        if (cause instanceof ErrorResponseException e) {
+            return handleErrorResponseException(e, objectKey);
+        }
+        LOG.error("Unexpected error while reading {}: {}",
+                objectKey, cause.getMessage(), cause);
+        return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, message);
+    }
+
+    private ResponseStatusException handleErrorResponseException(
+            ErrorResponseException e,
+            String objectKey) {
+        int code = e.response() != null
+                ? e.response().code()
+                : -1;
+        LOG.warn("MinIO error (objectKey={}): {} (http={})",
+                objectKey, e.getMessage(), code);
+        if (code == 404) {
+            return new ResponseStatusException(
+                    HttpStatus.NOT_FOUND,
+                    "File not found");
+        } else {
+            return new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "MinIO error");
+        }
+    }
+
+    private void ensureBucketExists() {
+        try {
+            boolean exists = minioClient.bucketExists(
+                    BucketExistsArgs.builder()
+                            .bucket(bucket)
+                            .build());
+            if (!exists) {
+                minioClient.makeBucket(
+                        MakeBucketArgs.builder()
+                                .bucket(bucket)
+                                .build());
+                LOG.info("Created bucket: {}", bucket);
+            }
+        } catch (Exception e) {
+            LOG.error("MinIO initialization failed: {}",
+                    e.getMessage(), e);
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "MinIO connection failed");
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package at.technikum.springrestbackend.service;
+
+import at.technikum.springrestbackend.entity.ObjectDeletion;
+import at.technikum.springrestbackend.entity.StoredObject;
+import at.technikum.springrestbackend.repository.ObjectDeletionRepository;
+import at.technikum.springrestbackend.repository.StoredObjectRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Deletion outbox for bucket objects. {@link #enqueue} records keys in the
+ * caller's transaction, so a rolled back entity change never loses its
+ * object and a committed one never keeps it. {@link #drain} removes queued
+ * objects in batches and retries failures with exponential backoff.
+ * Content-addressed objects that were referenced again in the meantime are
+ * skipped; their rows stay locked until the batch is deleted.
+ */
+@Service
+public class ObjectDeletionService {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(ObjectDeletionService.class);
+
+    private final ObjectDeletionRepository objectDeletionRepository;
+    private final StoredObjectRepository storedObjectRepository;
+    private final MinioService minioService;
+    private final ImageRenditionService imageRenditionService;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration retryBase;
+    private final Duration retryMax;
+
+    public ObjectDeletionService(
+            ObjectDeletionRepository objectDeletionRepository,
+            StoredObjectRepository storedObjectRepository,
+            MinioService minioService,
+            ImageRenditionService imageRenditionService,
+            TransactionTemplate transactionTemplate,
+            @Value("${files.deletion.batch-size:100}") int batchSize,
+            @Value("${files.deletion.retry-base-seconds:30}") long retryBaseSeconds,
+            @Value("${files.deletion.retry-max-seconds:3600}") long retryMaxSeconds) {
+        this.objectDeletionRepository = objectDeletionRepository;
+        this.storedObjectRepository = storedObjectRepository;
+        this.minioService = minioService;
+        this.imageRenditionService = imageRenditionService;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.retryBase = Duration.ofSeconds(retryBaseSeconds);
+        this.retryMax = Duration.ofSeconds(retryMaxSeconds);
+    }
+
+    @Transactional
+    public void enqueue(Collection<String> objectKeys) {
+        LocalDateTime now = LocalDateTime.now();
+        List<ObjectDeletion> deletions = objectKeys.stream()
+                .filter(Objects::nonNull)
+                .filter(key -> !key.isBlank())
+                .distinct()
+                .map(key -> new ObjectDeletion(key, now))
+                .toList();
+        if (!deletions.isEmpty()) {
+            objectDeletionRepository.saveAll(deletions);
+        }
+    }
+
+    @Scheduled(
+            initialDelayString = "${files.deletion.poll-interval-ms:5000}",
+            fixedDelayString = "${files.deletion.poll-interval-ms:5000}")
+    public void drain() {
+        // keep going while batches come back full and fully deleted
+        while (drainBatch() == batchSize) {
+            LOG.debug("Deletion outbox has more due entries, continuing");
+        }
+    }
+
+    /**
+     * Processes one batch of due deletions and returns how many of them were
+     * completed, in one transaction.
+     */
+    int drainBatch() {
+        Integer done = transactionTemplate.execute(status -> drainBatchInTransaction());
+        return done != null ? done : 0;
+    }
+
+    private int drainBatchInTransaction() {
+        LocalDateTime now = LocalDateTime.now();
+        List<ObjectDeletion> due = objectDeletionRepository
+                .findByNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(
+                        now, PageRequest.of(0, batchSize));
+        if (due.isEmpty()) {
+            return 0;
+        }
+
+        // renditions follow their original's reference count
+        Map<String, StoredObject> counted = storedObjectRepository
+                .findAllForUpdate(due.stream()
+                        .map(this::originalKey)
+                        .collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(StoredObject::getObjectKey, Function.identity()));
+        List<String> deletable = selectDeletable(due, counted);
+        Set<String> failed = delete(deletable, counted);
+        return settle(due, failed, now);
+    }
+
+    /**
+     * Returns the queued keys whose content is not referenced again.
+     */
+    private List<String> selectDeletable(List<ObjectDeletion> due,
+                                         Map<String, StoredObject> counted) {
+        return due.stream()
+                .map(ObjectDeletion::getObjectKey)
+                .filter(key -> {
+                    StoredObject stored = counted.get(imageRenditionService.originalKey(key));
+                    return stored == null || stored.getRefCount() == 0;
+                })
+                .distinct()
+                .toList();
+    }
+
+    /**
+     * Deletes the objects and the counts of those that are gone, returning
+     * the keys that failed.
+     */
+    private Set<String> delete(List<String> deletable, Map<String, StoredObject> counted) {
+        Set<String> failed = minioService.deleteAll(deletable);
+        // a count is dropped together with its object, never before
+        storedObjectRepository.deleteAll(counted.values().stream()
+                .filter(stored -> stored.getRefCount() == 0)
+                .filter(stored -> deletable.contains(stored.getObjectKey()))
+                .filter(stored -> !failed.contains(stored.getObjectKey()))
+                .toList());
+        return failed;
+    }
+
+    /**
+     * Removes completed entries and schedules failed ones for a retry,
+     * returning how many were completed.
+     */
+    private int settle(List<ObjectDeletion> due, Set<String> failed, LocalDateTime now) {
+        List<ObjectDeletion> done = new ArrayList<>();
+        List<ObjectDeletion> retry = new ArrayList<>();
+        for (ObjectDeletion deletion : due) {
+            if (failed.contains(deletion.getObjectKey())) {
+                deletion.setAttempts(deletion.getAttempts() + 1);
+                deletion.setNextAttemptAt(now.plus(backoff(deletion.getAttempts())));
+                retry.add(deletion);
+            } else {
+                done.add(deletion);
+            }
+        }
+        objectDeletionRepository.deleteAllInBatch(done);
+        if (!retry.isEmpty()) {
+            objectDeletionRepository.saveAll(retry);
+            LOG.warn("{} file deletions failed and will be retried", retry.size());
+        }
+        return done.size();
+    }
+
+    private String originalKey(ObjectDeletion deletion) {
+        return imageRenditionService.originalKey(deletion.getObjectKey());
+    }
+
+    Duration backoff(int attempts) {
+        // base * 2^(attempts - 1), shifts capped so the multiplication cannot overflow
+        Duration delay = retryBase.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(retryMax) > 0 ? retryMax : delay;
+    }
+}
@@ -0,0 +1,155 @@
+package at.technikum.springrestbackend.service;
+
+import at.technikum.springrestbackend.constant.AppConstants;
+import at.technikum.springrestbackend.repository.PostRepository;
+import at.technikum.springrestbackend.repository.ProfileRepository;
+import at.technikum.springrestbackend.repository.StoredObjectRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Removes bucket objects that no post or profile references any more, for
+ * example after a failed request between upload and save. The bucket is
+ * listed page by page and each batch of keys is checked with one IN query
+ * per table, so memory stays bounded by the batch size. Objects younger
+ * than the grace period are left alone, which covers uploads whose entity
+ * change has not been committed yet. Content keys with a reference count
+ * row are left to {@link ObjectDeletionService}, which deletes them under
+ * the row lock.
+ */
+@Service
+public class OrphanedObjectCollector {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(OrphanedObjectCollector.class);
+
+    private static final List<String> PREFIXES =
+            List.of(AppConstants.AVATARS_PATH, AppConstants.POST_IMAGES_PATH,
+                    AppConstants.UPLOAD_STAGING_PATH);
+
+    private final MinioService minioService;
+    private final PostRepository postRepository;
+    private final ProfileRepository profileRepository;
+    private final StoredObjectRepository storedObjectRepository;
+    private final ImageRenditionService imageRenditionService;
+    private final boolean enabled;
+    private final Duration grace;
+    private final int batchSize;
+
+    private final Counter reclaimedBytes;
+    private final Counter deletedObjects;
+
+    public OrphanedObjectCollector(
+            MinioService minioService,
+            PostRepository postRepository,
+            ProfileRepository profileRepository,
+            StoredObjectRepository storedObjectRepository,
+            ImageRenditionService imageRenditionService,
+            @Value("${files.gc.enabled:false}") boolean enabled,
+            @Value("${files.gc.grace-hours:24}") long graceHours,
+            @Value("${files.gc.batch-size:500}") int batchSize,
+            MeterRegistry meterRegistry) {
+        this.minioService = minioService;
+        this.postRepository = postRepository;
+        this.profileRepository = profileRepository;
+        this.storedObjectRepository = storedObjectRepository;
+        this.imageRenditionService = imageRenditionService;
+        this.enabled = enabled;
+        this.grace = Duration.ofHours(graceHours);
+        this.batchSize = batchSize;
+        this.reclaimedBytes = Counter.builder("files.gc.reclaimed")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.deletedObjects = Counter.builder("files.gc.deleted")
+                .baseUnit("objects")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${files.gc.cron:0 30 3 * * *}")
+    public void scheduledCollect() {
+        if (enabled) {
+            collect();
+        }
+    }
+
+    /**
+     * Runs one reconciliation pass and returns the number of bytes freed.
+     */
+    public long collect() {
+        Instant cutoff = Instant.now().minus(grace);
+        long reclaimed = 0;
+        for (String prefix : PREFIXES) {
+            reclaimed += collect(prefix, cutoff);
+        }
+        LOG.info("Orphaned file collection reclaimed {} bytes", reclaimed);
+        return reclaimed;
+    }
+
+    private long collect(String prefix, Instant cutoff) {
+        long reclaimed = 0;
+        List<MinioService.ObjectSummary> batch = new ArrayList<>(batchSize);
+        try (Stream<MinioService.ObjectSummary> objects = minioService.list(prefix)) {
+            Iterator<MinioService.ObjectSummary> it = objects.iterator();
+            while (it.hasNext()) {
+                MinioService.ObjectSummary object = it.next();
+                if (object.lastModified() == null || object.lastModified().isAfter(cutoff)) {
+                    continue;
+                }
+                batch.add(object);
+                if (batch.size() == batchSize) {
+                    reclaimed += collectBatch(batch);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            reclaimed += collectBatch(batch);
+        }
+        return reclaimed;
+    }
+
+    private long collectBatch(List<MinioService.ObjectSummary> batch) {
+        // renditions are kept as long as their original is referenced
+        Set<String> originals = batch.stream()
+                .map(object -> imageRenditionService.originalKey(object.objectKey()))
+                .collect(Collectors.toSet());
+        Set<String> referenced = new HashSet<>(postRepository.findImageObjectKeysIn(originals));
+        referenced.addAll(profileRepository.findAvatarObjectKeysIn(originals));
+        // counted content may be pending in the outbox or just copied by an upload
+        referenced.addAll(storedObjectRepository.findObjectKeysIn(originals));
+
+        List<MinioService.ObjectSummary> orphans = batch.stream()
+                .filter(object -> !referenced.contains(
+                        imageRenditionService.originalKey(object.objectKey())))
+                .toList();
+        if (orphans.isEmpty()) {
+            return 0;
+        }
+
+        Set<String> failed = minioService.deleteAll(orphans.stream()
+                .map(MinioService.ObjectSummary::objectKey)
+                .toList());
+        List<MinioService.ObjectSummary> deleted = orphans.stream()
+                .filter(object -> !failed.contains(object.objectKey()))
+                .toList();
+        long bytes = deleted.stream().mapToLong(MinioService.ObjectSummary::size).sum();
+        reclaimedBytes.increment(bytes);
+        deletedObjects.increment(deleted.size());
+        return bytes;
+    }
+}
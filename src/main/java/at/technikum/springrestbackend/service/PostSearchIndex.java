@@ -0,0 +1,992 @@
+package at.technikum.springrestbackend.service;
+
+import at.technikum.springrestbackend.entity.Post;
+import at.technikum.springrestbackend.repository.PostRepository;
+import at.technikum.springrestbackend.util.TextAnalyzer;
+import at.technikum.springrestbackend.util.TransactionUtil;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Inverted index over post titles and contents, replacing {@code LIKE
+ * '%q%'} scans. A search only reads the postings of its own terms, so its
+ * cost follows how common the terms are, not how many posts exist.
+ * <p>
+ * Every query term has to occur in the title or content; the last one also
+ * matches as a prefix, since it is usually still being typed. Hits are
+ * ranked by BM25F with the title counted {@code title-weight} times, and
+ * newer posts get up to {@code recency-weight} extra, halving every
+ * {@code recency-half-life-days}.
+ * <p>
+ * The index lives in {@code posts.search.directory} as immutable,
+ * memory-mapped {@link DiskSearchSegment}s listed in a commit file; the heap
+ * only holds the buffer of changes since the last flush. {@link #index}
+ * and {@link #remove} apply after the surrounding transaction commits and
+ * append the post id to a journal, so changes not yet flushed are read
+ * again from the database after a crash. Every {@code flush-interval-ms}
+ * the buffer becomes a new segment, and {@code merge-factor} segments of
+ * similar size are merged into one; segments with many deletions are
+ * rewritten. Without a commit file the index is rebuilt from the database.
+ * {@link #isReady} is false until the index is loaded or rebuilt.
+ */
+@Service
+public class PostSearchIndex implements DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PostSearchIndex.class);
+
+    private static final String COMMIT_FILE = "segments";
+    private static final String JOURNAL_FILE = "journal";
+
+    public record Hits(List<Long> postIds, long total) {
+    }
+
+    private record Hit(long postId, double score) {
+    }
+
+    private record Term(String term, double idf) {
+    }
+
+    private record ClausePostings(List<SearchSegment.Postings> lists, List<Term> terms) {
+    }
+
+    private final PostRepository postRepository;
+    private final Path directory;
+    private final double k1;
+    private final double b;
+    private final int titleWeight;
+    private final double recencyWeight;
+    private final double recencyHalfLifeSeconds;
+    private final int maxHits;
+    private final int prefixMinLength;
+    private final int maxPrefixTerms;
+    private final int rebuildBatchSize;
+    private final int flushDocs;
+    private final int mergeFactor;
+    private final int mergeDeletesPercent;
+    private final int maxSegmentDocs;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private List<DiskSearchSegment> disk = List.of();
+    // the previous buffer while it is written to disk, still searched
+    private MemorySearchSegment flushing;
+    private MemorySearchSegment buffer = new MemorySearchSegment();
+    private long nextGeneration = 1;
+    private FileChannel journal;
+    private boolean uncommittedDeletes;
+
+    private volatile boolean ready;
+    // changed before the index was loaded; the database copy read meanwhile is older
+    private final Set<Long> touchedWhileLoading = new HashSet<>();
+
+    // loading, flushes and merges run here, one at a time
+    private final ExecutorService maintenance = Executors.newSingleThreadExecutor(
+            Thread.ofVirtual().name("post-search-maintenance").factory());
+    private final AtomicBoolean maintaining = new AtomicBoolean();
+
+    public PostSearchIndex(
+            PostRepository postRepository,
+            @Value("${posts.search.directory:data/search-index}") Path directory,
+            @Value("${posts.search.k1:1.2}") double k1,
+            @Value("${posts.search.b:0.75}") double b,
+            @Value("${posts.search.title-weight:2}") int titleWeight,
+            @Value("${posts.search.recency-weight:0.5}") double recencyWeight,
+            @Value("${posts.search.recency-half-life-days:30}") double recencyHalfLifeDays,
+            @Value("${posts.search.max-hits:1000}") int maxHits,
+            @Value("${posts.search.prefix-min-length:3}") int prefixMinLength,
+            @Value("${posts.search.max-prefix-terms:64}") int maxPrefixTerms,
+            @Value("${posts.search.rebuild-batch-size:500}") int rebuildBatchSize,
+            @Value("${posts.search.flush-docs:10000}") int flushDocs,
+            @Value("${posts.search.merge-factor:8}") int mergeFactor,
+            @Value("${posts.search.merge-deletes-percent:30}") int mergeDeletesPercent,
+            @Value("${posts.search.max-segment-docs:5000000}") int maxSegmentDocs,
+            MeterRegistry meterRegistry) {
+        this.postRepository = postRepository;
+        this.directory = directory;
+        this.k1 = k1;
+        this.b = b;
+        this.titleWeight = titleWeight;
+        this.recencyWeight = recencyWeight;
+        this.recencyHalfLifeSeconds = recencyHalfLifeDays * 24 * 3600;
+        this.maxHits = maxHits;
+        this.prefixMinLength = prefixMinLength;
+        this.maxPrefixTerms = maxPrefixTerms;
+        this.rebuildBatchSize = rebuildBatchSize;
+        this.flushDocs = flushDocs;
+        this.mergeFactor = mergeFactor;
+        this.mergeDeletesPercent = mergeDeletesPercent;
+        this.maxSegmentDocs = maxSegmentDocs;
+        Gauge.builder("posts.search.documents", this, PostSearchIndex::size)
+                .description("Posts in the search index")
+                .register(meterRegistry);
+        Gauge.builder("posts.search.segments", this, PostSearchIndex::segmentCount)
+                .description("Segment files of the search index")
+                .register(meterRegistry);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** The most matches a search ranks; deeper results are not available. */
+    public int maxHits() {
+        return maxHits;
+    }
+
+    /**
+     * Adds or replaces the post once the current transaction commits.
+     */
+    public void index(Post post) {
+        TransactionUtil.afterCommit(() -> {
+            SearchSegment.Document document = document(post);
+            lock.writeLock().lock();
+            try {
+                put(document);
+                if (!ready) {
+                    touchedWhileLoading.add(document.postId());
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Removes the posts once the current transaction commits.
+     */
+    public void remove(Collection<Long> postIds) {
+        TransactionUtil.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                postIds.forEach(this::delete);
+                if (!ready) {
+                    touchedWhileLoading.addAll(postIds);
+                }
+                journal(postIds);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInBackground() {
+        maintenance.execute(() -> {
+            try {
+                load();
+            } catch (IOException | RuntimeException e) {
+                LOG.error("Failed to load the post search index, searches stay on the "
+                        + "database: {}", e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Opens the segments of the last commit and re-reads the posts changed
+     * after it, or rebuilds the index if there is none.
+     */
+    public void load() throws IOException {
+        long started = System.nanoTime();
+        Files.createDirectories(directory);
+        List<Long> journaled = readJournal();
+        boolean loaded = openLastCommit();
+        deleteUnreferencedFiles();
+        lock.writeLock().lock();
+        try {
+            // keeps the journaled ids until the next commit
+            openJournal(journaled);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (loaded) {
+            reindex(journaled);
+            finishLoading();
+            LOG.info("Opened post search index with {} posts in {} segments in {} ms",
+                    size(), segmentCount(), (System.nanoTime() - started) / 1_000_000);
+        } else {
+            rebuild();
+        }
+    }
+
+    private boolean openLastCommit() {
+        Path commit = directory.resolve(COMMIT_FILE);
+        if (!Files.exists(commit)) {
+            return false;
+        }
+        try {
+            openCommit(commit);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Post search index is unreadable, rebuilding it: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reads every post into new segments, in id order and batches. Changes
+     * made meanwhile are applied as they happen and win over what the
+     * rebuild read.
+     */
+    public void rebuild() throws IOException {
+        long started = System.nanoTime();
+        List<DiskSearchSegment> previous;
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            previous = disk;
+            disk = List.of();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        int count = indexAllPosts();
+        flush();
+        previous.forEach(segment -> deleteFiles(segment.files()));
+        finishLoading();
+        LOG.info("Indexed {} posts for search in {} ms",
+                count, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private int indexAllPosts() throws IOException {
+        long lastId = 0;
+        int count = 0;
+        List<Post> batch;
+        do {
+            batch = postRepository.findByIdGreaterThanOrderByIdAsc(
+                    lastId, PageRequest.of(0, rebuildBatchSize));
+            putUntouched(batch);
+            count += batch.size();
+            if (!batch.isEmpty()) {
+                lastId = batch.get(batch.size() - 1).getId();
+            }
+            if (bufferedDocs() >= flushDocs) {
+                flush();
+            }
+        } while (batch.size() == rebuildBatchSize);
+        return count;
+    }
+
+    /**
+     * Returns the ids of the best {@code limit} posts for the query, best
+     * first, and how many posts match it at all. At most {@code max-hits}
+     * ids are returned.
+     */
+    public Hits search(String query, int limit) {
+        int wanted = Math.min(limit, maxHits);
+        PriorityQueue<Hit> top = new PriorityQueue<>(Comparator.comparingDouble(Hit::score)
+                .thenComparingLong(Hit::postId));
+        long total = 0;
+        lock.readLock().lock();
+        try {
+            List<SearchSegment> segments = segments();
+            List<List<Term>> clauses = clauses(TextAnalyzer.terms(query), segments);
+            if (!clauses.isEmpty() && wanted > 0) {
+                double averageLength = averageLength(segments);
+                long now = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
+                for (SearchSegment segment : segments) {
+                    total += match(segment, clauses, averageLength, now, top, wanted);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(Comparator.comparingDouble(Hit::score).reversed()
+                .thenComparing(Comparator.comparingLong(Hit::postId).reversed()));
+        return new Hits(hits.stream().map(Hit::postId).toList(), total);
+    }
+
+    /**
+     * Flushes the buffer and merges segments; skipped while the previous
+     * run is still busy.
+     */
+    @Scheduled(
+            initialDelayString = "${posts.search.flush-interval-ms:5000}",
+            fixedDelayString = "${posts.search.flush-interval-ms:5000}")
+    public void maintain() {
+        if (!ready || !maintaining.compareAndSet(false, true)) {
+            return;
+        }
+        maintenance.execute(() -> {
+            try {
+                flush();
+                merge();
+            } catch (IOException | RuntimeException e) {
+                LOG.error("Post search index maintenance failed: {}", e.getMessage(), e);
+            } finally {
+                maintaining.set(false);
+            }
+        });
+    }
+
+    /**
+     * Writes the buffer as a new segment and commits. Searches keep seeing
+     * the buffered posts while it is written.
+     */
+    void flush() throws IOException {
+        MemorySearchSegment frozen;
+        List<SearchSegment.Document> documents;
+        long generation;
+        lock.writeLock().lock();
+        try {
+            if (buffer.isEmpty()) {
+                if (uncommittedDeletes) {
+                    commit();
+                }
+                return;
+            }
+            frozen = buffer;
+            flushing = frozen;
+            buffer = new MemorySearchSegment();
+            documents = frozen.liveDocuments();
+            generation = nextGeneration++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        DiskSearchSegment written = write(frozen, documents, generation);
+        publish(frozen, documents, written);
+    }
+
+    private DiskSearchSegment write(MemorySearchSegment frozen,
+                                    List<SearchSegment.Document> documents,
+                                    long generation) throws IOException {
+        if (documents.isEmpty()) {
+            return null;
+        }
+        try {
+            return DiskSearchSegment.write(directory, generation, documents);
+        } catch (IOException | RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                // keep the posts searchable and try again with the next flush
+                for (SearchSegment.Document document : documents) {
+                    if (frozen.findLive(document.postId()) >= 0
+                            && buffer.findLive(document.postId()) < 0) {
+                        buffer.add(document);
+                    }
+                }
+                flushing = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Swaps the flushed buffer for the written segment, deleting what was
+     * removed from the buffer meanwhile, and commits.
+     */
+    private void publish(MemorySearchSegment frozen, List<SearchSegment.Document> documents,
+                         DiskSearchSegment written) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (written != null) {
+                for (SearchSegment.Document document : documents) {
+                    if (frozen.findLive(document.postId()) < 0) {
+                        written.delete(document.postId());
+                    }
+                }
+                disk = Stream.concat(disk.stream(), Stream.of(written)).toList();
+            }
+            flushing = null;
+            commit();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Runs merges until the merge policy finds nothing to do.
+     */
+    void merge() throws IOException {
+        List<DiskSearchSegment> sources;
+        while (!(sources = selectMerge()).isEmpty()) {
+            long generation;
+            List<byte[]> deletions = new ArrayList<>();
+            lock.writeLock().lock();
+            try {
+                sources.forEach(source -> deletions.add(source.deletions()));
+                generation = nextGeneration++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            DiskSearchSegment merged = DiskSearchSegment.merge(directory, generation, sources);
+
+            replace(sources, deletions, merged);
+            if (merged.docCount() == 0) {
+                deleteFiles(merged.files());
+            }
+            sources.forEach(source -> deleteFiles(source.files()));
+            LOG.debug("Merged {} search segments into segment {} with {} posts",
+                    sources.size(), generation, merged.docCount());
+        }
+    }
+
+    /**
+     * Puts the merged segment in place of its sources and commits.
+     * {@code deletions} are the sources' deletions when the merge started.
+     */
+    private void replace(List<DiskSearchSegment> sources, List<byte[]> deletions,
+                         DiskSearchSegment merged) throws IOException {
+        lock.writeLock().lock();
+        try {
+            // carry over what was deleted while the merge ran
+            for (int s = 0; s < sources.size(); s++) {
+                DiskSearchSegment source = sources.get(s);
+                for (int doc = 0; doc < source.docCount(); doc++) {
+                    if (!source.isLive(doc)
+                            && !DiskSearchSegment.isDeleted(deletions.get(s), doc)) {
+                        merged.delete(source.postId(doc));
+                    }
+                }
+            }
+            // the merged segment takes the place of the first source
+            List<DiskSearchSegment> replaced = new ArrayList<>();
+            for (DiskSearchSegment segment : disk) {
+                if (segment == sources.get(0) && merged.docCount() > 0) {
+                    replaced.add(merged);
+                } else if (!sources.contains(segment)) {
+                    replaced.add(segment);
+                }
+            }
+            disk = List.copyOf(replaced);
+            commit();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * A segment with at least {@code merge-deletes-percent} deleted posts
+     * on its own, else the {@code merge-factor} smallest segments of the
+     * lowest size tier that has that many.
+     */
+    private List<DiskSearchSegment> selectMerge() {
+        lock.readLock().lock();
+        try {
+            for (DiskSearchSegment segment : disk) {
+                int deleted = segment.docCount() - segment.liveDocCount();
+                if (deleted > 0 && deleted * 100L >= (long) mergeDeletesPercent
+                        * segment.docCount()) {
+                    return List.of(segment);
+                }
+            }
+            return selectTier(disk);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<DiskSearchSegment> selectTier(List<DiskSearchSegment> segments) {
+        Map<Integer, List<DiskSearchSegment>> tiers = segments.stream()
+                .sorted(Comparator.comparingInt(DiskSearchSegment::liveDocCount))
+                .collect(Collectors.groupingBy(this::tier, TreeMap::new,
+                        Collectors.toList()));
+        for (List<DiskSearchSegment> tier : tiers.values()) {
+            if (tier.size() < mergeFactor) {
+                continue;
+            }
+            List<DiskSearchSegment> picked = tier.subList(0, mergeFactor);
+            long docs = picked.stream().mapToLong(DiskSearchSegment::liveDocCount).sum();
+            if (docs <= maxSegmentDocs) {
+                return List.copyOf(picked);
+            }
+        }
+        return List.of();
+    }
+
+    private int tier(DiskSearchSegment segment) {
+        return (int) (Math.log(Math.max(segment.liveDocCount(), 1)) / Math.log(mergeFactor));
+    }
+
+    /**
+     * Flushes the buffer so a restart has nothing to re-read.
+     */
+    @Override
+    public void destroy() throws Exception {
+        maintenance.shutdown();
+        maintenance.awaitTermination(30, TimeUnit.SECONDS);
+        if (ready) {
+            flush();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return segments().stream().mapToInt(SearchSegment::liveDocCount).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int segmentCount() {
+        lock.readLock().lock();
+        try {
+            return disk.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<SearchSegment> segments() {
+        List<SearchSegment> segments = new ArrayList<>(disk);
+        if (flushing != null) {
+            segments.add(flushing);
+        }
+        segments.add(buffer);
+        return segments;
+    }
+
+    private int bufferedDocs() {
+        lock.readLock().lock();
+        try {
+            return buffer.liveDocCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * One clause per query term: the term itself, and for the last term
+     * every indexed term it is a prefix of. Empty if a term matches nothing.
+     */
+    private List<List<Term>> clauses(List<String> queryTerms, List<SearchSegment> segments) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(queryTerms));
+        // deleted posts still count until their segment is merged, as in docFreq
+        long documents = segments.stream().mapToLong(SearchSegment::docCount).sum();
+        List<List<Term>> clauses = new ArrayList<>();
+        for (int i = 0; i < terms.size(); i++) {
+            String term = terms.get(i);
+            Set<String> expanded = i == terms.size() - 1 && term.length() >= prefixMinLength
+                    ? withPrefixMatches(term, segments)
+                    : Set.of(term);
+            List<Term> clause = new ArrayList<>();
+            for (String candidate : expanded) {
+                int docFreq = segments.stream().mapToInt(s -> s.docFreq(candidate)).sum();
+                if (docFreq > 0) {
+                    clause.add(new Term(candidate, Math.log(1
+                            + (documents - docFreq + 0.5) / (docFreq + 0.5))));
+                }
+            }
+            if (clause.isEmpty()) {
+                return List.of();
+            }
+            clauses.add(clause);
+        }
+        return clauses;
+    }
+
+    private Set<String> withPrefixMatches(String term, List<SearchSegment> segments) {
+        Set<String> expanded = new LinkedHashSet<>();
+        expanded.add(term);
+        for (SearchSegment segment : segments) {
+            expanded.addAll(segment.termsStartingWith(term, maxPrefixTerms - expanded.size()));
+        }
+        return expanded;
+    }
+
+    private static double averageLength(List<SearchSegment> segments) {
+        double length = 0;
+        long documents = 0;
+        for (SearchSegment segment : segments) {
+            length += segment.totalLength();
+            documents += segment.docCount();
+        }
+        return documents > 0 ? Math.max(length / documents, 1) : 1;
+    }
+
+    /**
+     * Adds the segment's matches to {@code top}, keeping the best
+     * {@code limit}, and returns how many there were.
+     */
+    private long match(SearchSegment segment, List<List<Term>> clauses, double averageLength,
+                       long now, PriorityQueue<Hit> top, int limit) {
+        List<ClausePostings> postings = postings(segment, clauses);
+        if (postings.isEmpty()) {
+            return 0;
+        }
+
+        // walk the rarest clause and look the others up
+        ClausePostings rarest = postings.stream()
+                .min(Comparator.comparingInt(clause -> postingCount(clause.lists())))
+                .orElseThrow();
+        long total = 0;
+        for (int doc : candidates(rarest.lists())) {
+            if (!segment.isLive(doc)) {
+                continue;
+            }
+            double score = score(postings, doc, segment.length(doc), averageLength);
+            if (score < 0) {
+                continue;
+            }
+            total++;
+            double boost = recencyBoost(segment.createdAt(doc), now);
+            top.add(new Hit(segment.postId(doc), score * boost));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * The postings of every clause in the segment, empty if a clause has
+     * none there.
+     */
+    private static List<ClausePostings> postings(SearchSegment segment,
+                                                 List<List<Term>> clauses) {
+        List<ClausePostings> postings = new ArrayList<>();
+        for (List<Term> clause : clauses) {
+            ClausePostings present = clausePostings(segment, clause);
+            if (present.lists().isEmpty()) {
+                return List.of();
+            }
+            postings.add(present);
+        }
+        return postings;
+    }
+
+    private static ClausePostings clausePostings(SearchSegment segment, List<Term> clause) {
+        List<SearchSegment.Postings> lists = new ArrayList<>();
+        List<Term> terms = new ArrayList<>();
+        for (Term term : clause) {
+            SearchSegment.Postings list = segment.postings(term.term());
+            if (list != null) {
+                lists.add(list);
+                terms.add(term);
+            }
+        }
+        return new ClausePostings(lists, terms);
+    }
+
+    private static int[] candidates(List<SearchSegment.Postings> lists) {
+        if (lists.size() == 1) {
+            return Arrays.copyOf(lists.get(0).docs(), lists.get(0).size());
+        }
+        return lists.stream()
+                .flatMapToInt(list -> Arrays.stream(list.docs(), 0, list.size()))
+                .sorted()
+                .distinct()
+                .toArray();
+    }
+
+    private static int postingCount(List<SearchSegment.Postings> lists) {
+        return lists.stream().mapToInt(SearchSegment.Postings::size).sum();
+    }
+
+    /**
+     * Summed score of the clauses for the document, -1 if one of them does
+     * not match it.
+     */
+    private double score(List<ClausePostings> clauses, int doc, double length,
+                         double averageLength) {
+        double score = 0;
+        for (ClausePostings clause : clauses) {
+            double clauseScore = score(clause.lists(), clause.terms(), doc, length, averageLength);
+            if (clauseScore < 0) {
+                return -1;
+            }
+            score += clauseScore;
+        }
+        return score;
+    }
+
+    /**
+     * BM25F score of the clause for the document, -1 if none of its terms
+     * occurs in it.
+     */
+    private double score(List<SearchSegment.Postings> lists, List<Term> terms, int doc,
+                         double length, double averageLength) {
+        double score = -1;
+        for (int t = 0; t < lists.size(); t++) {
+            SearchSegment.Postings list = lists.get(t);
+            int index = Arrays.binarySearch(list.docs(), 0, list.size(), doc);
+            if (index < 0) {
+                continue;
+            }
+            double frequency = titleWeight * list.titleFrequencies()[index]
+                    + list.contentFrequencies()[index];
+            double norm = k1 * (1 - b + b * length / averageLength);
+            score = Math.max(score, 0)
+                    + terms.get(t).idf() * frequency * (k1 + 1) / (frequency + norm);
+        }
+        return score;
+    }
+
+    private double recencyBoost(long createdAt, long now) {
+        if (recencyWeight <= 0) {
+            return 1;
+        }
+        double age = Math.max(0, now - createdAt);
+        return 1 + recencyWeight * Math.pow(0.5, age / recencyHalfLifeSeconds);
+    }
+
+    private SearchSegment.Document document(Post post) {
+        List<String> title = TextAnalyzer.terms(post.getTitle());
+        List<String> content = TextAnalyzer.terms(post.getContent());
+        Map<String, int[]> frequencies = new HashMap<>();
+        title.forEach(term -> frequencies.computeIfAbsent(term, t -> new int[2])[0]++);
+        content.forEach(term -> frequencies.computeIfAbsent(term, t -> new int[2])[1]++);
+        LocalDateTime createdAt = post.getCreatedAt() != null
+                ? post.getCreatedAt()
+                : LocalDateTime.now();
+        return new SearchSegment.Document(post.getId(),
+                (double) titleWeight * title.size() + content.size(),
+                createdAt.toEpochSecond(ZoneOffset.UTC),
+                frequencies);
+    }
+
+    /**
+     * Replaces every older version of the post. Needs the write lock.
+     */
+    private void put(SearchSegment.Document document) {
+        delete(document.postId());
+        buffer.add(document);
+        journal(List.of(document.postId()));
+    }
+
+    private void delete(long postId) {
+        for (SearchSegment segment : segments()) {
+            if (segment.delete(postId) >= 0 && segment instanceof DiskSearchSegment) {
+                uncommittedDeletes = true;
+            }
+        }
+    }
+
+    /**
+     * Indexes posts read from the database unless they changed since.
+     */
+    private void putUntouched(List<Post> posts) {
+        List<SearchSegment.Document> documents = posts.stream().map(this::document).toList();
+        lock.writeLock().lock();
+        try {
+            for (SearchSegment.Document document : documents) {
+                if (!touchedWhileLoading.contains(document.postId())) {
+                    put(document);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Re-reads the journaled posts: the ones still in the database are
+     * indexed again, the others removed.
+     */
+    private void reindex(List<Long> postIds) {
+        for (int from = 0; from < postIds.size(); from += rebuildBatchSize) {
+            List<Long> batch = postIds.subList(from, Math.min(from + rebuildBatchSize,
+                    postIds.size()));
+            List<Post> posts = postRepository.findAllById(batch);
+            Set<Long> found = posts.stream().map(Post::getId).collect(Collectors.toSet());
+            putUntouched(posts);
+            lock.writeLock().lock();
+            try {
+                batch.stream()
+                        .filter(id -> !found.contains(id) && !touchedWhileLoading.contains(id))
+                        .forEach(this::delete);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        if (!postIds.isEmpty()) {
+            LOG.info("Re-read {} posts changed after the last search index commit",
+                    postIds.size());
+        }
+    }
+
+    private void finishLoading() {
+        lock.writeLock().lock();
+        try {
+            journal(touchedWhileLoading);
+            touchedWhileLoading.clear();
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void openCommit(Path commit) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(commit)) {
+            properties.load(in);
+        }
+        List<DiskSearchSegment> segments = new ArrayList<>();
+        String listed = properties.getProperty("segments", "");
+        for (String generation : listed.split(",")) {
+            if (!generation.isBlank()) {
+                segments.add(DiskSearchSegment.open(directory, Long.parseLong(generation)));
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            // posts changed before the segments were opened have a newer version, or none
+            for (Long postId : touchedWhileLoading) {
+                segments.forEach(segment -> segment.delete(postId));
+            }
+            disk = List.copyOf(segments);
+            nextGeneration = Long.parseLong(properties.getProperty("generation", "1"));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Makes the current segments the ones a restart opens. Needs the write
+     * lock.
+     */
+    private void commit() throws IOException {
+        for (DiskSearchSegment segment : disk) {
+            segment.force();
+        }
+        uncommittedDeletes = false;
+        Properties properties = new Properties();
+        properties.setProperty("generation", String.valueOf(nextGeneration));
+        properties.setProperty("segments", disk.stream()
+                .map(segment -> String.valueOf(segment.generation()))
+                .collect(Collectors.joining(",")));
+        Path tmp = directory.resolve(COMMIT_FILE + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            properties.store(out, "post search index");
+        }
+        Files.move(tmp, directory.resolve(COMMIT_FILE),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        // what is not on disk now: the posts still in the buffers
+        if (journal != null) {
+            journal.close();
+            journal = null;
+            openJournal(List.of());
+        }
+    }
+
+    /**
+     * Starts a new journal with the given posts and the ones in the
+     * buffers. Needs the write lock.
+     */
+    private void openJournal(List<Long> postIds) throws IOException {
+        Path tmp = directory.resolve(JOURNAL_FILE + ".tmp");
+        List<Long> buffered = new ArrayList<>(postIds);
+        for (MemorySearchSegment segment : Arrays.asList(flushing, buffer)) {
+            if (segment != null) {
+                segment.liveDocuments().forEach(document -> buffered.add(document.postId()));
+            }
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(buffered.size() * Long.BYTES);
+        buffered.forEach(bytes::putLong);
+        Files.write(tmp, bytes.array(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE,
+                StandardOpenOption.SYNC);
+        Path file = Files.move(tmp, directory.resolve(JOURNAL_FILE),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        journal = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Long> readJournal() throws IOException {
+        Path file = directory.resolve(JOURNAL_FILE);
+        if (!Files.exists(file)) {
+            return List.of();
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        Set<Long> postIds = new LinkedHashSet<>();
+        // a torn last entry is ignored
+        while (bytes.remaining() >= Long.BYTES) {
+            postIds.add(bytes.getLong());
+        }
+        return List.copyOf(postIds);
+    }
+
+    /**
+     * Records post ids whose change is not on disk yet. Needs the write
+     * lock.
+     */
+    private void journal(Collection<Long> postIds) {
+        if (journal == null || postIds.isEmpty()) {
+            return;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(postIds.size() * Long.BYTES);
+        postIds.forEach(bytes::putLong);
+        bytes.flip();
+        try {
+            while (bytes.hasRemaining()) {
+                journal.write(bytes);
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to journal search index changes: {}", e.getMessage());
+        }
+    }
+
+    private void deleteUnreferencedFiles() throws IOException {
+        Set<Path> referenced = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            disk.forEach(segment -> referenced.addAll(segment.files()));
+        } finally {
+            lock.readLock().unlock();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            deleteFiles(files
+                    .filter(file -> file.getFileName().toString().startsWith("segment-"))
+                    .filter(file -> !referenced.contains(file))
+                    .toList());
+        }
+    }
+
+    private static void deleteFiles(Collection<Path> files) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                LOG.warn("Failed to delete search index file {}: {}", file, e.getMessage());
+            }
+        }
+    }
+}
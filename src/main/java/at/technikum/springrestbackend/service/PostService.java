@@ -1,47 +1,249 @@
 package at.technikum.springrestbackend.service;
 
 import at.technikum.springrestbackend.constant.AppConstants;
+import at.technikum.springrestbackend.dto.CursorPageDTO;
 import at.technikum.springrestbackend.dto.PostCreateDTO;
 import at.technikum.springrestbackend.dto.PostDTO;
+import at.technikum.springrestbackend.dto.PostSummaryDTO;
 import at.technikum.springrestbackend.dto.PostUpdateDTO;
+import at.technikum.springrestbackend.dto.SliceDTO;
+import at.technikum.springrestbackend.dto.UploadRequestDTO;
+import at.technikum.springrestbackend.dto.UploadTicketDTO;
 import at.technikum.springrestbackend.entity.Post;
 import at.technikum.springrestbackend.entity.Profile;
 import at.technikum.springrestbackend.repository.PostRepository;
+import at.technikum.springrestbackend.repository.PostSummary;
+import at.technikum.springrestbackend.util.CursorUtil;
 import at.technikum.springrestbackend.util.ImageUtil;
 import at.technikum.springrestbackend.util.SecurityUtil;
 import at.technikum.springrestbackend.util.StringUtil;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.util.UUID;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class PostService {
 
     private final PostRepository postRepository;
-    private final MinioService minioService;
+    private final StoredObjectService storedObjectService;
+    private final DirectUploadService directUploadService;
+    private final ImageRenditionService imageRenditionService;
+    private final StreamingUploadService streamingUploadService;
+    private final TransactionTemplate transactionTemplate;
+    private final ImageMetadataService imageMetadataService;
+    private final FilePrefetchService filePrefetchService;
+    private final PostSearchIndex postSearchIndex;
+    private final CountService countService;
 
     public PostService(PostRepository postRepository,
-                       MinioService minioService) {
+                       StoredObjectService storedObjectService,
+                       DirectUploadService directUploadService,
+                       ImageRenditionService imageRenditionService,
+                       StreamingUploadService streamingUploadService,
+                       TransactionTemplate transactionTemplate,
+                       ImageMetadataService imageMetadataService,
+                       FilePrefetchService filePrefetchService,
+                       PostSearchIndex postSearchIndex,
+                       CountService countService) {
         this.postRepository = postRepository;
-        this.minioService = minioService;
+        this.storedObjectService = storedObjectService;
+        this.directUploadService = directUploadService;
+        this.imageRenditionService = imageRenditionService;
+        this.streamingUploadService = streamingUploadService;
+        this.transactionTemplate = transactionTemplate;
+        this.imageMetadataService = imageMetadataService;
+        this.filePrefetchService = filePrefetchService;
+        this.postSearchIndex = postSearchIndex;
+        this.countService = countService;
     }
 
+    /**
+     * Lists posts, or searches them if a query is given. An unsorted
+     * pageable orders search results by relevance.
+     */
     @Transactional(readOnly = true)
-    public Page<PostDTO> getAll(String query, Pageable pageable) {
-        Page<Post> page = StringUtil.getNonBlank(query)
-                .map(q -> postRepository
-                        .findByTitleContainingIgnoreCaseOrContentContainingIgnoreCase(
-                                q, q, pageable))
-                .orElseGet(() -> postRepository.findAll(pageable));
+    public Page<PostSummaryDTO> getAll(String query, Pageable pageable) {
+        Page<PostSummary> page = StringUtil.getNonBlank(query)
+                .map(q -> searchPage(q, pageable))
+                .orElseGet(() -> withTotal(postRepository.findSummaries(pageable),
+                        countService.posts()));
+
+        Page<PostSummaryDTO> result = page.map(this::toSummaryDTO);
+        prefetchImages(page.getContent());
+        return result;
+    }
+
+    /**
+     * Like {@link #getAll}, but only tells whether another page follows,
+     * so nothing has to be counted.
+     */
+    @Transactional(readOnly = true)
+    public SliceDTO<PostSummaryDTO> getSlice(String query, Pageable pageable) {
+        Slice<PostSummary> slice = StringUtil.getNonBlank(query)
+                .map(q -> search(q, pageable))
+                .orElseGet(() -> postRepository.findSummaries(pageable));
+
+        prefetchImages(slice.getContent());
+        return new SliceDTO<>(slice.getContent().stream().map(this::toSummaryDTO).toList(),
+                slice.getNumber(), slice.getSize(), slice.hasNext());
+    }
+
+    /**
+     * Lists posts after the cursor of the previous page, or from the start
+     * without one. Seeks past the last post instead of skipping rows, so
+     * every page costs the same however deep it is.
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDTO<PostSummaryDTO> getFeed(String cursor, int size, Sort sort) {
+        if (size < 1 || size > AppConstants.MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page size");
+        }
+        Sort.Order order = sort.iterator().next();
+        Keyset after = StringUtil.getNonBlank(cursor)
+                .map(c -> decodeCursor(c, order))
+                .orElse(Keyset.START);
+
+        // one more than asked for tells whether another page follows
+        List<PostSummary> posts = postRepository.findSummariesAfter(
+                order, after.value(), after.id(), size + 1);
+        boolean hasNext = posts.size() > size;
+        if (hasNext) {
+            posts = posts.subList(0, size);
+        }
+        prefetchImages(posts);
+        String nextCursor = hasNext
+                ? encodeCursor(order, posts.get(posts.size() - 1))
+                : null;
+        return new CursorPageDTO<>(posts.stream().map(this::toSummaryDTO).toList(),
+                size, nextCursor);
+    }
+
+    private void prefetchImages(List<PostSummary> posts) {
+        // the client loads every image of the page next
+        filePrefetchService.prefetch(posts.stream()
+                .flatMap(post -> Stream.of(post.imageObjectKey(), post.authorAvatarObjectKey()))
+                .toList());
+    }
+
+    /**
+     * Sort value and id of the last post of a page; {@link #START} before
+     * the first one.
+     */
+    private record Keyset(Object value, Long id) {
+        static final Keyset START = new Keyset(null, null);
+    }
+
+    /**
+     * The sort the cursor was made for, the sort value of the last post and
+     * its id.
+     */
+    private static String encodeCursor(Sort.Order order, PostSummary post) {
+        String value = switch (order.getProperty()) {
+            case "createdAt" -> post.createdAt().toString();
+            case "updatedAt" -> post.updatedAt().toString();
+            default -> post.title();
+        };
+        return CursorUtil.encode(List.of(order.getProperty(), order.getDirection().name(),
+                value, post.id().toString()));
+    }
+
+    private static Keyset decodeCursor(String cursor, Sort.Order order) {
+        try {
+            List<String> parts = CursorUtil.decode(cursor);
+            if (parts.size() != 4
+                    || !parts.get(0).equals(order.getProperty())
+                    || !parts.get(1).equals(order.getDirection().name())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Cursor does not belong to this sort");
+            }
+            Object value = switch (order.getProperty()) {
+                case "createdAt", "updatedAt" -> LocalDateTime.parse(parts.get(2));
+                default -> parts.get(2);
+            };
+            return new Keyset(value, Long.valueOf(parts.get(3)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    private Page<PostSummary> searchPage(String query, Pageable pageable) {
+        Slice<PostSummary> slice = search(query, pageable);
+        // the index knows the total, the database fallback has to count
+        return slice instanceof Page<PostSummary> page
+                ? page
+                : withTotal(slice, countService.searchCount(query, q -> postRepository
+                        .countByTitleContainingIgnoreCaseOrContentContainingIgnoreCase(q, q)));
+    }
+
+    private Slice<PostSummary> search(String query, Pageable pageable) {
+        if (!postSearchIndex.isReady()) {
+            // the index is still being built after startup
+            Pageable sorted = pageable.getSort().isSorted()
+                    ? pageable
+                    : PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
+                            Sort.by(AppConstants.DEFAULT_SORT_FIELD).descending());
+            return postRepository.findSummariesMatching(query, sorted);
+        }
+        return pageable.getSort().isSorted()
+                ? sortedSearch(query, pageable)
+                : relevanceSearch(query, pageable);
+    }
 
-        return page.map(this::toDTO);
+    /** Orders and pages the matches in the database, so they all have to be known. */
+    private Page<PostSummary> sortedSearch(String query, Pageable pageable) {
+        PostSearchIndex.Hits hits = postSearchIndex.search(query, Integer.MAX_VALUE);
+        if (hits.total() > hits.postIds().size()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Too many matches to sort, narrow the query or sort by relevance");
+        }
+        return hits.postIds().isEmpty()
+                ? Page.empty(pageable)
+                : withTotal(postRepository.findSummariesByIdIn(hits.postIds(), pageable),
+                        hits.total());
+    }
+
+    private Page<PostSummary> relevanceSearch(String query, Pageable pageable) {
+        long end = pageable.getOffset() + pageable.getPageSize();
+        PostSearchIndex.Hits hits = postSearchIndex.search(
+                query, (int) Math.min(end, Integer.MAX_VALUE));
+        int maxHits = postSearchIndex.maxHits();
+        if (end > maxHits && hits.total() > maxHits) {
+            // the page reaches past the matches the index ranks
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Only the first " + maxHits + " matches can be paged");
+        }
+        List<Long> ids = hits.postIds().stream()
+                .skip(pageable.getOffset())
+                .toList();
+        Map<Long, PostSummary> posts = ids.isEmpty()
+                ? Map.of()
+                : postRepository.findSummariesByIdIn(ids).stream()
+                        .collect(Collectors.toMap(PostSummary::id, Function.identity()));
+        return new PageImpl<>(ids.stream()
+                .map(posts::get)
+                // deleted, the index catches up after the commit
+                .filter(Objects::nonNull)
+                .toList(), pageable, hits.total());
     }
 
     @Transactional(readOnly = true)
@@ -70,7 +272,10 @@ public class PostService {
         post.setTitle(title);
         post.setContent(content);
 
-        return toDTO(postRepository.save(post));
+        Post saved = postRepository.save(post);
+        postSearchIndex.index(saved);
+        countService.postsChanged(1);
+        return toDTO(saved);
     }
 
     public PostDTO update(Long id, PostUpdateDTO dto) {
@@ -95,48 +300,126 @@ public class PostService {
                     "No fields to update");
         }
 
-        return toDTO(postRepository.save(post));
+        Post saved = postRepository.save(post);
+        postSearchIndex.index(saved);
+        return toDTO(saved);
     }
 
+    @Transactional
     public void delete(Long id) {
         Post post = findPostOrThrow(id);
         SecurityUtil.ensureOwnerOrAdmin(post.getAuthor().getId());
 
-        // delete file first (safe even if key is null)
-        minioService.delete(post.getImageObjectKey());
+        // queued in this transaction (safe even if key is null)
+        deleteImage(post.getImageObjectKey());
 
         postRepository.delete(post);
+        postSearchIndex.remove(List.of(id));
+        countService.postsChanged(-1);
     }
 
+    /**
+     * Not transactional: staging and describing the upload take storage
+     * I/O, only the final swap holds a connection.
+     */
     public PostDTO uploadImage(Long postId, MultipartFile file) {
         Post post = findPostOrThrow(postId);
         SecurityUtil.ensureOwnerOrAdmin(post.getAuthor().getId());
 
         ImageUtil.validateImageFile(file);
 
-        minioService.delete(post.getImageObjectKey());
+        return swapImage(postId, storedObjectService.stage(file));
+    }
+
+    /**
+     * Streams a multipart body straight to storage. Not transactional: the
+     * upload runs at the client's pace, only the final swap holds a connection.
+     */
+    public PostDTO uploadImageStream(Long postId, String contentType, InputStream body) {
+        Post post = findPostOrThrow(postId);
+        SecurityUtil.ensureOwnerOrAdmin(post.getAuthor().getId());
 
-        String objectKey = AppConstants.POST_IMAGES_PATH
-                + post.getId()
-                + "/"
-                + UUID.randomUUID()
-                + ImageUtil.getExtension(file.getContentType());
+        return swapImage(postId, streamingUploadService.stage(contentType, body));
+    }
 
-        minioService.upload(objectKey, file);
+    private PostDTO swapImage(Long postId, StoredObjectService.StagedObject staged) {
+        return storedObjectService.storeStaged(AppConstants.POST_IMAGES_PATH, staged,
+                objectKey -> replaceImage(findPostOrThrow(postId), objectKey, staged.metadata()));
+    }
 
-        post.setImageObjectKey(objectKey);
-        return toDTO(postRepository.save(post));
+    private PostDTO replaceImage(Post post, String objectKey,
+                                 ImageMetadataService.ImageMetadata metadata) {
+        String previousKey = post.getImageObjectKey();
+        setImage(post, objectKey, metadata);
+        PostDTO saved = toDTO(postRepository.save(post));
+        deleteImage(previousKey);
+        return saved;
+    }
+
+    public UploadTicketDTO requestImageUpload(Long postId, UploadRequestDTO dto) {
+        Post post = findPostOrThrow(postId);
+        SecurityUtil.ensureOwnerOrAdmin(post.getAuthor().getId());
+
+        return directUploadService.issue(imageKeyPrefix(post), dto);
+    }
+
+    /**
+     * Verifies and describes the uploaded object before the transaction
+     * starts; only the swap of the image key holds a connection.
+     */
+    public PostDTO completeImageUpload(Long postId, String objectKey) {
+        Post post = findPostOrThrow(postId);
+        SecurityUtil.ensureOwnerOrAdmin(post.getAuthor().getId());
+
+        directUploadService.verify(imageKeyPrefix(post), objectKey);
+        imageRenditionService.scheduleFor(objectKey);
+        ImageMetadataService.ImageMetadata metadata = imageMetadataService.describe(objectKey);
+
+        return transactionTemplate.execute(status -> {
+            Post current = findPostOrThrow(postId);
+            String previousKey = current.getImageObjectKey();
+            setImage(current, objectKey, metadata);
+            PostDTO saved = toDTO(postRepository.save(current));
+            if (!objectKey.equals(previousKey)) {
+                deleteImage(previousKey);
+            }
+            return saved;
+        });
     }
 
     @Transactional(readOnly = true)
     public Page<PostDTO> getAllForAdmin(Pageable pageable) {
-        return postRepository.findAll(pageable).map(this::toDTO);
+        return withTotal(postRepository.findSliceBy(pageable), countService.posts())
+                .map(this::toDTO);
     }
 
+    @Transactional
     public void deleteAsAdmin(Long id) {
         Post post = findPostOrThrow(id);
-        minioService.delete(post.getImageObjectKey());
+        deleteImage(post.getImageObjectKey());
         postRepository.delete(post);
+        postSearchIndex.remove(List.of(id));
+        countService.postsChanged(-1);
+    }
+
+    private static <T> Page<T> withTotal(Slice<T> slice, long total) {
+        return new PageImpl<>(slice.getContent(), slice.getPageable(), total);
+    }
+
+    private static void setImage(Post post, String objectKey,
+                                 ImageMetadataService.ImageMetadata metadata) {
+        post.setImageObjectKey(objectKey);
+        post.setImageWidth(metadata.width());
+        post.setImageHeight(metadata.height());
+        post.setImagePlaceholder(metadata.placeholder());
+    }
+
+    private void deleteImage(String objectKey) {
+        storedObjectService.release(objectKey);
+    }
+
+    private String imageKeyPrefix(Post post) {
+        return AppConstants.POST_IMAGES_PATH + post.getId() + "/";
     }
 
     private Post findPostOrThrow(Long id) {
@@ -153,8 +436,29 @@ public class PostService {
                 post.getTitle(),
                 post.getContent(),
                 ImageUtil.buildFileUrl(post.getImageObjectKey()),
+                imageRenditionService.urlsFor(post.getImageObjectKey()),
+                post.getImageWidth(),
+                post.getImageHeight(),
+                post.getImagePlaceholder(),
                 post.getCreatedAt(),
                 post.getUpdatedAt()
         );
     }
+
+    private PostSummaryDTO toSummaryDTO(PostSummary post) {
+        return new PostSummaryDTO(
+                post.id(),
+                post.authorId(),
+                post.authorUsername(),
+                post.title(),
+                StringUtil.excerpt(post.contentPrefix(), AppConstants.POST_EXCERPT_LENGTH),
+                ImageUtil.buildFileUrl(post.imageObjectKey()),
+                imageRenditionService.urlsFor(post.imageObjectKey()),
+                post.imageWidth(),
+                post.imageHeight(),
+                post.imagePlaceholder(),
+                post.createdAt(),
+                post.updatedAt()
+        );
+    }
 }
@@ -0,0 +1,129 @@
+package at.technikum.springrestbackend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.MinioClient;
+import io.minio.http.Method;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Signs short-lived GET URLs for object key prefixes that are configured to
+ * be delivered by MinIO directly ({@code files.presign.prefixes}). Signed URLs
+ * are reused until {@code files.presign.renew-before-seconds} before they
+ * expire, so each object is signed about once per window. PUT URLs for
+ * direct uploads are signed per request and never cached.
+ */
+@Service
+public class PresignedUrlService {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(PresignedUrlService.class);
+
+    public record PresignedUrl(String url, Instant expiresAt) {
+    }
+
+    private final MinioClient presigner;
+    private final String bucket;
+    private final List<String> prefixes;
+    private final Duration expiry;
+    private final Cache<String, PresignedUrl> urls;
+
+    @Autowired
+    public PresignedUrlService(
+            @Value("${minio.public-url:${minio.url}}") String publicUrl,
+            @Value("${minio.region:us-east-1}") String region,
+            @Value("${minio.access-key}") String accessKey,
+            @Value("${minio.secret-key}") String secretKey,
+            @Value("${minio.bucket}") String bucket,
+            @Value("${files.presign.prefixes:}") List<String> prefixes,
+            @Value("${files.presign.expiry-seconds:600}") long expirySeconds,
+            @Value("${files.presign.renew-before-seconds:60}") long renewBeforeSeconds) {
+        // signs against the host clients use; the fixed region avoids a
+        // bucket-location lookup, signing itself needs no network access
+        this(MinioClient.builder()
+                        .endpoint(publicUrl)
+                        .region(region)
+                        .credentials(accessKey, secretKey)
+                        .build(),
+                bucket, prefixes,
+                Duration.ofSeconds(expirySeconds), Duration.ofSeconds(renewBeforeSeconds));
+    }
+
+    PresignedUrlService(MinioClient presigner, String bucket, List<String> prefixes,
+                        Duration expiry, Duration renewBefore) {
+        this.presigner = presigner;
+        this.bucket = bucket;
+        this.prefixes = prefixes.stream()
+                .map(String::trim)
+                .filter(prefix -> !prefix.isEmpty())
+                .toList();
+        this.expiry = expiry;
+        this.urls = Caffeine.newBuilder()
+                .expireAfterWrite(expiry.minus(renewBefore))
+                .maximumSize(10_000)
+                .build();
+    }
+
+    public boolean isEnabledFor(String objectKey) {
+        return prefixes.stream().anyMatch(objectKey::startsWith);
+    }
+
+    /**
+     * Returns a presigned GET URL for the object, or {@code null} if its
+     * prefix is not configured for redirects or signing failed.
+     */
+    public PresignedUrl urlFor(String objectKey) {
+        if (!isEnabledFor(objectKey)) {
+            return null;
+        }
+        return urls.get(objectKey, this::sign);
+    }
+
+    /**
+     * Returns a presigned PUT URL that lets a client upload the object
+     * straight to MinIO until the URL expires.
+     */
+    public PresignedUrl uploadUrlFor(String objectKey) {
+        try {
+            return sign(objectKey, Method.PUT);
+        } catch (Exception e) {
+            LOG.error("Failed to presign upload {}: {}", objectKey, e.getMessage(), e);
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to prepare upload");
+        }
+    }
+
+    private PresignedUrl sign(String objectKey) {
+        try {
+            return sign(objectKey, Method.GET);
+        } catch (Exception e) {
+            // fall back to proxying through FileController
+            LOG.warn("Failed to presign {}: {}", objectKey, e.getMessage());
+            return null;
+        }
+    }
+
+    private PresignedUrl sign(String objectKey, Method method) throws Exception {
+        Instant expiresAt = Instant.now().plus(expiry);
+        String url = presigner.getPresignedObjectUrl(
+                GetPresignedObjectUrlArgs.builder()
+                        .method(method)
+                        .bucket(bucket)
+                        .object(objectKey)
+                        .expiry((int) expiry.toSeconds())
+                        .build());
+        return new PresignedUrl(url, expiresAt);
+    }
+}
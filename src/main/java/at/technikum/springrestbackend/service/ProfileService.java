@@ -4,6 +4,9 @@ import at.technikum.springrestbackend.constant.AppConstants;
 import at.technikum.springrestbackend.dto.ProfileDTO;
 import at.technikum.springrestbackend.dto.ProfileUpdateDTO;
 import at.technikum.springrestbackend.dto.PublicProfileDTO;
+import at.technikum.springrestbackend.dto.UploadRequestDTO;
+import at.technikum.springrestbackend.dto.UploadTicketDTO;
+import at.technikum.springrestbackend.entity.Post;
 import at.technikum.springrestbackend.entity.Profile;
 import at.technikum.springrestbackend.entity.Role;
 import at.technikum.springrestbackend.repository.PostRepository;
@@ -12,13 +15,16 @@ import at.technikum.springrestbackend.util.ImageUtil;
 import at.technikum.springrestbackend.util.SecurityUtil;
 import at.technikum.springrestbackend.util.StringUtil;
 import jakarta.persistence.EntityNotFoundException;
+import java.io.InputStream;
 import java.util.List;
-import java.util.UUID;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -27,14 +33,35 @@ public class ProfileService {
 
     private final ProfileRepository profileRepository;
     private final PostRepository postRepository;
-    private final MinioService minioService;
+    private final StoredObjectService storedObjectService;
+    private final DirectUploadService directUploadService;
+    private final ImageRenditionService imageRenditionService;
+    private final StreamingUploadService streamingUploadService;
+    private final TransactionTemplate transactionTemplate;
+    private final ImageMetadataService imageMetadataService;
+    private final PostSearchIndex postSearchIndex;
+    private final CountService countService;
 
     public ProfileService(ProfileRepository profileRepository,
                           PostRepository postRepository,
-                          MinioService minioService) {
+                          StoredObjectService storedObjectService,
+                          DirectUploadService directUploadService,
+                          ImageRenditionService imageRenditionService,
+                          StreamingUploadService streamingUploadService,
+                          TransactionTemplate transactionTemplate,
+                          ImageMetadataService imageMetadataService,
+                          PostSearchIndex postSearchIndex,
+                          CountService countService) {
         this.profileRepository = profileRepository;
         this.postRepository = postRepository;
-        this.minioService = minioService;
+        this.storedObjectService = storedObjectService;
+        this.directUploadService = directUploadService;
+        this.imageRenditionService = imageRenditionService;
+        this.streamingUploadService = streamingUploadService;
+        this.transactionTemplate = transactionTemplate;
+        this.imageMetadataService = imageMetadataService;
+        this.postSearchIndex = postSearchIndex;
+        this.countService = countService;
     }
 
     public List<PublicProfileDTO> getAllProfilesPublic() {
@@ -61,6 +88,41 @@ public class ProfileService {
         return toDTO(uploadAvatarForProfile(me, file));
     }
 
+    /**
+     * Streams a multipart body straight to storage; only the final swap of
+     * the avatar key runs in a transaction.
+     */
+    public ProfileDTO uploadAvatarStream(String contentType, InputStream body) {
+        Profile me = SecurityUtil.currentProfileOrThrow();
+        return toDTO(swapAvatar(me, streamingUploadService.stage(contentType, body)));
+    }
+
+    public UploadTicketDTO requestAvatarUpload(UploadRequestDTO dto) {
+        Profile me = SecurityUtil.currentProfileOrThrow();
+        return directUploadService.issue(avatarKeyPrefix(me), dto);
+    }
+
+    /**
+     * Verifies and describes the uploaded object before the transaction
+     * starts; only the swap of the avatar key holds a connection.
+     */
+    public ProfileDTO completeAvatarUpload(String objectKey) {
+        Profile me = SecurityUtil.currentProfileOrThrow();
+        directUploadService.verify(avatarKeyPrefix(me), objectKey);
+        imageRenditionService.scheduleFor(objectKey);
+        ImageMetadataService.ImageMetadata metadata = imageMetadataService.describe(objectKey);
+
+        return toDTO(transactionTemplate.execute(status -> {
+            String previousKey = me.getAvatarObjectKey();
+            setAvatar(me, objectKey, metadata);
+            Profile saved = profileRepository.save(me);
+            if (!objectKey.equals(previousKey)) {
+                deleteObjectIfPresent(previousKey);
+            }
+            return saved;
+        }));
+    }
+
     @Transactional
     public void deleteMyProfile() {
         Profile me = SecurityUtil.currentProfileOrThrow();
@@ -68,7 +130,9 @@ public class ProfileService {
     }
 
     public Page<ProfileDTO> getAllProfilesForAdmin(Pageable pageable) {
-        return profileRepository.findAll(pageable).map(this::toDTO);
+        Slice<Profile> slice = profileRepository.findSliceBy(pageable);
+        return new PageImpl<>(slice.getContent(), pageable, countService.profiles())
+                .map(this::toDTO);
     }
 
     public ProfileDTO getProfileForAdmin(Long id) {
@@ -178,31 +242,53 @@ public class ProfileService {
     private Profile uploadAvatarForProfile(Profile profile, MultipartFile file) {
         ImageUtil.validateImageFile(file);
 
-        deleteObjectIfPresent(profile.getAvatarObjectKey());
+        return swapAvatar(profile, storedObjectService.stage(file));
+    }
 
-        String objectKey = AppConstants.AVATARS_PATH
-                + profile.getId()
-                + "/"
-                + UUID.randomUUID()
-                + ImageUtil.getExtension(file.getContentType());
+    /**
+     * Staging and describing take storage I/O and run before, only the swap
+     * of the avatar key runs in a transaction.
+     */
+    private Profile swapAvatar(Profile profile, StoredObjectService.StagedObject staged) {
+        return storedObjectService.storeStaged(AppConstants.AVATARS_PATH, staged,
+                objectKey -> replaceAvatar(profile, objectKey, staged.metadata()));
+    }
 
-        minioService.upload(objectKey, file);
+    private Profile replaceAvatar(Profile profile, String objectKey,
+                                  ImageMetadataService.ImageMetadata metadata) {
+        String previousKey = profile.getAvatarObjectKey();
+        setAvatar(profile, objectKey, metadata);
+        Profile saved = profileRepository.save(profile);
+        deleteObjectIfPresent(previousKey);
+        return saved;
+    }
 
+    private static void setAvatar(Profile profile, String objectKey,
+                                  ImageMetadataService.ImageMetadata metadata) {
         profile.setAvatarObjectKey(objectKey);
-        return profileRepository.save(profile);
+        profile.setAvatarWidth(metadata.width());
+        profile.setAvatarHeight(metadata.height());
+        profile.setAvatarPlaceholder(metadata.placeholder());
+    }
+
+    private String avatarKeyPrefix(Profile profile) {
+        return AppConstants.AVATARS_PATH + profile.getId() + "/";
     }
 
     private void deleteProfileCompletely(Profile profile) {
-        postRepository.findByAuthorId(profile.getId())
-                .forEach(post -> deleteObjectIfPresent(post.getImageObjectKey()));
+        List<Post> posts = postRepository.findByAuthorId(profile.getId());
+        posts.forEach(post -> deleteObjectIfPresent(post.getImageObjectKey()));
 
         postRepository.deleteByAuthorId(profile.getId());
+        postSearchIndex.remove(posts.stream().map(Post::getId).toList());
         deleteObjectIfPresent(profile.getAvatarObjectKey());
         profileRepository.delete(profile);
+        countService.postsChanged(-posts.size());
+        countService.profilesChanged(-1);
     }
 
     private void deleteObjectIfPresent(String objectKey) {
-        StringUtil.getNonBlank(objectKey).ifPresent(minioService::delete);
+        StringUtil.getNonBlank(objectKey).ifPresent(storedObjectService::release);
     }
 
     private PublicProfileDTO toPublicDTO(Profile profile) {
@@ -220,6 +306,10 @@ public class ProfileService {
                 profile.getCountry(),
                 profile.getGender(),
                 avatarUrl,
+                imageRenditionService.urlsFor(profile.getAvatarObjectKey()),
+                profile.getAvatarWidth(),
+                profile.getAvatarHeight(),
+                profile.getAvatarPlaceholder(),
                 profile.getCreatedAt()
         );
     }
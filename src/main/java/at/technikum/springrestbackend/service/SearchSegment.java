@@ -0,0 +1,70 @@
+package at.technikum.springrestbackend.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One part of the post search index: an immutable segment file or the
+ * in-memory buffer of recent changes. Documents are addressed by their
+ * ordinal inside the segment; postings list them in ascending order.
+ * Deleting only marks a document, it stays until the segment is merged.
+ */
+interface SearchSegment {
+
+    /**
+     * A post as the index sees it, with the term frequencies of its title
+     * and content.
+     */
+    record Document(long postId, double length, long createdAt,
+                    Map<String, int[]> frequencies) {
+    }
+
+    /**
+     * The first {@code size} entries are valid.
+     */
+    record Postings(int[] docs, int[] titleFrequencies, int[] contentFrequencies, int size) {
+    }
+
+    /**
+     * Documents including deleted ones.
+     */
+    int docCount();
+
+    int liveDocCount();
+
+    /**
+     * Sum of the lengths of all documents, deleted ones included.
+     */
+    double totalLength();
+
+    /**
+     * Documents containing the term, deleted ones included; 0 if none.
+     */
+    int docFreq(String term);
+
+    Postings postings(String term);
+
+    /**
+     * Up to {@code limit} terms starting with {@code prefix}, in order.
+     */
+    List<String> termsStartingWith(String prefix, int limit);
+
+    boolean isLive(int doc);
+
+    long postId(int doc);
+
+    double length(int doc);
+
+    long createdAt(int doc);
+
+    /**
+     * Ordinal of the live document of the post, or -1.
+     */
+    int findLive(long postId);
+
+    /**
+     * Marks the live document of the post as deleted; returns its
+     * ordinal, or -1 if the segment has none.
+     */
+    int delete(long postId);
+}
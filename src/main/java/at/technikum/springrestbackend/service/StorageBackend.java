@@ -0,0 +1,91 @@
+package at.technikum.springrestbackend.service;
+
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Where object bytes live. {@link MinioService} adds the caches, request
+ * coalescing and hashing on top; implementations only move bytes. Selected
+ * with {@code files.storage.backend} ({@code minio} or {@code filesystem}).
+ * <p>
+ * Failures are reported as {@link org.springframework.web.server.ResponseStatusException}:
+ * 404 for missing objects, 500 for everything else.
+ */
+public interface StorageBackend {
+
+    /**
+     * Stores the stream under the key, replacing any previous object. A
+     * negative {@code size} means the length is not known in advance.
+     */
+    void put(String objectKey, InputStream stream, long size, String contentType);
+
+    void copy(String sourceKey, String targetKey);
+
+    /**
+     * Opens the object, or {@code length} bytes of it starting at
+     * {@code offset} when both are given.
+     */
+    MinioService.StreamedFile get(String objectKey, Long offset, Long length);
+
+    MinioService.ObjectMetadata stat(String objectKey);
+
+    /**
+     * {@link #get} without holding the caller's thread while the storage
+     * answers. The default runs {@link #get} on the calling thread, which is
+     * fine for backends that do not wait on the network.
+     */
+    default CompletableFuture<MinioService.StreamedFile> getAsync(
+            String objectKey, Long offset, Long length) {
+        try {
+            return CompletableFuture.completedFuture(get(objectKey, offset, length));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * {@link #stat} without holding the caller's thread, see {@link #getAsync}.
+     */
+    default CompletableFuture<MinioService.ObjectMetadata> statAsync(String objectKey) {
+        try {
+            return CompletableFuture.completedFuture(stat(objectKey));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Removes the object; failures are logged, not thrown.
+     */
+    void delete(String objectKey);
+
+    /**
+     * Removes the objects and returns the keys that could not be removed.
+     * Keys that do not exist count as removed.
+     */
+    Set<String> deleteAll(Collection<String> objectKeys);
+
+    /**
+     * Lists the objects under {@code prefix}; the stream must be closed.
+     */
+    Stream<MinioService.ObjectSummary> list(String prefix);
+
+    /**
+     * Whether objects are already on a local disk, which makes the disk
+     * cache tier pointless.
+     */
+    default boolean isLocal() {
+        return false;
+    }
+
+    /**
+     * Whether clients can be sent presigned URLs for reading and writing
+     * objects directly.
+     */
+    default boolean supportsPresignedUrls() {
+        return false;
+    }
+}
@@ -0,0 +1,297 @@
+package at.technikum.springrestbackend.service;
+
+import at.technikum.springrestbackend.exception.StorageUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Isolates request threads from a slow or failing object storage.
+ * <p>
+ * A bulkhead lets at most {@code files.storage.guard.max-concurrent} blocking
+ * calls wait on the storage at a time; further ones wait up to
+ * {@code max-wait-ms} for a slot. Asynchronous calls hold no thread and have
+ * their own bulkhead of {@code files.async.max-requests}, the number of
+ * requests the async storage client runs at once; they never wait. A circuit
+ * breaker records the outcome of the last {@code window-size} calls and
+ * opens when at least {@code failure-rate-threshold} percent of them failed.
+ * While open, calls fail at once with 503 and {@code Retry-After}; after
+ * {@code open-seconds} a few trial calls decide whether it closes again.
+ * <p>
+ * Only server-side failures count: a 404 or 400 means the storage answered.
+ * How long a call may take is bounded by the storage client's timeouts
+ * ({@code minio.*-timeout-ms}).
+ */
+@Component
+public class StorageGuard implements HealthIndicator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StorageGuard.class);
+
+    enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final Semaphore bulkhead;
+    private final Semaphore asyncBulkhead;
+    private final int maxConcurrent;
+    private final long maxWaitMillis;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    // outcomes of the last calls while closed, true for a failure
+    private final boolean[] window;
+    private int windowCount;
+    private int windowFailures;
+    private int windowNext;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int trialsStarted;
+    private int trialsSucceeded;
+
+    private final Counter succeeded;
+    private final Counter failed;
+    private final Counter rejected;
+    private final Counter shortCircuited;
+
+    public StorageGuard(
+            @Value("${files.storage.guard.max-concurrent:64}") int maxConcurrent,
+            @Value("${files.async.max-requests:256}") int maxAsyncConcurrent,
+            @Value("${files.storage.guard.max-wait-ms:200}") long maxWaitMillis,
+            @Value("${files.storage.guard.window-size:50}") int windowSize,
+            @Value("${files.storage.guard.minimum-calls:20}") int minimumCalls,
+            @Value("${files.storage.guard.failure-rate-threshold:50}") int failureRateThreshold,
+            @Value("${files.storage.guard.open-seconds:30}") long openSeconds,
+            @Value("${files.storage.guard.half-open-calls:5}") int halfOpenCalls,
+            MeterRegistry meterRegistry) {
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.asyncBulkhead = new Semaphore(maxAsyncConcurrent);
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaitMillis = maxWaitMillis;
+        this.window = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = Duration.ofSeconds(openSeconds).toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.succeeded = counter(meterRegistry, "success");
+        this.failed = counter(meterRegistry, "failure");
+        this.rejected = counter(meterRegistry, "rejected");
+        this.shortCircuited = counter(meterRegistry, "short_circuited");
+        Gauge.builder("files.storage.circuit.state", this, guard -> guard.state().ordinal())
+                .description("Storage circuit breaker: 0 closed, 1 half-open, 2 open")
+                .register(meterRegistry);
+        Gauge.builder("files.storage.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .description("Blocking storage calls that may still start right now")
+                .register(meterRegistry);
+        Gauge.builder("files.storage.bulkhead.async.available", asyncBulkhead,
+                        Semaphore::availablePermits)
+                .description("Asynchronous storage calls that may still start right now")
+                .register(meterRegistry);
+    }
+
+    public void run(Runnable operation) {
+        call(() -> {
+            operation.run();
+            return null;
+        }, () -> false);
+    }
+
+    public <T> T call(Supplier<T> operation) {
+        return call(operation, () -> false);
+    }
+
+    /**
+     * Runs a blocking storage call. {@code callerFault} is asked after a
+     * failure whether the caller caused it, e.g. an upload whose request
+     * body broke off; such failures do not count against the storage.
+     */
+    public <T> T call(Supplier<T> operation, BooleanSupplier callerFault) {
+        acquire(bulkhead, maxWaitMillis);
+        try {
+            T result = operation.get();
+            recordOutcome(false);
+            return result;
+        } catch (RuntimeException e) {
+            recordOutcome(isStorageFailure(e) && !callerFault.getAsBoolean());
+            throw e;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    /**
+     * Starts an asynchronous storage call without blocking for a slot of the
+     * async bulkhead; the slot is held until the returned future completes.
+     */
+    public <T> CompletableFuture<T> callAsync(Supplier<CompletableFuture<T>> operation) {
+        try {
+            acquire(asyncBulkhead, 0);
+        } catch (StorageUnavailableException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<T> future;
+        try {
+            future = operation.get();
+        } catch (RuntimeException e) {
+            asyncBulkhead.release();
+            recordOutcome(isStorageFailure(e));
+            return CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((result, error) -> {
+            asyncBulkhead.release();
+            recordOutcome(error != null && isStorageFailure(error));
+        });
+    }
+
+    private void acquire(Semaphore slots, long waitMillis) {
+        boolean acquired;
+        try {
+            acquired = waitMillis > 0
+                    ? slots.tryAcquire(waitMillis, TimeUnit.MILLISECONDS)
+                    : slots.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.increment();
+            throw new StorageUnavailableException("Storage is busy", 1);
+        }
+        long retryAfter = tryPermit();
+        if (retryAfter > 0) {
+            slots.release();
+            shortCircuited.increment();
+            throw new StorageUnavailableException("Storage is unavailable", retryAfter);
+        }
+    }
+
+    /**
+     * Returns 0 if the call may go ahead, otherwise the seconds until the
+     * circuit lets calls through again.
+     */
+    private synchronized long tryPermit() {
+        if (state == State.OPEN) {
+            long remaining = openNanos - (System.nanoTime() - openedAt);
+            if (remaining > 0) {
+                return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining + 999_999_999));
+            }
+            state = State.HALF_OPEN;
+            trialsStarted = 0;
+            trialsSucceeded = 0;
+            LOG.info("Storage circuit half-open, letting {} trial calls through", halfOpenCalls);
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsStarted >= halfOpenCalls) {
+                return 1;
+            }
+            trialsStarted++;
+        }
+        return 0;
+    }
+
+    private synchronized void recordOutcome(boolean failure) {
+        (failure ? failed : succeeded).increment();
+        switch (state) {
+            case HALF_OPEN -> {
+                if (failure) {
+                    open();
+                } else if (++trialsSucceeded >= halfOpenCalls) {
+                    close();
+                }
+            }
+            case CLOSED -> {
+                if (windowCount == window.length) {
+                    windowFailures -= window[windowNext] ? 1 : 0;
+                } else {
+                    windowCount++;
+                }
+                window[windowNext] = failure;
+                windowFailures += failure ? 1 : 0;
+                windowNext = (windowNext + 1) % window.length;
+                if (windowCount >= minimumCalls
+                        && windowFailures * 100 >= failureRateThreshold * windowCount) {
+                    open();
+                }
+            }
+            case OPEN -> {
+                // a call that started before the circuit opened
+            }
+        }
+    }
+
+    private void open() {
+        LOG.warn("Storage circuit open: {} of the last {} calls failed",
+                windowFailures, windowCount);
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+    }
+
+    private void close() {
+        LOG.info("Storage circuit closed");
+        state = State.CLOSED;
+        windowCount = 0;
+        windowFailures = 0;
+        windowNext = 0;
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    /**
+     * Reports UNKNOWN rather than DOWN while the circuit is not closed: the
+     * application still serves everything that does not need the storage.
+     */
+    @Override
+    public Health health() {
+        State current;
+        int calls;
+        int failures;
+        synchronized (this) {
+            current = state;
+            calls = windowCount;
+            failures = windowFailures;
+        }
+        Health.Builder health = current == State.CLOSED ? Health.up() : Health.unknown();
+        return health
+                .withDetail("circuit", current.name())
+                .withDetail("bufferedCalls", calls)
+                .withDetail("failedCalls", failures)
+                .withDetail("availableSlots", bulkhead.availablePermits())
+                .withDetail("availableAsyncSlots", asyncBulkhead.availablePermits())
+                .withDetail("maxConcurrent", maxConcurrent)
+                .build();
+    }
+
+    private static boolean isStorageFailure(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause()
+                : error;
+        return !(cause instanceof ResponseStatusException status)
+                || status.getStatusCode().is5xxServerError();
+    }
+
+    private static Counter counter(MeterRegistry registry, String result) {
+        return Counter.builder("files.storage.calls")
+                .description("Object storage calls by outcome")
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,174 @@
+package at.technikum.springrestbackend.service;
+
+import at.technikum.springrestbackend.constant.AppConstants;
+import at.technikum.springrestbackend.entity.StoredObject;
+import at.technikum.springrestbackend.repository.StoredObjectRepository;
+import at.technikum.springrestbackend.util.ImageUtil;
+import at.technikum.springrestbackend.util.StringUtil;
+import at.technikum.springrestbackend.util.TransactionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Content-addressed image storage. Uploads are stored once under
+ * {@code <prefix><sha256><ext>} and reference-counted, so posts and profiles
+ * with the same image share one object and one cache entry. Keys from before
+ * content addressing, and direct uploads, have no count and are deleted as
+ * soon as they are released.
+ */
+@Service
+public class StoredObjectService {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(StoredObjectService.class);
+
+    private final StoredObjectRepository storedObjectRepository;
+    private final MinioService minioService;
+    private final ObjectDeletionService objectDeletionService;
+    private final ImageRenditionService imageRenditionService;
+    private final ImageOptimizationService imageOptimizationService;
+    private final ImageMetadataService imageMetadataService;
+    private final TransactionTemplate transactionTemplate;
+
+    public StoredObjectService(StoredObjectRepository storedObjectRepository,
+                               MinioService minioService,
+                               ObjectDeletionService objectDeletionService,
+                               ImageRenditionService imageRenditionService,
+                               ImageOptimizationService imageOptimizationService,
+                               ImageMetadataService imageMetadataService,
+                               TransactionTemplate transactionTemplate) {
+        this.storedObjectRepository = storedObjectRepository;
+        this.minioService = minioService;
+        this.objectDeletionService = objectDeletionService;
+        this.imageRenditionService = imageRenditionService;
+        this.imageOptimizationService = imageOptimizationService;
+        this.imageMetadataService = imageMetadataService;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /** An upload in its staging object, hashed and described but not yet referenced. */
+    public record StagedObject(String stagingKey, String hash, String contentType,
+                               ImageMetadataService.ImageMetadata metadata) {
+    }
+
+    /**
+     * Uploads the file to a staging key, hashing it on the way, and
+     * describes it from its bytes in memory. If optimization is enabled, the
+     * optimized image is what gets staged. Meant to run outside a
+     * transaction; {@link #storeStaged} then takes the reference.
+     */
+    public StagedObject stage(MultipartFile file) {
+        String stagingKey = newStagingKey();
+        Optional<ImageOptimizationService.OptimizedImage> optimized =
+                imageOptimizationService.optimize(file);
+        String hash = optimized
+                .map(image -> minioService.uploadHashed(
+                        stagingKey, image.bytes(), image.contentType()))
+                .orElseGet(() -> minioService.uploadHashed(stagingKey, file));
+        ImageMetadataService.ImageMetadata metadata = optimized
+                .map(image -> imageMetadataService.describe(image.bytes()))
+                .orElseGet(() -> imageMetadataService.describe(file));
+        return new StagedObject(stagingKey, hash, file.getContentType(), metadata);
+    }
+
+    /**
+     * Streams content of unknown length to a staging key and describes it
+     * from a ranged read of its start. Meant to run outside a transaction;
+     * {@link #storeStaged} then takes the reference.
+     */
+    public StagedObject stage(String contentType, InputStream content) {
+        String stagingKey = newStagingKey();
+        String hash = minioService.uploadHashed(stagingKey, content, contentType);
+        return new StagedObject(stagingKey, hash, contentType,
+                imageMetadataService.describe(stagingKey));
+    }
+
+    /**
+     * Takes one reference to the staged content. New content is copied to
+     * its content key inside the storage, known content only gains a
+     * reference.
+     * <p>
+     * The copy stays under the row lock on purpose: a queued deletion of the
+     * same content key takes that lock before deleting the object and its
+     * count, so a copy made before it could be deleted again while the new
+     * count is inserted. It is a server-side copy, run only for content the
+     * storage does not hold yet.
+     */
+    @Transactional
+    public String storeStaged(String keyPrefix, StagedObject staged) {
+        String objectKey = keyPrefix + staged.hash()
+                + ImageUtil.getExtension(staged.contentType());
+
+        // the row lock orders this against a concurrent release or outbox delete
+        Optional<StoredObject> existing = storedObjectRepository.findForUpdate(objectKey);
+        if (existing.isPresent()) {
+            StoredObject stored = existing.get();
+            stored.setRefCount(stored.getRefCount() + 1);
+        } else {
+            minioService.copy(staged.stagingKey(), objectKey);
+            // a concurrent first upload of the same content fails here
+            storedObjectRepository.saveAndFlush(new StoredObject(objectKey, 1));
+            // the swap may still roll the count back
+            TransactionUtil.afterCommit(() -> imageRenditionService.scheduleFor(objectKey));
+        }
+        objectDeletionService.enqueue(List.of(staged.stagingKey()));
+        return objectKey;
+    }
+
+    /**
+     * Takes a reference to the staged content and hands its key to the swap,
+     * both in one new transaction. When a concurrent first upload of the same
+     * content inserted its count first, the unique key rolls this transaction
+     * back; the retry finds that row and only increments it.
+     */
+    public <T> T storeStaged(String keyPrefix, StagedObject staged, Function<String, T> swap) {
+        try {
+            return transactionTemplate.execute(
+                    status -> swap.apply(storeStaged(keyPrefix, staged)));
+        } catch (DataIntegrityViolationException e) {
+            LOG.debug("Content {} was stored concurrently, retrying", staged.hash());
+            return transactionTemplate.execute(
+                    status -> swap.apply(storeStaged(keyPrefix, staged)));
+        }
+    }
+
+    /**
+     * Drops one reference. The object and its renditions are queued for
+     * deletion once nothing references them any more.
+     */
+    @Transactional
+    public void release(String objectKey) {
+        if (StringUtil.getNonBlank(objectKey).isEmpty()) {
+            return;
+        }
+        Optional<StoredObject> existing = storedObjectRepository.findForUpdate(objectKey);
+        if (existing.isPresent()) {
+            StoredObject stored = existing.get();
+            stored.setRefCount(Math.max(0, stored.getRefCount() - 1));
+            if (stored.getRefCount() > 0) {
+                return;
+            }
+        }
+
+        List<String> objectKeys = new ArrayList<>();
+        objectKeys.add(objectKey);
+        objectKeys.addAll(imageRenditionService.renditionKeys(objectKey));
+        objectDeletionService.enqueue(objectKeys);
+    }
+
+    private static String newStagingKey() {
+        return AppConstants.UPLOAD_STAGING_PATH + UUID.randomUUID();
+    }
+}
@@ -0,0 +1,144 @@
+package at.technikum.springrestbackend.service;
+
+import at.technikum.springrestbackend.util.ImageUtil;
+import at.technikum.springrestbackend.util.MultipartStreamReader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+/**
+ * Single-pass image uploads. The multipart body is parsed while it arrives,
+ * the image type is taken from the file's magic bytes and the size limit is
+ * enforced while reading, so the bytes go to MinIO without a temp file.
+ */
+@Service
+public class StreamingUploadService {
+
+    static final String FILE_PART = "file";
+    private static final long MAX_OVERHEAD_BYTES = 64 * 1024;
+
+    private final StoredObjectService storedObjectService;
+    private final long maxBytes;
+
+    public StreamingUploadService(
+            StoredObjectService storedObjectService,
+            @Value("${files.upload.max-bytes:10485760}") long maxBytes) {
+        this.storedObjectService = storedObjectService;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Stages the {@code file} part of a multipart/form-data body. Runs
+     * outside a transaction, since it takes as long as the client needs.
+     */
+    public StoredObjectService.StagedObject stage(String contentType, InputStream body) {
+        String boundary = MultipartStreamReader.boundaryOf(contentType)
+                .orElseThrow(() -> new ResponseStatusException(
+                        HttpStatus.BAD_REQUEST, "Multipart body required"));
+        // other parts are skipped, but not at any length
+        LimitedInputStream request = new LimitedInputStream(body, maxBytes + MAX_OVERHEAD_BYTES);
+        try {
+            InputStream file = openFilePart(new MultipartStreamReader(request, boundary));
+            byte[] signature = file.readNBytes(ImageUtil.SIGNATURE_LENGTH);
+            String imageType = imageTypeOf(signature);
+            return upload(imageType,
+                    new SequenceInputStream(new ByteArrayInputStream(signature), file), request);
+        } catch (IOException e) {
+            throw request.exceeded ? tooLarge() : malformed();
+        }
+    }
+
+    private static String imageTypeOf(byte[] signature) {
+        if (signature.length == 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "File is required");
+        }
+        return ImageUtil.detectImageType(signature)
+                .orElseThrow(() -> new ResponseStatusException(
+                        HttpStatus.BAD_REQUEST, "Only PNG, JPEG, WEBP images are allowed"));
+    }
+
+    private StoredObjectService.StagedObject upload(String imageType, InputStream file,
+                                                    LimitedInputStream request) {
+        LimitedInputStream content = new LimitedInputStream(file, maxBytes);
+        try {
+            return storedObjectService.stage(imageType, content);
+        } catch (ResponseStatusException e) {
+            // MinIO reports any read failure as a failed upload; name the real cause
+            if (content.exceeded || request.exceeded) {
+                throw tooLarge();
+            }
+            if (content.readFailed) {
+                throw malformed();
+            }
+            throw e;
+        }
+    }
+
+    private ResponseStatusException tooLarge() {
+        return new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                "File must not exceed " + maxBytes + " bytes");
+    }
+
+    private static ResponseStatusException malformed() {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed multipart body");
+    }
+
+    private static InputStream openFilePart(MultipartStreamReader reader) throws IOException {
+        MultipartStreamReader.Part part;
+        while ((part = reader.nextPart()) != null) {
+            if (FILE_PART.equals(part.name())) {
+                return part.content();
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "File is required");
+    }
+
+    /**
+     * Fails the read once more than {@code maxBytes} came through, and
+     * remembers why reading stopped.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private final long maxBytes;
+        private long count;
+        private boolean exceeded;
+        private boolean readFailed;
+
+        private LimitedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read;
+            try {
+                read = super.read(b, off, len);
+            } catch (IOException e) {
+                readFailed = true;
+                throw e;
+            }
+            if (read > 0) {
+                count += read;
+                if (count > maxBytes) {
+                    exceeded = true;
+                    throw new IOException("Upload exceeds " + maxBytes + " bytes");
+                }
+            }
+            return read;
+        }
+    }
+}
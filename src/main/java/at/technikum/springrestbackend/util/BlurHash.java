@@ -0,0 +1,121 @@
+package at.technikum.springrestbackend.util;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * BlurHash encoder (https://blurha.sh). Turns an image into a short string
+ * of DCT components that clients decode into a blurred placeholder while the
+ * real image loads. Feed it a small image; every pixel is visited once per
+ * component.
+ */
+public final class BlurHash {
+
+    private static final String CHARACTERS =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~";
+
+    private static final double[] SRGB_TO_LINEAR = new double[256];
+
+    static {
+        for (int value = 0; value < 256; value++) {
+            double v = value / 255.0;
+            SRGB_TO_LINEAR[value] = v <= 0.04045 ? v / 12.92 : Math.pow((v + 0.055) / 1.055, 2.4);
+        }
+    }
+
+    private BlurHash() {
+    }
+
+    public static String encode(BufferedImage image, int componentsX, int componentsY) {
+        if (componentsX < 1 || componentsX > 9 || componentsY < 1 || componentsY > 9) {
+            throw new IllegalArgumentException("BlurHash needs 1 to 9 components per axis");
+        }
+        double[][] factors = factors(image, componentsX, componentsY);
+
+        StringBuilder hash = new StringBuilder();
+        encode83(hash, (componentsX - 1) + (componentsY - 1) * 9, 1);
+        int quantisedMax = quantisedMaximum(factors);
+        double maximumValue = factors.length > 1 ? (quantisedMax + 1) / 166.0 : 1;
+        encode83(hash, quantisedMax, 1);
+
+        double[] dc = factors[0];
+        encode83(hash, (linearToSrgb(dc[0]) << 16) + (linearToSrgb(dc[1]) << 8)
+                + linearToSrgb(dc[2]), 4);
+        for (int k = 1; k < factors.length; k++) {
+            double[] ac = factors[k];
+            encode83(hash, quantise(ac[0], maximumValue) * 19 * 19
+                    + quantise(ac[1], maximumValue) * 19
+                    + quantise(ac[2], maximumValue), 2);
+        }
+        return hash.toString();
+    }
+
+    private static double[][] factors(BufferedImage image, int componentsX, int componentsY) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+
+        double[][] factors = new double[componentsX * componentsY][];
+        for (int j = 0; j < componentsY; j++) {
+            for (int i = 0; i < componentsX; i++) {
+                factors[j * componentsX + i] = factor(pixels, width, height, i, j);
+            }
+        }
+        return factors;
+    }
+
+    private static int quantisedMaximum(double[][] factors) {
+        // without AC components there is nothing to scale
+        if (factors.length == 1) {
+            return 0;
+        }
+        double actualMax = 0;
+        for (int k = 1; k < factors.length; k++) {
+            for (double value : factors[k]) {
+                actualMax = Math.max(actualMax, Math.abs(value));
+            }
+        }
+        return (int) Math.max(0, Math.min(82, Math.floor(actualMax * 166 - 0.5)));
+    }
+
+    private static double[] factor(int[] pixels, int width, int height, int i, int j) {
+        double r = 0;
+        double g = 0;
+        double b = 0;
+        double normalisation = (i == 0 && j == 0) ? 1 : 2;
+        for (int y = 0; y < height; y++) {
+            double basisY = Math.cos(Math.PI * j * y / height);
+            for (int x = 0; x < width; x++) {
+                double basis = normalisation * Math.cos(Math.PI * i * x / width) * basisY;
+                int rgb = pixels[y * width + x];
+                r += basis * SRGB_TO_LINEAR[(rgb >> 16) & 0xFF];
+                g += basis * SRGB_TO_LINEAR[(rgb >> 8) & 0xFF];
+                b += basis * SRGB_TO_LINEAR[rgb & 0xFF];
+            }
+        }
+        double scale = 1.0 / (width * height);
+        return new double[]{r * scale, g * scale, b * scale};
+    }
+
+    private static int quantise(double value, double maximumValue) {
+        double scaled = Math.copySign(Math.sqrt(Math.abs(value / maximumValue)), value);
+        return (int) Math.max(0, Math.min(18, Math.floor(scaled * 9 + 9.5)));
+    }
+
+    private static int linearToSrgb(double value) {
+        double v = Math.max(0, Math.min(1, value));
+        return v <= 0.0031308
+                ? (int) (v * 12.92 * 255 + 0.5)
+                : (int) ((1.055 * Math.pow(v, 1 / 2.4) - 0.055) * 255 + 0.5);
+    }
+
+    private static void encode83(StringBuilder out, int value, int length) {
+        int divisor = 1;
+        for (int i = 1; i < length; i++) {
+            divisor *= 83;
+        }
+        for (int i = 0; i < length; i++) {
+            out.append(CHARACTERS.charAt((value / divisor) % 83));
+            divisor /= 83;
+        }
+    }
+}
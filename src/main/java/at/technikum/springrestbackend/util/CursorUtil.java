@@ -0,0 +1,36 @@
+package at.technikum.springrestbackend.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Packs the values a page ended at into an opaque, URL-safe cursor.
+ * Clients only hand it back; the format may change at any time.
+ */
+public final class CursorUtil {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private CursorUtil() {
+    }
+
+    public static String encode(List<String> values) {
+        return values.stream()
+                .map(value -> ENCODER.encodeToString(value.getBytes(StandardCharsets.UTF_8)))
+                .collect(Collectors.joining("."));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor was not made by
+     *                                  {@link #encode}
+     */
+    public static List<String> decode(String cursor) {
+        return Arrays.stream(cursor.split("\\.", -1))
+                .map(part -> new String(DECODER.decode(part), StandardCharsets.UTF_8))
+                .toList();
+    }
+}
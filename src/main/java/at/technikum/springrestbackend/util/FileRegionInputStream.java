@@ -0,0 +1,88 @@
+package at.technikum.springrestbackend.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a byte range of a local file. {@link #transferTo(OutputStream)} hands
+ * the range to {@link FileChannel#transferTo}, so the kernel copies the data
+ * instead of a heap buffer.
+ */
+public final class FileRegionInputStream extends InputStream {
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long end;
+    private long position;
+
+    private FileRegionInputStream(Path path, FileChannel channel, long offset, long length) {
+        this.path = path;
+        this.channel = channel;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    public static FileRegionInputStream open(Path path, long offset, long length)
+            throws IOException {
+        return new FileRegionInputStream(
+                path, FileChannel.open(path, StandardOpenOption.READ), offset, length);
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public long position() {
+        return position;
+    }
+
+    public long remaining() {
+        return end - position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (position >= end) {
+            return -1;
+        }
+        int toRead = (int) Math.min(len, end - position);
+        int read = channel.read(ByteBuffer.wrap(b, off, toRead), position);
+        if (read < 0) {
+            return -1;
+        }
+        position += read;
+        return read;
+    }
+
+    @Override
+    public long transferTo(OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        long start = position;
+        while (position < end) {
+            long transferred = channel.transferTo(position, end - position, target);
+            if (transferred <= 0) {
+                break;
+            }
+            position += transferred;
+        }
+        return position - start;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -5,10 +5,34 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Locale;
+import java.util.Optional;
 
 public final class ImageUtil {
 
+    /** Number of leading bytes {@link #detectImageType} needs. */
+    public static final int SIGNATURE_LENGTH = 12;
+
+    private static final byte[] PNG_SIGNATURE = {
+        (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'
+    };
+    private static final byte[] JPEG_SIGNATURE = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] RIFF = "RIFF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] WEBP = "WEBP".getBytes(StandardCharsets.US_ASCII);
+
     private ImageUtil() {
     }
 
@@ -25,6 +49,43 @@ public final class ImageUtil {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
                     "Only PNG, JPEG, WEBP images are allowed");
         }
+        // the claimed type comes from the client, the signature from the file
+        String detected = detectImageType(readSignature(file)).orElse(null);
+        if (!file.getContentType().toLowerCase(Locale.ROOT).equals(detected)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "File content does not match its image type");
+        }
+    }
+
+    /**
+     * Identifies PNG, JPEG and WEBP by the magic bytes at the start of the
+     * file, ignoring whatever type the client claimed.
+     */
+    public static Optional<String> detectImageType(byte[] header) {
+        if (startsWith(header, 0, PNG_SIGNATURE)) {
+            return Optional.of("image/png");
+        }
+        if (startsWith(header, 0, JPEG_SIGNATURE)) {
+            return Optional.of("image/jpeg");
+        }
+        if (startsWith(header, 0, RIFF) && startsWith(header, 8, WEBP)) {
+            return Optional.of("image/webp");
+        }
+        return Optional.empty();
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, byte[] prefix) {
+        return bytes.length >= offset + prefix.length
+                && Arrays.equals(bytes, offset, offset + prefix.length,
+                        prefix, 0, prefix.length);
+    }
+
+    private static byte[] readSignature(MultipartFile file) {
+        try (InputStream in = file.getInputStream()) {
+            return in.readNBytes(SIGNATURE_LENGTH);
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "File could not be read");
+        }
     }
 
     public static String getExtension(String contentType) {
@@ -36,6 +97,65 @@ public final class ImageUtil {
         };
     }
 
+    /**
+     * Decodes the first image in {@code bytes}, or returns {@code null} if no
+     * reader understands it or it has more than {@code maxPixels} pixels.
+     */
+    public static BufferedImage decode(byte[] bytes, long maxPixels) throws IOException {
+        try (ImageInputStream in =
+                     ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > maxPixels) {
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scales {@code source} down to {@code width}, keeping the aspect ratio.
+     */
+    public static BufferedImage scaleToWidth(BufferedImage source, int width, int imageType) {
+        int height = Math.max(1,
+                Math.round((float) source.getHeight() * width / source.getWidth()));
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        // halve in steps: a single bilinear pass from a large image aliases badly
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, imageType);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (currentWidth > width);
+        return current;
+    }
+
+    public static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, format, out)) {
+            throw new IOException("No ImageIO writer for " + format);
+        }
+        return out.toByteArray();
+    }
+
     public static String buildFileUrl(String objectKey) {
         return objectKey != null ? AppConstants.FILE_API_PREFIX + objectKey : null;
     }
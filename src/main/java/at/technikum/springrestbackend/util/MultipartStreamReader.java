@@ -0,0 +1,246 @@
+package at.technikum.springrestbackend.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads a multipart/form-data body part by part while it arrives. Each part's
+ * content is a stream that ends at the next boundary, so a file can be
+ * forwarded without spooling the request to memory or disk first.
+ */
+public final class MultipartStreamReader {
+
+    public record Part(String name, String filename, String contentType, InputStream content) {
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_HEADER_BYTES = 8192;
+    private static final Pattern PARAMETER =
+            Pattern.compile(";\\s*([\\w*-]+)\\s*=\\s*(?:\"([^\"]*)\"|([^;\\s]*))");
+
+    private final InputStream in;
+    private final byte[] delimiter;
+    private final byte[] buffer;
+    private int head;
+    private int tail;
+    private PartInputStream current;
+    private boolean finished;
+
+    public MultipartStreamReader(InputStream in, String boundary) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.buffer = new byte[BUFFER_SIZE + delimiter.length];
+        // the first boundary has no line break in front; start with one so it matches
+        buffer[0] = '\r';
+        buffer[1] = '\n';
+        this.tail = 2;
+        // the preamble before the first boundary is read as a part and skipped
+        this.current = new PartInputStream();
+    }
+
+    public static Optional<String> boundaryOf(String contentType) {
+        if (contentType == null
+                || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/form-data")) {
+            return Optional.empty();
+        }
+        return parameter(contentType, "boundary");
+    }
+
+    /**
+     * Skips whatever is left of the current part and returns the next one,
+     * or {@code null} after the last part.
+     */
+    public Part nextPart() throws IOException {
+        if (finished) {
+            return null;
+        }
+        current.skipToEnd();
+        if (!ensure(2)) {
+            throw malformed();
+        }
+        if (buffer[head] == '-' && buffer[head + 1] == '-') {
+            finished = true;
+            return null;
+        }
+        // rest of the boundary line, normally just CRLF
+        readLine();
+        Headers headers = readHeaders();
+
+        current = new PartInputStream();
+        return new Part(
+                headers.parameter("name"),
+                headers.parameter("filename"),
+                headers.contentType(),
+                current);
+    }
+
+    private record Headers(String disposition, String contentType) {
+
+        String parameter(String name) {
+            return disposition != null ? MultipartStreamReader.parameter(disposition, name)
+                    .orElse(null) : null;
+        }
+    }
+
+    private Headers readHeaders() throws IOException {
+        String disposition = null;
+        String contentType = null;
+        int headerBytes = 0;
+        String line;
+        while (!(line = readLine()).isEmpty()) {
+            headerBytes += line.length() + 2;
+            if (headerBytes > MAX_HEADER_BYTES) {
+                throw malformed();
+            }
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                throw malformed();
+            }
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            if (name.equalsIgnoreCase("Content-Disposition")) {
+                disposition = value;
+            } else if (name.equalsIgnoreCase("Content-Type")) {
+                contentType = value;
+            }
+        }
+        return new Headers(disposition, contentType);
+    }
+
+    private static Optional<String> parameter(String headerValue, String name) {
+        Matcher matcher = PARAMETER.matcher(headerValue);
+        while (matcher.find()) {
+            if (matcher.group(1).equalsIgnoreCase(name)) {
+                return StringUtil.getNonBlank(
+                        matcher.group(2) != null ? matcher.group(2) : matcher.group(3));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private String readLine() throws IOException {
+        while (true) {
+            for (int i = head; i + 1 < tail; i++) {
+                if (buffer[i] == '\r' && buffer[i + 1] == '\n') {
+                    String line = new String(buffer, head, i - head, StandardCharsets.UTF_8);
+                    head = i + 2;
+                    return line;
+                }
+            }
+            if (tail - head >= MAX_HEADER_BYTES || fill() < 0) {
+                throw malformed();
+            }
+        }
+    }
+
+    private boolean ensure(int bytes) throws IOException {
+        while (tail - head < bytes) {
+            if (fill() < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int fill() throws IOException {
+        if (head > 0) {
+            System.arraycopy(buffer, head, buffer, 0, tail - head);
+            tail -= head;
+            head = 0;
+        }
+        int read = in.read(buffer, tail, buffer.length - tail);
+        if (read > 0) {
+            tail += read;
+        }
+        return read;
+    }
+
+    private int indexOfDelimiter() {
+        int last = tail - delimiter.length;
+        outer:
+        for (int i = head; i <= last; i++) {
+            for (int j = 0; j < delimiter.length; j++) {
+                if (buffer[i + j] != delimiter[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static IOException malformed() {
+        return new IOException("Malformed multipart body");
+    }
+
+    /**
+     * Content of one part. Bytes are handed out as soon as they cannot be the
+     * start of the next boundary; a body that ends without one is an error.
+     */
+    private final class PartInputStream extends InputStream {
+
+        private boolean ended;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (ended || current != this) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            int available = awaitContent();
+            if (available < 0) {
+                return -1;
+            }
+            int count = Math.min(len, available);
+            System.arraycopy(buffer, head, b, off, count);
+            head += count;
+            return count;
+        }
+
+        /**
+         * Returns how many buffered bytes are content, reading more as
+         * needed, or -1 once the part ends.
+         */
+        private int awaitContent() throws IOException {
+            while (true) {
+                int match = indexOfDelimiter();
+                if (match == head) {
+                    ended = true;
+                    head += delimiter.length;
+                    return -1;
+                }
+                if (match > head) {
+                    return match - head;
+                }
+                // the tail could still be the beginning of a delimiter
+                int available = tail - head - (delimiter.length - 1);
+                if (available > 0) {
+                    return available;
+                }
+                if (fill() < 0) {
+                    throw malformed();
+                }
+            }
+        }
+
+        private void skipToEnd() throws IOException {
+            byte[] scratch = new byte[BUFFER_SIZE];
+            while (read(scratch, 0, scratch.length) != -1) {
+                // discard
+            }
+        }
+    }
+}
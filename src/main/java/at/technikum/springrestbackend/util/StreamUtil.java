@@ -0,0 +1,49 @@
+package at.technikum.springrestbackend.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+
+public final class StreamUtil {
+
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAX_POOLED_BUFFERS = 256;
+
+    // fixed-size copy buffers shared by all requests, so streaming a file
+    // never allocates memory proportional to its size (LIFO keeps them warm)
+    private static final BlockingDeque<byte[]> BUFFERS =
+            new LinkedBlockingDeque<>(MAX_POOLED_BUFFERS);
+
+    private StreamUtil() {
+    }
+
+    public static long copy(InputStream in, OutputStream out) throws IOException {
+        if (in instanceof FileRegionInputStream region) {
+            return region.transferTo(out);
+        }
+        byte[] buffer = acquireBuffer();
+        try {
+            long total = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                total += read;
+            }
+            return total;
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    static byte[] acquireBuffer() {
+        byte[] buffer = BUFFERS.pollFirst();
+        return buffer != null ? buffer : new byte[BUFFER_SIZE];
+    }
+
+    static void releaseBuffer(byte[] buffer) {
+        BUFFERS.offerFirst(buffer);
+    }
+}
@@ -16,4 +16,26 @@ public final class StringUtil {
     public static boolean isBlank(String value) {
         return value == null || value.trim().isEmpty();
     }
-}
\ No newline at end of file
+
+    /**
+     * {@code text} cut to at most {@code maxLength} characters, at the last
+     * word break if there is one, with "…" appended when something was cut.
+     */
+    public static String excerpt(String text, int maxLength) {
+        if (text == null || text.length() <= maxLength) {
+            return text;
+        }
+        int end = maxLength;
+        if (Character.isHighSurrogate(text.charAt(end - 1))) {
+            end--;
+        }
+        int cut = end;
+        while (cut > 0 && !Character.isWhitespace(text.charAt(cut))) {
+            cut--;
+        }
+        if (cut > 0) {
+            end = cut;
+        }
+        return text.substring(0, end).stripTrailing() + "…";
+    }
+}
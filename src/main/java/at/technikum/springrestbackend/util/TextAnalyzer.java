@@ -0,0 +1,42 @@
+package at.technikum.springrestbackend.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Splits text into search terms: lower case, accents removed, broken at
+ * everything that is not a letter or digit. Documents and queries go through
+ * the same steps, so "Café" finds "cafe".
+ */
+public final class TextAnalyzer {
+
+    public static final int MAX_TERM_LENGTH = 40;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private TextAnalyzer() {
+    }
+
+    public static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return terms;
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFKD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        for (String term : SEPARATORS.split(folded)) {
+            if (!term.isEmpty()) {
+                // longer runs are URLs or noise, their start is enough to find them
+                terms.add(term.length() > MAX_TERM_LENGTH
+                        ? term.substring(0, MAX_TERM_LENGTH)
+                        : term);
+            }
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,127 @@
+package at.technikum.springrestbackend.benchmark;
+
+import at.technikum.springrestbackend.service.DiskObjectCache;
+import at.technikum.springrestbackend.service.HotObjectCache;
+import at.technikum.springrestbackend.service.MinioService;
+import at.technikum.springrestbackend.service.MinioStorageBackend;
+import at.technikum.springrestbackend.service.StorageGuard;
+import at.technikum.springrestbackend.support.FakeObjectStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Serves a burst of uncached files from a slow object store through a small
+ * pool standing in for Tomcat's workers, once with the blocking
+ * MinioService.openStream and once with openStreamAsync, and compares p99
+ * latency and how long the workers were held.
+ * Run with: mvn test -Dbenchmark=true -Dtest=AsyncFileServingBenchmark
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class AsyncFileServingBenchmark {
+
+    private static final String BUCKET = "bench-bucket";
+    private static final Duration STORE_LATENCY = Duration.ofMillis(100);
+    private static final int WORKERS = 16;
+    private static final int REQUESTS = 256;
+
+    private record Result(double p99Millis, double workerMillisPerRequest, int peakBusyWorkers) {
+    }
+
+    @Test
+    void asyncPathFreesWorkersWhileStorageIsSlow() throws Exception {
+        try (FakeObjectStore store = new FakeObjectStore(BUCKET, STORE_LATENCY)) {
+            for (int i = 0; i < REQUESTS; i++) {
+                store.put(key(i), new byte[16 * 1024], "image/png");
+            }
+            // caches off: every request has to wait for the store
+            MinioService service = new MinioService(
+                    new MinioStorageBackend(store.client(), store.asyncClient(), BUCKET),
+                    new HotObjectCache(0, 0, new SimpleMeterRegistry()),
+                    new DiskObjectCache(false, null, 0, 0, new SimpleMeterRegistry()),
+                    new StorageGuard(1024, 1024, 200, 50, 20, 50, 30, 5, new SimpleMeterRegistry()));
+
+            Result blocking = run(false, service);
+            Result async = run(true, service);
+
+            System.out.printf("blocking: p99 %.1f ms, worker time %.2f ms/request, "
+                            + "%d of %d workers busy%n",
+                    blocking.p99Millis(), blocking.workerMillisPerRequest(),
+                    blocking.peakBusyWorkers(), WORKERS);
+            System.out.printf("async:    p99 %.1f ms, worker time %.2f ms/request, "
+                            + "%d of %d workers busy%n",
+                    async.p99Millis(), async.workerMillisPerRequest(),
+                    async.peakBusyWorkers(), WORKERS);
+            assertTrue(async.p99Millis() < blocking.p99Millis());
+            assertTrue(async.workerMillisPerRequest() < blocking.workerMillisPerRequest());
+        }
+    }
+
+    private static Result run(boolean async, MinioService service) throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(WORKERS);
+        long[] latencies = new long[REQUESTS];
+        CountDownLatch done = new CountDownLatch(REQUESTS);
+        AtomicLong workerNanos = new AtomicLong();
+        AtomicInteger busy = new AtomicInteger();
+        AtomicInteger peakBusy = new AtomicInteger();
+        try {
+            for (int i = 0; i < REQUESTS; i++) {
+                int request = i;
+                long submitted = System.nanoTime();
+                workers.execute(() -> {
+                    long start = System.nanoTime();
+                    peakBusy.accumulateAndGet(busy.incrementAndGet(), Math::max);
+                    try {
+                        if (async) {
+                            service.openStreamAsync(key(request)).thenAccept(file -> {
+                                drain(file);
+                                latencies[request] = System.nanoTime() - submitted;
+                                done.countDown();
+                            });
+                        } else {
+                            drain(service.openStream(key(request)));
+                            latencies[request] = System.nanoTime() - submitted;
+                            done.countDown();
+                        }
+                    } finally {
+                        busy.decrementAndGet();
+                        workerNanos.addAndGet(System.nanoTime() - start);
+                    }
+                });
+            }
+            assertTrue(done.await(60, TimeUnit.SECONDS));
+        } finally {
+            workers.shutdownNow();
+        }
+        Arrays.sort(latencies);
+        return new Result(
+                latencies[(int) Math.ceil(REQUESTS * 0.99) - 1] / 1_000_000.0,
+                workerNanos.get() / 1_000_000.0 / REQUESTS,
+                peakBusy.get());
+    }
+
+    private static void drain(MinioService.StreamedFile file) {
+        try (file) {
+            file.stream().readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String key(int request) {
+        return "post-images/" + request + ".png";
+    }
+}
@@ -0,0 +1,89 @@
+package at.technikum.springrestbackend.benchmark;
+
+import at.technikum.springrestbackend.service.DiskObjectCache;
+import at.technikum.springrestbackend.service.HotObjectCache;
+import at.technikum.springrestbackend.service.MinioService;
+import at.technikum.springrestbackend.service.MinioStorageBackend;
+import at.technikum.springrestbackend.service.StorageGuard;
+import at.technikum.springrestbackend.support.FakeObjectStore;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.MinioClient;
+import io.minio.StatObjectArgs;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the old two-request download (GET + HEAD for the content type)
+ * with the single GET used by MinioService.openStream.
+ * Run with: mvn test -Dbenchmark=true -Dtest=ObjectFetchBenchmark
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ObjectFetchBenchmark {
+
+    private static final String BUCKET = "bench-bucket";
+    private static final String KEY = "avatars/1/avatar.png";
+    private static final int WARMUP = 50;
+    private static final int ITERATIONS = 500;
+
+    @Test
+    void singleRoundTripIsFasterThanGetPlusStat() throws Exception {
+        try (FakeObjectStore store = new FakeObjectStore(BUCKET, Duration.ofMillis(2))) {
+            store.put(KEY, new byte[16 * 1024], "image/png");
+            MinioClient client = store.client();
+            MinioService service = new MinioService(
+                    new MinioStorageBackend(client, store.asyncClient(), BUCKET),
+                    new HotObjectCache(0, 0, new SimpleMeterRegistry()),
+                    new DiskObjectCache(false, null, 0, 0, new SimpleMeterRegistry()),
+                    new StorageGuard(1024, 1024, 200, 50, 20, 50, 30, 5, new SimpleMeterRegistry()));
+
+            double legacy = measure(() -> legacyFetch(client));
+            double single = measure(() -> singleFetch(service));
+
+            store.resetRequestCount();
+            singleFetch(service);
+            assertEquals(1, store.requestCount());
+
+            System.out.printf("get+stat: %.3f ms/request, single get: %.3f ms/request%n",
+                    legacy, single);
+            assertTrue(single < legacy);
+        }
+    }
+
+    private static void legacyFetch(MinioClient client) throws Exception {
+        try (GetObjectResponse in = client.getObject(
+                GetObjectArgs.builder().bucket(BUCKET).object(KEY).build())) {
+            in.readAllBytes();
+        }
+        client.statObject(StatObjectArgs.builder().bucket(BUCKET).object(KEY).build())
+                .contentType();
+    }
+
+    private static void singleFetch(MinioService service) throws Exception {
+        try (MinioService.StreamedFile file = service.openStream(KEY)) {
+            file.stream().readAllBytes();
+        }
+    }
+
+    private static double measure(Fetch fetch) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            fetch.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            fetch.run();
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / ITERATIONS;
+    }
+
+    @FunctionalInterface
+    private interface Fetch {
+        void run() throws Exception;
+    }
+}
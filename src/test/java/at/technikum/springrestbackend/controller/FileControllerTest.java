@@ -1,46 +1,114 @@
 package at.technikum.springrestbackend.controller;
 
+import at.technikum.springrestbackend.service.FilePrefetchService;
+import at.technikum.springrestbackend.service.ImageRenditionService;
 import at.technikum.springrestbackend.service.MinioService;
+import at.technikum.springrestbackend.service.PresignedUrlService;
+import at.technikum.springrestbackend.util.FileRegionInputStream;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 class FileControllerTest {
 
+    private static final Instant LAST_MODIFIED = Instant.parse("2024-01-15T10:00:00Z");
+
     @Test
-    void getFile_validKey_returnsBytesAndContentType() {
+    void getFile_validKey_streamsBytesWithContentTypeAndLength() throws Exception {
         MinioService minioService = mock(MinioService.class);
-        FileController controller = new FileController(minioService);
+        FileController controller = controller(minioService);
 
         byte[] bytes = "hello".getBytes();
-        when(minioService.download("avatars/123/uuid.png"))
-                .thenReturn(new MinioService.DownloadedFile(bytes, "image/png"));
+        when(minioService.openStreamAsync("avatars/123/uuid.png"))
+                .thenReturn(completedFuture(new MinioService.StreamedFile(
+                        new ByteArrayInputStream(bytes),
+                        new MinioService.ObjectMetadata(
+                                "image/png", bytes.length, "etag", null))));
 
         MockHttpServletRequest req = new MockHttpServletRequest();
         req.setRequestURI("/api/files/avatars/123/uuid.png");
 
-        ResponseEntity<byte[]> resp = controller.getFile(req);
+        ResponseEntity<StreamingResponseBody> resp = controller.getFile(req).join();
 
         assertEquals(200, resp.getStatusCodeValue());
         assertEquals("image/png", resp.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE));
-        assertArrayEquals(bytes, resp.getBody());
-        verify(minioService).download("avatars/123/uuid.png");
+        assertEquals(bytes.length, resp.getHeaders().getContentLength());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        resp.getBody().writeTo(out);
+        assertArrayEquals(bytes, out.toByteArray());
+        verify(minioService).openStreamAsync("avatars/123/uuid.png");
+        verify(minioService, never()).download(any());
+    }
+
+    @Test
+    void getFile_pendingFetch_returnsBeforeStorageAnswers() throws Exception {
+        MinioService minioService = mock(MinioService.class);
+        FileController controller = controller(minioService);
+        CompletableFuture<MinioService.StreamedFile> fetch = new CompletableFuture<>();
+        when(minioService.openStreamAsync("avatars/1/a.png")).thenReturn(fetch);
+
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.setRequestURI("/api/files/avatars/1/a.png");
+
+        CompletableFuture<ResponseEntity<StreamingResponseBody>> resp = controller.getFile(req);
+
+        assertFalse(resp.isDone());
+        fetch.complete(streamedFile("abc"));
+        assertEquals(200, resp.join().getStatusCode().value());
+        assertEquals("\"abc\"", resp.join().getHeaders().getETag());
+    }
+
+    @Test
+    void getFile_storageNotFound_failsFutureWith404() {
+        MinioService minioService = mock(MinioService.class);
+        FileController controller = controller(minioService);
+        when(minioService.openStreamAsync("avatars/1/gone.png")).thenReturn(
+                CompletableFuture.failedFuture(
+                        new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found")));
+
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.setRequestURI("/api/files/avatars/1/gone.png");
+
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> controller.getFile(req).join());
+        assertEquals(HttpStatus.NOT_FOUND,
+                assertInstanceOf(ResponseStatusException.class, e.getCause()).getStatusCode());
     }
 
     @Test
     void getFile_missingKey_returns400() {
         MinioService minioService = mock(MinioService.class);
-        FileController controller = new FileController(minioService);
+        FileController controller = controller(minioService);
 
         MockHttpServletRequest req = new MockHttpServletRequest();
         req.setRequestURI("/api/files/");
 
-        ResponseEntity<byte[]> resp = controller.getFile(req);
+        ResponseEntity<StreamingResponseBody> resp = controller.getFile(req).join();
 
         assertEquals(400, resp.getStatusCodeValue());
         verifyNoInteractions(minioService);
@@ -49,12 +117,12 @@ class FileControllerTest {
     @Test
     void getFile_pathTraversal_returns400() {
         MinioService minioService = mock(MinioService.class);
-        FileController controller = new FileController(minioService);
+        FileController controller = controller(minioService);
 
         MockHttpServletRequest req = new MockHttpServletRequest();
         req.setRequestURI("/api/files/../secret.txt");
 
-        ResponseEntity<byte[]> resp = controller.getFile(req);
+        ResponseEntity<StreamingResponseBody> resp = controller.getFile(req).join();
 
         assertEquals(400, resp.getStatusCodeValue());
         verifyNoInteractions(minioService);
@@ -63,12 +131,12 @@ class FileControllerTest {
     @Test
     void getFile_encodedTraversal_returns400() {
         MinioService minioService = mock(MinioService.class);
-        FileController controller = new FileController(minioService);
+        FileController controller = controller(minioService);
 
         MockHttpServletRequest req = new MockHttpServletRequest();
         req.setRequestURI("/api/files/%2e%2e/secret.txt"); // decodes to ../secret.txt
 
-        ResponseEntity<byte[]> resp = controller.getFile(req);
+        ResponseEntity<StreamingResponseBody> resp = controller.getFile(req).join();
 
         assertEquals(400, resp.getStatusCodeValue());
         verifyNoInteractions(minioService);
@@ -77,14 +145,315 @@ class FileControllerTest {
     @Test
     void getFile_encodedLeadingSlash_returns400() {
         MinioService minioService = mock(MinioService.class);
-        FileController controller = new FileController(minioService);
+        FileController controller = controller(minioService);
 
         MockHttpServletRequest req = new MockHttpServletRequest();
         req.setRequestURI("/api/files/%2Fsecret.txt"); // decodes to /secret.txt
 
-        ResponseEntity<byte[]> resp = controller.getFile(req);
+        ResponseEntity<StreamingResponseBody> resp = controller.getFile(req).join();
 
         assertEquals(400, resp.getStatusCodeValue());
         verifyNoInteractions(minioService);
     }
+
+    @Test
+    void getFile_setsImmutableCacheHeadersAndEtag() throws Exception {
+        MinioService minioService = mock(MinioService.class);
+        FileController controller = controller(minioService);
+        when(minioService.openStreamAsync("avatars/1/a.png")).thenReturn(completedFuture(streamedFile("abc")));
+
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.setRequestURI("/api/files/avatars/1/a.png");
+
+        ResponseEntity<StreamingResponseBody> resp = controller.getFile(req).join();
+
+        assertEquals(200, resp.getStatusCode().value());
+        assertEquals("\"abc\"", resp.getHeaders().getETag());
+        assertEquals(LAST_MODIFIED.toEpochMilli(), resp.getHeaders().getLastModified());
+        String cacheControl = resp.getHeaders().getCacheControl();
+        assertTrue(cacheControl.contains("max-age=31536000"));
+        assertTrue(cacheControl.contains("public"));
+        assertTrue(cacheControl.contains("immutable"));
+    }
+
+    @Test
+    void getFile_matchingIfNoneMatch_returns304WithoutFetchingBody() {
+        MinioService minioService = mock(MinioService.class);
+        FileController controller = controller(minioService);
+        when(minioService.statAsync("avatars/1/a.png")).thenReturn(completedFuture(metadata("abc")));
+
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.setRequestURI("/api/files/avatars/1/a.png");
+        req.addHeader(HttpHeaders.IF_NONE_MATCH, "\"other\", W/\"abc\"");
+
+        ResponseEntity<StreamingResponseBody> resp = controller.getFile(req).join();
+
+        assertEquals(304, resp.getStatusCode().value());
+        assertEquals("\"abc\"", resp.getHeaders().getETag());
+        assertNull(resp.getBody());
+        verify(minioService, never()).openStreamAsync(any());
+    }
+
+    @Test
+    void getFile_staleIfNoneMatch_returns200() {
+        MinioService minioService = mock(MinioService.class);
+        FileController controller = controller(minioService);
+        when(minioService.statAsync("avatars/1/a.png")).thenReturn(completedFuture(metadata("abc")));
+        when(minioService.openStreamAsync("avatars/1/a.png")).thenReturn(completedFuture(streamedFile("abc")));
+
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.setRequestURI("/api/files/avatars/1/a.png");
+        req.addHeader(HttpHeaders.IF_NONE_MATCH, "\"old\"");
+
+        ResponseEntity<StreamingResponseBody> resp = controller.getFile(req).join();
+
+        assertEquals(200, resp.getStatusCode().value());
+        verify(minioService).openStreamAsync("avatars/1/a.png");
+    }
+
+    @Test
+    void getFile_ifModifiedSinceNotOlder_returns304() {
+        MinioService minioService = mock(MinioService.class);
+        FileController controller = controller(minioService);
+        when(minioService.statAsync("avatars/1/a.png")).thenReturn(completedFuture(metadata("abc")));
+
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.setRequestURI("/api/files/avatars/1/a.png");
+        req.addHeader(HttpHeaders.IF_MODIFIED_SINCE, LAST_MODIFIED.toEpochMilli());
+
+        ResponseEntity<StreamingResponseBody> resp = controller.getFile(req).join();
+
+        assertEquals(304, resp.getStatusCode().value());
+        verify(minioService, never()).openStreamAsync(any());
+    }
+
+    @Test
+    void getFile_ifModifiedSinceOlder_returns200() {
+        MinioService minioService = mock(MinioService.class);
+        FileController controller = controller(minioService);
+        when(minioService.statAsync("avatars/1/a.png")).thenReturn(completedFuture(metadata("abc")));
+        when(minioService.openStreamAsync("avatars/1/a.png")).thenReturn(completedFuture(streamedFile("abc")));
+
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.setRequestURI("/api/files/avatars/1/a.png");
+        req.addHeader(HttpHeaders.IF_MODIFIED_SINCE,
+                LAST_MODIFIED.minusSeconds(60).toEpochMilli());
+
+        ResponseEntity<StreamingResponseBody> resp = controller.getFile(req).join();
+
+        assertEquals(200, resp.getStatusCode().value());
+    }
+
+    @Test
+    void getFile_singleRange_returns206WithRangedFetch() throws Exception {
+        MinioService minioService = mock(MinioService.class);
+        FileController controller = controller(minioService);
+        when(minioService.statAsync("post-images/1/a.png")).thenReturn(completedFuture(metadata("abc", 10)));
+        when(minioService.openStreamAsync("post-images/1/a.png", 2, 3))
+                .thenReturn(completedFuture(new MinioService.StreamedFile(
+                        new ByteArrayInputStream("234".getBytes()), metadata("abc", 3))));
+
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.setRequestURI("/api/files/post-images/1/a.png");
+        req.addHeader(HttpHeaders.RANGE, "bytes=2-4");
+
+        ResponseEntity<StreamingResponseBody> resp = controller.getFile(req).join();
+
+        assertEquals(206, resp.getStatusCode().value());
+        assertEquals("bytes 2-4/10", resp.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals(3, resp.getHeaders().getContentLength());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        resp.getBody().writeTo(out);
+        assertEquals("234", out.toString());
+        verify(minioService, never()).openStreamAsync("post-images/1/a.png");
+    }
+
+    @Test
+    void getFile_multipleRanges_returnsMultipartByteranges() throws Exception {
+        MinioService minioService = mock(MinioService.class);
+        FileController controller = controller(minioService);
+        when(minioService.statAsync("post-images/1/a.png")).thenReturn(completedFuture(metadata("abc", 10)));
+        when(minioService.openStream("post-images/1/a.png", 0, 2))
+                .thenReturn(new MinioService.StreamedFile(
+                        new ByteArrayInputStream("01".getBytes()), metadata("abc", 2)));
+        when(minioService.openStream("post-images/1/a.png", 8, 2))
+                .thenReturn(new MinioService.StreamedFile(
+                        new ByteArrayInputStream("89".getBytes()), metadata("abc", 2)));
+
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.setRequestURI("/api/files/post-images/1/a.png");
+        req.addHeader(HttpHeaders.RANGE, "bytes=0-1,-2");
+
+        ResponseEntity<StreamingResponseBody> resp = controller.getFile(req).join();
+
+        assertEquals(206, resp.getStatusCode().value());
+        assertTrue(resp.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE)
+                .startsWith("multipart/byteranges; boundary="));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        resp.getBody().writeTo(out);
+        String body = out.toString();
+        assertEquals(resp.getHeaders().getContentLength(), out.size());
+        assertTrue(body.contains("Content-Range: bytes 0-1/10\r\n\r\n01"));
+        assertTrue(body.contains("Content-Range: bytes 8-9/10\r\n\r\n89"));
+    }
+
+    @Test
+    void getFile_unsatisfiableRange_returns416() {
+        MinioService minioService = mock(MinioService.class);
+        FileController controller = controller(minioService);
+        when(minioService.statAsync("post-images/1/a.png")).thenReturn(completedFuture(metadata("abc", 10)));
+
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.setRequestURI("/api/files/post-images/1/a.png");
+        req.addHeader(HttpHeaders.RANGE, "bytes=20-30");
+
+        ResponseEntity<StreamingResponseBody> resp = controller.getFile(req).join();
+
+        assertEquals(416, resp.getStatusCode().value());
+        assertEquals("bytes */10", resp.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        verify(minioService, never()).openStreamAsync(any());
+    }
+
+    @Test
+    void getFile_ifRangeMismatch_returnsFullObject() {
+        MinioService minioService = mock(MinioService.class);
+        FileController controller = controller(minioService);
+        when(minioService.statAsync("post-images/1/a.png")).thenReturn(completedFuture(metadata("abc", 10)));
+        when(minioService.openStreamAsync("post-images/1/a.png")).thenReturn(completedFuture(streamedFile("abc")));
+
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.setRequestURI("/api/files/post-images/1/a.png");
+        req.addHeader(HttpHeaders.RANGE, "bytes=2-4");
+        req.addHeader(HttpHeaders.IF_RANGE, "\"old\"");
+
+        ResponseEntity<StreamingResponseBody> resp = controller.getFile(req).join();
+
+        assertEquals(200, resp.getStatusCode().value());
+        assertEquals("bytes", resp.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES));
+    }
+
+    @Test
+    void getFile_diskCachedFile_survivesEvictionWhileStreaming(@TempDir Path directory)
+            throws Exception {
+        MinioService minioService = mock(MinioService.class);
+        FileController controller = controller(minioService);
+        byte[] bytes = new byte[100 * 1024];
+        bytes[bytes.length - 1] = 7;
+        Path cached = Files.write(directory.resolve("a.bin"), bytes);
+        when(minioService.openStreamAsync("post-images/1/a.png"))
+                .thenReturn(completedFuture(new MinioService.StreamedFile(
+                        FileRegionInputStream.open(cached, 0, bytes.length),
+                        metadata("abc", bytes.length))));
+
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.setRequestURI("/api/files/post-images/1/a.png");
+
+        ResponseEntity<StreamingResponseBody> resp = controller.getFile(req).join();
+        // evicted before the body is written
+        Files.delete(cached);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        resp.getBody().writeTo(out);
+
+        assertEquals(bytes.length, resp.getHeaders().getContentLength());
+        assertArrayEquals(bytes, out.toByteArray());
+    }
+
+    @Test
+    void getFile_presignedPrefix_redirectsWithoutTouchingStorage() {
+        MinioService minioService = mock(MinioService.class);
+        PresignedUrlService presignedUrlService = mock(PresignedUrlService.class);
+        FileController controller = new FileController(minioService, presignedUrlService,
+                mock(ImageRenditionService.class), mock(FilePrefetchService.class));
+        when(minioService.supportsPresignedUrls()).thenReturn(true);
+        when(presignedUrlService.urlFor("avatars/1/a.png"))
+                .thenReturn(new PresignedUrlService.PresignedUrl(
+                        "http://minio.example/app-bucket/avatars/1/a.png?X-Amz-Signature=abc",
+                        Instant.now().plusSeconds(600)));
+
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.setRequestURI("/api/files/avatars/1/a.png");
+        req.addHeader(HttpHeaders.RANGE, "bytes=0-1");
+
+        ResponseEntity<StreamingResponseBody> resp = controller.getFile(req).join();
+
+        assertEquals(302, resp.getStatusCode().value());
+        assertEquals("http://minio.example/app-bucket/avatars/1/a.png?X-Amz-Signature=abc",
+                resp.getHeaders().getLocation().toString());
+        assertTrue(resp.getHeaders().getCacheControl().startsWith("max-age="));
+        assertTrue(resp.getHeaders().getCacheControl().contains("private"));
+        verify(minioService).supportsPresignedUrls();
+        verifyNoMoreInteractions(minioService);
+    }
+
+    @Test
+    void getFile_presignedPrefixWithoutPresigningBackend_streams() {
+        MinioService minioService = mock(MinioService.class);
+        PresignedUrlService presignedUrlService = mock(PresignedUrlService.class);
+        FileController controller = new FileController(minioService, presignedUrlService,
+                mock(ImageRenditionService.class), mock(FilePrefetchService.class));
+        when(minioService.openStreamAsync("avatars/1/a.png"))
+                .thenReturn(completedFuture(streamedFile("abc")));
+
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.setRequestURI("/api/files/avatars/1/a.png");
+
+        ResponseEntity<StreamingResponseBody> resp = controller.getFile(req).join();
+
+        assertEquals(200, resp.getStatusCode().value());
+        verifyNoInteractions(presignedUrlService);
+    }
+
+    @Test
+    void getFile_widthParam_servesResolvedRendition() throws Exception {
+        MinioService minioService = mock(MinioService.class);
+        ImageRenditionService renditions = mock(ImageRenditionService.class);
+        FilePrefetchService prefetch = mock(FilePrefetchService.class);
+        FileController controller = new FileController(minioService,
+                mock(PresignedUrlService.class), renditions, prefetch);
+        when(renditions.resolveAsync("avatars/1/a.png", 48))
+                .thenReturn(completedFuture("avatars/1/a.w64.png"));
+        when(minioService.openStreamAsync("avatars/1/a.w64.png")).thenReturn(completedFuture(streamedFile("small")));
+
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.setRequestURI("/api/files/avatars/1/a.png");
+        req.setParameter("w", "48");
+
+        ResponseEntity<StreamingResponseBody> resp = controller.getFile(req).join();
+
+        assertEquals(200, resp.getStatusCode().value());
+        assertEquals("\"small\"", resp.getHeaders().getETag());
+        verify(minioService, never()).openStreamAsync("avatars/1/a.png");
+        verify(prefetch).recordRequest("avatars/1/a.w64.png");
+    }
+
+    @Test
+    void getFile_invalidWidth_returns400() {
+        MinioService minioService = mock(MinioService.class);
+        FileController controller = controller(minioService);
+
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.setRequestURI("/api/files/avatars/1/a.png");
+        req.setParameter("w", "big");
+
+        assertEquals(400, controller.getFile(req).join().getStatusCode().value());
+        verifyNoInteractions(minioService);
+    }
+
+    private static FileController controller(MinioService minioService) {
+        return new FileController(minioService, mock(PresignedUrlService.class),
+                mock(ImageRenditionService.class), mock(FilePrefetchService.class));
+    }
+
+    private static MinioService.ObjectMetadata metadata(String etag, long size) {
+        return new MinioService.ObjectMetadata("image/png", size, etag, LAST_MODIFIED);
+    }
+
+    private static MinioService.ObjectMetadata metadata(String etag) {
+        return new MinioService.ObjectMetadata("image/png", 5, etag, LAST_MODIFIED);
+    }
+
+    private static MinioService.StreamedFile streamedFile(String etag) {
+        return new MinioService.StreamedFile(
+                new ByteArrayInputStream("hello".getBytes()), metadata(etag));
+    }
 }
@@ -1,9 +1,13 @@
 package at.technikum.springrestbackend.controller;
 
 import at.technikum.springrestbackend.config.TestSecurityConfig;
+import at.technikum.springrestbackend.constant.AppConstants;
+import at.technikum.springrestbackend.dto.CursorPageDTO;
 import at.technikum.springrestbackend.dto.PostCreateDTO;
 import at.technikum.springrestbackend.dto.PostDTO;
+import at.technikum.springrestbackend.dto.PostSummaryDTO;
 import at.technikum.springrestbackend.dto.PostUpdateDTO;
+import at.technikum.springrestbackend.dto.SliceDTO;
 import at.technikum.springrestbackend.exception.GlobalExceptionHandler;
 import at.technikum.springrestbackend.security.JwtAuthenticationFilter;
 import at.technikum.springrestbackend.service.PostService;
@@ -19,6 +23,7 @@ import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
@@ -29,10 +34,12 @@ import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -62,15 +69,90 @@ class PostControllerTest {
         @Test
         @DisplayName("200 OK - returns page")
         void getAll_returnsPageOfPosts() throws Exception {
-            PostDTO post = createTestPostDTO(1L, "Test Title", "Content");
-            Page<PostDTO> page = new PageImpl<>(List.of(post));
+            PostSummaryDTO post = createTestSummaryDTO(1L, "Test Title", "Content");
+            Page<PostSummaryDTO> page = new PageImpl<>(List.of(post));
 
             when(postService.getAll(any(), any(Pageable.class))).thenReturn(page);
 
             mockMvc.perform(get("/api/posts"))
                     .andExpect(status().isOk())
                     .andExpect(jsonPath("$.content").isArray())
-                    .andExpect(jsonPath("$.content[0].title").value("Test Title"));
+                    .andExpect(jsonPath("$.content[0].title").value("Test Title"))
+                    .andExpect(jsonPath("$.content[0].excerpt").value("Content"))
+                    .andExpect(jsonPath("$.content[0].content").doesNotExist());
+        }
+
+        @Test
+        @DisplayName("200 OK - slice mode returns hasNext")
+        void getSlice_returnsHasNext() throws Exception {
+            PostSummaryDTO post = createTestSummaryDTO(1L, "Test Title", "Content");
+            when(postService.getSlice(any(), any(Pageable.class)))
+                    .thenReturn(new SliceDTO<>(List.of(post), 0, 10, true));
+
+            mockMvc.perform(get("/api/posts").param("slice", "true"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content[0].title").value("Test Title"))
+                    .andExpect(jsonPath("$.hasNext").value(true))
+                    .andExpect(jsonPath("$.totalElements").doesNotExist());
+        }
+
+        @Test
+        @DisplayName("200 OK - cursor mode returns the next cursor")
+        void getFeed_cursor_returnsNextCursor() throws Exception {
+            PostSummaryDTO post = createTestSummaryDTO(1L, "Test Title", "Content");
+            when(postService.getFeed("", 10, Sort.by("title").ascending()))
+                    .thenReturn(new CursorPageDTO<>(List.of(post), 10, "abc"));
+
+            mockMvc.perform(get("/api/posts").param("cursor", "").param("sort", "title,asc"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content[0].title").value("Test Title"))
+                    .andExpect(jsonPath("$.nextCursor").value("abc"))
+                    .andExpect(jsonPath("$.hasNext").value(true));
+        }
+
+        @Test
+        @DisplayName("400 Bad Request - cursor mode with a search")
+        void getFeed_withQuery_returns400() throws Exception {
+            mockMvc.perform(get("/api/posts").param("cursor", "").param("q", "alps"))
+                    .andExpect(status().isBadRequest());
+        }
+
+        @Test
+        @DisplayName("400 Bad Request - cursor mode with a page size out of bounds")
+        void getFeed_sizeOutOfBounds_returns400() throws Exception {
+            mockMvc.perform(get("/api/posts").param("cursor", "").param("size", "0"))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(get("/api/posts").param("cursor", "")
+                            .param("size", String.valueOf(AppConstants.MAX_PAGE_SIZE + 1)))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(get("/api/posts").param("cursor", "").param("size", "2147483647"))
+                    .andExpect(status().isBadRequest());
+            verifyNoInteractions(postService);
+        }
+
+        @Test
+        @DisplayName("200 OK - cursor mode at the largest page size")
+        void getFeed_maxSize_returnsPage() throws Exception {
+            when(postService.getFeed(eq(""), eq(AppConstants.MAX_PAGE_SIZE), any(Sort.class)))
+                    .thenReturn(new CursorPageDTO<>(List.of(), AppConstants.MAX_PAGE_SIZE, null));
+
+            mockMvc.perform(get("/api/posts").param("cursor", "")
+                            .param("size", String.valueOf(AppConstants.MAX_PAGE_SIZE)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.hasNext").value(false));
+        }
+
+        @Test
+        @DisplayName("200 OK - cursor and slice together fall back to a page")
+        void getAll_cursorAndSlice_returnsPage() throws Exception {
+            PostSummaryDTO post = createTestSummaryDTO(1L, "Test Title", "Content");
+            when(postService.getAll(any(), any(Pageable.class)))
+                    .thenReturn(new PageImpl<>(List.of(post)));
+
+            mockMvc.perform(get("/api/posts").param("cursor", "").param("slice", "true"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content[0].title").value("Test Title"))
+                    .andExpect(jsonPath("$.totalElements").value(1));
         }
     }
 
@@ -223,9 +305,51 @@ class PostControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("POST /api/posts/{id}/image/stream")
+    @WithMockUser
+    class UploadImageStream {
+        @Test
+        @DisplayName("200 OK - raw body and boundary go to the service")
+        void uploadImageStream_multipartBody_returns200() throws Exception {
+            PostDTO response = createTestPostDTO(1L, "Title", "Content");
+
+            when(postService.uploadImageStream(
+                    eq(1L), eq("multipart/form-data;boundary=b"), any()))
+                    .thenReturn(response);
+
+            mockMvc.perform(post("/api/posts/1/image/stream")
+                            .contentType("multipart/form-data;boundary=b")
+                            .content("--b--\r\n")
+                            .with(csrf()))
+                    .andExpect(status().isOk());
+        }
+
+        @Test
+        @DisplayName("413 Payload Too Large")
+        void uploadImageStream_tooLarge_returns413() throws Exception {
+            when(postService.uploadImageStream(eq(1L), any(), any()))
+                    .thenThrow(new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE));
+
+            mockMvc.perform(post("/api/posts/1/image/stream")
+                            .contentType("multipart/form-data;boundary=b")
+                            .content("--b--\r\n")
+                            .with(csrf()))
+                    .andExpect(status().isPayloadTooLarge());
+        }
+    }
+
     private PostDTO createTestPostDTO(Long id, String title, String content) {
         return new PostDTO(
-                id, 1L, "Author", title, content, null, LocalDateTime.now(), LocalDateTime.now()
+                id, 1L, "Author", title, content, null, Map.of(), null, null, null,
+                LocalDateTime.now(), LocalDateTime.now()
+        );
+    }
+
+    private PostSummaryDTO createTestSummaryDTO(Long id, String title, String excerpt) {
+        return new PostSummaryDTO(
+                id, 1L, "Author", title, excerpt, null, Map.of(), null, null, null,
+                LocalDateTime.now(), LocalDateTime.now()
         );
     }
 }
@@ -26,6 +26,7 @@ import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doNothing;
@@ -198,7 +199,8 @@ class ProfileControllerTest {
 
     private PublicProfileDTO createPublicProfileDTO(Long id, String username) {
         return new PublicProfileDTO(
-                id, username, "Bio", 25, "Vienna", "AT", "male", "avatar.png", LocalDateTime.now()
+                id, username, "Bio", 25, "Vienna", "AT", "male", "avatar.png", Map.of(),
+                null, null, null, LocalDateTime.now()
         );
     }
 
@@ -35,6 +35,9 @@ class AuthServiceTest {
     @Mock
     JwtService jwtService;
 
+    @Mock
+    CountService countService;
+
     @InjectMocks
     AuthService authService;
 
@@ -92,6 +95,7 @@ class AuthServiceTest {
         assertTrue(saved.isEnabled());
 
         verify(jwtService).generateToken("test@example.com");
+        verify(countService).profilesChanged(1);
     }
 
     @Test
@@ -0,0 +1,107 @@
+package at.technikum.springrestbackend.service;
+
+import at.technikum.springrestbackend.repository.PostRepository;
+import at.technikum.springrestbackend.repository.ProfileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CountService")
+class CountServiceTest {
+
+    @Mock
+    private PostRepository postRepository;
+
+    @Mock
+    private ProfileRepository profileRepository;
+
+    private CountService countService;
+
+    @BeforeEach
+    void setUp() {
+        countService = new CountService(postRepository, profileRepository, 30);
+    }
+
+    @Test
+    @DisplayName("totals are counted once, then moved by changes")
+    void totals_countedOnceThenMaintained() {
+        when(postRepository.count()).thenReturn(10L);
+        when(profileRepository.count()).thenReturn(3L);
+
+        assertEquals(10, countService.posts());
+        countService.postsChanged(2);
+        countService.postsChanged(-1);
+        countService.profilesChanged(1);
+
+        assertEquals(11, countService.posts());
+        assertEquals(4, countService.profiles());
+        verify(postRepository, times(1)).count();
+    }
+
+    @Test
+    @DisplayName("reconcile: corrects drift")
+    void reconcile_correctsDrift() {
+        when(postRepository.count()).thenReturn(10L, 7L);
+        when(profileRepository.count()).thenReturn(3L);
+        countService.reconcile();
+
+        countService.reconcile();
+
+        assertEquals(7, countService.posts());
+    }
+
+    @Test
+    @DisplayName("reconcile: changes applied after the count are added to it")
+    void reconcile_changeAfterCount_isAdded() {
+        when(postRepository.count()).thenReturn(10L, 7L);
+        when(profileRepository.count()).thenReturn(3L).thenAnswer(invocation -> {
+            countService.postsChanged(1);
+            countService.profilesChanged(1);
+            return 3L;
+        });
+        countService.reconcile();
+
+        countService.reconcile();
+
+        assertEquals(8, countService.posts());
+        assertEquals(3, countService.profiles());
+    }
+
+    @Test
+    @DisplayName("first count: does not block changes committing meanwhile")
+    void firstCount_changesDoNotWait() {
+        when(postRepository.count()).thenAnswer(invocation -> {
+            CompletableFuture.runAsync(() -> countService.postsChanged(1))
+                    .get(1, TimeUnit.SECONDS);
+            return 11L;
+        });
+        when(profileRepository.count()).thenReturn(3L);
+
+        assertEquals(11, countService.posts());
+        verify(postRepository, times(1)).count();
+    }
+
+    @Test
+    @DisplayName("searchCount: counts a query once while cached")
+    void searchCount_isCached() {
+        AtomicInteger counted = new AtomicInteger();
+
+        long first = countService.searchCount("Alps", q -> (long) counted.incrementAndGet());
+        long second = countService.searchCount(" alps ", q -> (long) counted.incrementAndGet());
+
+        assertEquals(1, first);
+        assertEquals(1, second);
+        assertEquals(1, counted.get());
+    }
+}
@@ -0,0 +1,144 @@
+package at.technikum.springrestbackend.service;
+
+import at.technikum.springrestbackend.dto.UploadRequestDTO;
+import at.technikum.springrestbackend.dto.UploadTicketDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("DirectUploadService")
+class DirectUploadServiceTest {
+
+    @Mock
+    PresignedUrlService presignedUrlService;
+    @Mock
+    MinioService minioService;
+
+    private DirectUploadService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new DirectUploadService(presignedUrlService, minioService, 1000);
+    }
+
+    @Test
+    @DisplayName("issue: signs a PUT for a fresh key under the prefix")
+    void issue_allowedImage_signsKeyUnderPrefix() {
+        Instant expiresAt = Instant.now().plusSeconds(600);
+        when(minioService.supportsPresignedUrls()).thenReturn(true);
+        when(presignedUrlService.uploadUrlFor(anyString()))
+                .thenAnswer(inv -> new PresignedUrlService.PresignedUrl(
+                        "http://minio/" + inv.getArgument(0), expiresAt));
+
+        UploadTicketDTO ticket = service.issue("avatars/1/", new UploadRequestDTO("Image/PNG", 500L));
+
+        assertTrue(ticket.getObjectKey().startsWith("avatars/1/"));
+        assertTrue(ticket.getObjectKey().endsWith(".png"));
+        assertEquals("http://minio/" + ticket.getObjectKey(), ticket.getUploadUrl());
+        assertEquals("image/png", ticket.getContentType());
+        assertEquals(1000, ticket.getMaxBytes());
+        assertEquals(expiresAt, ticket.getExpiresAt());
+    }
+
+    @Test
+    @DisplayName("issue: wrong type or too large is rejected before signing")
+    void issue_invalidRequest_throws400() {
+        ResponseStatusException type = assertThrows(ResponseStatusException.class,
+                () -> service.issue("avatars/1/", new UploadRequestDTO("text/plain", 10L)));
+        ResponseStatusException size = assertThrows(ResponseStatusException.class,
+                () -> service.issue("avatars/1/", new UploadRequestDTO("image/png", 1001L)));
+
+        assertEquals(HttpStatus.BAD_REQUEST, type.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, size.getStatusCode());
+        verifyNoInteractions(presignedUrlService);
+    }
+
+    @Test
+    @DisplayName("issue: rejected when the storage backend cannot presign")
+    void issue_noPresignSupport_throws501() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> service.issue("avatars/1/", new UploadRequestDTO("image/png", 500L)));
+
+        assertEquals(HttpStatus.NOT_IMPLEMENTED, ex.getStatusCode());
+        verifyNoInteractions(presignedUrlService);
+    }
+
+    @Test
+    @DisplayName("verify: accepts a matching image within the limit")
+    void verify_validUpload_returnsKey() {
+        when(minioService.stat("avatars/1/a.jpg"))
+                .thenReturn(new MinioService.ObjectMetadata("image/jpeg", 1000, "e", null));
+        when(minioService.readPrefix("avatars/1/a.jpg", 12))
+                .thenReturn(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0, 0, 0});
+
+        assertEquals("avatars/1/a.jpg", service.verify("avatars/1/", "avatars/1/a.jpg"));
+        verify(minioService, never()).delete(anyString());
+    }
+
+    @Test
+    @DisplayName("verify: keys outside the prefix are rejected without a lookup")
+    void verify_foreignKey_throws400() {
+        for (String key : new String[]{"avatars/2/a.png", "avatars/1/", "avatars/1/x/../a.png",
+                "avatars/1/x/a.png"}) {
+            ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                    () -> service.verify("avatars/1/", key));
+            assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        }
+        verifyNoInteractions(minioService);
+    }
+
+    @Test
+    @DisplayName("verify: oversized or mistyped uploads are deleted")
+    void verify_invalidObject_deletesAndThrows400() {
+        when(minioService.stat("avatars/1/big.png"))
+                .thenReturn(new MinioService.ObjectMetadata("image/png", 1001, "e", null));
+        when(minioService.stat("avatars/1/fake.png"))
+                .thenReturn(new MinioService.ObjectMetadata("text/html", 10, "e", null));
+
+        assertThrows(ResponseStatusException.class,
+                () -> service.verify("avatars/1/", "avatars/1/big.png"));
+        assertThrows(ResponseStatusException.class,
+                () -> service.verify("avatars/1/", "avatars/1/fake.png"));
+
+        verify(minioService).delete("avatars/1/big.png");
+        verify(minioService).delete("avatars/1/fake.png");
+    }
+
+    @Test
+    @DisplayName("verify: content that is not the claimed image type is deleted")
+    void verify_signatureMismatch_deletesAndThrows400() {
+        when(minioService.stat("avatars/1/a.png"))
+                .thenReturn(new MinioService.ObjectMetadata("image/png", 5, "e", null));
+        when(minioService.readPrefix("avatars/1/a.png", 5))
+                .thenReturn("<svg>".getBytes());
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> service.verify("avatars/1/", "avatars/1/a.png"));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verify(minioService).delete("avatars/1/a.png");
+    }
+
+    @Test
+    @DisplayName("verify: missing upload is a bad request")
+    void verify_missingObject_throws400() {
+        when(minioService.stat("avatars/1/a.png"))
+                .thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found"));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> service.verify("avatars/1/", "avatars/1/a.png"));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+    }
+}
@@ -0,0 +1,109 @@
+package at.technikum.springrestbackend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("DiskObjectCache")
+class DiskObjectCacheTest {
+
+    private static final Instant LAST_MODIFIED = Instant.parse("2024-01-15T10:00:00Z");
+
+    @TempDir
+    Path directory;
+
+    private DiskObjectCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = newCache(100);
+    }
+
+    @Test
+    @DisplayName("put/open: stored object can be read fully and in ranges")
+    void put_storesObject() throws Exception {
+        try (MinioService.StreamedFile stored = cache.put("avatars/1/a.png", source("0123456789"))) {
+            assertArrayEquals("0123456789".getBytes(), stored.stream().readAllBytes());
+        }
+
+        try (MinioService.StreamedFile range = cache.open("avatars/1/a.png", 2, 3)) {
+            assertArrayEquals("234".getBytes(), range.stream().readAllBytes());
+            assertEquals(3, range.size());
+            assertEquals("etag-1", range.metadata().etag());
+            assertEquals(LAST_MODIFIED, range.metadata().lastModified());
+        }
+    }
+
+    @Test
+    @DisplayName("put: least recently used entries are evicted when the budget is exceeded")
+    void put_overBudget_evictsLeastRecentlyUsed() throws Exception {
+        cache.put("a", source("x".repeat(40))).close();
+        cache.put("b", source("y".repeat(40))).close();
+        cache.open("a").close();
+
+        cache.put("c", source("z".repeat(40))).close();
+
+        assertNotNull(cache.metadata("a"));
+        assertNull(cache.metadata("b"));
+        assertNotNull(cache.metadata("c"));
+        assertEquals(80, cache.totalBytes());
+    }
+
+    @Test
+    @DisplayName("constructor: index is rebuilt from the directory after a restart")
+    void restart_rebuildsIndex() throws Exception {
+        cache.put("avatars/1/a.png", source("0123456789")).close();
+        Files.writeString(directory.resolve("stale.bin.123.tmp"), "partial");
+
+        DiskObjectCache restarted = newCache(100);
+
+        MinioService.ObjectMetadata metadata = restarted.metadata("avatars/1/a.png");
+        assertNotNull(metadata);
+        assertEquals(10, metadata.size());
+        assertEquals("image/png", metadata.contentType());
+        assertEquals(10, restarted.totalBytes());
+        assertFalse(Files.exists(directory.resolve("stale.bin.123.tmp")));
+    }
+
+    @Test
+    @DisplayName("invalidate: entry and its files are removed")
+    void invalidate_removesFiles() throws Exception {
+        cache.put("avatars/1/a.png", source("0123456789")).close();
+
+        cache.invalidate("avatars/1/a.png");
+
+        assertNull(cache.open("avatars/1/a.png"));
+        assertEquals(0, cache.totalBytes());
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    @DisplayName("accepts: disabled cache and oversized objects are rejected")
+    void accepts_respectsLimits() {
+        assertTrue(cache.accepts(50));
+        assertFalse(cache.accepts(51));
+        assertFalse(new DiskObjectCache(false, directory, 100, 50, new SimpleMeterRegistry())
+                .accepts(1));
+    }
+
+    private DiskObjectCache newCache(long maxBytes) {
+        return new DiskObjectCache(true, directory, maxBytes, 50, new SimpleMeterRegistry());
+    }
+
+    private static MinioService.StreamedFile source(String content) {
+        byte[] bytes = content.getBytes();
+        return new MinioService.StreamedFile(new ByteArrayInputStream(bytes),
+                new MinioService.ObjectMetadata("image/png", bytes.length, "etag-1", LAST_MODIFIED));
+    }
+}
@@ -0,0 +1,99 @@
+package at.technikum.springrestbackend.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("DiskSearchSegment")
+class DiskSearchSegmentTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    @DisplayName("write/open: documents, postings and terms survive a reopen")
+    void writeAndOpen_roundTrips() throws Exception {
+        DiskSearchSegment.write(directory, 1, List.of(
+                document(3, Map.of("alps", new int[] {1, 2}, "hiking", new int[] {0, 1})),
+                document(9, Map.of("alps", new int[] {0, 1}, "photo", new int[] {1, 0}))));
+
+        DiskSearchSegment segment = DiskSearchSegment.open(directory, 1);
+
+        assertEquals(2, segment.docCount());
+        assertEquals(9, segment.postId(1));
+        assertEquals(2, segment.docFreq("alps"));
+        SearchSegment.Postings alps = segment.postings("alps");
+        assertEquals(2, alps.size());
+        assertArrayEquals(new int[] {0, 1}, Arrays.copyOf(alps.docs(), 2));
+        assertEquals(2, alps.contentFrequencies()[0]);
+        assertNull(segment.postings("vienna"));
+        assertEquals(List.of("hiking"), segment.termsStartingWith("hi", 10));
+        assertEquals(List.of("alps", "hiking", "photo"), segment.termsStartingWith("", 10));
+    }
+
+    @Test
+    @DisplayName("delete: marks the post deleted and is kept in the deletes file")
+    void delete_isPersisted() throws Exception {
+        DiskSearchSegment segment = DiskSearchSegment.write(directory, 2, List.of(
+                document(1, Map.of("a", new int[] {1, 0})),
+                document(2, Map.of("a", new int[] {1, 0}))));
+
+        assertEquals(0, segment.delete(1));
+        assertEquals(-1, segment.delete(1));
+        assertEquals(-1, segment.findLive(5));
+        segment.force();
+
+        DiskSearchSegment reopened = DiskSearchSegment.open(directory, 2);
+        assertFalse(reopened.isLive(0));
+        assertEquals(1, reopened.liveDocCount());
+        assertEquals(1, reopened.findLive(2));
+    }
+
+    @Test
+    @DisplayName("merge: keeps live documents in post id order and merges postings")
+    void merge_dropsDeletedDocuments() throws Exception {
+        DiskSearchSegment first = DiskSearchSegment.write(directory, 1, List.of(
+                document(1, Map.of("alps", new int[] {1, 0})),
+                document(4, Map.of("alps", new int[] {0, 1}))));
+        DiskSearchSegment second = DiskSearchSegment.write(directory, 2, List.of(
+                document(2, Map.of("alps", new int[] {2, 0}, "vienna", new int[] {0, 1}))));
+        first.delete(1);
+
+        DiskSearchSegment merged = DiskSearchSegment.merge(directory, 3, List.of(first, second));
+
+        assertEquals(2, merged.docCount());
+        assertEquals(2, merged.postId(0));
+        assertEquals(4, merged.postId(1));
+        assertEquals(2, merged.docFreq("alps"));
+        assertEquals(2, merged.postings("alps").titleFrequencies()[0]);
+        assertEquals(0, merged.postings("vienna").docs()[0]);
+        assertTrue(Files.exists(DiskSearchSegment.deletesFile(directory, 3)));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"0, 1", "127, 1", "128, 2", "16383, 2", "16384, 3", "2147483647, 5"})
+    @DisplayName("varint: values round-trip in 7 bits per byte")
+    void varint_roundTrips(int value, int bytes) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DiskSearchSegment.writeVarint(out, value);
+
+        assertEquals(value, DiskSearchSegment.readVarint(ByteBuffer.wrap(out.toByteArray())));
+        assertEquals(bytes, out.size());
+    }
+
+    private static SearchSegment.Document document(long postId, Map<String, int[]> frequencies) {
+        return new SearchSegment.Document(postId, 3, 0, frequencies);
+    }
+}
@@ -0,0 +1,154 @@
+package at.technikum.springrestbackend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("FilePrefetchService")
+class FilePrefetchServiceTest {
+
+    @Mock
+    MinioService minioService;
+    @Mock
+    PresignedUrlService presignedUrlService;
+    @Mock
+    ImageRenditionService imageRenditionService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private FilePrefetchService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("prefetch: warms each key once and counts the following request as a hit")
+    void prefetch_warmsKeys_andCountsHits() {
+        service = service(true, 4);
+        when(minioService.supportsPresignedUrls()).thenReturn(true);
+        when(presignedUrlService.isEnabledFor(anyString()))
+                .thenAnswer(inv -> inv.<String>getArgument(0).startsWith("avatars/"));
+        when(minioService.warm("post-images/a.png")).thenReturn(MinioService.WarmResult.WARMED);
+
+        service.prefetch(Arrays.asList("post-images/a.png", null, "post-images/a.png",
+                "avatars/1/b.png"));
+
+        verify(minioService, timeout(1000)).warm("post-images/a.png");
+        verify(minioService, never()).warm("avatars/1/b.png");
+        service.recordRequest("post-images/a.png");
+        service.recordRequest("post-images/a.png");
+        service.recordRequest("post-images/other.png");
+        assertEquals(1, meterRegistry.get("files.prefetch.hits").counter().count());
+    }
+
+    @Test
+    @DisplayName("prefetch: keys beyond the concurrency limit are dropped, not queued")
+    void prefetch_saturated_dropsKeys() throws Exception {
+        service = service(true, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(minioService.warm("post-images/a.png")).thenAnswer(inv -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return MinioService.WarmResult.WARMED;
+        });
+
+        service.prefetch(List.of("post-images/a.png"));
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        service.prefetch(List.of("post-images/b.png"));
+        release.countDown();
+
+        assertEquals(1, meterRegistry.get("files.prefetch.requests")
+                .tag("result", "dropped").counter().count());
+        verify(minioService, never()).warm("post-images/b.png");
+    }
+
+    @Test
+    @DisplayName("prefetch: warms the rendition a feed request resolves to")
+    void prefetch_warmsResolvedRendition() {
+        service = service(true, 4);
+        when(imageRenditionService.resolve("post-images/a.png", 256))
+                .thenReturn("post-images/a.w256.png");
+
+        service.prefetch(List.of("post-images/a.png"));
+
+        verify(minioService, timeout(1000)).warm("post-images/a.w256.png");
+        verify(minioService, never()).warm("post-images/a.png");
+        service.recordRequest("post-images/a.png");
+        service.recordRequest("post-images/a.w256.png");
+        assertEquals(1, meterRegistry.get("files.prefetch.hits").counter().count());
+    }
+
+    @Test
+    @DisplayName("prefetch: objects the caches do not take are skipped and never count as hits")
+    void prefetch_uncacheable_skipped() {
+        service = service(true, 4);
+        when(minioService.warm("post-images/big.png")).thenReturn(MinioService.WarmResult.SKIPPED);
+
+        service.prefetch(List.of("post-images/big.png"));
+
+        verify(minioService, timeout(1000)).warm("post-images/big.png");
+        await(() -> meterRegistry.get("files.prefetch.requests")
+                .tag("result", "skipped").counter().count() == 1);
+        service.recordRequest("post-images/big.png");
+        assertEquals(0, meterRegistry.get("files.prefetch.hits").counter().count());
+        assertEquals(0, meterRegistry.get("files.prefetch.requests")
+                .tag("result", "warmed").counter().count());
+    }
+
+    @Test
+    @DisplayName("prefetch: presigned prefixes are warmed when the backend cannot redirect")
+    void prefetch_presignedPrefixWithoutPresigningBackend_warms() {
+        service = service(true, 4);
+
+        service.prefetch(List.of("avatars/1/b.png"));
+
+        verify(minioService, timeout(1000)).warm("avatars/1/b.png");
+        verifyNoInteractions(presignedUrlService);
+    }
+
+    @Test
+    @DisplayName("prefetch: does nothing when disabled")
+    void prefetch_disabled_noop() {
+        service = service(false, 4);
+
+        service.prefetch(List.of("post-images/a.png"));
+        service.recordRequest("post-images/a.png");
+
+        verifyNoInteractions(minioService, presignedUrlService, imageRenditionService);
+        assertEquals(0, meterRegistry.get("files.prefetch.hits").counter().count());
+    }
+
+    private FilePrefetchService service(boolean enabled, int maxConcurrent) {
+        lenient().when(imageRenditionService.resolve(anyString(), eq(256)))
+                .thenAnswer(inv -> inv.getArgument(0));
+        lenient().when(minioService.warm(anyString())).thenReturn(MinioService.WarmResult.WARMED);
+        return new FilePrefetchService(minioService, presignedUrlService, imageRenditionService,
+                enabled, 256, maxConcurrent, 60, meterRegistry);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,162 @@
+package at.technikum.springrestbackend.service;
+
+import at.technikum.springrestbackend.util.FileRegionInputStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@DisplayName("MinioService on the filesystem backend")
+class FileSystemStorageBackendTest extends MinioServiceTest {
+
+    private Path objectsDir;
+
+    @Override
+    protected StorageBackend createBackend() {
+        objectsDir = tempDir.resolve("objects");
+        return new FileSystemStorageBackend(objectsDir);
+    }
+
+    @Override
+    protected void givenObject(String objectKey, byte[] bytes) {
+        backend.put(objectKey, new ByteArrayInputStream(bytes), bytes.length, "image/png");
+    }
+
+    @Test
+    @DisplayName("upload: stored bytes read back with type, size and MD5 ETag")
+    void test_upload_roundTrip() throws Exception {
+        byte[] bytes = "post-image".getBytes();
+
+        minioService.upload("post-images/1/a.png", bytes, "image/png");
+
+        try (MinioService.StreamedFile file = minioService.openStream("post-images/1/a.png")) {
+            assertArrayEquals(bytes, file.stream().readAllBytes());
+            assertEquals("image/png", file.contentType());
+            assertEquals(bytes.length, file.size());
+            assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(bytes)),
+                    file.metadata().etag());
+        }
+        assertEquals(List.of(), listFiles(objectsDir.resolve("tmp")));
+    }
+
+    @Test
+    @DisplayName("upload: unknown length streams and overwriting evicts the cached copy")
+    void test_upload_overwrite() throws Exception {
+        minioService.uploadHashed("avatars/1/a.png",
+                new ByteArrayInputStream("old".getBytes()), "image/png");
+        minioService.openStream("avatars/1/a.png").close();
+
+        minioService.upload("avatars/1/a.png", "newer".getBytes(), "image/webp");
+
+        assertNull(hotObjectCache.get("avatars/1/a.png"));
+        MinioService.DownloadedFile file = minioService.download("avatars/1/a.png");
+        assertArrayEquals("newer".getBytes(), file.bytes());
+        assertEquals("image/webp", file.contentType());
+    }
+
+    @Test
+    @DisplayName("openStream: large objects are read from their file, not copied to the disk cache")
+    void test_openStream_largeObject_servedFromFile() throws Exception {
+        byte[] bytes = new byte[2048];
+        bytes[100] = 7;
+        givenObject("post-images/1/big.png", bytes);
+
+        try (MinioService.StreamedFile file = minioService.openStream("post-images/1/big.png")) {
+            assertInstanceOf(FileRegionInputStream.class, file.stream());
+            assertArrayEquals(bytes, file.stream().readAllBytes());
+        }
+        try (MinioService.StreamedFile range =
+                     minioService.openStream("post-images/1/big.png", 100, 10)) {
+            assertEquals(10, range.size());
+            assertEquals(7, range.stream().readAllBytes()[0]);
+        }
+
+        assertNull(hotObjectCache.get("post-images/1/big.png"));
+        assertNull(diskObjectCache.metadata("post-images/1/big.png"));
+        verify(backend, times(1)).get(eq("post-images/1/big.png"), isNull(), isNull());
+    }
+
+    @Test
+    @DisplayName("openStream: missing objects and keys escaping the directory are rejected")
+    void test_openStream_missingOrInvalidKey() {
+        ResponseStatusException missing = assertThrows(ResponseStatusException.class,
+                () -> minioService.openStream("avatars/1/none.png"));
+        ResponseStatusException traversal = assertThrows(ResponseStatusException.class,
+                () -> minioService.openStream("avatars/../../secret"));
+        ResponseStatusException absolute = assertThrows(ResponseStatusException.class,
+                () -> minioService.stat("/etc/passwd"));
+
+        assertEquals(HttpStatus.NOT_FOUND, missing.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, traversal.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, absolute.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("copy: target has the source's bytes and metadata")
+    void test_copy() throws Exception {
+        givenObject("staging/a.png", "staged".getBytes());
+
+        minioService.copy("staging/a.png", "post-images/a.png");
+
+        assertEquals(minioService.stat("staging/a.png").etag(),
+                minioService.stat("post-images/a.png").etag());
+        assertArrayEquals("staged".getBytes(), minioService.download("post-images/a.png").bytes());
+    }
+
+    @Test
+    @DisplayName("list: only objects under the prefix")
+    void test_list_byPrefix() {
+        minioService.upload("avatars/1/a.png", "a".getBytes(), "image/png");
+        minioService.upload("avatars/12/b.png", "bb".getBytes(), "image/png");
+        minioService.upload("post-images/c.png", "c".getBytes(), "image/png");
+
+        try (Stream<MinioService.ObjectSummary> avatars = minioService.list("avatars/1")) {
+            assertEquals(Set.of("avatars/1/a.png", "avatars/12/b.png"), avatars
+                    .map(MinioService.ObjectSummary::objectKey)
+                    .collect(Collectors.toSet()));
+        }
+        try (Stream<MinioService.ObjectSummary> none = minioService.list("thumbnails/")) {
+            assertEquals(0, none.count());
+        }
+    }
+
+    @Test
+    @DisplayName("deleteAll: removes the objects, missing keys count as removed")
+    void test_deleteAll() {
+        minioService.upload("a.png", "a".getBytes(), "image/png");
+        minioService.upload("b.png", "b".getBytes(), "image/png");
+
+        assertEquals(Set.of(), minioService.deleteAll(List.of("a.png", "b.png", "c.png")));
+
+        assertFalse(Files.exists(objectsDir.resolve("data/a.png")));
+        assertFalse(Files.exists(objectsDir.resolve("meta/b.png")));
+        assertEquals(Set.of("../x.png"), minioService.deleteAll(List.of("../x.png")));
+    }
+
+    private static List<Path> listFiles(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.toList();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package at.technikum.springrestbackend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("HotObjectCache")
+class HotObjectCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private HotObjectCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new HotObjectCache(10_000, 100, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("put/get: small object is cached and can be read in ranges")
+    void put_smallObject_isCached() throws Exception {
+        cache.put("avatars/1/a.png", object("0123456789".getBytes()));
+
+        HotObjectCache.CachedObject cached = cache.get("avatars/1/a.png");
+
+        assertNotNull(cached);
+        try (MinioService.StreamedFile range = cached.open(2, 3)) {
+            assertArrayEquals("234".getBytes(), range.stream().readAllBytes());
+            assertEquals(3, range.size());
+        }
+    }
+
+    @Test
+    @DisplayName("put: object above the per-object cap is ignored")
+    void put_largeObject_isIgnored() {
+        cache.put("post-images/1/big.png", object(new byte[101]));
+
+        assertNull(cache.get("post-images/1/big.png"));
+        assertFalse(cache.accepts(101));
+        assertFalse(cache.accepts(-1));
+        assertTrue(cache.accepts(100));
+    }
+
+    @Test
+    @DisplayName("invalidate: removes the entry")
+    void invalidate_removesEntry() {
+        cache.put("avatars/1/a.png", object(new byte[10]));
+
+        cache.invalidate("avatars/1/a.png");
+
+        assertNull(cache.get("avatars/1/a.png"));
+    }
+
+    @Test
+    @DisplayName("metrics: byte size and hit ratio are published")
+    void metrics_arePublished() {
+        cache.put("avatars/1/a.png", object(new byte[40]));
+        cache.get("avatars/1/a.png");
+        cache.get("avatars/1/missing.png");
+
+        assertEquals(40, meterRegistry.get("files.cache.bytes")
+                .tag("tier", "memory").gauge().value());
+        assertEquals(0.5, meterRegistry.get("files.cache.hit.ratio")
+                .tag("tier", "memory").gauge().value());
+        assertNotNull(meterRegistry.get("cache.evictions").tag("cache", "files.memory")
+                .functionCounter());
+    }
+
+    private static HotObjectCache.CachedObject object(byte[] bytes) {
+        return new HotObjectCache.CachedObject(bytes,
+                new MinioService.ObjectMetadata("image/png", bytes.length, "etag", null));
+    }
+}
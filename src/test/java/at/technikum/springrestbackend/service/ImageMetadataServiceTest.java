@@ -0,0 +1,157 @@
+package at.technikum.springrestbackend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ImageMetadataService")
+class ImageMetadataServiceTest {
+
+    @Mock
+    MinioService minioService;
+
+    ImageMetadataService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ImageMetadataService(minioService, 4096);
+    }
+
+    @Test
+    @DisplayName("describe: PNG gets its dimensions and a 4x3 BlurHash")
+    void describe_png_dimensionsAndPlaceholder() throws Exception {
+        ImageMetadataService.ImageMetadata metadata = service.describe(image(300, 150, "png"));
+
+        assertEquals(300, metadata.width());
+        assertEquals(150, metadata.height());
+        assertEquals(28, metadata.placeholder().length());
+        assertEquals('L', metadata.placeholder().charAt(0));
+    }
+
+    @Test
+    @DisplayName("describe: JPEG dimensions and placeholder")
+    void describe_jpeg_dimensionsAndPlaceholder() throws Exception {
+        ImageMetadataService.ImageMetadata metadata = service.describe(image(40, 90, "jpeg"));
+
+        assertEquals(40, metadata.width());
+        assertEquals(90, metadata.height());
+        assertNotNull(metadata.placeholder());
+    }
+
+    @Test
+    @DisplayName("describe: unknown content has no metadata")
+    void describe_notAnImage_none() throws Exception {
+        byte[] html = "<html><body></body></html>".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals(ImageMetadataService.ImageMetadata.NONE, service.describe(html));
+    }
+
+    @Test
+    @DisplayName("describe: unreadable objects do not fail the upload")
+    void describe_storageError_none() {
+        when(minioService.readPrefix("post-images/abc.png", 4097))
+                .thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND));
+
+        assertEquals(ImageMetadataService.ImageMetadata.NONE,
+                service.describe("post-images/abc.png"));
+        assertEquals(ImageMetadataService.ImageMetadata.NONE, service.describe((String) null));
+    }
+
+    @Test
+    @DisplayName("describe: small stored objects are read whole past the caches")
+    void describe_storedObject_placeholderFromRangedRead() throws Exception {
+        when(minioService.readPrefix("post-images/abc.png", 4097))
+                .thenReturn(image(30, 20, "png"));
+
+        ImageMetadataService.ImageMetadata metadata = service.describe("post-images/abc.png");
+
+        assertEquals(30, metadata.width());
+        assertNotNull(metadata.placeholder());
+        verify(minioService, never()).openStream(anyString());
+    }
+
+    @Test
+    @DisplayName("describe: objects beyond the read limit get dimensions only")
+    void describe_largeStoredObject_dimensionsWithoutPlaceholder() throws Exception {
+        byte[] large = noisyPng(200, 200);
+        assertTrue(large.length > 4097);
+        when(minioService.readPrefix("post-images/abc.png", 4097))
+                .thenReturn(Arrays.copyOf(large, 4097));
+
+        ImageMetadataService.ImageMetadata metadata = service.describe("post-images/abc.png");
+
+        assertEquals(200, metadata.width());
+        assertEquals(200, metadata.height());
+        assertNull(metadata.placeholder());
+    }
+
+    @Test
+    @DisplayName("webpDimensions: reads extended and lossless headers")
+    void webpDimensions_parsesHeaders() {
+        ByteBuffer extended = webp("VP8X");
+        extended.position(24);
+        extended.put((byte) 0x1F).put((byte) 0x03).put((byte) 0);   // 800 - 1
+        extended.put((byte) 0x57).put((byte) 0x02).put((byte) 0);   // 600 - 1
+
+        ImageMetadataService.ImageMetadata vp8x =
+                ImageMetadataService.webpDimensions(extended.array());
+        assertEquals(800, vp8x.width());
+        assertEquals(600, vp8x.height());
+        assertNull(vp8x.placeholder());
+
+        ByteBuffer lossless = webp("VP8L");
+        lossless.position(20);
+        lossless.put((byte) 0x2F).putInt((99 << 14) | 199);
+
+        ImageMetadataService.ImageMetadata vp8l =
+                ImageMetadataService.webpDimensions(lossless.array());
+        assertEquals(200, vp8l.width());
+        assertEquals(100, vp8l.height());
+    }
+
+    private static ByteBuffer webp(String chunk) {
+        ByteBuffer buffer = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("RIFF".getBytes(StandardCharsets.US_ASCII)).putInt(24);
+        buffer.put("WEBP".getBytes(StandardCharsets.US_ASCII));
+        buffer.put(chunk.getBytes(StandardCharsets.US_ASCII)).putInt(12);
+        return buffer;
+    }
+
+    private static byte[] noisyPng(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(1);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static byte[] image(int width, int height, String format) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+}
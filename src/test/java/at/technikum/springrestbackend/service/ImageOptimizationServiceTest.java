@@ -0,0 +1,139 @@
+package at.technikum.springrestbackend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ImageOptimizationService")
+class ImageOptimizationServiceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ImageOptimizationService service;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        service = new ImageOptimizationService(true, 0.8f, 100, 1, 4, 5000, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.destroy();
+    }
+
+    @Test
+    @DisplayName("optimize: rotates by the EXIF orientation and drops the EXIF block")
+    void optimize_exifRotated_turnsUpright() throws Exception {
+        byte[] jpeg = withOrientation(image(40, 20, "jpeg"), 6, false);
+        MockMultipartFile file = new MockMultipartFile("file", "a.jpg", "image/jpeg", jpeg);
+
+        ImageOptimizationService.OptimizedImage optimized = service.optimize(file).orElseThrow();
+
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(optimized.bytes()));
+        assertEquals(20, result.getWidth());
+        assertEquals(40, result.getHeight());
+        assertEquals("image/jpeg", optimized.contentType());
+        assertEquals(1, ImageOptimizationService.exifOrientation(optimized.bytes()));
+        assertEquals(1, meterRegistry.get("files.optimize.saved").summary().count());
+    }
+
+    @Test
+    @DisplayName("optimize: caps the longest side at the maximum dimension")
+    void optimize_largePng_isDownscaled() throws Exception {
+        MockMultipartFile file =
+                new MockMultipartFile("file", "a.png", "image/png", image(300, 150, "png"));
+
+        ImageOptimizationService.OptimizedImage optimized = service.optimize(file).orElseThrow();
+
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(optimized.bytes()));
+        assertEquals(100, result.getWidth());
+        assertEquals(50, result.getHeight());
+    }
+
+    @Test
+    @DisplayName("optimize: disabled, WEBP and undecodable uploads are stored as they are")
+    void optimize_notApplicable_returnsEmpty() throws Exception {
+        ImageOptimizationService disabled =
+                new ImageOptimizationService(false, 0.8f, 100, 1, 4, 5000, meterRegistry);
+        try {
+            assertTrue(disabled.optimize(new MockMultipartFile(
+                    "file", "a.png", "image/png", image(300, 150, "png"))).isEmpty());
+        } finally {
+            disabled.destroy();
+        }
+        assertTrue(service.optimize(new MockMultipartFile(
+                "file", "a.webp", "image/webp", new byte[]{1, 2, 3})).isEmpty());
+        assertTrue(service.optimize(new MockMultipartFile(
+                "file", "a.png", "image/png", new byte[]{1, 2, 3})).isEmpty());
+    }
+
+    @Test
+    @DisplayName("orient: orientation 6 turns the left edge to the top")
+    void orient_rotateClockwise_movesPixels() {
+        BufferedImage source = new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB);
+        source.setRGB(0, 0, Color.RED.getRGB());
+        source.setRGB(1, 0, Color.BLUE.getRGB());
+
+        BufferedImage rotated =
+                ImageOptimizationService.orient(source, 6, BufferedImage.TYPE_INT_RGB);
+
+        assertEquals(1, rotated.getWidth());
+        assertEquals(2, rotated.getHeight());
+        assertEquals(Color.RED.getRGB(), rotated.getRGB(0, 0));
+        assertEquals(Color.BLUE.getRGB(), rotated.getRGB(0, 1));
+    }
+
+    @Test
+    @DisplayName("exifOrientation: reads both byte orders, 1 without EXIF")
+    void exifOrientation_parsesTiffHeader() throws Exception {
+        byte[] jpeg = image(8, 8, "jpeg");
+
+        assertEquals(1, ImageOptimizationService.exifOrientation(jpeg));
+        assertEquals(6, ImageOptimizationService.exifOrientation(withOrientation(jpeg, 6, false)));
+        assertEquals(8, ImageOptimizationService.exifOrientation(withOrientation(jpeg, 8, true)));
+    }
+
+    private static byte[] image(int width, int height, String format) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    /** Inserts an APP1 segment with a single orientation tag after SOI and JFIF. */
+    private static byte[] withOrientation(byte[] jpeg, int orientation, boolean littleEndian) {
+        ByteOrder order = littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        ByteBuffer tiff = ByteBuffer.allocate(26).order(order);
+        tiff.put(littleEndian ? new byte[]{'I', 'I'} : new byte[]{'M', 'M'});
+        tiff.putShort((short) 42).putInt(8);
+        tiff.putShort((short) 1);
+        tiff.putShort((short) 0x0112).putShort((short) 3).putInt(1)
+                .putShort((short) orientation).putShort((short) 0);
+        tiff.putInt(0);
+
+        int insertAt = 2;
+        if ((jpeg[2] & 0xFF) == 0xFF && (jpeg[3] & 0xFF) == 0xE0) {
+            insertAt += 2 + (((jpeg[4] & 0xFF) << 8) | (jpeg[5] & 0xFF));
+        }
+        ByteBuffer out = ByteBuffer.allocate(jpeg.length + 4 + 6 + 26);
+        out.put(jpeg, 0, insertAt);
+        out.put((byte) 0xFF).put((byte) 0xE1).putShort((short) (2 + 6 + 26));
+        out.put(new byte[]{'E', 'x', 'i', 'f', 0, 0});
+        out.put(tiff.array());
+        out.put(jpeg, insertAt, jpeg.length - insertAt);
+        return out.array();
+    }
+}
@@ -0,0 +1,147 @@
+package at.technikum.springrestbackend.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ImageRenditionService")
+class ImageRenditionServiceTest {
+
+    @Mock
+    MinioService minioService;
+
+    private ImageRenditionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ImageRenditionService(minioService, List.of(256, 64), 1, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.destroy();
+    }
+
+    @Test
+    @DisplayName("renditionKey: width goes before the extension")
+    void renditionKey_insertsWidthBeforeExtension() {
+        assertEquals("avatars/1/a.w64.png", service.renditionKey("avatars/1/a.png", 64));
+        assertEquals("avatars/1.x/a.w64", service.renditionKey("avatars/1.x/a", 64));
+        assertEquals(List.of("avatars/1/a.w64.jpg", "avatars/1/a.w256.jpg"),
+                service.renditionKeys("avatars/1/a.jpg"));
+        assertEquals(List.of(), service.renditionKeys("avatars/1/a.webp"));
+    }
+
+    @Test
+    @DisplayName("urlsFor: one ?w= URL per width, none for WEBP")
+    void urlsFor_listsWidthUrls() {
+        assertEquals(Map.of(64, "/api/files/avatars/1/a.png?w=64",
+                        256, "/api/files/avatars/1/a.png?w=256"),
+                service.urlsFor("avatars/1/a.png"));
+        assertTrue(service.urlsFor("avatars/1/a.webp").isEmpty());
+        assertTrue(service.urlsFor(null).isEmpty());
+    }
+
+    @Test
+    @DisplayName("resolve: smallest rendition that is wide enough")
+    void resolve_existingRendition_returnsRenditionKey() {
+        when(minioService.stat("avatars/1/a.w64.png"))
+                .thenReturn(new MinioService.ObjectMetadata("image/png", 10, "e", null));
+
+        assertEquals("avatars/1/a.w64.png", service.resolve("avatars/1/a.png", 48));
+        assertEquals("avatars/1/a.png", service.resolve("avatars/1/a.png", 2000));
+        assertEquals("avatars/1/a.png", service.resolve("avatars/1/a.png", 0));
+    }
+
+    @Test
+    @DisplayName("resolve: missing rendition falls back and is not re-checked at once")
+    void resolve_missingRendition_fallsBackToOriginal() {
+        when(minioService.stat("avatars/1/a.w256.png"))
+                .thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found"));
+
+        assertEquals("avatars/1/a.png", service.resolve("avatars/1/a.png", 100));
+        assertEquals("avatars/1/a.png", service.resolve("avatars/1/a.png", 100));
+
+        verify(minioService, times(1)).stat("avatars/1/a.w256.png");
+    }
+
+    @Test
+    @DisplayName("resolveAsync: checks the rendition without a blocking stat")
+    void resolveAsync_existingRendition_returnsRenditionKey() {
+        when(minioService.statAsync("avatars/1/a.w64.png")).thenReturn(completedFuture(
+                new MinioService.ObjectMetadata("image/png", 10, "e", null)));
+
+        assertEquals("avatars/1/a.w64.png", service.resolveAsync("avatars/1/a.png", 48).join());
+        assertEquals("avatars/1/a.png", service.resolveAsync("avatars/1/a.png", 0).join());
+        verify(minioService, never()).stat(anyString());
+    }
+
+    @Test
+    @DisplayName("resolveAsync: missing rendition falls back and is remembered")
+    void resolveAsync_missingRendition_fallsBackToOriginal() {
+        when(minioService.statAsync("avatars/1/a.w256.png")).thenReturn(failedFuture(
+                new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found")));
+
+        assertEquals("avatars/1/a.png", service.resolveAsync("avatars/1/a.png", 100).join());
+        assertEquals("avatars/1/a.png", service.resolveAsync("avatars/1/a.png", 100).join());
+
+        verify(minioService, times(1)).statAsync("avatars/1/a.w256.png");
+    }
+
+    @Test
+    @DisplayName("generate: downscales wider images and copies smaller ones")
+    void generate_png_storesEveryWidth() throws Exception {
+        byte[] original = png(100, 50);
+        when(minioService.openStream("post-images/1/a.png"))
+                .thenReturn(new MinioService.StreamedFile(new ByteArrayInputStream(original),
+                        new MinioService.ObjectMetadata("image/png", original.length, "e", null)));
+
+        service.generate("post-images/1/a.png");
+
+        ArgumentCaptor<byte[]> small = ArgumentCaptor.forClass(byte[].class);
+        verify(minioService).upload(eq("post-images/1/a.w64.png"), small.capture(), eq("image/png"));
+        BufferedImage scaled = ImageIO.read(new ByteArrayInputStream(small.getValue()));
+        assertEquals(64, scaled.getWidth());
+        assertEquals(32, scaled.getHeight());
+        verify(minioService).upload("post-images/1/a.w256.png", original, "image/png");
+    }
+
+    @Test
+    @DisplayName("generate: undecodable objects get no renditions")
+    void generate_notAnImage_uploadsNothing() {
+        byte[] bytes = "not an image".getBytes();
+        when(minioService.openStream("post-images/1/a.png"))
+                .thenReturn(new MinioService.StreamedFile(new ByteArrayInputStream(bytes),
+                        new MinioService.ObjectMetadata("image/png", bytes.length, "e", null)));
+
+        service.generate("post-images/1/a.png");
+
+        verify(minioService, never()).upload(anyString(), any(byte[].class), anyString());
+    }
+
+    private static byte[] png(int width, int height) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", out);
+        return out.toByteArray();
+    }
+}
@@ -1,29 +1,80 @@
 package at.technikum.springrestbackend.service;
 
-import io.minio.MinioClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.Mock;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
+/**
+ * Cases every storage backend has to pass; the subclasses supply the backend
+ * and add their own. The backend is a spy, so fetches can be counted and
+ * delayed regardless of where the bytes come from.
+ */
 @ExtendWith(MockitoExtension.class)
-@DisplayName("MinioService Validation Tests")
-class MinioServiceTest {
+abstract class MinioServiceTest {
+
+    @TempDir
+    Path tempDir;
 
-    @Mock
-    private MinioClient minioClient;
+    protected HotObjectCache hotObjectCache;
+    protected DiskObjectCache diskObjectCache;
+    protected StorageBackend backend;
+    protected MinioService minioService;
 
-    private MinioService minioService;
+    protected abstract StorageBackend createBackend() throws Exception;
+
+    /**
+     * Makes {@code bytes} readable as {@code image/png} under the key. Each
+     * test stores at most one object.
+     */
+    protected abstract void givenObject(String objectKey, byte[] bytes) throws Exception;
 
     @BeforeEach
-    void setUp() {
-        minioService = new MinioService(minioClient, "test-bucket");
+    void setUp() throws Exception {
+        hotObjectCache = new HotObjectCache(1024 * 1024, 1024, new SimpleMeterRegistry());
+        diskObjectCache = new DiskObjectCache(
+                true, tempDir.resolve("cache"), 1024 * 1024, 64 * 1024,
+                new SimpleMeterRegistry());
+        backend = spy(createBackend());
+        minioService = new MinioService(backend, hotObjectCache, diskObjectCache,
+                new StorageGuard(64, 256, 200, 50, 20, 50, 30, 5, new SimpleMeterRegistry()));
     }
 
     @Test
@@ -64,6 +115,201 @@ class MinioServiceTest {
         assertThrows(Exception.class, () -> minioService.download("   "));
     }
 
+    @Test
+    @DisplayName("openStream: null objectKey throws")
+    void test_openStream_null_objectKey() {
+        assertThrows(Exception.class, () -> minioService.openStream(null));
+    }
+
+    @Test
+    @DisplayName("warm: fetches into the cache once, later calls find it cached")
+    void test_warm_fetchesOnce() throws Exception {
+        byte[] bytes = "image-bytes".getBytes();
+        givenObject("a.png", bytes);
+
+        assertEquals(MinioService.WarmResult.WARMED, minioService.warm("a.png"));
+        assertEquals(MinioService.WarmResult.CACHED, minioService.warm("a.png"));
+
+        assertArrayEquals(bytes, hotObjectCache.get("a.png").bytes());
+        verify(backend, times(1)).get(eq("a.png"), isNull(), isNull());
+    }
+
+    @Test
+    @DisplayName("warm: objects too large for either tier are skipped, not read")
+    void test_warm_tooLarge_skipped() throws Exception {
+        givenObject("big.png", new byte[128 * 1024]);
+
+        assertEquals(MinioService.WarmResult.SKIPPED, minioService.warm("big.png"));
+
+        verify(backend, never()).get(eq("big.png"), isNull(), isNull());
+    }
+
+    @Test
+    @DisplayName("openStream: small objects are served from memory on the next request")
+    void test_openStream_smallObject_cached() throws Exception {
+        byte[] bytes = "avatar".getBytes();
+        givenObject("avatars/1/a.png", bytes);
+
+        String etag;
+        try (MinioService.StreamedFile first = minioService.openStream("avatars/1/a.png")) {
+            assertArrayEquals(bytes, first.stream().readAllBytes());
+            etag = first.metadata().etag();
+        }
+        try (MinioService.StreamedFile second = minioService.openStream("avatars/1/a.png")) {
+            assertArrayEquals(bytes, second.stream().readAllBytes());
+        }
+        try (MinioService.StreamedFile range = minioService.openStream("avatars/1/a.png", 1, 3)) {
+            assertArrayEquals("vat".getBytes(), range.stream().readAllBytes());
+            assertEquals(3, range.size());
+        }
+
+        verify(backend, times(1)).get(eq("avatars/1/a.png"), isNull(), isNull());
+        assertNotNull(etag);
+        assertEquals(etag, minioService.stat("avatars/1/a.png").etag());
+        verify(backend, never()).stat(anyString());
+    }
+
+    @Test
+    @DisplayName("openStream: objects above both caps are streamed without caching")
+    void test_openStream_hugeObject_notCached() throws Exception {
+        byte[] bytes = new byte[128 * 1024];
+        givenObject("post-images/1/huge.png", bytes);
+
+        minioService.openStream("post-images/1/huge.png").close();
+        minioService.openStream("post-images/1/huge.png").close();
+
+        verify(backend, times(2)).get(eq("post-images/1/huge.png"), isNull(), isNull());
+        assertNull(diskObjectCache.metadata("post-images/1/huge.png"));
+    }
+
+    @Test
+    @DisplayName("readPrefix: reads the first bytes without caching the object")
+    void test_readPrefix_bypassesCaches() throws Exception {
+        givenObject("uploads/a.png", "0123456789abcdef".getBytes());
+
+        assertArrayEquals("0123".getBytes(), minioService.readPrefix("uploads/a.png", 4));
+
+        assertNull(hotObjectCache.get("uploads/a.png"));
+        assertNull(diskObjectCache.metadata("uploads/a.png"));
+    }
+
+    @Test
+    @DisplayName("openStream: concurrent misses for one key share a single fetch")
+    void test_openStream_concurrentMisses_coalesced() throws Exception {
+        // fits the memory tier, which every backend fills
+        byte[] bytes = new byte[512];
+        givenObject("post-images/1/new.png", bytes);
+        doAnswer(inv -> {
+            Thread.sleep(200);
+            return inv.callRealMethod();
+        }).when(backend).get(eq("post-images/1/new.png"), isNull(), isNull());
+        int requests = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(requests);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    try (MinioService.StreamedFile file =
+                                 minioService.openStream("post-images/1/new.png")) {
+                        return file.stream().readAllBytes();
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<byte[]> result : results) {
+                assertArrayEquals(bytes, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        verify(backend, times(1)).get(eq("post-images/1/new.png"), isNull(), isNull());
+    }
+
+    @Test
+    @DisplayName("openStream: waiters see the leader's not-found error")
+    void test_openStream_concurrentMisses_shareNotFound() throws Exception {
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(inv -> {
+            fetching.countDown();
+            release.await();
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found");
+        }).when(backend).get(eq("avatars/1/gone.png"), isNull(), isNull());
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> leader = pool.submit(() -> minioService.openStream("avatars/1/gone.png"));
+            fetching.await();
+            Future<?> waiter = pool.submit(() -> minioService.openStream("avatars/1/gone.png"));
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<?> result : List.of(leader, waiter)) {
+                ExecutionException e = assertThrows(ExecutionException.class,
+                        () -> result.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(ResponseStatusException.class, e.getCause());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        verify(backend, times(1)).get(eq("avatars/1/gone.png"), isNull(), isNull());
+    }
+
+    @Test
+    @DisplayName("openStreamAsync: a miss fills the cache, the next request completes at once")
+    void test_openStreamAsync_miss_cachedForNextRequest() throws Exception {
+        byte[] bytes = "avatar".getBytes();
+        givenObject("avatars/1/a.png", bytes);
+
+        try (MinioService.StreamedFile first =
+                     minioService.openStreamAsync("avatars/1/a.png").join()) {
+            assertArrayEquals(bytes, first.stream().readAllBytes());
+        }
+        CompletableFuture<MinioService.StreamedFile> second =
+                minioService.openStreamAsync("avatars/1/a.png");
+
+        assertTrue(second.isDone());
+        assertArrayEquals(bytes, second.join().stream().readAllBytes());
+        verify(backend, times(1)).getAsync(eq("avatars/1/a.png"), isNull(), isNull());
+    }
+
+    @Test
+    @DisplayName("openStreamAsync: concurrent misses wait on one pending fetch")
+    void test_openStreamAsync_concurrentMisses_shareFetch() throws Exception {
+        byte[] bytes = "avatar".getBytes();
+        CompletableFuture<MinioService.StreamedFile> pending = new CompletableFuture<>();
+        doReturn(pending).when(backend).getAsync(eq("avatars/1/a.png"), isNull(), isNull());
+
+        CompletableFuture<MinioService.StreamedFile> first =
+                minioService.openStreamAsync("avatars/1/a.png");
+        CompletableFuture<MinioService.StreamedFile> second =
+                minioService.openStreamAsync("avatars/1/a.png");
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+        pending.complete(new MinioService.StreamedFile(new ByteArrayInputStream(bytes),
+                new MinioService.ObjectMetadata("image/png", bytes.length, "etag", null)));
+
+        assertArrayEquals(bytes, first.join().stream().readAllBytes());
+        assertArrayEquals(bytes, second.join().stream().readAllBytes());
+        verify(backend, times(1)).getAsync(eq("avatars/1/a.png"), isNull(), isNull());
+    }
+
+    @Test
+    @DisplayName("delete: evicts the cached object")
+    void test_delete_evictsCachedObject() throws Exception {
+        givenObject("avatars/1/a.png", "avatar".getBytes());
+        minioService.openStream("avatars/1/a.png").close();
+        assertNotNull(hotObjectCache.get("avatars/1/a.png"));
+
+        minioService.delete("avatars/1/a.png");
+
+        assertNull(hotObjectCache.get("avatars/1/a.png"));
+        assertNull(diskObjectCache.metadata("avatars/1/a.png"));
+    }
+
     @Test
     @DisplayName("delete: null objectKey does not throw")
     void test_delete_null_objectKey() {
@@ -0,0 +1,174 @@
+package at.technikum.springrestbackend.service;
+
+import at.technikum.springrestbackend.util.FileRegionInputStream;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.MinioAsyncClient;
+import io.minio.MinioClient;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import okhttp3.Headers;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DisplayName("MinioService on the MinIO backend")
+class MinioStorageBackendTest extends MinioServiceTest {
+
+    @Mock
+    private MinioClient minioClient;
+    @Mock
+    private MinioAsyncClient minioAsyncClient;
+
+    @Override
+    protected StorageBackend createBackend() {
+        return new MinioStorageBackend(minioClient, minioAsyncClient, "test-bucket");
+    }
+
+    @Override
+    protected void givenObject(String objectKey, byte[] bytes) throws Exception {
+        // a test reads through either client
+        lenient().when(minioClient.getObject(any(GetObjectArgs.class)))
+                .thenAnswer(inv -> getObjectResponse(objectKey, bytes));
+        lenient().when(minioAsyncClient.getObject(any(GetObjectArgs.class)))
+                .thenAnswer(inv -> CompletableFuture.completedFuture(
+                        getObjectResponse(objectKey, bytes)));
+        lenient().when(minioClient.statObject(any(StatObjectArgs.class)))
+                .thenAnswer(inv -> new StatObjectResponse(
+                        Headers.of(
+                                "Content-Type", "image/png",
+                                "Content-Length", String.valueOf(bytes.length),
+                                "ETag", "\"etag\"",
+                                "Last-Modified", "Tue, 15 Nov 1994 08:12:31 GMT"),
+                        "test-bucket", null, objectKey));
+    }
+
+    @Test
+    @DisplayName("openStream: metadata comes from GET headers without a stat call")
+    void test_openStream_success() throws Exception {
+        byte[] bytes = "image-bytes".getBytes();
+        Headers headers = Headers.of(
+                "Content-Type", "image/png",
+                "Content-Length", String.valueOf(bytes.length),
+                "ETag", "\"abc123\"",
+                "Last-Modified", "Tue, 15 Nov 1994 08:12:31 GMT");
+        when(minioClient.getObject(any(GetObjectArgs.class))).thenReturn(
+                new GetObjectResponse(headers, "test-bucket", null, "a.png",
+                        new ByteArrayInputStream(bytes)));
+
+        try (MinioService.StreamedFile file = minioService.openStream("a.png")) {
+            assertEquals("image/png", file.contentType());
+            assertEquals(bytes.length, file.size());
+            assertEquals("abc123", file.metadata().etag());
+            assertEquals(Instant.parse("1994-11-15T08:12:31Z"),
+                    file.metadata().lastModified());
+            assertArrayEquals(bytes, file.stream().readAllBytes());
+        }
+        verify(minioClient, never()).statObject(any(StatObjectArgs.class));
+    }
+
+    @Test
+    @DisplayName("stat: maps HEAD response to metadata")
+    void test_stat_success() throws Exception {
+        StatObjectResponse stat = new StatObjectResponse(
+                Headers.of(
+                        "Content-Type", "image/jpeg",
+                        "Content-Length", "42",
+                        "ETag", "\"etag-1\"",
+                        "Last-Modified", "Tue, 15 Nov 1994 08:12:31 GMT"),
+                "test-bucket", null, "b.jpg");
+        when(minioClient.statObject(any(StatObjectArgs.class))).thenReturn(stat);
+
+        MinioService.ObjectMetadata metadata = minioService.stat("b.jpg");
+
+        assertEquals("image/jpeg", metadata.contentType());
+        assertEquals(42, metadata.size());
+        assertEquals("etag-1", metadata.etag());
+        assertEquals(Instant.parse("1994-11-15T08:12:31Z"), metadata.lastModified());
+        verify(minioClient, never()).getObject(any(GetObjectArgs.class));
+    }
+
+    @Test
+    @DisplayName("openStream: objects above the memory cap are served from the disk tier")
+    void test_openStream_largeObject_servedFromDisk() throws Exception {
+        byte[] bytes = new byte[2048];
+        bytes[100] = 7;
+        givenObject("post-images/1/big.png", bytes);
+
+        try (MinioService.StreamedFile first = minioService.openStream("post-images/1/big.png")) {
+            assertArrayEquals(bytes, first.stream().readAllBytes());
+        }
+        try (MinioService.StreamedFile second = minioService.openStream("post-images/1/big.png")) {
+            assertInstanceOf(FileRegionInputStream.class, second.stream());
+            assertArrayEquals(bytes, second.stream().readAllBytes());
+        }
+
+        verify(minioClient, times(1)).getObject(any(GetObjectArgs.class));
+        assertNull(hotObjectCache.get("post-images/1/big.png"));
+        assertNotNull(diskObjectCache.metadata("post-images/1/big.png"));
+    }
+
+    @Test
+    @DisplayName("openStreamAsync: a failed MinIO call completes the future with 500")
+    void test_openStreamAsync_clientFailure() throws Exception {
+        when(minioAsyncClient.getObject(any(GetObjectArgs.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("connection reset")));
+
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> minioService.openStreamAsync("avatars/1/a.png").join());
+
+        ResponseStatusException status =
+                assertInstanceOf(ResponseStatusException.class, e.getCause());
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, status.getStatusCode());
+        verify(minioClient, never()).getObject(any(GetObjectArgs.class));
+    }
+
+    @Test
+    @DisplayName("deleteAll: one multi-object request, nothing reported on success")
+    void test_deleteAll_success() {
+        when(minioClient.removeObjects(any())).thenReturn(List.of());
+
+        assertEquals(Set.of(), minioService.deleteAll(List.of("a.png", "b.png")));
+        verify(minioClient, times(1)).removeObjects(any());
+    }
+
+    @Test
+    @DisplayName("deleteAll: request failure reports every key for retry")
+    void test_deleteAll_failure() {
+        when(minioClient.removeObjects(any())).thenThrow(new RuntimeException("connection refused"));
+
+        assertEquals(Set.of("a.png", "b.png"), minioService.deleteAll(List.of("a.png", "b.png")));
+    }
+
+    private static GetObjectResponse getObjectResponse(String key, byte[] bytes) {
+        Headers headers = Headers.of(
+                "Content-Type", "image/png",
+                "Content-Length", String.valueOf(bytes.length),
+                "ETag", "\"etag\"");
+        return new GetObjectResponse(headers, "test-bucket", null, key,
+                new ByteArrayInputStream(bytes));
+    }
+}
@@ -0,0 +1,137 @@
+package at.technikum.springrestbackend.service;
+
+import at.technikum.springrestbackend.entity.ObjectDeletion;
+import at.technikum.springrestbackend.entity.StoredObject;
+import at.technikum.springrestbackend.repository.ObjectDeletionRepository;
+import at.technikum.springrestbackend.repository.StoredObjectRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ObjectDeletionService")
+class ObjectDeletionServiceTest {
+
+    @Mock
+    ObjectDeletionRepository objectDeletionRepository;
+    @Mock
+    StoredObjectRepository storedObjectRepository;
+    @Mock
+    MinioService minioService;
+    @Mock
+    PlatformTransactionManager transactionManager;
+
+    private ImageRenditionService imageRenditionService;
+    private ObjectDeletionService service;
+
+    @BeforeEach
+    void setUp() {
+        imageRenditionService = new ImageRenditionService(minioService, List.of(64), 1, 1);
+        service = new ObjectDeletionService(objectDeletionRepository, storedObjectRepository,
+                minioService, imageRenditionService, new TransactionTemplate(transactionManager),
+                2, 30, 600);
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageRenditionService.destroy();
+    }
+
+    @Test
+    @DisplayName("enqueue: stores each non-blank key once without touching storage")
+    @SuppressWarnings("unchecked")
+    void enqueue_savesRowsOnly() {
+        service.enqueue(Arrays.asList("a.png", null, " ", "a.png", "b.png"));
+
+        ArgumentCaptor<List<ObjectDeletion>> saved = ArgumentCaptor.forClass(List.class);
+        verify(objectDeletionRepository).saveAll(saved.capture());
+        assertEquals(List.of("a.png", "b.png"),
+                saved.getValue().stream().map(ObjectDeletion::getObjectKey).toList());
+        verifyNoInteractions(minioService);
+    }
+
+    @Test
+    @DisplayName("drainBatch: removes deleted rows and reschedules failures")
+    void drainBatch_partialFailure_retriesFailedKeys() {
+        ObjectDeletion ok = new ObjectDeletion("a.png", LocalDateTime.now());
+        ObjectDeletion broken = new ObjectDeletion("b.png", LocalDateTime.now());
+        broken.setAttempts(1);
+        when(objectDeletionRepository.findByNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(
+                any(), any())).thenReturn(List.of(ok, broken));
+        when(minioService.deleteAll(List.of("a.png", "b.png"))).thenReturn(Set.of("b.png"));
+
+        assertEquals(1, service.drainBatch());
+
+        verify(objectDeletionRepository).deleteAllInBatch(List.of(ok));
+        verify(objectDeletionRepository).saveAll(List.of(broken));
+        assertEquals(2, broken.getAttempts());
+        assertTrue(broken.getNextAttemptAt().isAfter(LocalDateTime.now().plusSeconds(50)));
+    }
+
+    @Test
+    @DisplayName("drainBatch: skips content that was referenced again, drops unused counts")
+    @SuppressWarnings("unchecked")
+    void drainBatch_referencedAgain_keepsObject() {
+        ObjectDeletion reused = new ObjectDeletion("post-images/abc.png", LocalDateTime.now());
+        ObjectDeletion rendition =
+                new ObjectDeletion("post-images/abc.w64.png", LocalDateTime.now());
+        ObjectDeletion unused = new ObjectDeletion("post-images/def.png", LocalDateTime.now());
+        StoredObject unusedCount = new StoredObject("post-images/def.png", 0);
+        when(objectDeletionRepository.findByNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(
+                any(), any())).thenReturn(List.of(reused, rendition, unused));
+        when(storedObjectRepository.findAllForUpdate(
+                Set.of("post-images/abc.png", "post-images/def.png")))
+                .thenReturn(List.of(new StoredObject("post-images/abc.png", 1), unusedCount));
+        when(minioService.deleteAll(List.of("post-images/def.png"))).thenReturn(Set.of());
+
+        assertEquals(3, service.drainBatch());
+
+        ArgumentCaptor<List<StoredObject>> dropped = ArgumentCaptor.forClass(List.class);
+        verify(storedObjectRepository).deleteAll(dropped.capture());
+        assertEquals(List.of(unusedCount), dropped.getValue());
+        verify(objectDeletionRepository).deleteAllInBatch(List.of(reused, rendition, unused));
+    }
+
+    @Test
+    @DisplayName("drain: keeps going while batches come back full")
+    void drain_fullBatches_loopsUntilEmpty() {
+        when(objectDeletionRepository.findByNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(
+                any(), any()))
+                .thenReturn(List.of(new ObjectDeletion("a", LocalDateTime.now()),
+                        new ObjectDeletion("b", LocalDateTime.now())))
+                .thenReturn(List.of());
+        when(minioService.deleteAll(any())).thenReturn(Set.of());
+
+        service.drain();
+
+        verify(objectDeletionRepository, times(2))
+                .findByNextAttemptAtLessThanEqualOrderByNextAttemptAtAsc(any(), any());
+        verify(minioService, times(1)).deleteAll(any());
+    }
+
+    @Test
+    @DisplayName("backoff: doubles per attempt up to the maximum")
+    void backoff_isExponentialAndCapped() {
+        assertEquals(Duration.ofSeconds(30), service.backoff(1));
+        assertEquals(Duration.ofSeconds(60), service.backoff(2));
+        assertEquals(Duration.ofSeconds(240), service.backoff(4));
+        assertEquals(Duration.ofSeconds(600), service.backoff(10));
+        assertEquals(Duration.ofSeconds(600), service.backoff(500));
+    }
+}
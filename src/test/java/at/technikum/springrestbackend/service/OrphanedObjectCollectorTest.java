@@ -0,0 +1,122 @@
+package at.technikum.springrestbackend.service;
+
+import at.technikum.springrestbackend.repository.PostRepository;
+import at.technikum.springrestbackend.repository.ProfileRepository;
+import at.technikum.springrestbackend.repository.StoredObjectRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("OrphanedObjectCollector")
+class OrphanedObjectCollectorTest {
+
+    private static final Instant OLD = Instant.now().minus(2, ChronoUnit.DAYS);
+
+    @Mock
+    MinioService minioService;
+    @Mock
+    PostRepository postRepository;
+    @Mock
+    ProfileRepository profileRepository;
+    @Mock
+    StoredObjectRepository storedObjectRepository;
+
+    private ImageRenditionService imageRenditionService;
+    private SimpleMeterRegistry meterRegistry;
+    private OrphanedObjectCollector collector;
+
+    @BeforeEach
+    void setUp() {
+        imageRenditionService = new ImageRenditionService(minioService, List.of(64), 1, 1);
+        meterRegistry = new SimpleMeterRegistry();
+        collector = new OrphanedObjectCollector(minioService, postRepository, profileRepository,
+                storedObjectRepository, imageRenditionService, true, 24, 2, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageRenditionService.destroy();
+    }
+
+    @Test
+    @DisplayName("collect: deletes unreferenced objects and their renditions in batches")
+    void collect_deletesOrphansOnly() {
+        when(minioService.list("avatars/")).thenReturn(Stream.of(
+                object("avatars/1/kept.png", 10, OLD),
+                object("avatars/1/kept.w64.png", 5, OLD),
+                object("avatars/1/gone.png", 100, OLD)));
+        when(minioService.list("post-images/")).thenReturn(Stream.of(
+                object("post-images/1/fresh.png", 1000, Instant.now())));
+        when(profileRepository.findAvatarObjectKeysIn(any()))
+                .thenAnswer(inv -> inv.<Set<String>>getArgument(0).contains("avatars/1/kept.png")
+                        ? List.of("avatars/1/kept.png")
+                        : List.of());
+        when(minioService.deleteAll(List.of("avatars/1/gone.png"))).thenReturn(Set.of());
+
+        assertEquals(100, collector.collect());
+
+        verify(minioService, times(1)).deleteAll(any());
+        verify(postRepository, times(2)).findImageObjectKeysIn(any());
+        assertEquals(100, meterRegistry.counter("files.gc.reclaimed").count());
+        assertEquals(1, meterRegistry.counter("files.gc.deleted").count());
+    }
+
+    @Test
+    @DisplayName("collect: objects that could not be deleted are not counted")
+    void collect_failedDelete_notCounted() {
+        when(minioService.list("avatars/")).thenReturn(Stream.of(
+                object("avatars/1/a.png", 10, OLD)));
+        when(minioService.list("post-images/")).thenReturn(Stream.empty());
+        when(minioService.deleteAll(List.of("avatars/1/a.png"))).thenReturn(Set.of("avatars/1/a.png"));
+
+        assertEquals(0, collector.collect());
+        assertEquals(0, meterRegistry.counter("files.gc.deleted").count());
+    }
+
+    @Test
+    @DisplayName("scheduledCollect: does nothing when disabled")
+    void scheduledCollect_disabled_skips() {
+        OrphanedObjectCollector disabled = new OrphanedObjectCollector(minioService,
+                postRepository, profileRepository, storedObjectRepository,
+                imageRenditionService, false, 24, 2, meterRegistry);
+
+        disabled.scheduledCollect();
+
+        verifyNoInteractions(minioService, postRepository, profileRepository,
+                storedObjectRepository);
+    }
+
+    @Test
+    @DisplayName("collect: counted content is left to the deletion outbox")
+    void collect_countedContent_skipped() {
+        when(minioService.list("avatars/")).thenReturn(Stream.of(
+                object("avatars/abc.png", 10, OLD),
+                object("avatars/abc.w64.png", 5, OLD)));
+        when(minioService.list("post-images/")).thenReturn(Stream.empty());
+        when(storedObjectRepository.findObjectKeysIn(Set.of("avatars/abc.png")))
+                .thenReturn(List.of("avatars/abc.png"));
+
+        assertEquals(0, collector.collect());
+
+        verify(minioService, never()).deleteAll(any());
+    }
+
+    private static MinioService.ObjectSummary object(String key, long size, Instant lastModified) {
+        return new MinioService.ObjectSummary(key, size, lastModified);
+    }
+}
@@ -0,0 +1,241 @@
+package at.technikum.springrestbackend.service;
+
+import at.technikum.springrestbackend.entity.Post;
+import at.technikum.springrestbackend.repository.PostRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("PostSearchIndex")
+class PostSearchIndexTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.now();
+
+    @Mock
+    private PostRepository postRepository;
+
+    @TempDir
+    private Path directory;
+
+    private SimpleMeterRegistry meterRegistry;
+    private PostSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        index = index(0);
+    }
+
+    @Test
+    @DisplayName("search: every term has to match, title hits rank first")
+    void search_matchesAllTerms_titleRanksFirst() {
+        index.index(post(1, "Weekend trip", "We went hiking in the alps with the dog", NOW));
+        index.index(post(2, "Hiking in the alps", "A long weekend", NOW));
+        index.index(post(3, "Alps", "Skiing only", NOW));
+
+        PostSearchIndex.Hits hits = index.search("alps hiking", 10);
+
+        assertEquals(List.of(2L, 1L), hits.postIds());
+        assertEquals(2, hits.total());
+    }
+
+    @Test
+    @DisplayName("search: case and accents are ignored")
+    void search_foldsCaseAndAccents() {
+        index.index(post(1, "Café in Wien", "Mélange und Kuchen", NOW));
+
+        assertEquals(List.of(1L), index.search("CAFE melange", 10).postIds());
+    }
+
+    @Test
+    @DisplayName("search: the last term also matches as a prefix")
+    void search_lastTermMatchesPrefix() {
+        index.index(post(1, "Photography basics", "Aperture and shutter", NOW));
+        index.index(post(2, "Photo walk", "Vienna at night", NOW));
+
+        assertEquals(2, index.search("phot", 10).total());
+        assertEquals(0, index.search("phot vienna", 10).total());
+        assertEquals(List.of(2L), index.search("photo vie", 10).postIds());
+    }
+
+    @Test
+    @DisplayName("search: only the best hits are returned, the total counts all")
+    void search_limit_keepsTotal() {
+        for (int i = 1; i <= 20; i++) {
+            index.index(post(i, "Post " + i, "shared words", NOW));
+        }
+
+        PostSearchIndex.Hits hits = index.search("shared", 5);
+
+        assertEquals(5, hits.postIds().size());
+        assertEquals(20, hits.total());
+    }
+
+    @Test
+    @DisplayName("index/remove: updates replace old terms, removed posts disappear")
+    void updateAndRemove_areReflected() {
+        Post post = post(1, "Old title", "Old content", NOW);
+        index.index(post);
+        post.setTitle("New title");
+        post.setContent("Fresh content");
+        index.index(post);
+
+        assertEquals(0, index.search("old", 10).total());
+        assertEquals(List.of(1L), index.search("fresh", 10).postIds());
+
+        index.remove(List.of(1L));
+
+        assertEquals(0, index.search("fresh", 10).total());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    @DisplayName("recency: of two equal matches the newer one ranks first")
+    void recencyBoost_prefersNewerPosts() {
+        PostSearchIndex boosted = index(0.5);
+        boosted.index(post(1, "Release notes", "Version one", NOW.minusDays(90)));
+        boosted.index(post(2, "Release notes", "Version two", NOW.minusDays(1)));
+
+        assertEquals(List.of(2L, 1L), boosted.search("release", 10).postIds());
+    }
+
+    @Test
+    @DisplayName("rebuild: reads all posts in batches and becomes ready")
+    void rebuild_readsAllBatches() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        PostSearchIndex small = index(0, 2, 2);
+        when(postRepository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 2)))
+                .thenReturn(List.of(post(1, "First", "a", NOW), post(2, "Second", "b", NOW)));
+        when(postRepository.findByIdGreaterThanOrderByIdAsc(2L, PageRequest.of(0, 2)))
+                .thenReturn(List.of(post(5, "Third", "c", NOW)));
+
+        assertFalse(small.isReady());
+        small.rebuild();
+
+        assertTrue(small.isReady());
+        assertEquals(3, small.size());
+        assertEquals(List.of(5L), small.search("third", 10).postIds());
+        assertEquals(3, meterRegistry.get("posts.search.documents").gauge().value());
+        assertEquals(2, small.segmentCount());
+    }
+
+    @Test
+    @DisplayName("rebuild: a live update wins over the row it read")
+    void rebuild_keepsLiveUpdate() throws Exception {
+        Post stale = post(1, "Draft", "old text", NOW);
+        Post current = post(1, "Published", "new text", NOW);
+        when(postRepository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 500)))
+                .thenReturn(List.of(stale));
+
+        index.index(current);
+        index.rebuild();
+
+        assertEquals(0, index.search("draft", 10).total());
+        assertEquals(List.of(1L), index.search("published", 10).postIds());
+    }
+
+    @Test
+    @DisplayName("flush: segments are reopened after a restart without the database")
+    void flush_reopenServesFromDisk() throws Exception {
+        index.index(post(1, "Hiking in the alps", "A long weekend", NOW));
+        index.index(post(2, "Photo walk", "Vienna at night", NOW));
+        index.flush();
+        index.remove(List.of(2L));
+        index.flush();
+
+        PostSearchIndex reopened = index(0);
+        reopened.load();
+
+        assertTrue(reopened.isReady());
+        assertEquals(List.of(1L), reopened.search("alps", 10).postIds());
+        assertEquals(0, reopened.search("vienna", 10).total());
+        assertEquals(1, reopened.size());
+        verifyNoInteractions(postRepository);
+    }
+
+    @Test
+    @DisplayName("load: posts changed after the last flush are read again")
+    void load_replaysJournal() throws Exception {
+        index.load();
+        index.index(post(1, "Alps", "Flushed", NOW));
+        index.flush();
+        index.index(post(7, "Vienna", "Only journaled", NOW));
+        index.remove(List.of(1L));
+        when(postRepository.findAllById(List.of(7L, 1L)))
+                .thenReturn(List.of(post(7, "Vienna", "Only journaled", NOW)));
+
+        PostSearchIndex reopened = index(0);
+        reopened.load();
+
+        assertEquals(List.of(7L), reopened.search("vienna", 10).postIds());
+        assertEquals(0, reopened.search("alps", 10).total());
+    }
+
+    @Test
+    @DisplayName("load: without a commit the index is rebuilt")
+    void load_withoutCommit_rebuilds() throws Exception {
+        when(postRepository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 500)))
+                .thenReturn(List.of(post(3, "Rebuilt", "from the database", NOW)));
+
+        index.load();
+
+        assertTrue(index.isReady());
+        assertTrue(Files.exists(directory.resolve("segments")));
+        assertEquals(List.of(3L), index.search("rebuilt", 10).postIds());
+    }
+
+    @Test
+    @DisplayName("merge: segments of one size tier become one, deletions are dropped")
+    void merge_combinesSegments() throws Exception {
+        for (int i = 1; i <= 9; i++) {
+            index.index(post(i, "Post " + i, "shared words", NOW));
+            index.flush();
+        }
+        index.remove(List.of(4L));
+
+        index.merge();
+
+        assertEquals(1, index.segmentCount());
+        assertEquals(8, index.search("shared", 10).total());
+        assertEquals(List.of(8L), index.search("post 8", 10).postIds());
+        try (var files = Files.list(directory)) {
+            assertEquals(2, files.filter(f -> f.getFileName().toString()
+                    .startsWith("segment-")).count());
+        }
+    }
+
+    private PostSearchIndex index(double recencyWeight) {
+        return index(recencyWeight, 500, 10000);
+    }
+
+    private PostSearchIndex index(double recencyWeight, int batchSize, int flushDocs) {
+        return new PostSearchIndex(postRepository, directory, 1.2, 0.75, 2, recencyWeight, 30,
+                1000, 3, 64, batchSize, flushDocs, 8, 30, 5000000, meterRegistry);
+    }
+
+    private static Post post(long id, String title, String content, LocalDateTime createdAt) {
+        Post post = new Post();
+        post.setId(id);
+        post.setTitle(title);
+        post.setContent(content);
+        ReflectionTestUtils.setField(post, "createdAt", createdAt);
+        return post;
+    }
+}
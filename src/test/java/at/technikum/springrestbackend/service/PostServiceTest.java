@@ -1,24 +1,39 @@
 package at.technikum.springrestbackend.service;
 
+import at.technikum.springrestbackend.constant.AppConstants;
 import at.technikum.springrestbackend.dto.PostCreateDTO;
 import at.technikum.springrestbackend.dto.PostUpdateDTO;
 import at.technikum.springrestbackend.entity.Post;
 import at.technikum.springrestbackend.entity.Profile;
 import at.technikum.springrestbackend.entity.Role;
 import at.technikum.springrestbackend.repository.PostRepository;
+import at.technikum.springrestbackend.repository.PostSummary;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -29,11 +44,30 @@ class PostServiceTest {
     @Mock
     PostRepository postRepository;
     @Mock
-    MinioService minioService;
+    StoredObjectService storedObjectService;
+    @Mock
+    DirectUploadService directUploadService;
+    @Mock
+    ImageRenditionService imageRenditionService;
+    @Mock
+    StreamingUploadService streamingUploadService;
+    @Mock
+    TransactionTemplate transactionTemplate;
+    @Mock
+    ImageMetadataService imageMetadataService;
+    @Mock
+    FilePrefetchService filePrefetchService;
+    @Mock
+    PostSearchIndex postSearchIndex;
+    @Mock
+    CountService countService;
 
     @InjectMocks
     PostService postService;
 
+    private static final byte[] PNG =
+            {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13};
+
     private Profile authUser(Long id, Role role) {
         Profile p = new Profile();
         p.setId(id);
@@ -61,6 +95,187 @@ class PostServiceTest {
         assertEquals(HttpStatus.UNAUTHORIZED, ex.getStatusCode());
     }
 
+    private static PostSummary summary(Long id, String title, String content,
+                                       String imageObjectKey, LocalDateTime createdAt) {
+        return new PostSummary(id, 1L, "Author", "avatars/a.png", title, content,
+                imageObjectKey, null, null, null, createdAt, createdAt);
+    }
+
+    @Test
+    void getAll_prefetchesImagesAndAvatarsOfPage() {
+        Pageable pageable = PageRequest.of(0, 10);
+
+        when(postRepository.findSummaries(pageable))
+                .thenReturn(new SliceImpl<>(List.of(
+                        summary(1L, "T", "C", "post-images/x.png", null),
+                        summary(2L, "T", "C", null, null)), pageable, false));
+        when(countService.posts()).thenReturn(2L);
+
+        assertEquals(2, postService.getAll(null, pageable).getNumberOfElements());
+        verify(filePrefetchService).prefetch(Arrays.asList(
+                "post-images/x.png", "avatars/a.png", null, "avatars/a.png"));
+    }
+
+    @Test
+    void getAll_listsExcerptsWithoutLoadingPosts() {
+        Pageable pageable = PageRequest.of(0, 10);
+        String content = "word ".repeat(100);
+
+        when(postRepository.findSummaries(pageable))
+                .thenReturn(new SliceImpl<>(List.of(
+                        summary(1L, "T", content.substring(0, PostSummary.CONTENT_PREFIX_LENGTH),
+                                null, null)), pageable, false));
+        when(countService.posts()).thenReturn(1L);
+
+        String excerpt = postService.getAll(null, pageable).getContent().get(0).getExcerpt();
+
+        assertTrue(excerpt.endsWith("word…"));
+        assertTrue(excerpt.length() <= AppConstants.POST_EXCERPT_LENGTH + 1);
+        verify(postRepository, never()).findSliceBy(any());
+    }
+
+    @Test
+    void getAll_query_ordersPageByRelevance() {
+        Pageable pageable = PageRequest.of(0, 2);
+
+        when(postSearchIndex.isReady()).thenReturn(true);
+        when(postSearchIndex.search("spring boot", 2))
+                .thenReturn(new PostSearchIndex.Hits(List.of(3L, 1L), 5));
+        when(postSearchIndex.maxHits()).thenReturn(1000);
+        when(postRepository.findSummariesByIdIn(List.of(3L, 1L)))
+                .thenReturn(List.of(summary(1L, "T", "C", null, null),
+                        summary(3L, "T", "C", null, null)));
+
+        var page = postService.getAll("spring boot", pageable);
+
+        assertEquals(List.of(3L, 1L), page.getContent().stream().map(p -> p.getId()).toList());
+        assertEquals(5, page.getTotalElements());
+        verify(postRepository, never()).findSummariesMatching(any(), any());
+    }
+
+    @Test
+    void getAll_query_pagePastMaxHits_isRejected() {
+        Pageable pageable = PageRequest.of(50, 20);
+
+        when(postSearchIndex.isReady()).thenReturn(true);
+        when(postSearchIndex.search("spring", 1020))
+                .thenReturn(new PostSearchIndex.Hits(List.of(), 5000));
+        when(postSearchIndex.maxHits()).thenReturn(1000);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> postService.getAll("spring", pageable));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verify(postRepository, never()).findSummariesByIdIn(any());
+    }
+
+    @Test
+    void getAll_query_sortedBeyondMaxHits_isRejected() {
+        Pageable pageable = PageRequest.of(0, 10, Sort.by("createdAt").descending());
+
+        when(postSearchIndex.isReady()).thenReturn(true);
+        when(postSearchIndex.search("spring", Integer.MAX_VALUE))
+                .thenReturn(new PostSearchIndex.Hits(List.of(1L, 2L), 5000));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> postService.getAll("spring", pageable));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verify(postRepository, never()).findSummariesByIdIn(any(), any());
+    }
+
+    @Test
+    void getAll_query_indexNotReady_fallsBackToDatabase() {
+        Pageable pageable = PageRequest.of(0, 10);
+        Pageable newestFirst = PageRequest.of(0, 10, Sort.by("createdAt").descending());
+
+        when(postSearchIndex.isReady()).thenReturn(false);
+        when(postRepository.findSummariesMatching("spring", newestFirst))
+                .thenReturn(new SliceImpl<>(List.of(), newestFirst, false));
+        when(countService.searchCount(eq("spring"), any())).thenReturn(0L);
+
+        assertEquals(0, postService.getAll("spring", pageable).getTotalElements());
+        verify(postSearchIndex, never()).search(anyString(), anyInt());
+    }
+
+    @Test
+    void getAll_totalComesFromCounter() {
+        Pageable pageable = PageRequest.of(3, 10);
+
+        when(postRepository.findSummaries(pageable))
+                .thenReturn(new SliceImpl<>(List.of(summary(1L, "T", "C", null, null)),
+                        pageable, true));
+        when(countService.posts()).thenReturn(1234L);
+
+        assertEquals(1234, postService.getAll(null, pageable).getTotalElements());
+        verify(postRepository, never()).count();
+    }
+
+    @Test
+    void getSlice_returnsHasNextWithoutCounting() {
+        Pageable pageable = PageRequest.of(0, 1);
+
+        when(postSearchIndex.isReady()).thenReturn(false);
+        when(postRepository.findSummariesMatching(eq("spring"), any()))
+                .thenReturn(new SliceImpl<>(List.of(summary(1L, "T", "C", null, null)),
+                        pageable, true));
+
+        var slice = postService.getSlice("spring", pageable);
+
+        assertTrue(slice.isHasNext());
+        assertEquals(1, slice.getContent().size());
+        verifyNoInteractions(countService);
+    }
+
+    @Test
+    void getFeed_nextCursorSeeksAfterLastPost() {
+        LocalDateTime createdAt = LocalDateTime.of(2025, 3, 1, 12, 30);
+        Sort newestFirst = Sort.by("createdAt").descending();
+        Sort.Order order = newestFirst.iterator().next();
+
+        when(postRepository.findSummariesAfter(order, null, null, 3))
+                .thenReturn(List.of(summary(9L, "T", "C", null, createdAt.plusDays(1)),
+                        summary(4L, "T", "C", null, createdAt),
+                        summary(2L, "T", "C", null, createdAt)));
+        when(postRepository.findSummariesAfter(order, createdAt, 4L, 3))
+                .thenReturn(List.of(summary(2L, "T", "C", null, createdAt)));
+
+        var first = postService.getFeed("", 2, newestFirst);
+        var second = postService.getFeed(first.getNextCursor(), 2, newestFirst);
+
+        assertEquals(List.of(9L, 4L), first.getContent().stream().map(p -> p.getId()).toList());
+        assertNotNull(first.getNextCursor());
+        assertEquals(List.of(2L), second.getContent().stream().map(p -> p.getId()).toList());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void getFeed_cursorOfOtherSortOrGarbage_throws400() {
+        Sort byTitle = Sort.by("title").ascending();
+
+        when(postRepository.findSummariesAfter(byTitle.iterator().next(), null, null, 2))
+                .thenReturn(List.of(summary(1L, "Alps", "C", null, null),
+                        summary(2L, "Vienna", "C", null, null)));
+        String cursor = postService.getFeed(null, 1, byTitle).getNextCursor();
+
+        ResponseStatusException otherSort = assertThrows(ResponseStatusException.class,
+                () -> postService.getFeed(cursor, 1, Sort.by("title").descending()));
+        ResponseStatusException garbage = assertThrows(ResponseStatusException.class,
+                () -> postService.getFeed("not a cursor", 1, byTitle));
+        assertEquals(HttpStatus.BAD_REQUEST, otherSort.getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, garbage.getStatusCode());
+    }
+
+    @Test
+    void getFeed_sizeAboveMax_throws400WithoutQuerying() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> postService.getFeed(null, Integer.MAX_VALUE,
+                        Sort.by("createdAt").descending()));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verify(postRepository, never()).findSummariesAfter(any(), any(), any(), anyInt());
+    }
+
     @Test
     void update_notOwnerNotAdmin_throws403() {
         Profile me = authUser(1L, Role.USER);
@@ -103,6 +318,7 @@ class PostServiceTest {
 
         var res = postService.update(10L, dto);
         assertEquals("New Title", res.getTitle());
+        verify(postSearchIndex).index(post);
     }
 
     @Test
@@ -135,14 +351,69 @@ class PostServiceTest {
         when(postRepository.save(any(Post.class))).thenAnswer(inv -> inv.getArgument(0));
 
         MockMultipartFile file = new MockMultipartFile(
-                "file", "img.png", "image/png", new byte[]{1, 2, 3}
+                "file", "img.png", "image/png", PNG
         );
 
+        StoredObjectService.StagedObject staged =
+                new StoredObjectService.StagedObject("uploads/x", "abc", file.getContentType(),
+                        new ImageMetadataService.ImageMetadata(640, 480, "L6PZfSi_.AyE_3t7t7R**0o#DgR4"));
+        when(storedObjectService.stage(file)).thenReturn(staged);
+        when(storedObjectService.storeStaged(eq("post-images/"), eq(staged), any()))
+                .thenAnswer(inv -> inv.<Function<String, ?>>getArgument(2)
+                        .apply("post-images/abc.png"));
+
         var res = postService.uploadImage(10L, file);
 
-        assertNotNull(res.getImageUrl());
-        verify(minioService, times(1)).upload(anyString(), eq(file));
+        assertEquals("/api/files/post-images/abc.png", res.getImageUrl());
+        assertEquals(640, res.getImageWidth());
+        assertEquals(480, res.getImageHeight());
+        assertEquals("L6PZfSi_.AyE_3t7t7R**0o#DgR4", res.getImagePlaceholder());
+        verify(storedObjectService, times(1)).stage(file);
         verify(postRepository, times(1)).save(any(Post.class));
+        verify(storedObjectService, never()).release(anyString());
+    }
+
+    @Test
+    void completeImageUpload_verified_swapsKey_andDeletesOldImage() {
+        Profile me = authUser(1L, Role.USER);
+
+        Post post = new Post();
+        post.setId(10L);
+        post.setAuthor(me);
+        post.setImageObjectKey("post-images/10/old.png");
+
+        when(postRepository.findWithAuthorById(10L)).thenReturn(Optional.of(post));
+        when(postRepository.save(any(Post.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(imageMetadataService.describe("post-images/10/new.png"))
+                .thenReturn(ImageMetadataService.ImageMetadata.NONE);
+        when(transactionTemplate.execute(any())).thenAnswer(
+                inv -> inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        var res = postService.completeImageUpload(10L, "post-images/10/new.png");
+
+        assertEquals("/api/files/post-images/10/new.png", res.getImageUrl());
+        verify(directUploadService).verify("post-images/10/", "post-images/10/new.png");
+        verify(storedObjectService).release("post-images/10/old.png");
+    }
+
+    @Test
+    void completeImageUpload_rejected_keepsOldImage() {
+        Profile me = authUser(1L, Role.USER);
+
+        Post post = new Post();
+        post.setId(10L);
+        post.setAuthor(me);
+        post.setImageObjectKey("post-images/10/old.png");
+
+        when(postRepository.findWithAuthorById(10L)).thenReturn(Optional.of(post));
+        when(directUploadService.verify("post-images/10/", "post-images/11/x.png"))
+                .thenThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid object key"));
+
+        assertThrows(ResponseStatusException.class,
+                () -> postService.completeImageUpload(10L, "post-images/11/x.png"));
+        assertEquals("post-images/10/old.png", post.getImageObjectKey());
+        verify(postRepository, never()).save(any());
+        verifyNoInteractions(storedObjectService);
     }
 
     @Test
@@ -151,11 +422,15 @@ class PostServiceTest {
         Post post = new Post();
         post.setId(5L);
         post.setAuthor(me);
+        post.setImageObjectKey("post-images/5/a.png");
 
         when(postRepository.findWithAuthorById(5L)).thenReturn(Optional.of(post));
 
         postService.delete(5L);
         verify(postRepository, times(1)).delete(post);
+        verify(storedObjectService).release("post-images/5/a.png");
+        verify(postSearchIndex).remove(List.of(5L));
+        verify(countService).postsChanged(-1);
     }
 
 
@@ -192,6 +467,8 @@ class PostServiceTest {
 
         var res = postService.create(dto);
         assertNotNull(res.getId());
+        verify(postSearchIndex).index(any(Post.class));
+        verify(countService).postsChanged(1);
         assertEquals("Great Title", res.getTitle());
     }
 
@@ -219,8 +496,16 @@ class PostServiceTest {
         when(postRepository.save(any(Post.class))).thenAnswer(inv -> inv.getArgument(0));
 
         MockMultipartFile file = new MockMultipartFile(
-                "file", "photo.jpg", "image/jpeg", new byte[]{1,2,3}
+                "file", "photo.jpg", "image/jpeg",
+                new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}
         );
+        StoredObjectService.StagedObject staged =
+                new StoredObjectService.StagedObject("uploads/x", "abc", file.getContentType(),
+                        ImageMetadataService.ImageMetadata.NONE);
+        when(storedObjectService.stage(file)).thenReturn(staged);
+        when(storedObjectService.storeStaged(eq("post-images/"), eq(staged), any()))
+                .thenAnswer(inv -> inv.<Function<String, ?>>getArgument(2)
+                        .apply("post-images/abc.jpg"));
 
         var res = postService.uploadImage(10L, file);
         assertNotNull(res.getImageUrl());
@@ -237,8 +522,15 @@ class PostServiceTest {
         when(postRepository.save(any(Post.class))).thenAnswer(inv -> inv.getArgument(0));
 
         MockMultipartFile file = new MockMultipartFile(
-                "file", "photo.webp", "image/webp", new byte[]{1,2,3}
+                "file", "photo.webp", "image/webp", "RIFF\0\0\0\0WEBP".getBytes()
         );
+        StoredObjectService.StagedObject staged =
+                new StoredObjectService.StagedObject("uploads/x", "abc", file.getContentType(),
+                        ImageMetadataService.ImageMetadata.NONE);
+        when(storedObjectService.stage(file)).thenReturn(staged);
+        when(storedObjectService.storeStaged(eq("post-images/"), eq(staged), any()))
+                .thenAnswer(inv -> inv.<Function<String, ?>>getArgument(2)
+                        .apply("post-images/abc.webp"));
 
         var res = postService.uploadImage(10L, file);
         assertNotNull(res.getImageUrl());
@@ -265,4 +557,50 @@ class PostServiceTest {
         assertEquals(HttpStatus.FORBIDDEN, ex.getStatusCode());
     }
 
+    @Test
+    void uploadImageStream_owner_storesStagedUploadInTransaction() {
+        Profile me = authUser(1L, Role.USER);
+        Post post = new Post();
+        post.setId(10L);
+        post.setAuthor(me);
+        post.setImageObjectKey("post-images/old.png");
+
+        InputStream body = new ByteArrayInputStream(PNG);
+        StoredObjectService.StagedObject staged =
+                new StoredObjectService.StagedObject("uploads/x", "abc", "image/png",
+                        new ImageMetadataService.ImageMetadata(16, 9, null));
+        when(postRepository.findWithAuthorById(10L)).thenReturn(Optional.of(post));
+        when(postRepository.save(any(Post.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(streamingUploadService.stage("multipart/form-data; boundary=b", body))
+                .thenReturn(staged);
+        when(storedObjectService.storeStaged(eq("post-images/"), eq(staged), any()))
+                .thenAnswer(inv -> inv.<Function<String, ?>>getArgument(2)
+                        .apply("post-images/abc.png"));
+        var res = postService.uploadImageStream(10L, "multipart/form-data; boundary=b", body);
+
+        assertEquals("/api/files/post-images/abc.png", res.getImageUrl());
+        assertEquals(16, res.getImageWidth());
+        assertEquals(9, post.getImageHeight());
+        verify(storedObjectService).release("post-images/old.png");
+    }
+
+    @Test
+    void uploadImageStream_nonOwner_throws403BeforeReadingBody() {
+        authUser(1L, Role.USER);
+
+        Profile other = new Profile();
+        other.setId(2L);
+        Post post = new Post();
+        post.setId(10L);
+        post.setAuthor(other);
+
+        when(postRepository.findWithAuthorById(10L)).thenReturn(Optional.of(post));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> postService.uploadImageStream(10L, "multipart/form-data; boundary=b",
+                        new ByteArrayInputStream(PNG)));
+        assertEquals(HttpStatus.FORBIDDEN, ex.getStatusCode());
+        verifyNoInteractions(streamingUploadService);
+    }
+
 }
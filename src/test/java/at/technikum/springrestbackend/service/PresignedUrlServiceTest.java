@@ -0,0 +1,57 @@
+package at.technikum.springrestbackend.service;
+
+import io.minio.MinioClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("PresignedUrlService")
+class PresignedUrlServiceTest {
+
+    private PresignedUrlService service;
+
+    @BeforeEach
+    void setUp() {
+        // region is fixed, so signing works without reaching the endpoint
+        MinioClient presigner = MinioClient.builder()
+                .endpoint("http://files.example.com")
+                .region("us-east-1")
+                .credentials("access", "secret-key")
+                .build();
+        service = new PresignedUrlService(presigner, "app-bucket",
+                List.of("avatars/", " "), Duration.ofMinutes(10), Duration.ofMinutes(1));
+    }
+
+    @Test
+    @DisplayName("urlFor: configured prefix gets a signed URL on the public host")
+    void urlFor_configuredPrefix_signsUrl() {
+        PresignedUrlService.PresignedUrl url = service.urlFor("avatars/1/a.png");
+
+        assertNotNull(url);
+        assertTrue(url.url().startsWith("http://files.example.com/app-bucket/avatars/1/a.png?"));
+        assertTrue(url.url().contains("X-Amz-Expires=600"));
+        assertTrue(url.expiresAt().isAfter(Instant.now().plusSeconds(590)));
+    }
+
+    @Test
+    @DisplayName("urlFor: other prefixes are not redirected")
+    void urlFor_otherPrefix_returnsNull() {
+        assertNull(service.urlFor("post-images/1/a.png"));
+        assertFalse(service.isEnabledFor(""));
+    }
+
+    @Test
+    @DisplayName("urlFor: signed URLs are reused within the window")
+    void urlFor_repeated_reusesSignedUrl() {
+        PresignedUrlService.PresignedUrl first = service.urlFor("avatars/1/a.png");
+
+        assertSame(first, service.urlFor("avatars/1/a.png"));
+        assertNotEquals(first.url(), service.urlFor("avatars/2/b.png").url());
+    }
+}
@@ -18,11 +18,13 @@ import org.springframework.http.HttpStatus;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -38,7 +40,28 @@ class ProfileServiceTest {
     private PostRepository postRepository;
 
     @Mock
-    private MinioService minioService;
+    private StoredObjectService storedObjectService;
+
+    @Mock
+    private DirectUploadService directUploadService;
+
+    @Mock
+    private ImageRenditionService imageRenditionService;
+
+    @Mock
+    private StreamingUploadService streamingUploadService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private ImageMetadataService imageMetadataService;
+
+    @Mock
+    private PostSearchIndex postSearchIndex;
+
+    @Mock
+    private CountService countService;
 
     @InjectMocks
     private ProfileService profileService;
@@ -185,15 +208,25 @@ class ProfileServiceTest {
         authenticateAs(me);
 
         MockMultipartFile file = new MockMultipartFile(
-                "file", "avatar.png", "image/png", new byte[]{1, 2, 3}
+                "file", "avatar.png", "image/png",
+                new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}
         );
 
         when(profileRepository.save(any(Profile.class))).thenAnswer(inv -> inv.getArgument(0));
+        StoredObjectService.StagedObject staged =
+                new StoredObjectService.StagedObject("uploads/x", "abc", "image/png",
+                        new ImageMetadataService.ImageMetadata(128, 128, "L00000fQfQfQ"));
+        when(storedObjectService.stage(file)).thenReturn(staged);
+        when(storedObjectService.storeStaged(eq("avatars/"), eq(staged), any()))
+                .thenAnswer(inv -> inv.<Function<String, ?>>getArgument(2)
+                        .apply("avatars/abc.png"));
 
         ProfileDTO result = profileService.uploadAvatar(file);
 
-        assertNotNull(result);
-        verify(minioService).upload(anyString(), eq(file));
+        assertEquals("/api/files/avatars/abc.png", result.getAvatarUrl());
+        assertEquals(128, me.getAvatarWidth());
+        assertEquals("L00000fQfQfQ", me.getAvatarPlaceholder());
+        verify(storedObjectService).storeStaged(eq("avatars/"), eq(staged), any());
         verify(profileRepository).save(any(Profile.class));
     }
 
@@ -236,7 +269,7 @@ class ProfileServiceTest {
         profileService.deleteMyProfile();
 
         verify(postRepository).deleteByAuthorId(1L);
-        verify(minioService).delete("avatars/1/test.png");
+        verify(storedObjectService).release("avatars/1/test.png");
         verify(profileRepository).delete(me);
     }
 
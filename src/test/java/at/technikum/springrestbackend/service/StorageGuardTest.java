@@ -0,0 +1,196 @@
+package at.technikum.springrestbackend.service;
+
+import at.technikum.springrestbackend.exception.StorageUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("StorageGuard")
+class StorageGuardTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    @DisplayName("circuit: opens at the failure rate and fails fast with Retry-After")
+    void failures_openCircuit() {
+        StorageGuard guard = guard(4, 30);
+        for (int i = 0; i < 4; i++) {
+            fail(guard);
+        }
+        int[] calls = {0};
+
+        StorageUnavailableException e = assertThrows(StorageUnavailableException.class,
+                () -> guard.call(() -> ++calls[0]));
+
+        assertEquals(0, calls[0]);
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+        assertTrue(e.getRetryAfterSeconds() > 0 && e.getRetryAfterSeconds() <= 30);
+        assertEquals(String.valueOf(e.getRetryAfterSeconds()),
+                e.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(2, meterRegistry.get("files.storage.circuit.state").gauge().value());
+        assertEquals(1, meterRegistry.get("files.storage.calls")
+                .tag("result", "short_circuited").counter().count());
+        assertEquals(Status.UNKNOWN, guard.health().getStatus());
+    }
+
+    @Test
+    @DisplayName("circuit: 4xx answers do not count as failures")
+    void clientErrors_keepCircuitClosed() {
+        StorageGuard guard = guard(4, 30);
+        for (int i = 0; i < 10; i++) {
+            assertThrows(ResponseStatusException.class, () -> guard.call(() -> {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+            }));
+        }
+
+        assertEquals("ok", guard.call(() -> "ok"));
+        assertEquals(Status.UP, guard.health().getStatus());
+    }
+
+    @Test
+    @DisplayName("circuit: failures the caller reports as its own are not counted")
+    void callerFaults_keepCircuitClosed() {
+        StorageGuard guard = guard(4, 30);
+        for (int i = 0; i < 10; i++) {
+            assertThrows(IllegalStateException.class, () -> guard.call(() -> {
+                throw new IllegalStateException("request body broke off");
+            }, () -> true));
+        }
+
+        assertEquals("ok", guard.call(() -> "ok"));
+    }
+
+    @Test
+    @DisplayName("circuit: closes again after successful trial calls")
+    void halfOpen_closesAfterTrials() {
+        StorageGuard guard = guard(4, 0);
+        for (int i = 0; i < 4; i++) {
+            fail(guard);
+        }
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals("ok", guard.call(() -> "ok"));
+        }
+
+        assertEquals(0, meterRegistry.get("files.storage.circuit.state").gauge().value());
+        assertEquals(Status.UP, guard.health().getStatus());
+    }
+
+    @Test
+    @DisplayName("circuit: a failed trial call opens it again")
+    void halfOpen_reopensOnFailure() {
+        StorageGuard guard = guard(4, 0);
+        for (int i = 0; i < 4; i++) {
+            fail(guard);
+        }
+
+        fail(guard);
+
+        assertEquals(StorageGuard.State.OPEN, guard.state());
+    }
+
+    @Test
+    @DisplayName("bulkhead: rejects calls beyond the limit and releases slots")
+    void bulkhead_rejectsWhenSaturated() throws Exception {
+        StorageGuard guard = guard(4, 30);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 2; i++) {
+                callers.execute(() -> guard.call(() -> {
+                    started.countDown();
+                    return awaitQuietly(release);
+                }));
+            }
+            assertTrue(started.await(1, TimeUnit.SECONDS));
+
+            assertThrows(StorageUnavailableException.class, () -> guard.call(() -> "x"));
+            assertEquals(1, meterRegistry.get("files.storage.calls")
+                    .tag("result", "rejected").counter().count());
+
+            release.countDown();
+            callers.shutdown();
+            assertTrue(callers.awaitTermination(1, TimeUnit.SECONDS));
+            assertEquals("x", guard.call(() -> "x"));
+            assertEquals(2, meterRegistry.get("files.storage.bulkhead.available").gauge().value());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("bulkhead: async calls have their own limit and never wait")
+    void asyncBulkhead_separateFromBlockingCalls() {
+        StorageGuard guard = guard(4, 30);
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+        CompletableFuture<String> third = new CompletableFuture<>();
+        guard.callAsync(() -> first);
+        guard.callAsync(() -> second);
+        guard.callAsync(() -> third);
+
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> guard.callAsync(() -> CompletableFuture.completedFuture("x")).join());
+        assertInstanceOf(StorageUnavailableException.class, e.getCause());
+        assertEquals("x", guard.call(() -> "x"));
+
+        first.complete("done");
+        assertEquals("x", guard.callAsync(() -> CompletableFuture.completedFuture("x")).join());
+        assertEquals(1, meterRegistry.get("files.storage.bulkhead.async.available")
+                .gauge().value());
+    }
+
+    @Test
+    @DisplayName("callAsync: a failed future counts as a storage failure")
+    void callAsync_failure_isRecorded() {
+        StorageGuard guard = guard(4, 30);
+        for (int i = 0; i < 4; i++) {
+            CompletableFuture<String> future = guard.callAsync(() ->
+                    CompletableFuture.failedFuture(new ResponseStatusException(
+                            HttpStatus.INTERNAL_SERVER_ERROR)));
+            assertThrows(CompletionException.class, future::join);
+        }
+
+        assertEquals(StorageGuard.State.OPEN, guard.state());
+    }
+
+    private StorageGuard guard(int minimumCalls, long openSeconds) {
+        // two slots, three async slots, 10 ms wait, 50% threshold, two trial calls
+        return new StorageGuard(2, 3, 10, 10, minimumCalls, 50, openSeconds, 2, meterRegistry);
+    }
+
+    private static String awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "done";
+    }
+
+    private static void fail(StorageGuard guard) {
+        assertThrows(RuntimeException.class, () -> guard.call(() -> {
+            throw new IllegalStateException("connection refused");
+        }));
+    }
+}
@@ -0,0 +1,198 @@
+package at.technikum.springrestbackend.service;
+
+import at.technikum.springrestbackend.entity.StoredObject;
+import at.technikum.springrestbackend.repository.StoredObjectRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("StoredObjectService")
+class StoredObjectServiceTest {
+
+    @Mock
+    StoredObjectRepository storedObjectRepository;
+    @Mock
+    MinioService minioService;
+    @Mock
+    ObjectDeletionService objectDeletionService;
+    @Mock
+    ImageRenditionService imageRenditionService;
+    @Mock
+    ImageOptimizationService imageOptimizationService;
+    @Mock
+    ImageMetadataService imageMetadataService;
+    @Mock
+    TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    StoredObjectService service;
+
+    private final MockMultipartFile file =
+            new MockMultipartFile("file", "a.png", "image/png", new byte[]{1, 2, 3});
+
+    private static final StoredObjectService.StagedObject STAGED =
+            new StoredObjectService.StagedObject("uploads/x", "abc", "image/png",
+                    ImageMetadataService.ImageMetadata.NONE);
+
+    @Test
+    @DisplayName("stage: the upload is hashed to a staging key")
+    void stage_upload_hashesToStagingKeyAndDescribesBytes() {
+        ImageMetadataService.ImageMetadata metadata =
+                new ImageMetadataService.ImageMetadata(3, 1, null);
+        when(minioService.uploadHashed(startsWith("uploads/"), eq(file))).thenReturn("abc");
+        when(imageMetadataService.describe(file)).thenReturn(metadata);
+
+        StoredObjectService.StagedObject staged = service.stage(file);
+
+        assertTrue(staged.stagingKey().startsWith("uploads/"));
+        assertEquals("abc", staged.hash());
+        assertEquals("image/png", staged.contentType());
+        assertEquals(metadata, staged.metadata());
+        verify(imageMetadataService, never()).describe(anyString());
+        verifyNoInteractions(storedObjectRepository);
+    }
+
+    @Test
+    @DisplayName("storeStaged: new content is copied to its hash key and counted once")
+    void storeStaged_newContent_copiesAndCounts() {
+        when(storedObjectRepository.findForUpdate("post-images/abc.png"))
+                .thenReturn(Optional.empty());
+
+        assertEquals("post-images/abc.png", service.storeStaged("post-images/", STAGED));
+
+        verify(minioService).copy("uploads/x", "post-images/abc.png");
+        ArgumentCaptor<StoredObject> saved = ArgumentCaptor.forClass(StoredObject.class);
+        verify(storedObjectRepository).saveAndFlush(saved.capture());
+        assertEquals(1, saved.getValue().getRefCount());
+        verify(imageRenditionService).scheduleFor("post-images/abc.png");
+        verify(objectDeletionService).enqueue(List.of("uploads/x"));
+    }
+
+    @Test
+    @DisplayName("storeStaged: renditions are scheduled only once the transaction commits")
+    void storeStaged_newContent_schedulesRenditionsAfterCommit() {
+        when(storedObjectRepository.findForUpdate("post-images/abc.png"))
+                .thenReturn(Optional.empty());
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.storeStaged("post-images/", STAGED);
+
+            verifyNoInteractions(imageRenditionService);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(TransactionSynchronization::afterCommit);
+            verify(imageRenditionService).scheduleFor("post-images/abc.png");
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("stage: an optimized image is staged instead of the upload")
+    void stage_optimized_uploadsOptimizedBytes() {
+        byte[] optimized = {9, 9};
+        when(imageOptimizationService.optimize(file)).thenReturn(Optional.of(
+                new ImageOptimizationService.OptimizedImage(optimized, "image/png")));
+        when(minioService.uploadHashed(startsWith("uploads/"), eq(optimized), eq("image/png")))
+                .thenReturn("def");
+
+        assertEquals("def", service.stage(file).hash());
+
+        verify(imageMetadataService).describe(optimized);
+        verify(minioService, never()).uploadHashed(anyString(), any(MultipartFile.class));
+    }
+
+    @Test
+    @DisplayName("storeStaged: known content only gains a reference")
+    void storeStaged_knownContent_incrementsCount() {
+        StoredObject stored = new StoredObject("avatars/abc.png", 0);
+        when(storedObjectRepository.findForUpdate("avatars/abc.png"))
+                .thenReturn(Optional.of(stored));
+
+        assertEquals("avatars/abc.png", service.storeStaged("avatars/", STAGED));
+
+        assertEquals(1, stored.getRefCount());
+        verify(minioService, never()).copy(anyString(), anyString());
+        verify(storedObjectRepository, never()).saveAndFlush(any());
+        verifyNoInteractions(imageRenditionService);
+        verify(objectDeletionService).enqueue(anyList());
+    }
+
+    @Test
+    @DisplayName("storeStaged: a concurrent first upload is retried as an increment")
+    void storeStaged_concurrentFirstUpload_retriesAsIncrement() {
+        StoredObject stored = new StoredObject("avatars/abc.png", 1);
+        when(storedObjectRepository.findForUpdate("avatars/abc.png"))
+                .thenReturn(Optional.of(stored));
+        when(transactionTemplate.execute(any()))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"))
+                .thenAnswer(inv -> inv.<TransactionCallback<?>>getArgument(0)
+                        .doInTransaction(null));
+
+        assertEquals("swapped avatars/abc.png",
+                service.storeStaged("avatars/", STAGED, key -> "swapped " + key));
+
+        assertEquals(2, stored.getRefCount());
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(minioService, never()).copy(anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("release: still referenced objects are kept")
+    void release_otherReferences_keepsObject() {
+        StoredObject stored = new StoredObject("avatars/abc.png", 2);
+        when(storedObjectRepository.findForUpdate("avatars/abc.png"))
+                .thenReturn(Optional.of(stored));
+
+        service.release("avatars/abc.png");
+
+        assertEquals(1, stored.getRefCount());
+        verifyNoInteractions(objectDeletionService);
+    }
+
+    @Test
+    @DisplayName("release: last reference queues the object and its renditions")
+    void release_lastReference_enqueuesWithRenditions() {
+        StoredObject stored = new StoredObject("avatars/abc.png", 1);
+        when(storedObjectRepository.findForUpdate("avatars/abc.png"))
+                .thenReturn(Optional.of(stored));
+        when(imageRenditionService.renditionKeys("avatars/abc.png"))
+                .thenReturn(List.of("avatars/abc.w64.png"));
+
+        service.release("avatars/abc.png");
+
+        assertEquals(0, stored.getRefCount());
+        verify(objectDeletionService).enqueue(List.of("avatars/abc.png", "avatars/abc.w64.png"));
+    }
+
+    @Test
+    @DisplayName("release: uncounted legacy keys are queued directly, blank keys ignored")
+    void release_legacyKey_enqueuesDirectly() {
+        when(storedObjectRepository.findForUpdate("avatars/1/old.png"))
+                .thenReturn(Optional.empty());
+        when(imageRenditionService.renditionKeys("avatars/1/old.png")).thenReturn(List.of());
+
+        service.release("avatars/1/old.png");
+        service.release(" ");
+
+        verify(objectDeletionService).enqueue(List.of("avatars/1/old.png"));
+        verify(storedObjectRepository, times(1)).findForUpdate(anyString());
+    }
+}
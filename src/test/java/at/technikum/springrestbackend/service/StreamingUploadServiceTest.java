@@ -0,0 +1,111 @@
+package at.technikum.springrestbackend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("StreamingUploadService")
+class StreamingUploadServiceTest {
+
+    private static final String CONTENT_TYPE = "multipart/form-data; boundary=xyz";
+    private static final byte[] PNG =
+            {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13, 'I', 'H', 'D', 'R'};
+
+    @Mock
+    StoredObjectService storedObjectService;
+
+    private StreamingUploadService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new StreamingUploadService(storedObjectService, 32);
+    }
+
+    @Test
+    @DisplayName("stage: forwards the file part with the type from its signature")
+    void stage_png_forwardsContent() {
+        byte[][] forwarded = new byte[1][];
+        StoredObjectService.StagedObject staged =
+                new StoredObjectService.StagedObject("uploads/x", "abc", "image/png",
+                        ImageMetadataService.ImageMetadata.NONE);
+        when(storedObjectService.stage(eq("image/png"), any())).thenAnswer(inv -> {
+            forwarded[0] = inv.<InputStream>getArgument(1).readAllBytes();
+            return staged;
+        });
+
+        assertSame(staged, service.stage(CONTENT_TYPE, body("image/jpeg", PNG)));
+        assertArrayEquals(PNG, forwarded[0]);
+    }
+
+    @Test
+    @DisplayName("stage: unknown signatures are rejected before anything is stored")
+    void stage_notAnImage_throws400() {
+        byte[] html = "<html><body></body></html>".getBytes(StandardCharsets.US_ASCII);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> service.stage(CONTENT_TYPE, body("image/png", html)));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verifyNoInteractions(storedObjectService);
+    }
+
+    @Test
+    @DisplayName("stage: files over the limit fail with 413")
+    void stage_tooLarge_throws413() {
+        byte[] large = new byte[64];
+        System.arraycopy(PNG, 0, large, 0, PNG.length);
+        when(storedObjectService.stage(eq("image/png"), any())).thenAnswer(inv -> {
+            try {
+                inv.<InputStream>getArgument(1).readAllBytes();
+            } catch (IOException e) {
+                // what MinIO turns a failed read into
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+            return null;
+        });
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> service.stage(CONTENT_TYPE, body("image/png", large)));
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, ex.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("stage: non-multipart bodies and missing file parts are rejected")
+    void stage_noFilePart_throws400() {
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class,
+                () -> service.stage("application/json", new ByteArrayInputStream(PNG)))
+                .getStatusCode());
+        InputStream empty = new ByteArrayInputStream(
+                "--xyz--\r\n".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class,
+                () -> service.stage(CONTENT_TYPE, empty)).getStatusCode());
+        verifyNoInteractions(storedObjectService);
+    }
+
+    private static InputStream body(String claimedType, byte[] content) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(("--xyz\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"a.png\"\r\n"
+                + "Content-Type: " + claimedType + "\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes(content);
+        out.writeBytes("\r\n--xyz--\r\n".getBytes(StandardCharsets.US_ASCII));
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+}
@@ -0,0 +1,156 @@
+package at.technikum.springrestbackend.support;
+
+import at.technikum.springrestbackend.config.MinioConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.minio.MinioAsyncClient;
+import io.minio.MinioClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal in-process S3 endpoint that answers the calls MinioService makes
+ * (bucket HEAD, object GET and HEAD) with an optional artificial latency per
+ * request, so storage round trips can be measured without a MinIO container.
+ */
+public final class FakeObjectStore implements AutoCloseable {
+
+    private static final String LAST_MODIFIED = DateTimeFormatter.RFC_1123_DATE_TIME
+            .format(Instant.parse("2024-01-15T00:00:00Z").atOffset(ZoneOffset.UTC));
+
+    static {
+        // avoid Nagle/delayed-ACK stalls dominating the measured latency
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private record StoredObject(byte[] bytes, String contentType) {
+    }
+
+    private final HttpServer server;
+    private final String bucket;
+    private final Duration latency;
+    private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    public FakeObjectStore(String bucket, Duration latency) throws IOException {
+        this.bucket = bucket;
+        this.latency = latency;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(Executors.newCachedThreadPool());
+        this.server.start();
+    }
+
+    public void put(String objectKey, byte[] bytes, String contentType) {
+        objects.put(objectKey, new StoredObject(bytes, contentType));
+    }
+
+    public int requestCount() {
+        return requests.get();
+    }
+
+    public void resetRequestCount() {
+        requests.set(0);
+    }
+
+    public String endpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public MinioClient client() {
+        return MinioClient.builder()
+                .endpoint(endpoint())
+                .credentials("fake", "fake-secret")
+                .region("us-east-1")
+                .build();
+    }
+
+    public MinioAsyncClient asyncClient() {
+        return MinioAsyncClient.builder()
+                .endpoint(endpoint())
+                .credentials("fake", "fake-secret")
+                .region("us-east-1")
+                .httpClient(MinioConfig.asyncHttpClient(1024, Duration.ofMinutes(1),
+                        Duration.ofMinutes(1), Duration.ofMinutes(1)))
+                .build();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        sleepLatency();
+        String path = exchange.getRequestURI().getPath();
+        String bucketPrefix = "/" + bucket;
+        if (path.equals(bucketPrefix) || path.equals(bucketPrefix + "/")) {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        StoredObject object = objects.get(path.substring(bucketPrefix.length() + 1));
+        if (object == null) {
+            sendNotFound(exchange);
+            return;
+        }
+        sendObject(exchange, object);
+    }
+
+    private void sendObject(HttpExchange exchange, StoredObject object) throws IOException {
+        var headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", object.contentType());
+        headers.set("ETag", "\"" + Integer.toHexString(object.hashCode()) + "\"");
+        headers.set("Last-Modified", LAST_MODIFIED);
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            headers.set("Content-Length", String.valueOf(object.bytes().length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(200, object.bytes().length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(object.bytes());
+        }
+    }
+
+    private void sendNotFound(HttpExchange exchange) throws IOException {
+        byte[] body = ("<Error><Code>NoSuchKey</Code><Message>not found</Message>"
+                + "<Resource>" + exchange.getRequestURI().getPath() + "</Resource>"
+                + "<RequestId>1</RequestId><HostId>1</HostId></Error>")
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(404, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void sleepLatency() {
+        if (latency.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package at.technikum.springrestbackend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlurHashTest {
+
+    private static final String CHARACTERS =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~";
+
+    @Test
+    void encode_solidColor_encodesSizeAndAverageColor() {
+        BufferedImage image = new BufferedImage(8, 6, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 6; y++) {
+            for (int x = 0; x < 8; x++) {
+                image.setRGB(x, y, 0xFF0000);
+            }
+        }
+
+        String hash = BlurHash.encode(image, 4, 3);
+
+        // size flag, maximum AC value, 4 chars DC, 2 chars per AC component
+        assertEquals(2 + 4 + 2 * 11, hash.length());
+        assertEquals('L', hash.charAt(0));
+        assertEquals(0xFF0000, decode83(hash.substring(2, 6)));
+    }
+
+    @Test
+    void encode_sameImage_sameHash() {
+        BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < 16; x++) {
+            image.setRGB(x, x, 0xFFFFFF);
+        }
+
+        assertEquals(BlurHash.encode(image, 4, 3), BlurHash.encode(image, 4, 3));
+    }
+
+    @Test
+    void encode_invalidComponents_throws() {
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+
+        assertThrows(IllegalArgumentException.class, () -> BlurHash.encode(image, 0, 3));
+        assertThrows(IllegalArgumentException.class, () -> BlurHash.encode(image, 4, 10));
+    }
+
+    private static int decode83(String value) {
+        int result = 0;
+        for (char c : value.toCharArray()) {
+            result = result * 83 + CHARACTERS.indexOf(c);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,25 @@
+package at.technikum.springrestbackend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CursorUtilTest {
+
+    @Test
+    void encode_decode_roundTripsAnyText() {
+        List<String> values = List.of("title", "ASC", "Café. in Wien/?&", "", "42");
+
+        String cursor = CursorUtil.encode(values);
+
+        assertTrue(cursor.matches("[A-Za-z0-9_.-]*"));
+        assertEquals(values, CursorUtil.decode(cursor));
+    }
+
+    @Test
+    void decode_notACursor_throws() {
+        assertThrows(IllegalArgumentException.class, () -> CursorUtil.decode("not a cursor"));
+    }
+}
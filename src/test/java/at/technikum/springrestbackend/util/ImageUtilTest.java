@@ -6,10 +6,17 @@ import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.Optional;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class ImageUtilTest {
 
+    private static final byte[] PNG =
+            {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13};
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0};
+    private static final byte[] WEBP = {'R', 'I', 'F', 'F', 1, 0, 0, 0, 'W', 'E', 'B', 'P'};
+
     // isAllowedImageType
 
     @ParameterizedTest
@@ -38,7 +45,7 @@ class ImageUtilTest {
     @Test
     void validateImageFile_validPng_noException() {
         MockMultipartFile file = new MockMultipartFile(
-                "file", "test.png", "image/png", new byte[]{1, 2, 3}
+                "file", "test.png", "image/png", PNG
         );
 
         assertDoesNotThrow(() -> ImageUtil.validateImageFile(file));
@@ -47,12 +54,50 @@ class ImageUtilTest {
     @Test
     void validateImageFile_validJpeg_noException() {
         MockMultipartFile file = new MockMultipartFile(
-                "file", "test.jpg", "image/jpeg", new byte[]{1, 2, 3}
+                "file", "test.jpg", "image/jpeg", JPEG
         );
 
         assertDoesNotThrow(() -> ImageUtil.validateImageFile(file));
     }
 
+    @Test
+    void validateImageFile_contentNotMatchingType_throws400() {
+        MockMultipartFile file = new MockMultipartFile(
+                "file", "test.png", "image/png", JPEG
+        );
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> ImageUtil.validateImageFile(file));
+        assertEquals(400, ex.getStatusCode().value());
+    }
+
+    @Test
+    void validateImageFile_notAnImage_throws400() {
+        MockMultipartFile file = new MockMultipartFile(
+                "file", "test.png", "image/png", "<html>".getBytes()
+        );
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> ImageUtil.validateImageFile(file));
+        assertEquals(400, ex.getStatusCode().value());
+    }
+
+    // detectImageType
+
+    @Test
+    void detectImageType_knownSignatures_returnsType() {
+        assertEquals(Optional.of("image/png"), ImageUtil.detectImageType(PNG));
+        assertEquals(Optional.of("image/jpeg"), ImageUtil.detectImageType(JPEG));
+        assertEquals(Optional.of("image/webp"), ImageUtil.detectImageType(WEBP));
+    }
+
+    @Test
+    void detectImageType_unknownOrShort_returnsEmpty() {
+        assertTrue(ImageUtil.detectImageType("GIF89a".getBytes()).isEmpty());
+        assertTrue(ImageUtil.detectImageType(new byte[]{'R', 'I', 'F', 'F'}).isEmpty());
+        assertTrue(ImageUtil.detectImageType(new byte[0]).isEmpty());
+    }
+
     @Test
     void validateImageFile_nullFile_throws400() {
         ResponseStatusException ex = assertThrows(ResponseStatusException.class,
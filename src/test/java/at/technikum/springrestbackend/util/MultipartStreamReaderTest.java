@@ -0,0 +1,113 @@
+package at.technikum.springrestbackend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultipartStreamReaderTest {
+
+    private static final String BOUNDARY = "----b0undary";
+
+    private static final String BODY = "preamble\r\n"
+            + "--" + BOUNDARY + "\r\n"
+            + "Content-Disposition: form-data; name=\"title\"\r\n"
+            + "\r\n"
+            + "hello\r\n"
+            + "--" + BOUNDARY + "\r\n"
+            + "Content-Disposition: form-data; name=\"file\"; filename=\"a;b.png\"\r\n"
+            + "Content-Type: image/png\r\n"
+            + "\r\n"
+            + "line1\r\n--not-the-boundary\r\nline2\r\n"
+            + "--" + BOUNDARY + "--\r\n";
+
+    // boundaryOf
+
+    @Test
+    void boundaryOf_plainAndQuoted_returnsBoundary() {
+        assertEquals(Optional.of("abc"),
+                MultipartStreamReader.boundaryOf("multipart/form-data; boundary=abc"));
+        assertEquals(Optional.of("a b"),
+                MultipartStreamReader.boundaryOf("Multipart/Form-Data; charset=x; boundary=\"a b\""));
+    }
+
+    @Test
+    void boundaryOf_notMultipart_returnsEmpty() {
+        assertTrue(MultipartStreamReader.boundaryOf("application/json").isEmpty());
+        assertTrue(MultipartStreamReader.boundaryOf("multipart/form-data").isEmpty());
+        assertTrue(MultipartStreamReader.boundaryOf(null).isEmpty());
+    }
+
+    // nextPart
+
+    @Test
+    void nextPart_readsHeadersAndContent() throws IOException {
+        MultipartStreamReader reader = reader(BODY, Integer.MAX_VALUE);
+
+        MultipartStreamReader.Part title = reader.nextPart();
+        assertEquals("title", title.name());
+        assertNull(title.filename());
+        assertEquals("hello", text(title.content()));
+
+        MultipartStreamReader.Part file = reader.nextPart();
+        assertEquals("file", file.name());
+        assertEquals("a;b.png", file.filename());
+        assertEquals("image/png", file.contentType());
+        assertEquals("line1\r\n--not-the-boundary\r\nline2", text(file.content()));
+
+        assertNull(reader.nextPart());
+    }
+
+    @Test
+    void nextPart_oneByteReads_findsBoundariesAcrossBufferFills() throws IOException {
+        MultipartStreamReader reader = reader(BODY, 1);
+
+        MultipartStreamReader.Part title = reader.nextPart();
+        assertEquals("title", title.name());
+
+        MultipartStreamReader.Part file = reader.nextPart();
+        assertEquals("line1\r\n--not-the-boundary\r\nline2", text(file.content()));
+        assertNull(reader.nextPart());
+    }
+
+    @Test
+    void nextPart_unreadContent_isSkipped() throws IOException {
+        MultipartStreamReader reader = reader(BODY, Integer.MAX_VALUE);
+
+        reader.nextPart();
+        MultipartStreamReader.Part file = reader.nextPart();
+
+        assertEquals("file", file.name());
+    }
+
+    @Test
+    void read_bodyEndsWithoutBoundary_throws() throws IOException {
+        String truncated = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"\r\n"
+                + "\r\n"
+                + "no end in sight";
+        MultipartStreamReader.Part file = reader(truncated, Integer.MAX_VALUE).nextPart();
+
+        assertThrows(IOException.class, () -> file.content().readAllBytes());
+    }
+
+    private static MultipartStreamReader reader(String body, int maxChunk) {
+        InputStream in = new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+        return new MultipartStreamReader(new FilterInputStream(in) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, maxChunk));
+            }
+        }, BOUNDARY);
+    }
+
+    private static String text(InputStream in) throws IOException {
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+}
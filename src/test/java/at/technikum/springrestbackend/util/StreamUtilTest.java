@@ -0,0 +1,68 @@
+package at.technikum.springrestbackend.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamUtilTest {
+
+    @Test
+    void copy_smallInput_copiesAllBytes() throws Exception {
+        byte[] data = "hello".getBytes();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long copied = StreamUtil.copy(new ByteArrayInputStream(data), out);
+
+        assertEquals(data.length, copied);
+        assertArrayEquals(data, out.toByteArray());
+    }
+
+    @Test
+    void copy_inputLargerThanBuffer_copiesAllBytes() throws Exception {
+        byte[] data = new byte[StreamUtil.BUFFER_SIZE * 3 + 17];
+        new Random(42).nextBytes(data);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long copied = StreamUtil.copy(new ByteArrayInputStream(data), out);
+
+        assertEquals(data.length, copied);
+        assertArrayEquals(data, out.toByteArray());
+    }
+
+    @Test
+    void copy_emptyInput_copiesNothing() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(0, StreamUtil.copy(new ByteArrayInputStream(new byte[0]), out));
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    void copy_fileRegion_copiesOnlyTheRange(@TempDir Path directory) throws Exception {
+        Path file = Files.write(directory.resolve("data.bin"), "0123456789".getBytes());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (FileRegionInputStream in = FileRegionInputStream.open(file, 3, 4)) {
+            assertEquals(4, StreamUtil.copy(in, out));
+            assertEquals(0, in.remaining());
+        }
+        assertArrayEquals("3456".getBytes(), out.toByteArray());
+    }
+
+    @Test
+    void releasedBuffer_isReused() {
+        byte[] buffer = StreamUtil.acquireBuffer();
+        assertEquals(StreamUtil.BUFFER_SIZE, buffer.length);
+
+        StreamUtil.releaseBuffer(buffer);
+
+        assertSame(buffer, StreamUtil.acquireBuffer());
+    }
+}
@@ -72,4 +72,26 @@ class StringUtilTest {
     void isBlank_nonBlankValues_returnsFalse(String value) {
         assertFalse(StringUtil.isBlank(value));
     }
-}
\ No newline at end of file
+
+    // excerpt
+
+    @Test
+    void excerpt_shortText_returnsUnchanged() {
+        assertEquals("Short post", StringUtil.excerpt("Short post", 10));
+    }
+
+    @Test
+    void excerpt_longText_cutsAtWordBreak() {
+        assertEquals("Hiking in the…", StringUtil.excerpt("Hiking in the alps", 15));
+    }
+
+    @Test
+    void excerpt_noWordBreak_cutsAtLength() {
+        assertEquals("Hiking…", StringUtil.excerpt("Hikinginthealps", 6));
+    }
+
+    @Test
+    void excerpt_null_returnsNull() {
+        assertNull(StringUtil.excerpt(null, 10));
+    }
+}
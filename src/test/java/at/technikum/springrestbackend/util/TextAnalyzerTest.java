@@ -0,0 +1,40 @@
+package at.technikum.springrestbackend.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextAnalyzerTest {
+
+    @Test
+    void terms_lowercasesAndStripsAccents() {
+        assertEquals(List.of("cafe", "in", "wien", "melange"),
+                TextAnalyzer.terms("Café in Wien: Mélange!"));
+    }
+
+    @Test
+    void terms_splitsOnPunctuationAndKeepsDigits() {
+        assertEquals(List.of("spring", "boot", "3", "4", "rest", "api"),
+                TextAnalyzer.terms("Spring-Boot 3.4 / rest_api"));
+    }
+
+    @Test
+    void terms_longRunIsCut() {
+        List<String> terms = TextAnalyzer.terms("x".repeat(100));
+
+        assertEquals(1, terms.size());
+        assertEquals(TextAnalyzer.MAX_TERM_LENGTH, terms.get(0).length());
+    }
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    @ValueSource(strings = {"   ", "--- !!"})
+    void terms_noWords_returnsEmpty(String text) {
+        assertTrue(TextAnalyzer.terms(text).isEmpty());
+    }
+}